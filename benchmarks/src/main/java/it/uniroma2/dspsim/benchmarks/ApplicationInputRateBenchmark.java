@@ -0,0 +1,68 @@
+package it.uniroma2.dspsim.benchmarks;
+
+import it.uniroma2.dspsim.Configuration;
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.dsp.Application;
+import it.uniroma2.dspsim.dsp.ApplicationBuilder;
+import it.uniroma2.dspsim.dsp.Operator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Propagation of the input rate through the application graph and end-to-end latency.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ApplicationInputRateBenchmark {
+
+	@Param({"simple-tandem", "simple-tree", "fork-join"})
+	public String application;
+
+	@Param({"3", "5"})
+	public int maxParallelism;
+
+	@Param({"1", "3"})
+	public int nodeTypes;
+
+	private Application app;
+	private Map<Operator, int[]> opDeployment;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkSupport.configure(nodeTypes, maxParallelism, 20);
+		Configuration conf = Configuration.getInstance();
+		conf.setString(ConfigurationKeys.APPLICATION, application);
+		// skips the SLO optimization, which is not needed here
+		conf.setString(ConfigurationKeys.AM_TYPE_KEY, "centralized");
+
+		app = ApplicationBuilder.buildApplication();
+		opDeployment = new HashMap<>();
+		for (Operator op : app.getOperators()) {
+			int deployment[] = new int[nodeTypes];
+			deployment[nodeTypes - 1] = maxParallelism;
+			opDeployment.put(op, deployment);
+		}
+	}
+
+	@Benchmark
+	public Map<Operator, Double> currentDeployment() {
+		return app.computePerOperatorInputRate(300.0);
+	}
+
+	@Benchmark
+	public Map<Operator, Double> givenDeployment() {
+		return app.computePerOperatorInputRate(300.0, opDeployment);
+	}
+
+	@Benchmark
+	public double endToEndLatency() {
+		return app.endToEndLatency(300.0);
+	}
+}
@@ -0,0 +1,33 @@
+package it.uniroma2.dspsim.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar: accepts the usual JMH options,
+ * but enables allocation profiling (-prof gc) unless other profilers are requested.
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmdOptions = new CommandLineOptions(args);
+
+		if (cmdOptions.shouldHelp()) {
+			cmdOptions.showHelp();
+			return;
+		}
+
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdOptions);
+		if (cmdOptions.getProfilers().isEmpty())
+			options.addProfiler(GCProfiler.class);
+
+		Runner runner = new Runner(options.build());
+		if (cmdOptions.shouldList())
+			runner.list();
+		else
+			runner.run();
+	}
+}
@@ -0,0 +1,53 @@
+package it.uniroma2.dspsim.benchmarks;
+
+import it.uniroma2.dspsim.Configuration;
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.dsp.Operator;
+import it.uniroma2.dspsim.dsp.queueing.MG1OperatorQueueModel;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+
+import java.io.File;
+
+/**
+ * Common configuration of the benchmarked components.
+ *
+ * The training trace is read from the path given by the dspsim.trace system property,
+ * which defaults to traces/profile_last_month.dat (or ../traces/profile_last_month.dat,
+ * when running from the benchmarks directory).
+ */
+public class BenchmarkSupport {
+
+	private static final String DEFAULT_TRACE = "traces/profile_last_month.dat";
+
+	private BenchmarkSupport() {}
+
+	/**
+	 * Configures the simulator for a state space with the given size.
+	 */
+	public static void configure(int nodeTypes, int maxParallelism, int lambdaLevels) {
+		Configuration conf = Configuration.getInstance();
+		conf.setString(ConfigurationKeys.TRAINING_INPUT_FILE_PATH_KEY, tracePath());
+		conf.setString(ConfigurationKeys.OUTPUT_BASE_PATH_KEY, System.getProperty("java.io.tmpdir"));
+		conf.setString(ConfigurationKeys.NODE_TYPES_NUMBER_KEY, Integer.toString(nodeTypes));
+		conf.setString(ConfigurationKeys.OPERATOR_MAX_PARALLELISM_KEY, Integer.toString(maxParallelism));
+		conf.setString(ConfigurationKeys.RL_OM_INPUT_RATE_LEVELS_KEY, Integer.toString(lambdaLevels));
+
+		ComputingInfrastructure.initDefaultInfrastructure(nodeTypes);
+	}
+
+	public static Operator newOperator(int maxParallelism) {
+		Operator operator = new Operator("bench", new MG1OperatorQueueModel(1 / 160.0, 0.0), maxParallelism);
+		operator.setSloRespTime(0.065);
+		return operator;
+	}
+
+	private static String tracePath() {
+		String path = System.getProperty("dspsim.trace");
+		if (path != null)
+			return path;
+
+		if (!new File(DEFAULT_TRACE).exists() && new File("..", DEFAULT_TRACE).exists())
+			return new File("..", DEFAULT_TRACE).getPath();
+		return DEFAULT_TRACE;
+	}
+}
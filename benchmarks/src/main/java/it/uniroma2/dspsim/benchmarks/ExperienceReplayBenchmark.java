@@ -0,0 +1,58 @@
+package it.uniroma2.dspsim.benchmarks;
+
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ExperienceReplay;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mini-batch sampling from a full replay memory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExperienceReplayBenchmark {
+
+	@Param({"1000", "100000"})
+	public int memorySize;
+
+	@Param({"32", "256"})
+	public int batchSize;
+
+	private ExperienceReplay replay;
+	private int[] slots;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkSupport.configure(2, 5, 20);
+
+		StateCodec codec = new StateCodec(StateType.K_LAMBDA, 5, ComputingInfrastructure.getInfrastructure(), 20);
+		codec.materializeStates();
+
+		Random r = new Random(123);
+		replay = new ExperienceReplay(memorySize);
+		for (int i = 0; i < memorySize; i++) {
+			int s = r.nextInt(codec.getStatesCount());
+			int a;
+			do {
+				a = r.nextInt(codec.getActionsCount());
+			} while (!codec.isValid(s, a));
+			int next = codec.withLambda(codec.pds(s, a), r.nextInt(codec.getLambdaLevels()));
+			replay.add(s, a, r.nextDouble(), next);
+		}
+		slots = new int[batchSize];
+	}
+
+	@Benchmark
+	public int[] sampleBatch() {
+		replay.sampleBatch(batchSize, slots);
+		return slots;
+	}
+}
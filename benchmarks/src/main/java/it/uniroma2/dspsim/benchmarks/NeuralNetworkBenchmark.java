@@ -0,0 +1,67 @@
+package it.uniroma2.dspsim.benchmarks;
+
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.NeuralStateRepresentation;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.CachedNeuralNetwork;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.NeuralNetworkConfigurator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Network evaluation for a single state, cycling over the whole state space.
+ * With a cache size of 0 the network is evaluated at every call; otherwise the cache
+ * is large enough to hold all the states.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+public class NeuralNetworkBenchmark {
+
+	@Param({"0", "1000000"})
+	public int cacheSize;
+
+	@Param({"3", "5"})
+	public int maxParallelism;
+
+	@Param({"1", "3"})
+	public int nodeTypes;
+
+	@Param({"20"})
+	public int lambdaLevels;
+
+	private CachedNeuralNetwork network;
+	private State states[];
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkSupport.configure(nodeTypes, maxParallelism, lambdaLevels);
+
+		StateCodec codec = new StateCodec(StateType.K_LAMBDA, maxParallelism,
+				ComputingInfrastructure.getInfrastructure(), lambdaLevels);
+		codec.materializeStates();
+		states = new State[codec.getStatesCount()];
+		for (int s = 0; s < states.length; s++)
+			states[s] = codec.getState(s);
+
+		NeuralStateRepresentation repr = new NeuralStateRepresentation(maxParallelism, lambdaLevels);
+		network = new CachedNeuralNetwork(
+				NeuralNetworkConfigurator.configure(repr.getRepresentationLength(), codec.getActionsCount()),
+				cacheSize, repr);
+	}
+
+	@Benchmark
+	public INDArray output() {
+		final State s = states[next];
+		next = (next + 1) % states.length;
+		return network.output(s);
+	}
+}
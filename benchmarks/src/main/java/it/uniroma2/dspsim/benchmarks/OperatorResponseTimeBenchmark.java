@@ -0,0 +1,61 @@
+package it.uniroma2.dspsim.benchmarks;
+
+import it.uniroma2.dspsim.Configuration;
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.dsp.Operator;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.infrastructure.NodeType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operator response time, with replicas spread over all the node types,
+ * under both load balancing policies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OperatorResponseTimeBenchmark {
+
+	@Param({"rr", "heuristic"})
+	public String loadBalancer;
+
+	@Param({"3", "5", "10"})
+	public int maxParallelism;
+
+	@Param({"1", "3"})
+	public int nodeTypes;
+
+	private Operator operator;
+	private List<NodeType> instances;
+	private double inputRate;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkSupport.configure(nodeTypes, maxParallelism, 20);
+		Configuration.getInstance().setString(ConfigurationKeys.OPERATOR_LOAD_BALANCER_TYPE_KEY, loadBalancer);
+
+		operator = BenchmarkSupport.newOperator(maxParallelism);
+		NodeType types[] = ComputingInfrastructure.getInfrastructure().getNodeTypes();
+		instances = new ArrayList<>(maxParallelism);
+		int deployment[] = new int[types.length];
+		for (int i = 0; i < maxParallelism; i++) {
+			instances.add(types[i % types.length]);
+			deployment[i % types.length]++;
+		}
+
+		// high utilization, so that the load balancer has to take the node speedups into account
+		inputRate = 0.8 * operator.getMaxThroughput(deployment);
+	}
+
+	@Benchmark
+	public double responseTime() {
+		return operator.responseTime(inputRate, instances);
+	}
+}
@@ -0,0 +1,49 @@
+package it.uniroma2.dspsim.benchmarks;
+
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full enumeration of the (k, lambda) state space.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StateIteratorBenchmark {
+
+	@Param({"3", "5", "10"})
+	public int maxParallelism;
+
+	@Param({"1", "3"})
+	public int nodeTypes;
+
+	@Param({"20", "30"})
+	public int lambdaLevels;
+
+	private ComputingInfrastructure infrastructure;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkSupport.configure(nodeTypes, maxParallelism, lambdaLevels);
+		infrastructure = ComputingInfrastructure.getInfrastructure();
+	}
+
+	@Benchmark
+	public int enumerate(Blackhole blackhole) {
+		StateIterator iterator = new StateIterator(StateType.K_LAMBDA, maxParallelism, infrastructure, lambdaLevels);
+		int count = 0;
+		while (iterator.hasNext()) {
+			blackhole.consume(iterator.next());
+			count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,78 @@
+package it.uniroma2.dspsim.benchmarks;
+
+import it.uniroma2.dspsim.utils.matrix.DoubleMatrix;
+import it.uniroma2.dspsim.utils.matrix.TransitionKernel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expected value over the next input rate level, for every current level:
+ * this is the inner loop of the backups, comparing the CSR kernel with
+ * the DoubleMatrix lookups it replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransitionKernelBenchmark {
+
+	@Param({"20", "30", "60"})
+	public int lambdaLevels;
+
+	/* fraction of non-zero transition probabilities */
+	@Param({"0.2", "1.0"})
+	public double density;
+
+	private DoubleMatrix<Integer, Integer> matrix;
+	private TransitionKernel kernel;
+	private double values[];
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random r = new Random(123);
+		matrix = new DoubleMatrix<>(0.0);
+		for (int x = 0; x < lambdaLevels; x++) {
+			double row[] = new double[lambdaLevels];
+			double sum = 0.0;
+			for (int y = 0; y < lambdaLevels; y++) {
+				if (y == x || r.nextDouble() < density) {
+					row[y] = r.nextDouble();
+					sum += row[y];
+				}
+			}
+			for (int y = 0; y < lambdaLevels; y++) {
+				if (row[y] > 0.0)
+					matrix.setValue(x, y, row[y] / sum);
+			}
+		}
+		kernel = TransitionKernel.fromMatrix(matrix, lambdaLevels);
+
+		values = new double[lambdaLevels];
+		for (int y = 0; y < lambdaLevels; y++)
+			values[y] = r.nextDouble();
+	}
+
+	@Benchmark
+	public double doubleMatrix() {
+		double total = 0.0;
+		for (int x = 0; x < lambdaLevels; x++) {
+			for (Integer y : matrix.getColLabels(x))
+				total += matrix.getValue(x, y) * values[y];
+		}
+		return total;
+	}
+
+	@Benchmark
+	public double transitionKernel() {
+		double total = 0.0;
+		for (int x = 0; x < lambdaLevels; x++) {
+			for (int k = kernel.rowStart(x); k < kernel.rowEnd(x); k++)
+				total += kernel.probability(k) * values[kernel.column(k)];
+		}
+		return total;
+	}
+}
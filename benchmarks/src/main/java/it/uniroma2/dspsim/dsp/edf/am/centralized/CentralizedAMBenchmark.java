@@ -0,0 +1,106 @@
+package it.uniroma2.dspsim.dsp.edf.am.centralized;
+
+import it.uniroma2.dspsim.Configuration;
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.benchmarks.BenchmarkSupport;
+import it.uniroma2.dspsim.dsp.Application;
+import it.uniroma2.dspsim.dsp.ApplicationBuilder;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.utils.matrix.StoragePrecision;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A sweep of Q updates over the joint state space of a two-operator application,
+ * by the AM updates and by the planner on dense indexes, with Q kept for all the joint
+ * states or for the reachable ones only.
+ * To skip the offline planning, the AM starts from a precomputed (zero) Q table.
+ * The benchmark lives in the package of the AM to invoke the updates directly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CentralizedAMBenchmark {
+
+	@Param({"2", "3"})
+	public int maxParallelism;
+
+	@Param({"1", "2"})
+	public int nodeTypes;
+
+	@Param({"10", "20"})
+	public int lambdaLevels;
+
+	@Param({"full", "reachable"})
+	public String stateSpace;
+
+	private CentralizedAM am;
+	private CentralizedPlanner planner;
+	private int maxParallelismArray[];
+	private File qTableFile;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		BenchmarkSupport.configure(nodeTypes, maxParallelism, lambdaLevels);
+		Configuration conf = Configuration.getInstance();
+		conf.setString(ConfigurationKeys.AM_TYPE_KEY, "centralized");
+		conf.setString(ConfigurationKeys.APPLICATION, "simple-tandem");
+		conf.setString(ConfigurationKeys.AM_CENTRALIZED_STATE_SPACE, stateSpace);
+		Application app = ApplicationBuilder.buildApplication();
+
+		final int nOperators = app.getOperators().size();
+		maxParallelismArray = new int[nOperators];
+		int shape[] = new int[2 + nOperators];
+		shape[0] = nodeTypes;
+		shape[1] = lambdaLevels;
+		for (int i = 0; i < nOperators; i++) {
+			maxParallelismArray[i] = app.getOperators().get(i).getMaxParallelism();
+			shape[2 + i] = maxParallelismArray[i];
+		}
+
+		qTableFile = File.createTempFile("centralizedQtable", ".bin");
+		if (stateSpace.equals("full"))
+			JointQTable.createQTable(nOperators, maxParallelismArray, lambdaLevels).dump(qTableFile, shape);
+		else
+			JointQTable.createQTable(new ReachableJointStateSpace(app, conf.getInteger(ConfigurationKeys.RL_OM_MAX_INPUT_RATE_KEY, 600),
+					lambdaLevels), JointQTableStorage.HEAP, StoragePrecision.DOUBLE, 0.0).dump(qTableFile, shape);
+		conf.setString(ConfigurationKeys.AM_CENTRALIZED_PRECOMPUTED_QTABLE_FILE, qTableFile.getAbsolutePath());
+
+		am = new CentralizedAM(app, 0.1);
+		planner = am.newPlanner();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Configuration.getInstance().setString(ConfigurationKeys.AM_CENTRALIZED_PRECOMPUTED_QTABLE_FILE, "");
+		qTableFile.delete();
+	}
+
+	@Benchmark
+	public double sweep() {
+		double delta = 0.0;
+		JointStateIterator sit = new JointStateIterator(maxParallelismArray.length, maxParallelismArray,
+				ComputingInfrastructure.getInfrastructure(), lambdaLevels);
+		while (sit.hasNext()) {
+			JointState s = sit.next();
+			JointActionIterator ait = new JointActionIterator(maxParallelismArray.length);
+			while (ait.hasNext()) {
+				JointAction a = ait.next();
+				if (s.validateAction(a))
+					delta = Math.max(delta, am.updateQ(s, a));
+			}
+		}
+		return delta;
+	}
+
+	@Benchmark
+	public double plannerSweep() {
+		return planner.sweep();
+	}
+}
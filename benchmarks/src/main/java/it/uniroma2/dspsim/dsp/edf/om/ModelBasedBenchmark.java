@@ -0,0 +1,51 @@
+package it.uniroma2.dspsim.dsp.edf.om;
+
+import it.uniroma2.dspsim.Configuration;
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.benchmarks.BenchmarkSupport;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full backup of the model-based RL OM, with the model initialized offline.
+ * The benchmark lives in the package of the OM to invoke the backup directly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelBasedBenchmark {
+
+	@Param({"3", "5"})
+	public int maxParallelism;
+
+	@Param({"1", "3"})
+	public int nodeTypes;
+
+	@Param({"20", "30"})
+	public int lambdaLevels;
+
+	private ModelBasedRLOM om;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkSupport.configure(nodeTypes, maxParallelism, lambdaLevels);
+		Configuration conf = Configuration.getInstance();
+		conf.setString(ConfigurationKeys.RL_DEFAULT_QTABLE_IMPL, "array");
+		conf.setString(ConfigurationKeys.VI_PARALLEL_MODE_KEY, "sequential");
+		// the transition model and the costs are initialized with a (short) VI run
+		conf.setString(ConfigurationKeys.MB_INIT_WITH_VI, "true");
+		conf.setString(ConfigurationKeys.VI_MAX_ITERATIONS_KEY, "1");
+		conf.setString(ConfigurationKeys.MB_MAX_ONLINE_ITERS, "1");
+
+		om = new ModelBasedRLOM(BenchmarkSupport.newOperator(maxParallelism));
+	}
+
+	@Benchmark
+	public double fullBackup() {
+		return om.fullBackup();
+	}
+}
@@ -0,0 +1,52 @@
+package it.uniroma2.dspsim.dsp.edf.om;
+
+import it.uniroma2.dspsim.Configuration;
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.benchmarks.BenchmarkSupport;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single sequential value iteration sweep.
+ * The benchmark lives in the package of the OM to invoke the sweep directly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValueIterationBenchmark {
+
+	@Param({"3", "5"})
+	public int maxParallelism;
+
+	@Param({"1", "3"})
+	public int nodeTypes;
+
+	@Param({"20", "30"})
+	public int lambdaLevels;
+
+	@Param({"array", "map"})
+	public String qTable;
+
+	private ValueIterationOM om;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkSupport.configure(nodeTypes, maxParallelism, lambdaLevels);
+		Configuration conf = Configuration.getInstance();
+		conf.setString(ConfigurationKeys.RL_DEFAULT_QTABLE_IMPL, qTable);
+		conf.setString(ConfigurationKeys.VI_PARALLEL_MODE_KEY, "sequential");
+		// planning stops after the first sweep
+		conf.setString(ConfigurationKeys.VI_MAX_ITERATIONS_KEY, "1");
+
+		om = new ValueIterationOM(BenchmarkSupport.newOperator(maxParallelism));
+	}
+
+	@Benchmark
+	public double sweep() {
+		return om.vi();
+	}
+}
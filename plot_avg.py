@@ -1,13 +1,30 @@
+import os
+import struct
 import matplotlib.pyplot as plt
 import numpy as np
 
-y = np.loadtxt("results/AvgCost-avg.txt")
+
+def load_series(path):
+    # binary time series (see BinaryTableFile), or text with one sample per line
+    if not path.endswith(".bin"):
+        return np.loadtxt(path)
+    with open(path, "rb") as f:
+        magic, version, kind, shape_len = struct.unpack("<4i", f.read(16))
+        shape = struct.unpack("<%di" % shape_len, f.read(4 * shape_len))
+        header_size = (16 + 4 * shape_len + 16 + 7) // 8 * 8
+    return np.fromfile(path, dtype="<f8", offset=header_size).reshape(shape).squeeze()
+
+
+path = "results/AvgCost-avg.bin"
+if not os.path.exists(path):
+    path = "results/AvgCost-avg.txt"
+y = load_series(path)
 
 plt.xlim(left=10, right=400000)
 plt.xscale("log")
 plt.xlabel("Simulated Steps")
 plt.ylabel("Cumulative Avg. Cost")
-  
+
 # plot line
 plt.plot(y)
 plt.show()
@@ -15,7 +15,15 @@ public class Configuration {
 
 	private Properties properties;
 
-	public static synchronized Configuration getInstance() {
+	public static Configuration getInstance() {
+		final RunContext context = RunContext.current();
+		if (context != null)
+			return context.getConfiguration();
+
+		return getGlobalInstance();
+	}
+
+	private static synchronized Configuration getGlobalInstance() {
 		if (instance == null) {
 			instance = new Configuration();
 		}
@@ -23,6 +31,15 @@ public class Configuration {
 		return instance;
 	}
 
+	/**
+	 * @return a new configuration with the same properties, e.g., to be used in a RunContext
+	 */
+	public Configuration copy() {
+		Configuration c = new Configuration();
+		c.properties.putAll(this.properties);
+		return c;
+	}
+
 	public void parseConfigurationFile (String configFilePath) {
 		InputStream inputStream = null;
 		try {
@@ -105,6 +122,17 @@ public class Configuration {
 		properties.setProperty(key, value);
 	}
 
+	public boolean containsKey (String key) {
+		return properties.containsKey(key);
+	}
+
+	/**
+	 * Removes the value of the key, so that getters return (and set) their default value.
+	 */
+	public void removeKey (String key) {
+		properties.remove(key);
+	}
+
 	/**
 	 * Prints currently loaded properties
 	 * @param os OutputStream to be used.
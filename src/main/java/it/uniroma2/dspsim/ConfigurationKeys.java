@@ -33,6 +33,16 @@ public abstract class ConfigurationKeys {
 	public static final String SIMULATION_DETAILED_SCALING_LOG = "simulation.log.detailedscaling";
 	public static final String STATS_SAMPLE_COST_VALUES = "output.stats.sample.cost";
 	public static final String STATS_SAMPLE_AVG_COST_VALUES = "output.stats.sample.avgcost";
+	/** Whether per-step SLO violations should be sampled. */
+	public static final String STATS_SAMPLE_VIOLATIONS = "output.stats.sample.violations";
+	/** Format of the sampled time series: binary or text. */
+	public static final String STATS_SAMPLING_FORMAT = "output.stats.sampling.format";
+	/** One sample out of n steps is recorded. */
+	public static final String STATS_SAMPLING_DOWNSAMPLING = "output.stats.sampling.downsampling";
+	/** Steps per aggregation window of the sampled values (0 = disabled). */
+	public static final String STATS_SAMPLING_WINDOW = "output.stats.sampling.window";
+	/** Concurrent simulations run by SweepRunner (0 = available processors). */
+	public static final String SWEEP_THREADS_KEY = "sweep.threads";
 
 
 	/**
@@ -60,6 +70,8 @@ public abstract class ConfigurationKeys {
 	public static final String OPERATOR_RESPTIME_FROM_FILE = "operator.resptime.fromfile";
 	public static final String OPERATOR_RESPTIME_EVALUATION_SCRIPT = "operator.resptime.script";
 	public static final String OPERATOR_RESPTIME_EVALUATION_SCRIPT_WORKLOAD_ARGS = "operator.resptime.script.workload.args";
+	/** Directory of the cached MAP/MAP/1 performance tables (empty to disable caching). */
+	public static final String OPERATOR_RESPTIME_MAPMAP1_CACHE_DIR = "operator.resptime.mapmap1.cache.dir";
 
 
 	/**
@@ -78,6 +90,12 @@ public abstract class ConfigurationKeys {
 	public static final String AM_TYPE_KEY = "edf.am.type";
 
 	public static final String AM_CENTRALIZED_PRECOMPUTED_QTABLE_FILE = "edf.am.centralized.qfilename";
+	/** Policy dumped along with the precomputed Q table (centralizedPolicy.bin), loaded in place of compiling it */
+	public static final String AM_CENTRALIZED_PRECOMPUTED_POLICY_FILE = "edf.am.centralized.policy.filename";
+	/** Storage of the joint Q table: heap, direct (off-heap buffers) or mapped (scratch file) */
+	public static final String AM_CENTRALIZED_QTABLE_STORAGE = "edf.am.centralized.qtable.storage";
+	/** Joint states of the centralized AM: reachable (source input rate level and deployments) or full */
+	public static final String AM_CENTRALIZED_STATE_SPACE = "edf.am.centralized.state.space";
 
 	/**
 	 * Type of OperatorManager to use.
@@ -86,6 +104,10 @@ public abstract class ConfigurationKeys {
 
 	public static final String OM_POLICY_DUMP_DIR = "edf.om.policy.dump.dir";
 	public static final String OM_POLICY_LOAD_DIR = "edf.om.policy.load.dir";
+	/** Format of dumped tables: 'binary' (memory-mappable) or 'java' (serialization). */
+	public static final String POLICY_DUMP_FORMAT_KEY = "edf.policy.dump.format";
+	/** Whether the checksum of binary tables is verified on load (requires reading the whole file). */
+	public static final String POLICY_VERIFY_CHECKSUM_KEY = "edf.policy.load.verify.checksum";
 	public static final String OM_ENABLE_LEARNING = "edf.om.learning.enabled";
 
 	/**
@@ -115,6 +137,8 @@ public abstract class ConfigurationKeys {
 	public static final String RL_OM_STATE_REPRESENTATION_KEY = "edf.rl.om.state.representation";
 
 	public static final String RL_DEFAULT_QTABLE_IMPL = "edf.rl.om.qtable.impl";
+	/** Precision of the values in array based Q/V tables and in the joint Q table: double, float or fixed16 */
+	public static final String RL_QTABLE_PRECISION = "edf.rl.om.qtable.precision";
 
 	public static final String PDS_ESTIMATE_COSTS = "edf.rl.pds.estimate.costs";
 
@@ -129,6 +153,10 @@ public abstract class ConfigurationKeys {
 	public static final String VI_MAX_ITERATIONS_KEY = "edf.vi.max.iterations";
 	public static final String VI_MAX_TIME_SECONDS_KEY = "edf.vi.max.time.seconds";
 	public static final String VI_THETA_KEY = "edf.vi.theta";
+	/** Sweep execution: sequential, sync (parallel Jacobi) or async (parallel Gauss-Seidel) */
+	public static final String VI_PARALLEL_MODE_KEY = "edf.vi.parallel.mode";
+	/** Worker threads for parallel sweeps (0 = available processors) */
+	public static final String VI_PARALLEL_THREADS_KEY = "edf.vi.parallel.threads";
 
 	/**
 	 * Model approximation.
@@ -148,6 +176,9 @@ public abstract class ConfigurationKeys {
 	public static final String TBVI_EXEC_ITERATIONS_KEY = VI_MAX_ITERATIONS_KEY;
 	public static final String TBVI_EXEC_SECONDS_KEY = VI_MAX_TIME_SECONDS_KEY;
 	public static final String TBVI_TRAJECTORY_LENGTH_KEY = "edf.tbvi.trajectory.length";
+	public static final String TBVI_PARALLEL_MODE_KEY = "edf.tbvi.parallel.mode";
+	public static final String TBVI_PARALLEL_THREADS_KEY = "edf.tbvi.parallel.threads";
+	public static final String TBVI_PARALLEL_BATCH_KEY = "edf.tbvi.parallel.batch";
 	/** Function Approximation **/
 	public static final String TBVI_FA_ALPHA_KEY = "edf.tbvi.fa.alpha";
 
@@ -159,6 +190,12 @@ public abstract class ConfigurationKeys {
 	public static final String MB_REDUCED_ITER_PERIOD = "edf.mb.reducedperiod";
 	public static final String MB_MAX_ONLINE_ITERS = "edf.mb.maxiters";
 	public static final String MB_REDUCED_PERIOD_UPDATE_COEFF = "edf.mb.reducedperiod.coeff";
+	/** Backups after each step: full (periodic VI sweeps) or prioritized (prioritized sweeping) */
+	public static final String MB_BACKUP_MODE = "edf.mb.backup.mode";
+	/** Maximum prioritized sweeping backups per step */
+	public static final String MB_PS_BUDGET = "edf.mb.ps.budget";
+	/** Pairs with lower priority are not backed up */
+	public static final String MB_PS_THRESHOLD = "edf.mb.ps.threshold";
 
 	/**
 	 * Q-learning operator manager params.
@@ -189,6 +226,15 @@ public abstract class ConfigurationKeys {
 	public static final String DL_OM_NETWORK_REDUCED_K_REPT_USE_RESOURCE_SET = "edf.dl.network.input.k.reduced.resourceset";
 	public static final String DL_OM_DOUBLE_NETWORK = "edf.dl.network.double.enabled";
 	public static final String DL_OM_DOUBLE_NETWORK_SYNC_PERIOD = "edf.dl.network.double.sync.period";
+	public static final String DL_OM_PRIORITIZED_REPLAY = "edf.dl.samples.memory.prioritized";
+	public static final String DL_OM_PRIORITIZED_REPLAY_ALPHA = "edf.dl.samples.memory.prioritized.alpha";
+	public static final String DL_OM_PRIORITIZED_REPLAY_BETA = "edf.dl.samples.memory.prioritized.beta";
+	public static final String DL_OM_PRIORITIZED_REPLAY_BETA_STEPS = "edf.dl.samples.memory.prioritized.beta.steps";
+	public static final String DL_OM_PRIORITIZED_REPLAY_EPSILON = "edf.dl.samples.memory.prioritized.epsilon";
+	public static final String DL_OM_NETWORK_TARGET_SCORE = "edf.dl.network.score.target";
+	public static final String DL_OM_ASYNC_LEARNER = "edf.dl.async.enabled";
+	public static final String DL_OM_ASYNC_PUBLISH_PERIOD = "edf.dl.async.publish.every";
+	public static final String DL_OM_ASYNC_MAX_PENDING_FITS = "edf.dl.async.max.pending.fits";
 
 	/**
 	 * Type of ActionSelectionPolicy (ASP) to use
@@ -1,22 +1,36 @@
 package it.uniroma2.dspsim;
 
+import it.uniroma2.dspsim.utils.trace.InputRateTrace;
+import it.uniroma2.dspsim.utils.trace.TraceCache;
+
 import java.io.*;
+import java.util.NoSuchElementException;
 
+/**
+ * Sequential reader over an input rate trace.
+ * Traces are parsed once and shared through TraceCache.
+ */
 public class InputRateFileReader {
 
-	private BufferedReader fileReader;
+	private final InputRateTrace trace;
+	private int nextIndex = 0;
+
+	public InputRateFileReader (String filename) throws IOException {
+		this(TraceCache.get(filename));
+	}
 
-	public InputRateFileReader (String filename) throws FileNotFoundException {
-		fileReader = new BufferedReader(new InputStreamReader(new FileInputStream(filename)));
+	public InputRateFileReader (InputRateTrace trace) {
+		this.trace = trace;
 	}
 
 	public boolean hasNext() throws IOException {
-		return fileReader.ready();
+		return nextIndex < trace.size();
 	}
 
 	public double next() throws IOException {
-        String line = fileReader.readLine();
-        return Double.parseDouble(line);
+		if (nextIndex >= trace.size())
+			throw new NoSuchElementException("End of input rate trace");
+		return trace.get(nextIndex++);
 	}
 
 }
@@ -0,0 +1,65 @@
+package it.uniroma2.dspsim;
+
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.stats.Statistics;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Per-run scope for the process-wide singletons (Configuration, Statistics and
+ * ComputingInfrastructure), which allows independent simulations to run
+ * concurrently in the same JVM.
+ *
+ * While a context is active on a thread, the singleton accessors return the
+ * instances of the context. The context is inherited by threads created by that
+ * thread (e.g., thread pools used for planning).
+ */
+public class RunContext {
+
+	private static final InheritableThreadLocal<RunContext> current = new InheritableThreadLocal<>();
+
+	private final Configuration configuration;
+	private final Statistics statistics;
+	private ComputingInfrastructure infrastructure = null;
+
+	public RunContext(Configuration configuration) {
+		this.configuration = configuration;
+		this.statistics = new Statistics();
+	}
+
+	/**
+	 * @return context active on the calling thread, null if none
+	 */
+	public static RunContext current() {
+		return current.get();
+	}
+
+	public <T> T call(Callable<T> task) throws Exception {
+		final RunContext previous = current.get();
+		current.set(this);
+		try {
+			return task.call();
+		} finally {
+			if (previous == null)
+				current.remove();
+			else
+				current.set(previous);
+		}
+	}
+
+	public Configuration getConfiguration() {
+		return configuration;
+	}
+
+	public Statistics getStatistics() {
+		return statistics;
+	}
+
+	public ComputingInfrastructure getInfrastructure() {
+		return infrastructure;
+	}
+
+	public void setInfrastructure(ComputingInfrastructure infrastructure) {
+		this.infrastructure = infrastructure;
+	}
+}
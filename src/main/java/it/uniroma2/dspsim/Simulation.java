@@ -78,10 +78,12 @@ public class Simulation {
 		final String STAT_RESOURCES_COST = "ResourcesCost";
 		final String STAT_APPLICATION_COST_AVG = "AvgCost";
 
-		this.metricViolations = new CountMetric(STAT_LATENCY_VIOLATIONS);
+		Configuration conf = Configuration.getInstance();
+		boolean sampleViolations = conf.getBoolean(ConfigurationKeys.STATS_SAMPLE_VIOLATIONS, false);
+
+		this.metricViolations = new CountMetric(STAT_LATENCY_VIOLATIONS, sampleViolations);
 		statistics.registerMetric(metricViolations);
 
-		Configuration conf = Configuration.getInstance();
 		boolean sampleCostValues = conf.getBoolean(ConfigurationKeys.STATS_SAMPLE_COST_VALUES, false);
 		boolean sampleAvgCost = conf.getBoolean(ConfigurationKeys.STATS_SAMPLE_AVG_COST_VALUES, true);
 
@@ -125,12 +127,12 @@ public class Simulation {
 
 				// add slo violation cost
 				iterationCost += this.wSLO;
-				logger.info("SloCost={}",1.0);
 
 				if (detailedScalingLog)
 					logger.info("[T={}] AppSLOViolation", time);
 			} else {
-				logger.info("SloCost={}",0.0);
+				// sampled, if enabled
+				metricViolations.update(0);
 			}
 
 			final double deploymentCost = app.computeDeploymentCost();
@@ -180,6 +182,7 @@ public class Simulation {
 		}
 		System.out.print('\n');
 
+		edf.close();
 		edf.dumpPolicies();
 	}
 
@@ -194,6 +197,7 @@ public class Simulation {
 				infra.getNodeTypes()[i].setCost(infra.getNodeTypes()[i].getCost() * costUpdateCoeff);
 				infra.getNodeTypes()[i].setCpuSpeedup(infra.getNodeTypes()[i].getCpuSpeedup() * speedupUpdateCoeff);
 			}
+			infra.nodeTypesUpdated();
 		}
 	}
 
@@ -296,33 +300,46 @@ public class Simulation {
 		Simulation simulation = null;
 
 		try {
-			final String inputFile = conf
-					.getString(ConfigurationKeys.INPUT_FILE_PATH_KEY, "/home/gabriele/profile.dat");
-			InputRateFileReader inputRateFileReader = new InputRateFileReader(inputFile);
-
 			// TODO: remove (just for debugging)
 			double wRcf = conf.getDouble(ConfigurationKeys.RL_OM_RECONFIG_WEIGHT_KEY, -1.0);
 			double wRes = conf.getDouble(ConfigurationKeys.RL_OM_RESOURCES_WEIGHT_KEY, -1.0);
 			double wSlo = conf.getDouble(ConfigurationKeys.RL_OM_SLO_WEIGHT_KEY, -1.0);
 			System.out.println(String.format("wRcf=%f, wRes=%f, wSlo=%f", wRcf, wRes, wSlo));
 
-			Application app = ApplicationBuilder.buildApplication();
-			simulation = new Simulation(inputRateFileReader, app);
-
-			long stopTime = conf.getLong(ConfigurationKeys.SIMULATION_STOP_TIME, -1l);
-			simulation.run(stopTime);
+			simulation = simulate(conf);
 		} catch (IOException e) {
 			e.printStackTrace();
 			System.exit(1);
 		}
 
+		simulation.dumpResults();
+	}
+
+	/**
+	 * Builds the application and runs a simulation over the input trace,
+	 * according to the given configuration.
+	 * The infrastructure must have been initialized.
+	 */
+	static Simulation simulate (Configuration conf) throws IOException {
+		final String inputFile = conf
+				.getString(ConfigurationKeys.INPUT_FILE_PATH_KEY, "/home/gabriele/profile.dat");
+		InputRateFileReader inputRateFileReader = new InputRateFileReader(inputFile);
+
+		Application app = ApplicationBuilder.buildApplication();
+		Simulation simulation = new Simulation(inputRateFileReader, app);
+
+		long stopTime = conf.getLong(ConfigurationKeys.SIMULATION_STOP_TIME, -1l);
+		simulation.run(stopTime);
+		return simulation;
+	}
 
+	void dumpResults () {
 		try {
 			/* Dump used configuration in output folder. */
-			simulation.dumpConfigs();
+			dumpConfigs();
 
 			/* Dump statistics in output folder. */
-			simulation.dumpStats();
+			dumpStats();
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
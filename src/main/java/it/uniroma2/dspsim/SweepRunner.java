@@ -0,0 +1,178 @@
+package it.uniroma2.dspsim;
+
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.utils.LoggingUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a grid of independent simulations concurrently, in a single JVM.
+ *
+ * Usage: SweepRunner grid_file [config files...]
+ *
+ * The grid file lists the comma-separated values to try for each swept key, e.g.:
+ *   edf.om.type = vi, q-learning
+ *   dsp.slo.latency = 0.065, 0.1
+ * A simulation is run for each combination of values, on top of the default
+ * configuration and of the given configuration files.
+ * Each run has its own Configuration, Statistics and ComputingInfrastructure
+ * (see RunContext) and writes its results in a sub-directory of the output path,
+ * while parsed traces and transition matrices are shared among runs.
+ */
+public class SweepRunner {
+
+	private final Logger logger = LoggerFactory.getLogger(SweepRunner.class);
+
+	private final Configuration baseConfiguration;
+	private final Map<String, List<String>> grid;
+
+	public SweepRunner(Configuration baseConfiguration, Map<String, List<String>> grid) {
+		this.baseConfiguration = baseConfiguration;
+		this.grid = grid;
+	}
+
+	/**
+	 * Parses a grid file, preserving the order of keys.
+	 */
+	public static Map<String, List<String>> parseGrid(File gridFile) throws IOException {
+		Map<String, List<String>> grid = new LinkedHashMap<>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(gridFile))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+
+				int sep = line.indexOf('=');
+				if (sep < 0)
+					throw new IllegalArgumentException("Malformed grid line: " + line);
+
+				List<String> values = new ArrayList<>();
+				for (String v : line.substring(sep + 1).split(","))
+					if (!v.trim().isEmpty())
+						values.add(v.trim());
+				if (values.isEmpty())
+					throw new IllegalArgumentException("No values for key: " + line);
+
+				grid.put(line.substring(0, sep).trim(), values);
+			}
+		}
+
+		return grid;
+	}
+
+	/**
+	 * @return a label for each run, with the swept values it uses
+	 */
+	public List<Map<String, String>> expandGrid() {
+		List<Map<String, String>> runs = new ArrayList<>();
+		runs.add(new LinkedHashMap<>());
+
+		for (Map.Entry<String, List<String>> entry : grid.entrySet()) {
+			List<Map<String, String>> expanded = new ArrayList<>(runs.size() * entry.getValue().size());
+			for (Map<String, String> run : runs) {
+				for (String value : entry.getValue()) {
+					Map<String, String> r = new LinkedHashMap<>(run);
+					r.put(entry.getKey(), value);
+					expanded.add(r);
+				}
+			}
+			runs = expanded;
+		}
+
+		return runs;
+	}
+
+	private static String runTag(int index) {
+		return String.format("run%03d", index);
+	}
+
+	/**
+	 * Runs all the simulations in the grid.
+	 * @param threads number of concurrent simulations
+	 * @return number of failed runs
+	 */
+	public int run(int threads) throws InterruptedException, IOException {
+		final String basePath = baseConfiguration.getString(ConfigurationKeys.OUTPUT_BASE_PATH_KEY, "results");
+		new File(basePath).mkdirs();
+
+		List<Map<String, String>> runs = expandGrid();
+		logger.info("Running {} simulations on {} threads", runs.size(), threads);
+
+		/* index of runs and swept values */
+		try (PrintWriter index = new PrintWriter(new FileWriter(Paths.get(basePath, "sweep_runs").toFile()))) {
+			for (int i = 0; i < runs.size(); i++)
+				index.println(String.format("%s %s", runTag(i), runs.get(i)));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Object>> futures = new ArrayList<>(runs.size());
+		try {
+			for (int i = 0; i < runs.size(); i++) {
+				Configuration conf = baseConfiguration.copy();
+				for (Map.Entry<String, String> e : runs.get(i).entrySet())
+					conf.setString(e.getKey(), e.getValue());
+				conf.setString(ConfigurationKeys.OUTPUT_BASE_PATH_KEY,
+						Paths.get(basePath, runTag(i)).toString() + File.separator);
+
+				final RunContext context = new RunContext(conf);
+				futures.add(executor.submit(() -> context.call(() -> {
+					ComputingInfrastructure.initDefaultInfrastructure();
+					Simulation.simulate(conf).dumpResults();
+					return null;
+				})));
+			}
+
+			int failures = 0;
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					futures.get(i).get();
+				} catch (ExecutionException e) {
+					logger.error("Run {} failed", runTag(i), e.getCause());
+					failures++;
+				}
+			}
+			return failures;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Usage: SweepRunner <grid file> [<config files...>]");
+			System.exit(1);
+		}
+
+		Configuration conf = Configuration.getInstance();
+		conf.parseDefaultConfigurationFile();
+		for (int i = 1; i < args.length; i++)
+			conf.parseConfigurationFile(args[i]);
+
+		LoggingUtils.configureLogging();
+
+		int threads = conf.getInteger(ConfigurationKeys.SWEEP_THREADS_KEY, 0);
+		if (threads < 1)
+			threads = Runtime.getRuntime().availableProcessors();
+
+		try {
+			SweepRunner runner = new SweepRunner(conf, parseGrid(new File(args[0])));
+			int failures = runner.run(threads);
+			if (failures > 0) {
+				System.err.println(String.format("%d runs failed", failures));
+				System.exit(1);
+			}
+		} catch (IOException | InterruptedException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
@@ -15,12 +15,19 @@ public class Application {
 	private List<Operator> operators = new ArrayList<>();
 	private List<ArrayList<Operator>> sourceSinkPaths;
 
+	/* operators in topological order (null if the graph is not acyclic),
+	 * with the positions of their upstream operators in the same order */
+	private Operator[] topologicalOrder;
+	private int[][] upstreamPositions;
+	private boolean[] sinks;
+
 	public Application() {}
 
 
 	public void addOperator (Operator op) {
 		operators.add(op);
 		computeSourceSinkPaths();
+		computeTopologicalOrder();
 	}
 
 	public void addEdge (Operator op1, Operator op2) {
@@ -28,6 +35,51 @@ public class Application {
 		op2.addUpstream(op1);
 
 		computeSourceSinkPaths();
+		computeTopologicalOrder();
+	}
+
+	private void computeTopologicalOrder() {
+		final int n = operators.size();
+		Map<Operator, Integer> inDegree = new HashMap<>();
+		Deque<Operator> ready = new ArrayDeque<>();
+		for (Operator op : operators) {
+			inDegree.put(op, op.getUpstreamOperators().size());
+			if (op.isSource())
+				ready.addLast(op);
+		}
+
+		Map<Operator, Integer> position = new HashMap<>();
+		Operator order[] = new Operator[n];
+		while (!ready.isEmpty()) {
+			Operator op = ready.removeFirst();
+			position.put(op, position.size());
+			order[position.get(op)] = op;
+
+			for (Operator down : op.getDownstreamOperators()) {
+				int degree = inDegree.get(down) - 1;
+				inDegree.put(down, degree);
+				if (degree == 0)
+					ready.addLast(down);
+			}
+		}
+
+		if (position.size() < n) {
+			// cycles: latency is computed by enumerating the paths
+			topologicalOrder = null;
+			return;
+		}
+
+		upstreamPositions = new int[n][];
+		sinks = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			Collection<Operator> upstream = order[i].getUpstreamOperators();
+			upstreamPositions[i] = new int[upstream.size()];
+			int j = 0;
+			for (Operator up : upstream)
+				upstreamPositions[i][j++] = position.get(up);
+			sinks[i] = order[i].isSink();
+		}
+		topologicalOrder = order;
 	}
 
 	private void computeSourceSinkPaths() {
@@ -88,16 +140,42 @@ public class Application {
 		return sourceSinkPaths;
 	}
 
+	/**
+	 * Computes the end-to-end latency, i.e., the max latency over the source-sink paths.
+	 * On acyclic graphs, it visits the operators in topological order, computing the
+	 * max latency of the paths that reach each operator, so that the response time of
+	 * each operator is evaluated once.
+	 */
 	public double endToEndLatency (double inputRate) {
-        double latency = 0.0;
+		if (topologicalOrder == null) {
+			double latency = 0.0;
+
+			for (ArrayList<Operator> path : sourceSinkPaths) {
+				latency = Math.max(latency, endToEndLatency(inputRate, path));
+			}
+
+			return latency;
+		}
 
-        for (ArrayList<Operator> path : sourceSinkPaths) {
-        	latency = Math.max(latency, endToEndLatency(inputRate, path));
+		double latency = 0.0;
+		double pathLatency[] = new double[topologicalOrder.length];
+		for (int i = 0; i < topologicalOrder.length; i++) {
+			// TODO: Shouldn't we compute the inputRate for each operator based on selectivity?
+			pathLatency[i] = maxUpstreamLatency(i, pathLatency) + topologicalOrder[i].responseTime(inputRate);
+			if (sinks[i])
+				latency = Math.max(latency, pathLatency[i]);
 		}
 
 		return latency;
 	}
 
+	private double maxUpstreamLatency (int position, double pathLatency[]) {
+		double latency = 0.0;
+		for (int up : upstreamPositions[position])
+			latency = Math.max(latency, pathLatency[up]);
+		return latency;
+	}
+
 	private double endToEndLatency (double inputRate, ArrayList<Operator> path) {
 		double latency = 0.0;
 
@@ -113,10 +191,22 @@ public class Application {
 	}
 
 	public double endToEndLatency (Map<Operator, Double> opRespTime) {
-		double latency = 0.0;
+		if (topologicalOrder == null) {
+			double latency = 0.0;
+
+			for (ArrayList<Operator> path : sourceSinkPaths) {
+				latency = Math.max(latency, endToEndLatency(opRespTime, path));
+			}
 
-		for (ArrayList<Operator> path : sourceSinkPaths) {
-			latency = Math.max(latency, endToEndLatency(opRespTime, path));
+			return latency;
+		}
+
+		double latency = 0.0;
+		double pathLatency[] = new double[topologicalOrder.length];
+		for (int i = 0; i < topologicalOrder.length; i++) {
+			pathLatency[i] = maxUpstreamLatency(i, pathLatency) + opRespTime.get(topologicalOrder[i]);
+			if (sinks[i])
+				latency = Math.max(latency, pathLatency[i]);
 		}
 
 		return latency;
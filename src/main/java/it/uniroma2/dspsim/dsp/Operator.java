@@ -46,6 +46,11 @@ public class Operator {
 	private LoadBalancer loadBalancer;
 	private ValuesComputingCase valuesComputingCase;
 
+	/* response time cached for the current deployment (NaN never matches) */
+	private double lastRespTimeInputRate = Double.NaN;
+	private int lastRespTimeInfrastructureVersion;
+	private double lastRespTime;
+
 	public Operator(String name, OperatorQueueModel queueModel, int maxParallelism) {
 		this.name = name;
 
@@ -80,8 +85,19 @@ public class Operator {
 		return utilization(inputRate, this.instances);
 	}
 
+	/**
+	 * Response time with the current deployment.
+	 * The last computed value is reused until the operator is reconfigured, the input rate changes
+	 * or node types are updated.
+	 */
 	public double responseTime(double inputRate) {
-		return responseTime(inputRate, this.instances);
+		final int infrastructureVersion = ComputingInfrastructure.getInfrastructure().getVersion();
+		if (inputRate != lastRespTimeInputRate || infrastructureVersion != lastRespTimeInfrastructureVersion) {
+			lastRespTime = responseTime(inputRate, this.instances);
+			lastRespTimeInputRate = inputRate;
+			lastRespTimeInfrastructureVersion = infrastructureVersion;
+		}
+		return lastRespTime;
 	}
 
 	public double utilization(double inputRate, List<NodeType> operatorInstances) {
@@ -136,6 +152,7 @@ public class Operator {
 	 */
 	public void reconfigure (Reconfiguration reconfiguration) {
 		int parallelism = instances.size();
+		lastRespTimeInputRate = Double.NaN;
 
 		if (reconfiguration.getInstancesToAdd() != null) {
 			for (NodeType nt : reconfiguration.getInstancesToAdd()) {
@@ -81,6 +81,18 @@ public class EDF {
 		return applicationManager.planReconfigurations(omMonitoringInfo, operatorManagers);
 	}
 
+	/**
+	 * Ends the activity of the operator managers (e.g., background learning).
+	 */
+	public void close() {
+		if (operatorManagers == null)
+			return;
+
+		for (OperatorManager om : operatorManagers.values()) {
+			om.close();
+		}
+	}
+
 	public void dumpPolicies() {
 		if (!PolicyIOUtils.shouldSavePolicy(Configuration.getInstance()))
 			return;
@@ -9,17 +9,20 @@ import it.uniroma2.dspsim.dsp.edf.am.ApplicationManager;
 import it.uniroma2.dspsim.dsp.edf.om.DynamicProgrammingOM;
 import it.uniroma2.dspsim.dsp.edf.om.OMMonitoringInfo;
 import it.uniroma2.dspsim.dsp.edf.om.OperatorManager;
+import it.uniroma2.dspsim.dsp.edf.om.rl.QTableFactory;
 import it.uniroma2.dspsim.dsp.edf.om.request.OMRequest;
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
-import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateUtils;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.OperatorPerformanceTable;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.PolicyIOUtils;
 import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
-import it.uniroma2.dspsim.utils.MathUtils;
-import it.uniroma2.dspsim.utils.matrix.DoubleMatrix;
+import it.uniroma2.dspsim.utils.matrix.BinaryTableFile;
+import it.uniroma2.dspsim.utils.matrix.TransitionKernel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import static it.uniroma2.dspsim.dsp.edf.om.RewardBasedOM.action2reconfiguration;
@@ -45,9 +48,17 @@ public class CentralizedAM extends ApplicationManager {
 	private double wResources;
 
 	private double gamma;
-	private DoubleMatrix<Integer, Integer> pMatrix;
+	private TransitionKernel pMatrix;
 	private JointQTable qTable;
+	/* joint states reachable under the input rate propagation model */
+	private ReachableJointStateSpace stateSpace;
+	/* whether Q is kept for the reachable joint states only (dense layout) or for all of them */
+	private boolean reachableOnly;
+	/* greedy policy w.r.t. qTable, null if the joint state space is too large */
+	private CompiledJointPolicy compiledPolicy;
 	private Operator[] operators;
+	/* per operator response times in every discretized state */
+	private OperatorPerformanceTable[] performanceTables;
 
 	public CentralizedAM(Application application, double sloLatency) {
 		super(application, sloLatency);
@@ -79,6 +90,11 @@ public class CentralizedAM extends ApplicationManager {
 			maxParallelism[i] = application.getOperators().get(i).getMaxParallelism();
 		}
 
+		this.stateSpace = new ReachableJointStateSpace(application, maxInputRate, inputRateLevels);
+		this.reachableOnly = parseStateSpace(configuration.getString(ConfigurationKeys.AM_CENTRALIZED_STATE_SPACE, "reachable"));
+
+		this.performanceTables = new OperatorPerformanceTable[nOperators];
+
 		 String trainingInputRateFilePath = configuration.getString(ConfigurationKeys.TRAINING_INPUT_FILE_PATH_KEY, "");
 
 		try {
@@ -90,9 +106,22 @@ public class CentralizedAM extends ApplicationManager {
 		final String outputBasePath = Configuration.getInstance().getString(ConfigurationKeys.OUTPUT_BASE_PATH_KEY, "");
 		String qTableFilename = configuration.getString(ConfigurationKeys.AM_CENTRALIZED_PRECOMPUTED_QTABLE_FILE, "");
 		if (qTableFilename == null || qTableFilename.isEmpty()) {
-			this.qTable = JointQTable.createQTable(nOperators, maxParallelism, inputRateLevels);
+			JointQTableStorage storage = JointQTableStorage.fromString(
+					configuration.getString(ConfigurationKeys.AM_CENTRALIZED_QTABLE_STORAGE, "heap"));
+			if (storage != JointQTableStorage.HEAP && !PolicyIOUtils.shouldDumpBinary())
+				throw new IllegalArgumentException("JointQTable storage " + storage +
+						" requires the binary dump format (" + ConfigurationKeys.POLICY_DUMP_FORMAT_KEY + ")");
+			final double bound = (wReconf + wSLO + wResources) / (1.0 - gamma);
+			if (reachableOnly)
+				this.qTable = JointQTable.createQTable(stateSpace, storage, QTableFactory.getStoragePrecision(), bound);
+			else
+				this.qTable = JointQTable.createQTable(nOperators, maxParallelism, inputRateLevels, storage,
+						QTableFactory.getStoragePrecision(), bound);
 			computePolicy();
-			serializeQ(String.format("%s/centralizedQtable.ser", outputBasePath));
+			if (PolicyIOUtils.shouldDumpBinary())
+				dumpBinaryQ(String.format("%s/centralizedQtable.bin", outputBasePath));
+			else
+				serializeQ(String.format("%s/centralizedQtable.ser", outputBasePath));
 		} else {
 			try {
 				this.qTable = loadQTable(qTableFilename);
@@ -103,48 +132,137 @@ public class CentralizedAM extends ApplicationManager {
 			}
 		}
 
+		// the policy dumped with a precomputed Q table is greedy w.r.t. it
+		String policyFilename = configuration.getString(ConfigurationKeys.AM_CENTRALIZED_PRECOMPUTED_POLICY_FILE, "");
+		if (qTableFilename != null && !qTableFilename.isEmpty() && policyFilename != null && !policyFilename.isEmpty())
+			this.compiledPolicy = loadPolicy(new File(policyFilename));
+
+		if (compiledPolicy == null) {
+			if (reachableOnly)
+				this.compiledPolicy = CompiledJointPolicy.compile(stateSpace, this::greedyAction);
+			else
+				this.compiledPolicy = CompiledJointPolicy.compile(nOperators, maxParallelism, inputRateLevels, this::greedyAction);
+			if (compiledPolicy == null)
+				logger.info("Joint state space too large, the greedy policy is not compiled");
+			else if ((qTableFilename == null || qTableFilename.isEmpty()) && PolicyIOUtils.shouldDumpBinary())
+				dumpBinaryPolicy(String.format("%s/centralizedPolicy.bin", outputBasePath));
+		}
+
 		dumpQ(String.format("%s/centralizedQtable", outputBasePath));
 		dumpPolicy(String.format("%s/policy", outputBasePath));
 	}
 
+	/**
+	 * Shape of the joint state space, stored along with binary Q tables.
+	 */
+	private int[] stateSpaceShape() {
+		int shape[] = new int[2 + nOperators];
+		shape[0] = ComputingInfrastructure.getInfrastructure().getNodeTypes().length;
+		shape[1] = inputRateLevels;
+		System.arraycopy(maxParallelism, 0, shape, 2, nOperators);
+		return shape;
+	}
+
+	private static boolean parseStateSpace(String str) throws IllegalArgumentException {
+		if (str.equalsIgnoreCase("reachable")) {
+			return true;
+		} else if (str.equalsIgnoreCase("full")) {
+			return false;
+		} else {
+			throw new IllegalArgumentException("Not valid joint state space: " + str);
+		}
+	}
+
+	/**
+	 * Loads the policy dumped along with the precomputed Q table.
+	 * @return the loaded policy, or null if it cannot be read
+	 */
+	private CompiledJointPolicy loadPolicy(File f) {
+		try {
+			if (reachableOnly)
+				return CompiledJointPolicy.load(f, stateSpaceShape(), stateSpace, PolicyIOUtils.shouldVerifyChecksum());
+			return CompiledJointPolicy.load(f, stateSpaceShape(), nOperators, maxParallelism, inputRateLevels,
+					PolicyIOUtils.shouldVerifyChecksum());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
 	private JointQTable loadQTable(String qTableFilename) throws IOException, ClassNotFoundException {
+		File f = new File(qTableFilename);
+		if (BinaryTableFile.isBinaryTableFile(f)) {
+			if (reachableOnly)
+				return JointQTable.load(f, stateSpaceShape(), stateSpace, PolicyIOUtils.shouldVerifyChecksum());
+			return JointQTable.load(f, stateSpaceShape(), nOperators, PolicyIOUtils.shouldVerifyChecksum());
+		}
+
 		FileInputStream file;
 		file = new FileInputStream(qTableFilename);
 		ObjectInputStream in = new ObjectInputStream(file);
 
 		// TODO: check if the state space is consistent
 		JointQTable table = (JointQTable)in.readObject();
+		if (table.isReachableLayout())
+			table.setStateSpace(stateSpace);
 
 		return table;
 	}
 
 	private void computePolicy() {
+		CentralizedPlanner planner = newPlanner();
 		double delta;
 		long iter = 0;
 
 		do {
-			delta = 0.0;
-			JointStateIterator sit = new JointStateIterator(nOperators, maxParallelism,
-					ComputingInfrastructure.getInfrastructure(), inputRateLevels);
-			while (sit.hasNext()) {
-				JointState s = sit.next();
-
-				JointActionIterator ait = new JointActionIterator(nOperators);
-				while (ait.hasNext()) {
-					JointAction a = ait.next();
-					if (!s.validateAction(a))
-						continue;
-					double _delta = updateQ(s,a);
-					delta = Math.max(delta, _delta);
-				}
-			}
+			delta = planner.sweep();
 			iter++;
 			if (iter % 25 == 0)
 				System.err.println(delta);
 		} while (delta > 0.0001);
+
+		planner.copyToUnreachableStates();
+	}
+
+	/* package-private, as it is also invoked by the benchmarks */
+	CentralizedPlanner newPlanner() {
+		return new CentralizedPlanner(this, qTable, stateSpace, pMatrix, wReconf, wSLO, wResources, gamma);
+	}
+
+	/**
+	 * Sets the input rate level of the source operator in s to lambda, and those
+	 * of the other operators as resulting from their deployments.
+	 */
+	void propagateInputRate(JointState s, int lambda) {
+		stateSpace.propagateInputRate(s, lambda);
+	}
+
+	/**
+	 * Joint states whose Q values and actions are dumped: only the reachable ones,
+	 * unless Q is kept for all the joint states.
+	 */
+	private Iterator<JointState> dumpedStates() {
+		if (!reachableOnly)
+			return new JointStateIterator(nOperators, maxParallelism, ComputingInfrastructure.getInfrastructure(),
+					inputRateLevels);
+
+		return new Iterator<JointState>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < stateSpace.size();
+			}
+
+			@Override
+			public JointState next() {
+				return stateSpace.getState(next++);
+			}
+		};
 	}
 
-	private double updateQ(JointState s, JointAction a) {
+	/* package-private, as it is also invoked by the benchmarks */
+	double updateQ(JointState s, JointAction a) {
 		/* immediate cost */
 		double crcf = 0.0;
 		if (a.isReconfiguration())
@@ -156,24 +274,14 @@ public class CentralizedAM extends ApplicationManager {
 		double cslo = 0.0;
 		double futureCost = 0.0;
 
-		Map<Operator, int[]> opDeployment = new HashMap<>();
-		for (int i = 0; i<nOperators; i++) {
-			opDeployment.put(operators[i], newS.states[i].getActualDeployment());
-		}
-
 
-		for (int lambda = 0; lambda < inputRateLevels; ++lambda) {
+		final int sourceLambda = s.states[0].getLambda();
+		for (int k = pMatrix.rowStart(sourceLambda); k < pMatrix.rowEnd(sourceLambda); ++k) {
 			// compute per operator lambda...
-			newS.states[0].setLambda(lambda);
-			double realInputRate = MathUtils.remapDiscretizedValue(maxInputRate, lambda, inputRateLevels);
-			Map<Operator, Double> opRealInputRate = application.computePerOperatorInputRate(realInputRate, opDeployment);
-			for (int i = 1; i < nOperators; i++) {
-				int lambdaOp = MathUtils.discretizeValue(maxInputRate, opRealInputRate.get(operators[i]), inputRateLevels);
-				newS.states[i].setLambda(lambdaOp);
-			}
+			propagateInputRate(newS, pMatrix.column(k));
 
 			// NOTE: We are assuming lambdas are proportional among different operators...
-			double p = pMatrix.getValue(s.states[0].getLambda(), newS.states[0].getLambda());
+			double p = pMatrix.probability(k);
 
 			if(isAppSLOViolationExpectedInState(newS)) {
 				cslo += p;
@@ -211,27 +319,26 @@ public class CentralizedAM extends ApplicationManager {
 		return bestA;
 	}
 
+	/**
+	 * Greedy action, looked up in the compiled policy when available.
+	 */
+	JointAction policyAction(JointState s) {
+		if (compiledPolicy != null)
+			return compiledPolicy.getAction(s);
+		return greedyAction(s);
+	}
+
 	public double computeSLOViolationProbability (JointState s, JointAction a) {
 		JointState newS = JointStateUtils.computePDS(s,a,inputRateLevels,maxParallelism);
 
-		Map<Operator, int[]> opDeployment = new HashMap<>();
-		for (int i = 0; i<nOperators; i++) {
-			opDeployment.put(operators[i], newS.states[i].getActualDeployment());
-		}
-
 		double prob = 0.0;
-		for (int lambda = 0; lambda < inputRateLevels; ++lambda) {
+		final int sourceLambda = s.states[0].getLambda();
+		for (int k = pMatrix.rowStart(sourceLambda); k < pMatrix.rowEnd(sourceLambda); ++k) {
 			// compute per operator lambda...
-			newS.states[0].setLambda(lambda);
-			double realInputRate = MathUtils.remapDiscretizedValue(maxInputRate, lambda, inputRateLevels);
-			Map<Operator, Double> opRealInputRate = application.computePerOperatorInputRate(realInputRate, opDeployment);
-			for (int i = 1; i < nOperators; i++) {
-				int lambdaOp = MathUtils.discretizeValue(maxInputRate, opRealInputRate.get(operators[i]), inputRateLevels);
-				newS.states[i].setLambda(lambdaOp);
-			}
+			propagateInputRate(newS, pMatrix.column(k));
 
 			// NOTE: We are assuming lambdas are proportional among different operators...
-			double p = pMatrix.getValue(s.states[0].getLambda(), newS.states[0].getLambda());
+			double p = pMatrix.probability(k);
 
 			if(isAppSLOViolationExpectedInState(newS)) {
 				prob += p;
@@ -247,7 +354,7 @@ public class CentralizedAM extends ApplicationManager {
 		for (int i = 0; i < application.getOperators().size(); i++) {
 			State opS = newS.states[i];
 			Operator op = application.getOperators().get(i);
-			double r = StateUtils.computeRespTime(opS, op, maxInputRate, inputRateLevels);
+			double r = getPerformanceTable(i).getRespTime(opS);
 			opRespTime.put(op, r);
 		}
 
@@ -256,6 +363,19 @@ public class CentralizedAM extends ApplicationManager {
 		return isAppSLOViolated(opRespTime);
 	}
 
+	/**
+	 * Performance table of the i-th operator, rebuilt after infrastructure updates.
+	 */
+	private OperatorPerformanceTable getPerformanceTable(int i) {
+		OperatorPerformanceTable table = performanceTables[i];
+		if (table == null || !table.isValidFor(operators[i])) {
+			table = OperatorPerformanceTable.build(operators[i], operators[i].getSloRespTime(),
+					ComputingInfrastructure.getInfrastructure().getNodeTypes(), maxInputRate, inputRateLevels);
+			performanceTables[i] = table;
+		}
+		return table;
+	}
+
 	@Override
 	public Map<Operator, Reconfiguration> planReconfigurations(Map<Operator, OMMonitoringInfo> omMonitoringInfo,
 															   Map<Operator, OperatorManager> operatorManagers) {
@@ -264,7 +384,7 @@ public class CentralizedAM extends ApplicationManager {
 		logger.info("Expected violation: " + isAppSLOViolationExpectedInState(currentState));
 
 		// Pick best global action
-		JointAction a = greedyAction(currentState);
+		JointAction a = policyAction(currentState);
 
 		// Build map op->reconf based on global action
 		Map<Operator, Reconfiguration> opReconfs = new HashMap<>(nOperators);
@@ -282,6 +402,22 @@ public class CentralizedAM extends ApplicationManager {
 		throw new RuntimeException("This method should never be called!");
 	}
 
+	private void dumpBinaryQ (String filename) {
+		try {
+			qTable.dump(new File(filename), stateSpaceShape());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void dumpBinaryPolicy (String filename) {
+		try {
+			compiledPolicy.dump(new File(filename), stateSpaceShape());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	private void serializeQ (String filename) {
 
 		FileOutputStream file = null;
@@ -307,8 +443,7 @@ public class CentralizedAM extends ApplicationManager {
 				file.createNewFile();
 			}
 			PrintWriter printWriter = new PrintWriter(new FileOutputStream(new File(filename), true));
-			JointStateIterator sit = new JointStateIterator(nOperators, maxParallelism,
-					ComputingInfrastructure.getInfrastructure(), inputRateLevels);
+			Iterator<JointState> sit = dumpedStates();
 			while (sit.hasNext()) {
 				JointState s = sit.next();
 
@@ -337,11 +472,10 @@ public class CentralizedAM extends ApplicationManager {
 				file.createNewFile();
 			}
 			PrintWriter printWriter = new PrintWriter(new FileOutputStream(new File(filename), true));
-			JointStateIterator sit = new JointStateIterator(nOperators, maxParallelism,
-					ComputingInfrastructure.getInfrastructure(), inputRateLevels);
+			Iterator<JointState> sit = dumpedStates();
 			while (sit.hasNext()) {
 				JointState s = sit.next();
-				JointAction a = greedyAction(s);
+				JointAction a = policyAction(s);
 				printWriter.println(String.format("%s -> %s", s.toString(), a.toString()));
 			}
 			printWriter.flush();
@@ -0,0 +1,228 @@
+package it.uniroma2.dspsim.dsp.edf.am.centralized;
+
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.utils.matrix.TransitionKernel;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Value iteration of CentralizedAM over the reachable joint states (see ReachableJointStateSpace).
+ *
+ * The post-decision state of a reachable state leads, for each source input rate level,
+ * to the reachable state (post-decision joint deployment, level), hence sweeps never leave the
+ * reachable states. What does not depend on Q is computed once: whether the application SLO
+ * is violated in each reachable state, the post-decision deployment of each (deployment, action)
+ * of each operator and the resources cost of each joint deployment.
+ * At each sweep, the greedy values of the states are those computed in the previous sweep,
+ * so that the expected cost after each (joint post-decision deployment, source input rate level)
+ * is computed once per sweep.
+ */
+class CentralizedPlanner {
+
+	private final ReachableJointStateSpace space;
+	private final int nOperators;
+	private final int inputRateLevels;
+	private final int actionsCount;
+	private final int statesCount;
+
+	private final double wReconf;
+	private final double wSLO;
+	private final double wResources;
+	private final double gamma;
+
+	private final TransitionKernel pMatrix;
+	private final JointQTable qTable;
+
+	/* post-decision deployment of each (deployment, action) of each operator, -1 if not valid */
+	private final int pdsDeployment[][];
+	/* offsets of the reachable states and of the per operator actions in the Q table */
+	private final long stateOffset[];
+	private final long actionOffset[][];
+
+	/* indexed as the reachable states, i.e. jointDeployment * inputRateLevels + source input rate level */
+	private final BitSet sloViolated;
+	private final double expectedCost[];
+
+	private final double resourcesCost[];
+
+	/* greedy values of the previous sweep and of the current one */
+	private double values[];
+	private double nextValues[];
+
+	CentralizedPlanner(CentralizedAM am, JointQTable qTable, ReachableJointStateSpace space,
+					   TransitionKernel pMatrix, double wReconf, double wSLO, double wResources, double gamma) {
+		this.space = space;
+		this.nOperators = space.getOperatorsCount();
+		this.inputRateLevels = space.getInputRateLevels();
+		this.statesCount = space.size();
+		this.qTable = qTable;
+		this.pMatrix = pMatrix;
+		this.wReconf = wReconf;
+		this.wSLO = wSLO;
+		this.wResources = wResources;
+		this.gamma = gamma;
+
+		this.actionsCount = space.getCodec(0).getActionsCount();
+		this.pdsDeployment = new int[nOperators][];
+		this.actionOffset = new long[nOperators][];
+		for (int i = 0; i < nOperators; i++) {
+			final StateCodec codec = space.getCodec(i);
+			pdsDeployment[i] = new int[codec.getDeploymentsCount() * actionsCount];
+			for (int d = 0; d < codec.getDeploymentsCount(); d++) {
+				for (int a = 0; a < actionsCount; a++) {
+					final int pds = codec.pds(d * inputRateLevels, a);
+					pdsDeployment[i][d * actionsCount + a] = pds < 0 ? -1 : codec.deploymentOf(pds);
+				}
+			}
+
+			actionOffset[i] = new long[actionsCount];
+			for (int a = 0; a < actionsCount; a++)
+				actionOffset[i][a] = qTable.actionOffset(i, codec.getAction(a));
+		}
+
+		final int maxParallelism[] = space.getMaxParallelism();
+		this.stateOffset = new long[statesCount];
+		this.sloViolated = new BitSet(statesCount);
+		this.expectedCost = new double[statesCount];
+		this.resourcesCost = new double[space.getDeploymentsCount()];
+		for (int js = 0; js < statesCount; js++) {
+			final JointState s = space.getState(js);
+			stateOffset[js] = qTable.stateOffset(s);
+			sloViolated.set(js, am.isAppSLOViolationExpectedInState(s));
+			if (js % inputRateLevels == 0)
+				resourcesCost[js / inputRateLevels] = JointStateUtils.computeNormalizedResourcesCost(s, maxParallelism);
+		}
+
+		this.values = new double[statesCount];
+		this.nextValues = new double[statesCount];
+		int deployment[] = new int[nOperators];
+		for (int js = 0; js < statesCount; js++) {
+			decodeDeployment(js, deployment);
+			values[js] = greedyValue(js, deployment);
+		}
+	}
+
+	private void decodeDeployment(int js, int deployment[]) {
+		final int jointDeployment = js / inputRateLevels;
+		for (int i = 0; i < nOperators; i++)
+			deployment[i] = space.getDeployment(i, jointDeployment);
+	}
+
+	/**
+	 * Moves to the next valid joint action.
+	 * @return false if there are no more valid joint actions
+	 */
+	private boolean nextAction(int deployment[], int action[]) {
+		for (int i = 0; i < nOperators; i++) {
+			do {
+				action[i]++;
+			} while (action[i] < actionsCount && pdsDeployment[i][deployment[i] * actionsCount + action[i]] < 0);
+			if (action[i] < actionsCount)
+				return true;
+			action[i] = 0;
+		}
+		return false;
+	}
+
+	private long actionOffset(int action[]) {
+		long offset = 0;
+		for (int i = 0; i < nOperators; i++)
+			offset += actionOffset[i][action[i]];
+		return offset;
+	}
+
+	private double greedyValue(int js, int deployment[]) {
+		int action[] = new int[nOperators];
+		double best = Double.POSITIVE_INFINITY;
+		do {
+			best = Math.min(best, qTable.getQ(stateOffset[js] + actionOffset(action)));
+		} while (nextAction(deployment, action));
+		return best;
+	}
+
+	/**
+	 * Updates Q in every valid (reachable joint state, joint action) pair.
+	 * @return max Q variation
+	 */
+	double sweep() {
+		// expected SLO cost and discounted greedy value after each (joint deployment, source lambda)
+		for (int base = 0; base < statesCount; base += inputRateLevels) {
+			for (int lambda = 0; lambda < inputRateLevels; lambda++) {
+				double cost = 0.0;
+				for (int k = pMatrix.rowStart(lambda); k < pMatrix.rowEnd(lambda); ++k) {
+					final int next = base + pMatrix.column(k);
+					cost += pMatrix.probability(k) * ((sloViolated.get(next) ? wSLO : 0.0) + gamma * values[next]);
+				}
+				expectedCost[base + lambda] = cost;
+			}
+		}
+
+		double delta = 0.0;
+		int deployment[] = new int[nOperators];
+		int action[] = new int[nOperators];
+		for (int js = 0; js < statesCount; js++) {
+			decodeDeployment(js, deployment);
+			final int lambda = js % inputRateLevels;
+
+			double best = Double.POSITIVE_INFINITY;
+			do {
+				long offset = stateOffset[js];
+				int pds = 0;
+				boolean reconfiguration = false;
+				for (int i = 0; i < nOperators; i++) {
+					offset += actionOffset[i][action[i]];
+					pds += space.getDeploymentStride(i) * pdsDeployment[i][deployment[i] * actionsCount + action[i]];
+					reconfiguration |= action[i] != 0;
+				}
+
+				final double oldQ = qTable.getQ(offset);
+				qTable.setQ(offset, (reconfiguration ? wReconf : 0.0) + wResources * resourcesCost[pds] +
+						expectedCost[pds * inputRateLevels + lambda]);
+				// tables with reduced precision round Q: deltas and values refer to the stored Q
+				final double q = qTable.getQ(offset);
+				delta = Math.max(delta, Math.abs(q - oldQ));
+				best = Math.min(best, q);
+			} while (nextAction(deployment, action));
+
+			nextValues[js] = best;
+		}
+
+		double tmp[] = values;
+		values = nextValues;
+		nextValues = tmp;
+
+		return delta;
+	}
+
+	/**
+	 * Copies the Q values of the reachable states to the other joint states, in tables indexed
+	 * by hash codes (with the dense layout, the other states share the entries of the reachable ones).
+	 * Q does not depend on the input rate levels of the operators other than the source,
+	 * hence every joint state has the Q values of a reachable state.
+	 */
+	void copyToUnreachableStates() {
+		if (qTable.isReachableLayout())
+			return;
+
+		JointStateIterator it = new JointStateIterator(nOperators, space.getMaxParallelism(),
+				ComputingInfrastructure.getInfrastructure(), inputRateLevels);
+		int deployment[] = new int[nOperators];
+		int action[] = new int[nOperators];
+		while (it.hasNext()) {
+			JointState s = it.next();
+			if (space.isReachable(s))
+				continue;
+
+			final int js = space.index(s);
+			final long sOffset = qTable.stateOffset(s);
+			decodeDeployment(js, deployment);
+			Arrays.fill(action, 0);
+			do {
+				final long aOffset = actionOffset(action);
+				qTable.setQ(sOffset + aOffset, qTable.getQ(stateOffset[js] + aOffset));
+			} while (nextAction(deployment, action));
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package it.uniroma2.dspsim.dsp.edf.am.centralized;
+
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.DenseStateIndexer;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.utils.matrix.BinaryTableFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Greedy joint policy materialized into an array of joint action indexes.
+ *
+ * Joint states are indexed in mixed radix over the dense indexes of the per operator
+ * states, with the first operator as least significant digit, or by their index in a
+ * ReachableJointStateSpace; joint actions are numbered in the order of JointActionIterator.
+ */
+public class CompiledJointPolicy {
+
+	/* larger joint state spaces are not compiled */
+	private static final int MAX_JOINT_STATES = 1 << 26;
+
+	private int nOperators;
+	private int actionsPerOperator;
+	private DenseStateIndexer indexers[];
+	/* set in place of indexers for reachable joint states */
+	private ReachableJointStateSpace space;
+	private JointAction jointActions[];
+	private short policy[];
+
+	private CompiledJointPolicy(int nOperators, int maxParallelism[], int inputRateLevels) {
+		this.nOperators = nOperators;
+		final int resTypes = ComputingInfrastructure.getInfrastructure().getNodeTypes().length;
+
+		int statesCount = 1;
+		this.indexers = new DenseStateIndexer[nOperators];
+		for (int i = 0; i < nOperators; i++) {
+			indexers[i] = new DenseStateIndexer(resTypes, maxParallelism[i], inputRateLevels);
+			statesCount = Math.multiplyExact(statesCount, indexers[i].size());
+		}
+		if (statesCount > MAX_JOINT_STATES)
+			throw new ArithmeticException("Too many joint states: " + statesCount);
+
+		initJointActions(1 + 2 * resTypes);
+		this.policy = new short[statesCount];
+	}
+
+	private CompiledJointPolicy(ReachableJointStateSpace space) {
+		this.nOperators = space.getOperatorsCount();
+		this.space = space;
+		if (space.size() > MAX_JOINT_STATES)
+			throw new ArithmeticException("Too many joint states: " + space.size());
+
+		initJointActions(space.getCodec(0).getActionsCount());
+		this.policy = new short[space.size()];
+	}
+
+	private void initJointActions(int actionsPerOperator) {
+		this.actionsPerOperator = actionsPerOperator;
+		int actionsCount = 1;
+		for (int i = 0; i < nOperators; i++)
+			actionsCount = Math.multiplyExact(actionsCount, actionsPerOperator);
+		if (actionsCount > Short.MAX_VALUE)
+			throw new ArithmeticException("Too many joint actions: " + actionsCount);
+
+		this.jointActions = new JointAction[actionsCount];
+		JointActionIterator ait = new JointActionIterator(nOperators);
+		for (int a = 0; a < actionsCount; a++)
+			jointActions[a] = ait.next();
+	}
+
+	/**
+	 * Computes the greedy action of every joint state.
+	 * @return the compiled policy, or null if the joint state space is too large
+	 */
+	public static CompiledJointPolicy compile(int nOperators, int maxParallelism[], int inputRateLevels,
+											  Function<JointState, JointAction> greedy) {
+		CompiledJointPolicy compiled;
+		try {
+			compiled = new CompiledJointPolicy(nOperators, maxParallelism, inputRateLevels);
+		} catch (ArithmeticException e) {
+			return null;
+		}
+
+		JointStateIterator sit = new JointStateIterator(nOperators, maxParallelism,
+				ComputingInfrastructure.getInfrastructure(), inputRateLevels);
+		while (sit.hasNext()) {
+			JointState s = sit.next();
+			JointAction a = greedy.apply(s);
+			compiled.policy[compiled.stateIndex(s)] = (short) (a == null ? -1 : compiled.actionIndex(a));
+		}
+
+		return compiled;
+	}
+
+	/**
+	 * Computes the greedy action of every reachable joint state.
+	 * @return the compiled policy, or null if the joint state space is too large
+	 */
+	public static CompiledJointPolicy compile(ReachableJointStateSpace space, Function<JointState, JointAction> greedy) {
+		CompiledJointPolicy compiled;
+		try {
+			compiled = new CompiledJointPolicy(space);
+		} catch (ArithmeticException e) {
+			return null;
+		}
+
+		for (int s = 0; s < space.size(); s++) {
+			JointAction a = greedy.apply(space.getState(s));
+			compiled.policy[s] = (short) (a == null ? -1 : compiled.actionIndex(a));
+		}
+
+		return compiled;
+	}
+
+	private int stateIndex(JointState s) {
+		if (space != null)
+			return space.index(s);
+
+		int index = 0;
+		for (int i = nOperators - 1; i >= 0; i--)
+			index = index * indexers[i].size() + indexers[i].index(s.states[i]);
+		return index;
+	}
+
+	private int actionIndex(JointAction a) {
+		int index = 0;
+		for (int i = nOperators - 1; i >= 0; i--)
+			index = index * actionsPerOperator + a.actions[i].getIndex();
+		return index;
+	}
+
+	public JointAction getAction(JointState s) {
+		final int a = policy[stateIndex(s)];
+		return a < 0 ? null : jointActions[a];
+	}
+
+	private int[] shape(int spaceShape[]) {
+		int shape[] = Arrays.copyOf(spaceShape, spaceShape.length + 1);
+		shape[spaceShape.length] = jointActions.length;
+		return shape;
+	}
+
+	/**
+	 * Dumps the joint action indexes in the binary format.
+	 * @param spaceShape description of the joint state space, checked when the policy is loaded
+	 */
+	public void dump(File f, int spaceShape[]) throws IOException {
+		BinaryTableFile.writeShorts(f, BinaryTableFile.KIND_JOINT_POLICY, shape(spaceShape), policy);
+	}
+
+	/**
+	 * Loads a policy dumped for the given joint state space, in place of compiling it.
+	 */
+	public static CompiledJointPolicy load(File f, int spaceShape[], int nOperators, int maxParallelism[],
+										   int inputRateLevels, boolean verifyChecksum) throws IOException {
+		return load(f, spaceShape, new CompiledJointPolicy(nOperators, maxParallelism, inputRateLevels), verifyChecksum);
+	}
+
+	/**
+	 * Loads a policy dumped for the given reachable joint states, in place of compiling it.
+	 */
+	public static CompiledJointPolicy load(File f, int spaceShape[], ReachableJointStateSpace space,
+										   boolean verifyChecksum) throws IOException {
+		return load(f, spaceShape, new CompiledJointPolicy(space), verifyChecksum);
+	}
+
+	private static CompiledJointPolicy load(File f, int spaceShape[], CompiledJointPolicy loaded,
+											boolean verifyChecksum) throws IOException {
+		BinaryTableFile table = BinaryTableFile.open(f, BinaryTableFile.KIND_JOINT_POLICY, verifyChecksum);
+		if (!Arrays.equals(table.getShape(), loaded.shape(spaceShape)))
+			throw new RuntimeException("Trying to load a CompiledJointPolicy for a different state space");
+
+		loaded.policy = table.getShorts(loaded.policy.length);
+		return loaded;
+	}
+}
@@ -1,47 +1,146 @@
 package it.uniroma2.dspsim.dsp.edf.am.centralized;
 
+import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
 import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.utils.matrix.BinaryTableFile;
+import it.uniroma2.dspsim.utils.matrix.DoubleStore;
+import it.uniroma2.dspsim.utils.matrix.MappedDoubleArray;
+import it.uniroma2.dspsim.utils.matrix.StoragePrecision;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
 import java.io.Serializable;
+import java.util.Arrays;
 
+/**
+ * Q table over joint states and actions, indexed by the hash codes of the per operator states and actions
+ * or, with a ReachableJointStateSpace, densely by reachable state and joint action index (actions of the
+ * first operator as least significant digit). In the latter case, the Q values of a joint state are those
+ * of the reachable state with the same deployments and source input rate level.
+ * Values are stored in the heap (double[], or with reduced precision) or, see JointQTableStorage,
+ * in segmented buffers of doubles with long indexes.
+ */
 public class JointQTable implements Serializable {
 
 
 	private double arr[];
+	/* set in place of arr with reduced precision, outside of the heap, or when loaded from a binary table file */
+	private transient DoubleStore store;
 	private int maxActionHash;
 	private int internalSize[];
 	private int nOperators;
 
-	private JointQTable(double initializationValue, int maxStateHash[], int maxActionHash) {
+	/* dense layout over reachable states */
+	private boolean reachable;
+	private int actionsPerOperator;
+	private int jointActionsCount;
+	private transient ReachableJointStateSpace space;
+
+	private JointQTable(DoubleStore store, int internalSize[], int maxActionHash) {
+		this.nOperators = internalSize.length;
+		this.internalSize = internalSize;
+		this.maxActionHash = maxActionHash;
+		this.store = store;
+	}
+
+	private JointQTable(DoubleStore store, ReachableJointStateSpace space) {
+		initReachable(space);
+		this.store = store;
+	}
+
+	private JointQTable(double initializationValue, int maxStateHash[], int maxActionHash, JointQTableStorage storage,
+						StoragePrecision precision, double bound) {
 		this.nOperators = maxStateHash.length;
 		this.internalSize = new int[nOperators];
 
-		int size = 1;
+		long size = 1;
 		for (int i = 0; i<nOperators; i++) {
 			internalSize[i] = Math.multiplyExact(1+maxActionHash, 1+maxStateHash[i]);
 			size = Math.multiplyExact(size, internalSize[i]);
 		}
 
-		arr = new double[size];
-		for (int i = 0; i<size; i++) {
-			arr[i] = initializationValue;
+		allocate(size, initializationValue, storage, precision, bound);
+		this.maxActionHash = maxActionHash;
+	}
+
+	private JointQTable(double initializationValue, ReachableJointStateSpace space, JointQTableStorage storage,
+						StoragePrecision precision, double bound) {
+		initReachable(space);
+		allocate(Math.multiplyExact((long) space.size(), jointActionsCount), initializationValue, storage,
+				precision, bound);
+	}
+
+	private void initReachable(ReachableJointStateSpace space) {
+		this.nOperators = space.getOperatorsCount();
+		this.reachable = true;
+		this.space = space;
+		this.actionsPerOperator = space.getCodec(0).getActionsCount();
+		int actions = 1;
+		for (int i = 0; i < nOperators; i++)
+			actions = Math.multiplyExact(actions, actionsPerOperator);
+		this.jointActionsCount = actions;
+	}
+
+	private void allocate(long size, double initializationValue, JointQTableStorage storage,
+						  StoragePrecision precision, double bound) {
+		switch (storage) {
+			case HEAP:
+				if (precision == StoragePrecision.DOUBLE)
+					arr = new double[Math.toIntExact(size)];
+				else
+					store = precision.newStore(Math.toIntExact(size), bound);
+				break;
+			case DIRECT:
+				store = MappedDoubleArray.allocateDirect(size);
+				break;
+			case MAPPED:
+				try {
+					store = MappedDoubleArray.mapScratchFile(File.createTempFile("centralizedQtable", ".tmp"), size);
+				} catch (IOException e) {
+					throw new RuntimeException("Cannot map JointQTable", e);
+				}
+				break;
 		}
 
-		this.maxActionHash = maxActionHash;
+		// new arrays and buffers are filled with zeros
+		if (initializationValue != 0.0) {
+			for (long i = 0; i<size; i++) {
+				setQ(i, initializationValue);
+			}
+		}
 	}
 
 
 	public static JointQTable createQTable (int nOperators, int maxParallelism[], int inputRateLevels)
+	{
+		return createQTable(nOperators, maxParallelism, inputRateLevels, JointQTableStorage.HEAP);
+	}
+
+	public static JointQTable createQTable (int nOperators, int maxParallelism[], int inputRateLevels,
+											JointQTableStorage storage)
+	{
+		return createQTable(nOperators, maxParallelism, inputRateLevels, storage, StoragePrecision.DOUBLE, 0.0);
+	}
+
+	/**
+	 * @param precision precision of the values, with HEAP storage (other storages hold doubles)
+	 * @param bound upper bound of Q values, for quantized tables
+	 */
+	public static JointQTable createQTable (int nOperators, int maxParallelism[], int inputRateLevels,
+											JointQTableStorage storage, StoragePrecision precision, double bound)
 	{
 		int maxAHash = -1;
 		int maxSHash[] = new int[nOperators];
 
-		JointStateIterator it = new JointStateIterator(nOperators, maxParallelism, ComputingInfrastructure.getInfrastructure(), inputRateLevels);
-
-		while (it.hasNext()) {
-			JointState s = it.next();
-			for (int i = 0; i < nOperators; i++) {
-				maxSHash[i] = Math.max(maxSHash[i], s.getStates()[i].hashCode());
+		// per operator, as the joint state space may be huge
+		for (int i = 0; i < nOperators; i++) {
+			StateIterator it = new StateIterator(StateType.K_LAMBDA, maxParallelism[i],
+					ComputingInfrastructure.getInfrastructure(), inputRateLevels);
+			while (it.hasNext()) {
+				maxSHash[i] = Math.max(maxSHash[i], it.next().hashCode());
 			}
 		}
 
@@ -51,19 +150,47 @@ public class JointQTable implements Serializable {
 			maxAHash = Math.max(maxAHash, a.getActions()[0].hashCode());
 		}
 
-		return new JointQTable(0.0, maxSHash, maxAHash);
+		return new JointQTable(0.0, maxSHash, maxAHash, storage, precision, bound);
 	}
 
-	private int computeIndex (JointState s, JointAction a) {
-		int index[] = new int[nOperators];
-		for (int i = 0; i<nOperators; i++) {
-			index[i] = (maxActionHash + 1)*s.states[i].hashCode() + a.actions[i].hashCode();
+	/**
+	 * Q table over the reachable joint states.
+	 * @param precision precision of the values, with HEAP storage (other storages hold doubles)
+	 * @param bound upper bound of Q values, for quantized tables
+	 */
+	public static JointQTable createQTable (ReachableJointStateSpace space, JointQTableStorage storage,
+											StoragePrecision precision, double bound)
+	{
+		return new JointQTable(0.0, space, storage, precision, bound);
+	}
+
+	public boolean isReachableLayout() {
+		return reachable;
+	}
+
+	/**
+	 * Binds a deserialized table with the dense layout to its state space.
+	 */
+	void setStateSpace(ReachableJointStateSpace space) {
+		if (!reachable || (long) space.size() * jointActionsCount != size())
+			throw new RuntimeException("Trying to load a JointQTable for a different state space");
+		this.space = space;
+	}
+
+	private long computeIndex (JointState s, JointAction a) {
+		if (reachable) {
+			long jointIndex = stateOffset(s);
+			for (int i = 0; i<nOperators; i++)
+				jointIndex += actionOffset(i, a.actions[i]);
+			return jointIndex;
 		}
-		int jointIndex = index[0];
-		int accumulatedSize = internalSize[0];
 
-		for (int i = 1; i<nOperators; i++) {
-			jointIndex = Math.multiplyExact(accumulatedSize, index[i]) + jointIndex;
+		long jointIndex = 0;
+		long accumulatedSize = 1;
+
+		for (int i = 0; i<nOperators; i++) {
+			final int index = (maxActionHash + 1)*s.states[i].hashCode() + a.actions[i].hashCode();
+			jointIndex += accumulatedSize * index;
 			accumulatedSize *= internalSize[i];
 		}
 
@@ -71,10 +198,143 @@ public class JointQTable implements Serializable {
 	}
 
 	public double getQ(JointState s, JointAction a) {
-		return arr[computeIndex(s,a)];
+		return getQ(computeIndex(s,a));
 	}
 
 	public void setQ(JointState s, JointAction a, double value) {
-		arr[computeIndex(s,a)]	= value;
+		setQ(computeIndex(s,a), value);
+	}
+
+	/*
+	 * Index based access, for planners working on dense indexes: the index of (s, a) is
+	 * stateOffset(s) plus the sum over the operators of actionOffset(i, a_i).
+	 */
+
+	long stateOffset(JointState s) {
+		if (reachable)
+			return (long) space.index(s) * jointActionsCount;
+
+		long offset = 0;
+		for (int i = 0; i < nOperators; i++)
+			offset += getStride(i) * (maxActionHash + 1) * s.states[i].hashCode();
+		return offset;
+	}
+
+	long actionOffset(int operator, Action a) {
+		if (reachable) {
+			long stride = 1;
+			for (int i = 0; i < operator; i++)
+				stride *= actionsPerOperator;
+			return stride * a.getIndex();
+		}
+
+		return getStride(operator) * a.hashCode();
+	}
+
+	private long getStride(int operator) {
+		long stride = 1;
+		for (int i = 0; i < operator; i++)
+			stride *= internalSize[i];
+		return stride;
+	}
+
+	double getQ(long index) {
+		return arr != null ? arr[(int) index] : store.get(index);
+	}
+
+	void setQ(long index, double value) {
+		if (arr != null)
+			arr[(int) index] = value;
+		else
+			store.set(index, value);
+	}
+
+	long size() {
+		return arr != null ? arr.length : store.length();
+	}
+
+	/**
+	 * Dumps the table in the binary format.
+	 * @param spaceShape description of the state space (e.g., node types, input rate levels, max parallelism),
+	 *                   checked when the table is loaded
+	 */
+	public void dump(File f, int spaceShape[]) throws IOException {
+		int shape[];
+		if (reachable) {
+			// -1 in place of the max action hash marks the dense layout
+			shape = Arrays.copyOf(spaceShape, spaceShape.length + 3);
+			shape[spaceShape.length] = -1;
+			shape[spaceShape.length + 1] = space.size();
+			shape[spaceShape.length + 2] = jointActionsCount;
+		} else {
+			shape = Arrays.copyOf(spaceShape, spaceShape.length + 1 + nOperators);
+			shape[spaceShape.length] = maxActionHash;
+			System.arraycopy(internalSize, 0, shape, spaceShape.length + 1, nOperators);
+		}
+
+		if (arr != null)
+			BinaryTableFile.write(f, BinaryTableFile.KIND_JOINT_Q_TABLE, shape, arr);
+		else
+			BinaryTableFile.write(f, BinaryTableFile.KIND_JOINT_Q_TABLE, shape, store);
+	}
+
+	/**
+	 * Maps a table dumped in the binary format, with no copy in the heap.
+	 */
+	public static JointQTable load(File f, int spaceShape[], int nOperators, boolean verifyChecksum) throws IOException {
+		BinaryTableFile table = BinaryTableFile.open(f, BinaryTableFile.KIND_JOINT_Q_TABLE, verifyChecksum);
+		int shape[] = table.getShape();
+		if (shape.length != spaceShape.length + 1 + nOperators || shape[spaceShape.length] < 0 ||
+				!Arrays.equals(Arrays.copyOf(shape, spaceShape.length), spaceShape)) {
+			throw new RuntimeException("Trying to load a JointQTable for a different state space");
+		}
+
+		final int maxActionHash = shape[spaceShape.length];
+		int internalSize[] = Arrays.copyOfRange(shape, spaceShape.length + 1, shape.length);
+		long size = 1;
+		for (int s : internalSize)
+			size *= s;
+		if (size != table.getData().length())
+			throw new RuntimeException("Trying to load malformed JointQTable");
+
+		return new JointQTable(table.getData(), internalSize, maxActionHash);
+	}
+
+	/**
+	 * Maps a table with the dense layout over the given reachable states, dumped in the binary format.
+	 */
+	public static JointQTable load(File f, int spaceShape[], ReachableJointStateSpace space,
+								   boolean verifyChecksum) throws IOException {
+		BinaryTableFile table = BinaryTableFile.open(f, BinaryTableFile.KIND_JOINT_Q_TABLE, verifyChecksum);
+		JointQTable loaded = new JointQTable(table.getData(), space);
+		int expectedShape[] = Arrays.copyOf(spaceShape, spaceShape.length + 3);
+		expectedShape[spaceShape.length] = -1;
+		expectedShape[spaceShape.length + 1] = space.size();
+		expectedShape[spaceShape.length + 2] = loaded.jointActionsCount;
+		if (!Arrays.equals(table.getShape(), expectedShape))
+			throw new RuntimeException("Trying to load a JointQTable for a different state space");
+		if (loaded.size() != table.getData().length())
+			throw new RuntimeException("Trying to load malformed JointQTable");
+
+		return loaded;
+	}
+
+	/**
+	 * Heap stores are written as a temporary double array, leaving the store in use.
+	 * Tables outside of the heap are only dumped in the binary format.
+	 */
+	private void writeObject(java.io.ObjectOutputStream out) throws IOException {
+		if (store instanceof MappedDoubleArray)
+			throw new NotSerializableException("JointQTable outside of the heap: use the binary dump format");
+
+		java.io.ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("arr", arr != null ? arr : store.toArray());
+		fields.put("maxActionHash", maxActionHash);
+		fields.put("internalSize", internalSize);
+		fields.put("nOperators", nOperators);
+		fields.put("reachable", reachable);
+		fields.put("actionsPerOperator", actionsPerOperator);
+		fields.put("jointActionsCount", jointActionsCount);
+		out.writeFields();
 	}
 }
@@ -0,0 +1,25 @@
+package it.uniroma2.dspsim.dsp.edf.am.centralized;
+
+/**
+ * Where JointQTable keeps Q values.
+ * HEAP: a double array (default), up to 2^31 entries.
+ * DIRECT: direct buffers outside of the heap, with long indexes.
+ * MAPPED: a memory-mapped scratch file, paged lazily by the OS, for tables larger than the memory.
+ */
+public enum JointQTableStorage {
+	HEAP,
+	DIRECT,
+	MAPPED;
+
+	public static JointQTableStorage fromString(String str) throws IllegalArgumentException {
+		if (str.equalsIgnoreCase("heap")) {
+			return HEAP;
+		} else if (str.equalsIgnoreCase("direct") || str.equalsIgnoreCase("offheap")) {
+			return DIRECT;
+		} else if (str.equalsIgnoreCase("mapped")) {
+			return MAPPED;
+		} else {
+			throw new IllegalArgumentException("Not valid JointQTable storage: " + str);
+		}
+	}
+}
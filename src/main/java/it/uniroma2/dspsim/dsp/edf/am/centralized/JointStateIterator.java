@@ -7,8 +7,9 @@ import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 
-public class JointStateIterator {
+public class JointStateIterator implements Iterator<JointState> {
 
 	private State[] states;
 	private StateIterator[] stateIterators;
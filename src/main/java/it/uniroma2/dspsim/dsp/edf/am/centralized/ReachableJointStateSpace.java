@@ -0,0 +1,178 @@
+package it.uniroma2.dspsim.dsp.edf.am.centralized;
+
+import it.uniroma2.dspsim.dsp.Application;
+import it.uniroma2.dspsim.dsp.Operator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.factory.StateFactory;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.utils.MathUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Joint states reachable under the input rate propagation model of CentralizedAM:
+ * the input rate levels of the operators other than the source are derived from the
+ * source input rate level and from the deployments, hence a joint state is identified
+ * by its joint deployment and its source input rate level.
+ *
+ * Joint deployments are indexed in mixed radix over the StateCodec deployment indexes
+ * of the operators (first operator as least significant digit), and the joint state
+ * (jointDeployment, sourceLambda) has dense index jointDeployment * inputRateLevels + sourceLambda.
+ */
+public class ReachableJointStateSpace {
+
+	private final Application application;
+	private final Operator operators[];
+	private final int nOperators;
+	private final int maxParallelism[];
+	private final int maxInputRate;
+	private final int inputRateLevels;
+
+	private final StateCodec codecs[];
+	/* radix of each operator in joint deployment indexes */
+	private final int deploymentStride[];
+	private final int deploymentsCount;
+
+	/* input rate level of each operator in each reachable state */
+	private final int lambdas[][];
+
+	public ReachableJointStateSpace(Application application, int maxInputRate, int inputRateLevels) {
+		this.application = application;
+		this.operators = application.getOperators().toArray(new Operator[]{});
+		this.nOperators = operators.length;
+		this.maxInputRate = maxInputRate;
+		this.inputRateLevels = inputRateLevels;
+
+		final ComputingInfrastructure infrastructure = ComputingInfrastructure.getInfrastructure();
+		this.maxParallelism = new int[nOperators];
+		this.codecs = new StateCodec[nOperators];
+		this.deploymentStride = new int[nOperators];
+		int deployments = 1;
+		for (int i = 0; i < nOperators; i++) {
+			maxParallelism[i] = operators[i].getMaxParallelism();
+			codecs[i] = new StateCodec(StateType.K_LAMBDA, maxParallelism[i], infrastructure, inputRateLevels);
+			deploymentStride[i] = deployments;
+			deployments = Math.multiplyExact(deployments, codecs[i].getDeploymentsCount());
+		}
+		this.deploymentsCount = deployments;
+
+		final int size = Math.multiplyExact(deploymentsCount, inputRateLevels);
+		this.lambdas = new int[nOperators][size];
+		for (int jd = 0; jd < deploymentsCount; jd++) {
+			JointState s = newState(jd);
+			for (int lambda = 0; lambda < inputRateLevels; lambda++) {
+				propagateInputRate(s, lambda);
+				for (int i = 0; i < nOperators; i++)
+					lambdas[i][jd * inputRateLevels + lambda] = s.states[i].getLambda();
+			}
+		}
+	}
+
+	/**
+	 * Sets the input rate level of the source operator in s to lambda, and those
+	 * of the other operators as resulting from their deployments.
+	 */
+	public void propagateInputRate(JointState s, int lambda) {
+		Map<Operator, int[]> opDeployment = new HashMap<>();
+		for (int i = 0; i<nOperators; i++) {
+			opDeployment.put(operators[i], s.states[i].getActualDeployment());
+		}
+
+		s.states[0].setLambda(lambda);
+		double realInputRate = MathUtils.remapDiscretizedValue(maxInputRate, lambda, inputRateLevels);
+		Map<Operator, Double> opRealInputRate = application.computePerOperatorInputRate(realInputRate, opDeployment);
+		for (int i = 1; i < nOperators; i++) {
+			int lambdaOp = MathUtils.discretizeValue(maxInputRate, opRealInputRate.get(operators[i]), inputRateLevels);
+			s.states[i].setLambda(lambdaOp);
+		}
+	}
+
+	/* new joint state with the given joint deployment, and input rate levels set to 0 */
+	private JointState newState(int jointDeployment) {
+		State states[] = new State[nOperators];
+		for (int i = 0; i < nOperators; i++) {
+			states[i] = StateFactory.createState(StateType.K_LAMBDA, -1,
+					codecs[i].getDeployment(getDeployment(i, jointDeployment)).clone(),
+					0, inputRateLevels - 1, maxParallelism[i]);
+		}
+		return new JointState(states);
+	}
+
+	public int size() {
+		return deploymentsCount * inputRateLevels;
+	}
+
+	public int getDeploymentsCount() {
+		return deploymentsCount;
+	}
+
+	public int getInputRateLevels() {
+		return inputRateLevels;
+	}
+
+	public int getOperatorsCount() {
+		return nOperators;
+	}
+
+	public int[] getMaxParallelism() {
+		return maxParallelism.clone();
+	}
+
+	public StateCodec getCodec(int operator) {
+		return codecs[operator];
+	}
+
+	/**
+	 * Radix of the operator in joint deployment indexes.
+	 */
+	public int getDeploymentStride(int operator) {
+		return deploymentStride[operator];
+	}
+
+	/**
+	 * StateCodec deployment index of the operator in a joint deployment.
+	 */
+	public int getDeployment(int operator, int jointDeployment) {
+		return jointDeployment / deploymentStride[operator] % codecs[operator].getDeploymentsCount();
+	}
+
+	/**
+	 * Input rate level of the operator in a reachable state.
+	 */
+	public int getLambda(int operator, int index) {
+		return lambdas[operator][index];
+	}
+
+	/**
+	 * Dense index of the reachable state with the deployments and the source input rate level of s.
+	 * For reachable states, index(getState(i)) == i.
+	 */
+	public int index(JointState s) {
+		int jointDeployment = 0;
+		for (int i = 0; i < nOperators; i++)
+			jointDeployment += deploymentStride[i] * codecs[i].rankDeployment(s.states[i].getActualDeployment());
+		return jointDeployment * inputRateLevels + s.states[0].getLambda();
+	}
+
+	public boolean isReachable(JointState s) {
+		final int index = index(s);
+		for (int i = 1; i < nOperators; i++) {
+			if (s.states[i].getLambda() != lambdas[i][index])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * New JointState object for a dense index.
+	 */
+	public JointState getState(int index) {
+		JointState s = newState(index / inputRateLevels);
+		for (int i = 0; i < nOperators; i++)
+			s.states[i].setLambda(lambdas[i][index]);
+		return s;
+	}
+}
@@ -16,13 +16,25 @@ import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ActionIterator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateUtils;
 import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.stats.Statistics;
+import it.uniroma2.dspsim.stats.metrics.RealValuedMetric;
+import it.uniroma2.dspsim.utils.matrix.TransitionKernel;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class BaseTBValueIterationOM extends DynamicProgrammingOM implements ActionSelectionPolicyCallback {
 
     private Random rng;
+    private final long seed;
 
     protected int statesCount;
     protected int actionsCount;
@@ -34,8 +46,17 @@ public abstract class BaseTBValueIterationOM extends DynamicProgrammingOM implem
     protected long tbviMillis;
     protected long tbviTrajectoryLength;
 
+    // parallel tbvi parameters
+    protected TBVIParallelMode parallelMode;
+    protected int parallelThreads;
+    protected int parallelBatch;
+
+    private static final double DELTA_AVG_ALPHA = 0.001;
     private double deltaRunningAvg = 0.0;
 
+    /* TBVI iterations per second */
+    protected RealValuedMetric planningThroughputMetric;
+
     final private boolean fallbackToVI = false;
 
     public BaseTBValueIterationOM(Operator operator) {
@@ -52,10 +73,24 @@ public abstract class BaseTBValueIterationOM extends DynamicProgrammingOM implem
         this.tbviMillis = configuration.getLong(ConfigurationKeys.TBVI_EXEC_SECONDS_KEY, 60L) * 1000;
         this.tbviTrajectoryLength = configuration.getLong(ConfigurationKeys.TBVI_TRAJECTORY_LENGTH_KEY, 512L);
 
-        final int seed = configuration.getInteger(ConfigurationKeys.DL_OM_ND4j_RANDOM_SEED_KET, 1) + 5;
+        this.parallelMode = TBVIParallelMode.fromString(
+                configuration.getString(ConfigurationKeys.TBVI_PARALLEL_MODE_KEY, "sequential"));
+        final int threads = configuration.getInteger(ConfigurationKeys.TBVI_PARALLEL_THREADS_KEY, 0);
+        this.parallelThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.parallelBatch = Math.max(1, configuration.getInteger(ConfigurationKeys.TBVI_PARALLEL_BATCH_KEY, 64));
+
+        this.seed = configuration.getInteger(ConfigurationKeys.DL_OM_ND4j_RANDOM_SEED_KET, 1) + 5;
         this.rng = new Random(seed);
     }
 
+    @Override
+    protected void registerMetrics(Statistics statistics) {
+        super.registerMetrics(statistics);
+
+        this.planningThroughputMetric = new RealValuedMetric(getOperatorMetricName("PlanningThroughput"));
+        statistics.registerMetricIfNotExists(this.planningThroughputMetric);
+    }
+
     protected void vi(long maxIterations, long millis) {
         // elapsed millis
         long elapsedMillis = 0L;
@@ -96,6 +131,17 @@ public abstract class BaseTBValueIterationOM extends DynamicProgrammingOM implem
             return;
         }
 
+        if (parallelMode != TBVIParallelMode.SEQUENTIAL) {
+            if (supportsParallelTbvi()) {
+                parallelTbvi(maxIterations, millis, trajectoryLength);
+                return;
+            }
+            System.out.println("TBVI: parallel mode not supported by " + getClass().getSimpleName()
+                    + ", running sequentially");
+        }
+
+        final long startNanos = System.nanoTime();
+
         ActionSelectionPolicy epsGreedyASP = ActionSelectionPolicyFactory.getPolicy(ActionSelectionPolicyType.EPSILON_GREEDY, this);
         ((EpsilonGreedyActionSelectionPolicy) epsGreedyASP).setEpsilon(0.5);
         ((EpsilonGreedyActionSelectionPolicy) epsGreedyASP).setEpsilonDecaySteps(-1);
@@ -121,7 +167,7 @@ public abstract class BaseTBValueIterationOM extends DynamicProgrammingOM implem
                 tl = 0L;
             if (tl == 0L) {
                 resetTrajectoryData();
-                state = randomInitialState(trajectoriesComputed);
+                state = randomInitialState(trajectoriesComputed, rng);
                 //System.out.println("Initial state: " + state.toString());
 
                 trajectoriesComputed++;
@@ -143,6 +189,181 @@ public abstract class BaseTBValueIterationOM extends DynamicProgrammingOM implem
         System.out.println("TBVI Total Iters: " + tbviIterations);
         this.trainingEpochsCount.update((int)tbviIterations);
         this.planningTimeMetric.update((int)(elapsedMillis));
+        updateThroughput(tbviIterations, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Runs TBVI with parallelThreads trajectory workers, each with its own random streams.
+     * In HOGWILD mode workers learn concurrently without any locking, so that concurrent
+     * updates of the same parameters may occasionally be lost.
+     * In BATCHED mode workers generate parallelBatch iterations each against the same Q,
+     * then their updates are applied by this thread in worker order. Only the (expensive)
+     * new Q values are computed by the workers: deltas are recomputed against the current Q
+     * when applying the updates, as updates of shared parameters would otherwise add up.
+     */
+    private void parallelTbvi(long maxIterations, long millis, long trajectoryLength) {
+        System.out.printf("TBVI: %s mode with %d workers\n", parallelMode.name().toLowerCase(), parallelThreads);
+
+        final Random seeder = new Random(seed);
+        final List<TrajectoryWorker> workers = new ArrayList<>(parallelThreads);
+        for (int i = 0; i < parallelThreads; i++)
+            workers.add(new TrajectoryWorker(i, seeder.nextLong(), seeder.nextLong(), trajectoryLength));
+
+        final String threadName = "tbvi-" + operator.getName() + "-";
+        final AtomicLong threadsCount = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelThreads, r -> {
+            Thread t = new Thread(r, threadName + threadsCount.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+
+        final long startNanos = System.nanoTime();
+        final long deadline = millis > 0L ? startNanos + millis * 1000000L : Long.MAX_VALUE;
+        long iterations = 0L;
+        try {
+            if (parallelMode == TBVIParallelMode.HOGWILD) {
+                final AtomicLong claimed = new AtomicLong();
+                List<Callable<Void>> tasks = new ArrayList<>(parallelThreads);
+                for (TrajectoryWorker worker : workers) {
+                    tasks.add(() -> {
+                        while (System.nanoTime() < deadline) {
+                            final long i = claimed.getAndIncrement();
+                            if (maxIterations > 0L && i >= maxIterations)
+                                break;
+                            if (i % 10000 == 0)
+                                System.out.printf("TBVI: %d iterations (delta = %.4f)\n", i, worker.deltaRunningAvg);
+                            worker.iteration(false);
+                        }
+                        return null;
+                    });
+                }
+                for (Future<Void> f : pool.invokeAll(tasks))
+                    f.get();
+                for (TrajectoryWorker worker : workers)
+                    iterations += worker.iterations;
+            } else {
+                while ((maxIterations <= 0L || iterations < maxIterations) && System.nanoTime() < deadline) {
+                    long round = (long) parallelBatch * parallelThreads;
+                    if (maxIterations > 0L)
+                        round = Math.min(round, maxIterations - iterations);
+
+                    List<Callable<Void>> tasks = new ArrayList<>(parallelThreads);
+                    for (TrajectoryWorker worker : workers) {
+                        final long n = round / parallelThreads + (worker.id < round % parallelThreads ? 1 : 0);
+                        tasks.add(() -> {
+                            for (long i = 0; i < n; i++)
+                                worker.iteration(true);
+                            return null;
+                        });
+                    }
+                    for (Future<Void> f : pool.invokeAll(tasks))
+                        f.get();
+                    for (TrajectoryWorker worker : workers)
+                        worker.applyPendingUpdates();
+
+                    if (iterations / 10000 != (iterations + round) / 10000)
+                        System.out.printf("TBVI: %d iterations (delta = %.4f)\n", iterations + round,
+                                workers.get(0).deltaRunningAvg);
+                    iterations += round;
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        long trajectoriesComputed = 0L;
+        for (TrajectoryWorker worker : workers)
+            trajectoriesComputed += worker.trajectories;
+        tbviIterations += iterations;
+
+        System.out.println("TBVI Total Trajectories: " + trajectoriesComputed);
+        System.out.println("TBVI Total Iters: " + tbviIterations);
+        this.trainingEpochsCount.update((int)tbviIterations);
+        this.planningTimeMetric.update((int)(elapsedNanos / 1000000L));
+        updateThroughput(iterations, elapsedNanos);
+    }
+
+    private void updateThroughput(long iterations, long elapsedNanos) {
+        final double throughput = iterations / Math.max(elapsedNanos / 1E9, 1E-9);
+        System.out.printf("TBVI: %.0f iterations/s\n", throughput);
+        this.planningThroughputMetric.update(throughput);
+    }
+
+    /**
+     * Trajectory generator of parallel TBVI, with its own trajectory and random streams.
+     */
+    private class TrajectoryWorker {
+        private final int id;
+        private final long trajectoryLength;
+        private final Random rng;
+        private final ActionSelectionPolicy epsGreedyASP;
+
+        private State state = null;
+        private long tl = 0L;
+        private long trajectories = 0L;
+        private long iterations = 0L;
+        private double deltaRunningAvg = 0.0;
+
+        /* updates deferred to the end of the batch */
+        private final List<State> pendingStates = new ArrayList<>();
+        private final List<Action> pendingActions = new ArrayList<>();
+        private double[] pendingNewQs = new double[0];
+
+        private TrajectoryWorker(int id, long seed, long aspSeed, long trajectoryLength) {
+            this.id = id;
+            this.trajectoryLength = trajectoryLength;
+            this.rng = new Random(seed);
+            this.epsGreedyASP = ActionSelectionPolicyFactory.getPolicy(ActionSelectionPolicyType.EPSILON_GREEDY,
+                    BaseTBValueIterationOM.this);
+            ((EpsilonGreedyActionSelectionPolicy) epsGreedyASP).setEpsilon(0.5);
+            ((EpsilonGreedyActionSelectionPolicy) epsGreedyASP).setEpsilonDecaySteps(-1);
+            ((EpsilonGreedyActionSelectionPolicy) epsGreedyASP).setSeed(aspSeed);
+        }
+
+        private void iteration(boolean deferLearning) {
+            if (trajectoryLength > 0 && tl % trajectoryLength == 0)
+                tl = 0L;
+            if (tl == 0L) {
+                resetTrajectoryData();
+                // initial input rates are interleaved among workers
+                state = randomInitialState(trajectories * parallelThreads + id, rng);
+                trajectories++;
+            }
+
+            final Action action = epsGreedyASP.selectAction(state);
+            final double oldQ = computeQ(state, action);
+            final double newQ = evaluateNewQ(state, action);
+            final double delta = newQ - oldQ;
+            deltaRunningAvg = DELTA_AVG_ALPHA * Math.abs(delta) + (1.0 - DELTA_AVG_ALPHA) * deltaRunningAvg;
+
+            if (deferLearning) {
+                final int i = pendingStates.size();
+                if (i == pendingNewQs.length)
+                    pendingNewQs = Arrays.copyOf(pendingNewQs, Math.max(16, 2 * i));
+                pendingStates.add(state);
+                pendingActions.add(action);
+                pendingNewQs[i] = newQ;
+            } else {
+                learn(delta, newQ, state, action);
+            }
+
+            state = sampleNextState(state, action, rng);
+            tl++;
+            iterations++;
+        }
+
+        private void applyPendingUpdates() {
+            for (int i = 0; i < pendingStates.size(); i++) {
+                final State s = pendingStates.get(i);
+                final Action a = pendingActions.get(i);
+                learn(pendingNewQs[i] - computeQ(s, a), pendingNewQs[i], s, a);
+            }
+            pendingStates.clear();
+            pendingActions.clear();
+        }
     }
 
     protected State tbviIteration(State s, Action a) {
@@ -185,7 +406,7 @@ public abstract class BaseTBValueIterationOM extends DynamicProgrammingOM implem
     }
 
     static private boolean RANDOM_NG = true;
-    private State randomInitialState(long trajectoriesCount) {
+    private State randomInitialState(long trajectoriesCount, Random rng) {
 
         if (!RANDOM_NG) {
             int randomIndex = rng.nextInt(this.statesCount);
@@ -211,6 +432,10 @@ public abstract class BaseTBValueIterationOM extends DynamicProgrammingOM implem
     }
 
     protected State sampleNextState(State s, Action a) {
+        return sampleNextState(s, a, rng);
+    }
+
+    protected State sampleNextState(State s, Action a, Random rng) {
         final boolean simplifiedSampling = false;
 
         if (fallbackToVI)
@@ -228,11 +453,12 @@ public abstract class BaseTBValueIterationOM extends DynamicProgrammingOM implem
         } else {
             double randomN = rng.nextDouble();
             double totalProb = 0.0;
-            Set<Integer> possibleLambdas = getpMatrix().getColLabels(s.getLambda());
-            for (int lambda : possibleLambdas) {
+            final TransitionKernel kernel = getpMatrix();
+            for (int k = kernel.rowStart(s.getLambda()); k < kernel.rowEnd(s.getLambda()); k++) {
+                final int lambda = kernel.column(k);
                 nextLambda = lambda;
                 // get transition probability from s.lambda to lambda level
-                final double p = this.getpMatrix().getValue(s.getLambda(), lambda);
+                final double p = kernel.probability(k);
                 totalProb += p;
 
                 if (totalProb > randomN)
@@ -254,8 +480,9 @@ public abstract class BaseTBValueIterationOM extends DynamicProgrammingOM implem
         // compute deployment cost using pds wighted on wRes
         cost += StateUtils.computeDeploymentCostNormalized(pds, this) * this.getwResources();
         // for each lambda level with p != 0 in s.getLambda() row
-        Set<Integer> possibleLambdas = getpMatrix().getColLabels(s.getLambda());
-        for (int lambda : possibleLambdas) {
+        final TransitionKernel kernel = getpMatrix();
+        for (int k = kernel.rowStart(s.getLambda()); k < kernel.rowEnd(s.getLambda()); k++) {
+            final int lambda = kernel.column(k);
             // change pds.lambda to lambda
             pds.setLambda(lambda);
             // get Q(s, a) using the greedy action selection policy
@@ -263,7 +490,7 @@ public abstract class BaseTBValueIterationOM extends DynamicProgrammingOM implem
             Action greedyAction = getActionSelectionPolicy().selectAction(pds);
             double q = computeQ(pds, greedyAction);
             // get transition probability from s.lambda to lambda level
-            double p = this.getpMatrix().getValue(s.getLambda(), lambda);
+            double p = kernel.probability(k);
             // compute slo violation cost
             double sloCost = StateUtils.computeSLOCost(pds, this) * this.getwSLO();
 
@@ -274,8 +501,7 @@ public abstract class BaseTBValueIterationOM extends DynamicProgrammingOM implem
     }
 
     protected void updateDeltaRunningAvg (double delta) {
-        final double alpha = 0.001;
-        deltaRunningAvg = alpha * Math.abs(delta) + (1.0-alpha) * deltaRunningAvg;
+        deltaRunningAvg = DELTA_AVG_ALPHA * Math.abs(delta) + (1.0-DELTA_AVG_ALPHA) * deltaRunningAvg;
     }
 
     @Override
@@ -289,6 +515,13 @@ public abstract class BaseTBValueIterationOM extends DynamicProgrammingOM implem
      * ABSTRACT METHODS
      */
 
+    /**
+     * Whether computeQ() and learn() can be called concurrently by parallel TBVI workers.
+     */
+    protected boolean supportsParallelTbvi() {
+        return false;
+    }
+
     protected abstract void resetTrajectoryData();
     protected abstract double computeQ(State s, Action a);
     protected abstract void learn(double tbviDelta, double newQ, State state, Action action);
@@ -22,6 +22,6 @@ public class DeepHybridRewardBasedOM extends HybridRewardBasedOM {
     protected void transferKnowledge() {
         // overwrite deep-v-learning neural network with deep-tb-vi one
         ((DeepVLearningOM) this.getOnLineOM()).networkConf = ((DeepTBValueIterationOM) this.getOffLineOM()).network.getLayerWiseConfigurations();
-        ((DeepVLearningOM) this.getOnLineOM()).network = ((DeepTBValueIterationOM) this.getOffLineOM()).network;
+        ((DeepVLearningOM) this.getOnLineOM()).replaceNetwork(((DeepTBValueIterationOM) this.getOffLineOM()).network);
     }
 }
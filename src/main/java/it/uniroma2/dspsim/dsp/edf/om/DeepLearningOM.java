@@ -3,10 +3,13 @@ package it.uniroma2.dspsim.dsp.edf.om;
 import it.uniroma2.dspsim.Configuration;
 import it.uniroma2.dspsim.ConfigurationKeys;
 import it.uniroma2.dspsim.dsp.Operator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.NeuralStateRepresentation;
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.*;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
 import it.uniroma2.dspsim.stats.Statistics;
+import it.uniroma2.dspsim.stats.metrics.CountMetric;
 import it.uniroma2.dspsim.stats.metrics.RealValuedMetric;
 import org.apache.commons.lang3.tuple.Pair;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
@@ -15,8 +18,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.util.Collection;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class DeepLearningOM extends ReinforcementLearningOM {
     protected int numActions;
@@ -25,7 +32,10 @@ public abstract class DeepLearningOM extends ReinforcementLearningOM {
     protected int outputLayerNodesNumber;
 
     protected MultiLayerConfiguration networkConf;
-    protected CachedNeuralNetwork network, targetNetwork;
+    /* network used for decisions */
+    protected volatile CachedNeuralNetwork network;
+    /* network being trained (the same as network, unless the learner is asynchronous) and target network */
+    protected CachedNeuralNetwork learnerNetwork, targetNetwork;
     protected boolean useDoubleNetwork;
     private int doubleNetworkSyncPeriod;
     protected NeuralStateRepresentation neuralStateRepresentation;
@@ -36,13 +46,37 @@ public abstract class DeepLearningOM extends ReinforcementLearningOM {
 
     protected ExperienceReplay expReplay;
     protected int batchSize;
+    /* encodes the states stored in the replay memory */
+    protected StateCodec codec;
+    protected StateFeatureCache features;
+    private int[] batchSlots;
     private RealValuedMetric networkScoreMetric = null;
 
+    /* fits performed until the smoothed network score first reached targetScore (all of them, if never) */
+    private CountMetric fitsToTargetScoreMetric = null;
+    private double targetScore;
+    private double smoothedScore = Double.NaN;
+    private boolean targetScoreReached = false;
+    private static final double SCORE_SMOOTHING = 0.05;
+
     static private Logger log = LoggerFactory.getLogger(DeepLearningOM.class);
 
 
     private int iterations = 0;
 
+    /*
+     * Asynchronous learner: transitions and fits are executed in order by a background thread,
+     * which owns the replay memory, learnerNetwork and targetNetwork. Decisions read network,
+     * a frozen copy of learnerNetwork replaced every publishPeriod fits.
+     */
+    private ExecutorService learner = null;
+    private int publishPeriod;
+    private int maxPendingFits;
+    private int learnerFits = 0;
+    private final AtomicInteger pendingFits = new AtomicInteger(0);
+    /* scores of the fits completed by the learner, consumed by the simulation thread */
+    private final ConcurrentLinkedQueue<Double> completedFits = new ConcurrentLinkedQueue<>();
+
     public DeepLearningOM(Operator operator) {
         super(operator);
 
@@ -52,7 +86,15 @@ public abstract class DeepLearningOM extends ReinforcementLearningOM {
         // memory size
         this.batchSize = configuration.getInteger(ConfigurationKeys.DL_OM_SAMPLES_MEMORY_BATCH_KEY,32);
         int memorySize = configuration.getInteger(ConfigurationKeys.DL_OM_SAMPLES_MEMORY_SIZE_KEY, 512);
-        this.expReplay = new ExperienceReplay(memorySize);
+        if (configuration.getBoolean(ConfigurationKeys.DL_OM_PRIORITIZED_REPLAY, false)) {
+            this.expReplay = new PrioritizedExperienceReplay(memorySize,
+                    configuration.getDouble(ConfigurationKeys.DL_OM_PRIORITIZED_REPLAY_ALPHA, 0.6),
+                    configuration.getDouble(ConfigurationKeys.DL_OM_PRIORITIZED_REPLAY_BETA, 0.4),
+                    configuration.getInteger(ConfigurationKeys.DL_OM_PRIORITIZED_REPLAY_BETA_STEPS, 10000),
+                    configuration.getDouble(ConfigurationKeys.DL_OM_PRIORITIZED_REPLAY_EPSILON, 0.001));
+        } else {
+            this.expReplay = new ExperienceReplay(memorySize);
+        }
 
         this.fitNetworkEvery = configuration.getInteger(ConfigurationKeys.DL_OM_FIT_EVERY_ITERS, 5);
         this.useDoubleNetwork = configuration.getBoolean(ConfigurationKeys.DL_OM_DOUBLE_NETWORK, false);
@@ -65,6 +107,12 @@ public abstract class DeepLearningOM extends ReinforcementLearningOM {
                 this.getInputRateLevels());
         this.numActions = this.getTotalActions();
 
+        // only the visited states are encoded: no transition tables are precomputed
+        this.codec = StateCodec.onDemand(getStateRepresentation(), this.operator.getMaxParallelism(),
+                ComputingInfrastructure.getInfrastructure(), this.getInputRateLevels());
+        this.features = new StateFeatureCache(codec, neuralStateRepresentation);
+        this.batchSlots = new int[batchSize];
+
         // input and output layer nodes number
         this.inputLayerNodesNumber = computeInputLayerNodesNumber();
         this.outputLayerNodesNumber = computeOutputLayerNodesNumber();
@@ -91,6 +139,7 @@ public abstract class DeepLearningOM extends ReinforcementLearningOM {
             }
         }
 
+        this.learnerNetwork = network;
         if (useDoubleNetwork) {
             this.targetNetwork = new CachedNeuralNetwork(this.networkConf, cacheSize, neuralStateRepresentation);
             //this.targetNetwork.setParameters(this.network.params().dup());
@@ -98,12 +147,31 @@ public abstract class DeepLearningOM extends ReinforcementLearningOM {
             this.targetNetwork = network;
         }
 
+        if (configuration.getBoolean(ConfigurationKeys.DL_OM_ASYNC_LEARNER, false)) {
+            // the target network sync period, if any, is also the publishing period
+            this.publishPeriod = useDoubleNetwork ? doubleNetworkSyncPeriod :
+                    configuration.getInteger(ConfigurationKeys.DL_OM_ASYNC_PUBLISH_PERIOD, 10);
+            this.maxPendingFits = configuration.getInteger(ConfigurationKeys.DL_OM_ASYNC_MAX_PENDING_FITS, 10);
+            this.network = learnerNetwork.copy();
+            this.learner = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "learner-" + this.operator.getName());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
         boolean sampleScore = configuration.getBoolean(ConfigurationKeys.DL_OM_NETWORK_SAMPLE_SCORE, false);
         if (sampleScore) {
             this.networkScoreMetric = new RealValuedMetric("NetworkScore_" + this.operator.getName(), true, false);
             Statistics.getInstance().registerMetric(this.networkScoreMetric);
         }
 
+        this.targetScore = configuration.getDouble(ConfigurationKeys.DL_OM_NETWORK_TARGET_SCORE, 0.0);
+        if (this.targetScore > 0.0) {
+            this.fitsToTargetScoreMetric = new CountMetric("FitsToTargetScore_" + this.operator.getName());
+            Statistics.getInstance().registerMetric(this.fitsToTargetScoreMetric);
+        }
+
         if (configuration.getBoolean(ConfigurationKeys.DL_OM_ENABLE_NETWORK_UI_KEY, false)) {
             startNetworkUIServer();
         }
@@ -140,21 +208,27 @@ public abstract class DeepLearningOM extends ReinforcementLearningOM {
 
     protected void learn () {
         ++iterations;
+        if (learner != null) {
+            consumeCompletedFits();
+            if (fitNetworkEvery > 1 && iterations % fitNetworkEvery != 0)
+                return;
+            // decisions never wait for the learner: if it is lagging behind, the fit is skipped
+            if (pendingFits.get() < maxPendingFits) {
+                pendingFits.incrementAndGet();
+                learner.execute(this::asyncFit);
+            }
+            return;
+        }
+
         if (fitNetworkEvery > 1 && iterations % fitNetworkEvery != 0)
             return;
 
-        Collection<Transition> batch = expReplay.sampleBatch(this.batchSize);
-        if (batch != null) {
-            Pair<INDArray, INDArray> targets = getTargets(batch);
+        if (expReplay.sampleBatch(this.batchSize, batchSlots)) {
+            Pair<INDArray, INDArray> targets = getTargets(batchSlots);
 
             this.network.fit(targets.getLeft(), targets.getRight());
 
-            if (this.networkScoreMetric != null) {
-                final double score = this.network.getScore();
-                this.networkScoreMetric.update(score);
-            }
-
-            this.trainingEpochsCount.update(1);
+            fitCompleted(this.network.getScore());
 
             // sync models
             if (useDoubleNetwork && this.trainingEpochsCount.getCount().intValue() % this.doubleNetworkSyncPeriod == 0 ) {
@@ -163,7 +237,123 @@ public abstract class DeepLearningOM extends ReinforcementLearningOM {
         }
     }
 
-    protected abstract Pair<INDArray, INDArray> getTargets(Collection<Transition> batch);
+    /**
+     * Updates the training metrics after a fit.
+     */
+    private void fitCompleted(double score) {
+        if (this.networkScoreMetric != null) {
+            this.networkScoreMetric.update(score);
+        }
+        if (this.fitsToTargetScoreMetric != null && !targetScoreReached)
+            trackTargetScore(score);
+
+        this.trainingEpochsCount.update(1);
+    }
+
+    /**
+     * Runs on the learner thread.
+     */
+    private void asyncFit() {
+        pendingFits.decrementAndGet();
+        if (!expReplay.sampleBatch(this.batchSize, batchSlots))
+            return;
+
+        Pair<INDArray, INDArray> targets = getTargets(batchSlots);
+        this.learnerNetwork.fit(targets.getLeft(), targets.getRight());
+        completedFits.add(this.learnerNetwork.getScore());
+
+        if (++learnerFits % publishPeriod == 0)
+            publishNetwork();
+    }
+
+    /**
+     * Runs on the learner thread.
+     */
+    private void publishNetwork() {
+        if (useDoubleNetwork)
+            this.targetNetwork.setParameters(this.learnerNetwork);
+        this.network = this.learnerNetwork.copy();
+    }
+
+    private void consumeCompletedFits() {
+        Double score;
+        while ((score = completedFits.poll()) != null)
+            fitCompleted(score);
+    }
+
+    /**
+     * Replaces the network, e.g., with a pre-trained one.
+     * As the target network is not replaced, it should be called before learning.
+     */
+    protected void replaceNetwork(CachedNeuralNetwork newNetwork) {
+        if (learner == null) {
+            this.network = newNetwork;
+            this.learnerNetwork = newNetwork;
+        } else {
+            this.network = newNetwork.copy();
+            learner.execute(() -> this.learnerNetwork = newNetwork);
+        }
+    }
+
+    /**
+     * Waits for the pending fits of the asynchronous learner, if any, and publishes the final network.
+     */
+    @Override
+    public void close() {
+        if (learner == null)
+            return;
+
+        learner.execute(this::publishNetwork);
+        learner.shutdown();
+        try {
+            learner.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        consumeCompletedFits();
+        learner = null;
+    }
+
+    private void trackTargetScore(double score) {
+        this.fitsToTargetScoreMetric.update(1);
+        // the score of a single batch is noisy: an exponential moving average is compared to the target
+        smoothedScore = Double.isNaN(smoothedScore) ? score : smoothedScore + SCORE_SMOOTHING * (score - smoothedScore);
+        if (smoothedScore <= targetScore)
+            targetScoreReached = true;
+    }
+
+    /**
+     * Label of the i-th transition of a batch, given the current network prediction and
+     * the new estimate. With prioritized replay, the priority of the transition is updated with
+     * the TD error, and the error is scaled by the importance-sampling weight (with a squared loss,
+     * this scales the gradient of the transition by the weight).
+     */
+    protected double weightedTarget(int i, int slot, double prediction, double target) {
+        if (!expReplay.isPrioritized())
+            return target;
+
+        final double tdError = target - prediction;
+        expReplay.updatePriority(slot, tdError);
+        return prediction + expReplay.getWeight(i) * tdError;
+    }
+
+    /**
+     * Stores a transition in the replay memory.
+     */
+    protected void remember(State oldState, Action action, State currentState, double reward) {
+        final int s = codec.encode(oldState);
+        final int a = action.getIndex();
+        final int next = codec.encode(currentState);
+        if (learner == null)
+            expReplay.add(s, a, reward, next);
+        else
+            learner.execute(() -> expReplay.add(s, a, reward, next));
+    }
+
+    /**
+     * @param slots replay memory slots of the batch transitions, batchSize of them
+     */
+    protected abstract Pair<INDArray, INDArray> getTargets(int[] slots);
 
     @Override
     public void savePolicy()
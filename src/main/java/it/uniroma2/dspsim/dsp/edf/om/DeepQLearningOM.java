@@ -3,23 +3,29 @@ package it.uniroma2.dspsim.dsp.edf.om;
 import it.uniroma2.dspsim.dsp.Operator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
-import it.uniroma2.dspsim.dsp.edf.om.rl.utils.Transition;
 import org.apache.commons.lang3.tuple.Pair;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
-import java.util.Collection;
+import java.util.List;
 
 
 public class DeepQLearningOM extends DeepLearningOM {
 
+    /* codec indices of the batch states */
+    private final int[] states;
+    private final int[] nextStates;
+
     public DeepQLearningOM(Operator operator) {
         super(operator);
+
+        this.states = new int[batchSize];
+        this.nextStates = new int[batchSize];
     }
 
     @Override
     protected void learningStep(State oldState, Action action, State currentState, double reward) {
-        this.expReplay.add(new Transition(oldState, action, currentState, reward));
+        remember(oldState, action, currentState, reward);
 
         // training step
         this.learn();
@@ -29,10 +35,6 @@ public class DeepQLearningOM extends DeepLearningOM {
         return this.network.output(state);
     }
 
-    private INDArray getTargetQ(State state) {
-        return this.targetNetwork.output(state);
-    }
-
     /**
      * DEEP LEARNING OM
      */
@@ -48,33 +50,26 @@ public class DeepQLearningOM extends DeepLearningOM {
     }
 
     @Override
-    protected Pair<INDArray, INDArray> getTargets(Collection<Transition> batch) {
-        INDArray inputs = null;
-        INDArray labels = null;
-
-        for (Transition t : batch) {
-            // get old state network output
-            INDArray qs = getQ(t.getS());
-            // get current state network output
-            INDArray qns = getTargetQ(t.getNextS());
+    protected Pair<INDArray, INDArray> getTargets(int[] slots) {
+        for (int row = 0; row < batchSize; row++) {
+            states[row] = expReplay.getState(slots[row]);
+            nextStates[row] = expReplay.getNextState(slots[row]);
+        }
 
-            //System.out.println("qs has shape: " + qs.shapeInfoToString());
+        // old and current states network outputs, one forward pass each
+        INDArray labels = this.learnerNetwork.output(states, batchSize, features).dup();
+        INDArray qns = this.targetNetwork.output(nextStates, batchSize, features);
+        INDArray inputs = Nd4j.create(batchSize, features.getFeaturesCount());
+        features.fill(states, batchSize, inputs);
 
+        for (int row = 0; row < batchSize; row++) {
             // update Q(s,a)with new estimation
             // we get min(qns) because we want to minimize cost
             // reward = cost -> minimize Q equals minimize cost
-            qs = qs.dup();
-            qs.put(0, t.getA().getIndex(), t.getReward() + gamma * (double) qns.minNumber());
-
-            INDArray trainingInput = buildInput(t.getS());
-
-            if (inputs == null) {
-                inputs = trainingInput;
-                labels = qs;
-            } else {
-                inputs = Nd4j.concat(0, inputs, trainingInput);
-                labels = Nd4j.concat(0, labels, qs);
-            }
+            final int slot = slots[row];
+            final int action = expReplay.getAction(slot);
+            final double target = expReplay.getReward(slot) + gamma * (double) qns.getRow(row).minNumber();
+            labels.put(row, action, weightedTarget(row, slot, labels.getDouble(row, action), target));
         }
         return Pair.of(inputs, labels);
     }
@@ -89,4 +84,19 @@ public class DeepQLearningOM extends DeepLearningOM {
         INDArray networkOutput = getQ(s);
         return networkOutput.getDouble(a.getIndex());
     }
+
+    @Override
+    public boolean supportsBatchEvaluation() {
+        return true;
+    }
+
+    @Override
+    public double[] evaluateActions(State s, List<Action> actions) {
+        // a single network output provides the values of all the actions
+        INDArray networkOutput = getQ(s);
+        double values[] = new double[actions.size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = networkOutput.getDouble(actions.get(i).getIndex());
+        return values;
+    }
 }
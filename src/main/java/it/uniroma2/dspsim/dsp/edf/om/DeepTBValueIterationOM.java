@@ -11,6 +11,7 @@ import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.NeuralStateRepresentation;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.*;
 import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.utils.matrix.TransitionKernel;
 import org.apache.commons.lang3.tuple.Pair;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -19,7 +20,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DeepTBValueIterationOM extends BaseTBValueIterationOM {
 
@@ -34,6 +36,11 @@ public class DeepTBValueIterationOM extends BaseTBValueIterationOM {
     private INDArray inputs;
     private INDArray labels;
 
+    private StateCodec codec;
+    private StateFeatureCache features;
+    private int[] batchSlots;
+    private int[] postDecisionStates;
+
     private Logger log = LoggerFactory.getLogger(DeepTBValueIterationOM.class);
 
     private final int batchesPerIter;
@@ -54,6 +61,13 @@ public class DeepTBValueIterationOM extends BaseTBValueIterationOM {
         this.inputs = Nd4j.create(batchSize, neuralStateRepresentation.getRepresentationLength());
         this.labels = Nd4j.create(batchSize, 1);
 
+        // only the visited states are encoded: no transition tables are precomputed
+        this.codec = StateCodec.onDemand(getStateRepresentation(), this.operator.getMaxParallelism(),
+                ComputingInfrastructure.getInfrastructure(), getInputRateLevels());
+        this.features = new StateFeatureCache(codec, neuralStateRepresentation);
+        this.batchSlots = new int[batchSize];
+        this.postDecisionStates = new int[batchSize];
+
         this.fitNetworkEvery = Configuration.getInstance().getInteger(ConfigurationKeys.DL_OM_FIT_EVERY_ITERS, 5);
         this.batchesPerIter = Configuration.getInstance().getInteger(ConfigurationKeys.DL_OM_FIT_BATCHES_PER_ITER, 1);
 
@@ -69,10 +83,6 @@ public class DeepTBValueIterationOM extends BaseTBValueIterationOM {
         //printTBVIResults();
     }
 
-    private INDArray buildInput(State state) {
-        return state.arrayRepresentation(this.neuralStateRepresentation);
-    }
-
     private double getV (State state) {
         return network.output(state).getDouble(0);
     }
@@ -83,11 +93,47 @@ public class DeepTBValueIterationOM extends BaseTBValueIterationOM {
         return v + computeResourcesCost(postDecisionState) + computeActionCost(action);
     }
 
+    /**
+     * Evaluates all the given actions in a state, with a single forward pass.
+     */
+    private double[] getQ(State state, List<Action> actions) {
+        List<State> postDecisionStates = new ArrayList<>(actions.size());
+        for (Action action : actions)
+            postDecisionStates.add(StateUtils.computePostDecisionState(state, action, this));
+
+        INDArray v = network.output(postDecisionStates);
+        double q[] = new double[actions.size()];
+        for (int i = 0; i < q.length; i++)
+            q[i] = v.getDouble(i, 0) + computeResourcesCost(postDecisionStates.get(i)) + computeActionCost(actions.get(i));
+        return q;
+    }
+
+    private List<Action> validActions(State s) {
+        List<Action> actions = new ArrayList<>(actionsCount);
+        ActionIterator actionIterator = new ActionIterator();
+        while (actionIterator.hasNext()) {
+            Action a = actionIterator.next();
+            if (validateAction(s, a))
+                actions.add(a);
+        }
+        return actions;
+    }
+
     @Override
     public double evaluateAction(State s, Action a) {
         return getQ(s, a);
     }
 
+    @Override
+    public boolean supportsBatchEvaluation() {
+        return true;
+    }
+
+    @Override
+    public double[] evaluateActions(State s, List<Action> actions) {
+        return getQ(s, actions);
+    }
+
     @Override
     protected ActionSelectionPolicy initActionSelectionPolicy() {
         return ActionSelectionPolicyFactory.getPolicy(ActionSelectionPolicyType.GREEDY, this);
@@ -134,15 +180,19 @@ public class DeepTBValueIterationOM extends BaseTBValueIterationOM {
                     ComputingInfrastructure.getInfrastructure(), getInputRateLevels());
             while (stateIterator.hasNext()) {
                 State s = stateIterator.next();
-                ActionIterator actionIterator = new ActionIterator();
-                while (actionIterator.hasNext()) {
-                    Action a = actionIterator.next();
-                    if (validateAction(s, a)) {
-                        //pw.println(s.dump() + "\t" + a.dump() + "\tV: " + getV(StateUtils.computePostDecisionState(s, a, this)));
-                        State pds = StateUtils.computePostDecisionState(s, a, this);
-                        pw.println(s.dump() + "\t" + a.dump() + "->" + pds.dump() + "\tV: " + getV(pds));
-                        pw.println(s.dump() + "\t" + a.dump() + "\tQ: " + getQ(s,a));
-                    }
+                // all the actions of a state are evaluated at once
+                List<Action> actions = validActions(s);
+                List<State> postDecisionStates = new ArrayList<>(actions.size());
+                for (Action a : actions)
+                    postDecisionStates.add(StateUtils.computePostDecisionState(s, a, this));
+                INDArray v = network.output(postDecisionStates);
+
+                for (int i = 0; i < actions.size(); i++) {
+                    Action a = actions.get(i);
+                    State pds = postDecisionStates.get(i);
+                    final double q = v.getDouble(i, 0) + computeResourcesCost(pds) + computeActionCost(a);
+                    pw.println(s.dump() + "\t" + a.dump() + "->" + pds.dump() + "\tV: " + v.getDouble(i, 0));
+                    pw.println(s.dump() + "\t" + a.dump() + "\tQ: " + q);
                 }
             }
 
@@ -213,15 +263,13 @@ public class DeepTBValueIterationOM extends BaseTBValueIterationOM {
 
     @Override
     protected State tbviIteration(State s, Action a) {
-        Transition t = new Transition(s, a, null, 0.0);
-        expReplay.add(t);
+        expReplay.add(codec.encode(s), a.getIndex(), 0.0, -1);
 
         // check if u want to perform an update
         if (fitNetworkEvery <= 1 || tbviIterations % fitNetworkEvery == 0) {
             for (int i = 1; i<=this.batchesPerIter; i++) {
-                Collection<Transition> batch = expReplay.sampleBatch(this.batchSize);
-                if (batch != null) {
-                    Pair<INDArray, INDArray> targets = getTargets(batch);
+                if (expReplay.sampleBatch(this.batchSize, batchSlots)) {
+                    Pair<INDArray, INDArray> targets = getTargets(batchSlots);
                     this.network.fit(targets.getLeft(), targets.getRight());
                     updateDeltaRunningAvg(network.getScore());
                 }
@@ -231,22 +279,93 @@ public class DeepTBValueIterationOM extends BaseTBValueIterationOM {
         return sampleNextState(s,a);
     }
 
-    private Pair<INDArray, INDArray> getTargets(Collection<Transition> batch) {
-        int row = 0;
-        for (Transition t : batch) {
-            State pds = StateUtils.computePostDecisionState(t.getS(), t.getA(), this);
-            // transform post decision state in network input
-            INDArray trainingInput = buildInput(pds);
-            inputs.putRow(row, trainingInput);
+    private Pair<INDArray, INDArray> getTargets(int[] slots) {
+        final double newQ[] = evaluateNewQ(slots);
+
+        for (int row = 0; row < batchSize; row++) {
+            final int action = expReplay.getAction(slots[row]);
+            final int pds = codec.pds(expReplay.getState(slots[row]), action);
+            postDecisionStates[row] = pds;
             // set label to reward
-            final double targetValue = evaluateNewQ(t.getS(), t.getA()) - computeActionCost(t.getA()) - computeResourcesCost(pds);
+            final double targetValue = newQ[row] - computeActionCost(codec.getAction(action)) -
+                    computeResourcesCost(codec.getState(pds));
             labels.put(row, 0, targetValue);
-
-            row++;
         }
+        // transform post decision states in network input
+        features.fill(postDecisionStates, batchSize, inputs);
         return Pair.of(inputs, labels);
     }
 
+    /**
+     * Batched version of evaluateNewQ: the post-decision states reachable from all the
+     * transitions in the batch (for every next input rate and greedy candidate action)
+     * are evaluated with a single forward pass.
+     */
+    private double[] evaluateNewQ(int[] slots) {
+        final TransitionKernel kernel = getpMatrix();
+
+        double newQ[] = new double[batchSize];
+        // a group for each (transition, next lambda) pair, with the candidate next post-decision states
+        final int maxGroups = batchSize * getInputRateLevels();
+        int groupEnd[] = new int[maxGroups];
+        double groupSloCost[] = new double[maxGroups];
+        double groupProbability[] = new double[maxGroups];
+        int groupsPerRow[] = new int[batchSize];
+        int nextPostDecisionStates[] = new int[maxGroups * codec.getActionsCount()];
+        double nextKnownCosts[] = new double[maxGroups * codec.getActionsCount()];
+        int count = 0;
+        int groups = 0;
+
+        for (int row = 0; row < batchSize; row++) {
+            final int s = expReplay.getState(slots[row]);
+            final Action a = codec.getAction(expReplay.getAction(slots[row]));
+            double cost = 0.0;
+            // compute reconfiguration cost
+            if (a.getDelta() != 0)
+                cost += this.getwReconf();
+            final int pds = codec.pds(s, a.getIndex());
+            // compute deployment cost using pds wighted on wRes
+            cost += StateUtils.computeDeploymentCostNormalized(codec.getState(pds), this) * this.getwResources();
+            newQ[row] = cost;
+
+            final int lambda = codec.lambdaOf(s);
+            for (int k = kernel.rowStart(lambda); k < kernel.rowEnd(lambda); k++) {
+                final int next = codec.withLambda(pds, kernel.column(k));
+                for (int greedyCandidate = 0; greedyCandidate < codec.getActionsCount(); greedyCandidate++) {
+                    if (!codec.isValid(next, greedyCandidate))
+                        continue;
+                    final int nextPds = codec.pds(next, greedyCandidate);
+                    nextKnownCosts[count] = computeResourcesCost(codec.getState(nextPds)) +
+                            computeActionCost(codec.getAction(greedyCandidate));
+                    nextPostDecisionStates[count++] = nextPds;
+                }
+                groupEnd[groups] = count;
+                groupSloCost[groups] = StateUtils.computeSLOCost(codec.getState(next), this) * this.getwSLO();
+                groupProbability[groups] = kernel.probability(k);
+                groups++;
+                groupsPerRow[row]++;
+            }
+        }
+
+        if (count == 0)
+            return newQ;
+
+        INDArray v = network.output(nextPostDecisionStates, count, features);
+        int group = 0;
+        int i = 0;
+        for (int row = 0; row < newQ.length; row++) {
+            for (int g = 0; g < groupsPerRow[row]; g++, group++) {
+                // Q of the greedy action
+                double q = Double.POSITIVE_INFINITY;
+                for (; i < groupEnd[group]; i++)
+                    q = Math.min(q, v.getDouble(i, 0) + nextKnownCosts[i]);
+                newQ[row] += groupProbability[group] * (groupSloCost[group] + getGamma() * q);
+            }
+        }
+
+        return newQ;
+    }
+
     private double computeActionCost(Action action) {
         if (action.getDelta() != 0) {
             return this.getwReconf();
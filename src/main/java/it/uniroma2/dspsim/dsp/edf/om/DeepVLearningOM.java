@@ -5,18 +5,17 @@ import it.uniroma2.dspsim.ConfigurationKeys;
 import it.uniroma2.dspsim.dsp.Operator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
 import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicy;
-import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicyCallback;
 import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicyType;
 import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.factory.ActionSelectionPolicyFactory;
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.CachedNeuralNetwork;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateUtils;
-import it.uniroma2.dspsim.dsp.edf.om.rl.utils.Transition;
 import org.apache.commons.lang3.tuple.Pair;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Deep Q Learning variant.
@@ -31,11 +30,17 @@ import java.util.Collection;
 public class DeepVLearningOM extends DeepLearningOM {
 
     // this asp is used to select action in learning step
-    private ActionSelectionPolicy greedyASP, targetGreedyASP;
+    private ActionSelectionPolicy greedyASP;
 
     private INDArray inputs;
     private INDArray labels;
 
+    /* codec indices of the batch post-decision states, and of the next ones with their known costs */
+    private int[] postDecisionStates;
+    private int[] nextPostDecisionStates;
+    private double[] nextCosts;
+    private int[] groupEnd;
+
     private boolean useEstimatedUnknownCost;
     private boolean approximateSpeedupsForCostEstimation;
     private boolean approximateOperatorModel;
@@ -51,6 +56,11 @@ public class DeepVLearningOM extends DeepLearningOM {
 
         this.inputs = Nd4j.create(batchSize, neuralStateRepresentation.getRepresentationLength());
         this.labels = Nd4j.create(batchSize, 1);
+
+        this.postDecisionStates = new int[batchSize];
+        this.nextPostDecisionStates = new int[batchSize * codec.getActionsCount()];
+        this.nextCosts = new double[batchSize * codec.getActionsCount()];
+        this.groupEnd = new int[batchSize];
     }
 
     @Override
@@ -60,60 +70,50 @@ public class DeepVLearningOM extends DeepLearningOM {
                 this
         );
 
-        if (!useDoubleNetwork) {
-            this.targetGreedyASP = this.greedyASP;
-        } else {
-            this.targetGreedyASP = ActionSelectionPolicyFactory.getPolicy(
-                    ActionSelectionPolicyType.GREEDY,
-                    new ActionSelectionPolicyCallback() {
-                        @Override
-                        public boolean validateAction(State s, Action a) {
-                            return this.validateAction(s,a);
-                        }
-
-                        @Override
-                        public double evaluateAction(State s, Action a) {
-                            return getQ(s, a, targetNetwork);
-                        }
-                    }
-            );
-
-        }
         return this.greedyASP;
     }
 
     @Override
     protected void learningStep(State oldState, Action action, State currentState, double reward) {
-        this.expReplay.add(new Transition(oldState, action, currentState, reward));
+        remember(oldState, action, currentState, reward);
 
         // training step
         this.learn();
     }
 
     @Override
-    protected Pair<INDArray, INDArray> getTargets(Collection<Transition> batch) {
-        int row = 0;
-        for (Transition t : batch) {
+    protected Pair<INDArray, INDArray> getTargets(int[] slots) {
+        // greedy Q values of all next states, evaluated with a single forward pass
+        final double nextQ[] = getGreedyQ(slots, this.targetNetwork);
+
+        for (int row = 0; row < batchSize; row++) {
+            final int slot = slots[row];
+            final Action action = codec.getAction(expReplay.getAction(slot));
             // get post decision state from old state and action
-            State pdState = StateUtils.computePostDecisionState(t.getS(), t.getA(), this);
+            final int pds = codec.pds(expReplay.getState(slot), expReplay.getAction(slot));
+            State pdState = codec.getState(pds);
 
             // unknown cost
-            double cU = t.getReward() - computeActionCost(t.getA()) -
+            double cU = expReplay.getReward(slot) - computeActionCost(action) -
                     (StateUtils.computeDeploymentCostNormalized(pdState, this) * this.getwResources());
 
             // Can be used to learn only the difference w.r.t to an estimate
             final double diffCost = cU - estimateUnknownCost(pdState);
 
-            Action greedyAction = this.targetGreedyASP.selectAction(t.getNextS());
-            double newV = getQ(t.getNextS(), greedyAction, this.targetNetwork) * gamma + diffCost;
+            double newV = nextQ[row] * gamma + diffCost;
 
             labels.put(row, 0, newV);
+            postDecisionStates[row] = pds;
+        }
 
-            // get post decision input array
-            INDArray trainingInput = buildInput(pdState);
-            inputs.putRow(row, trainingInput);
+        // post decision inputs
+        features.fill(postDecisionStates, batchSize, inputs);
 
-            ++row;
+        if (expReplay.isPrioritized()) {
+            // current estimates, for the TD errors
+            INDArray v = this.learnerNetwork.output(postDecisionStates, batchSize, features);
+            for (int row = 0; row < batchSize; row++)
+                labels.put(row, 0, weightedTarget(row, slots[row], v.getDouble(row, 0), labels.getDouble(row, 0)));
         }
 
         return Pair.of(inputs, labels);
@@ -133,12 +133,64 @@ public class DeepVLearningOM extends DeepLearningOM {
 
     private double getQ(State state, Action action, CachedNeuralNetwork neuralNet) {
         State postDecisionState = StateUtils.computePostDecisionState(state, action, this);
-        double knownCost = computeActionCost(action);
-        knownCost += (StateUtils.computeDeploymentCostNormalized(postDecisionState, this) * this.getwResources());
+        double knownCost = computeKnownCost(postDecisionState, action);
         double v = getV(postDecisionState, neuralNet);
         return v + estimateUnknownCost(postDecisionState) + knownCost;
     }
 
+    /**
+     * Evaluates all the given actions in a state, with a single forward pass.
+     */
+    private double[] getQ(State state, List<Action> actions, CachedNeuralNetwork neuralNet) {
+        List<State> postDecisionStates = new ArrayList<>(actions.size());
+        for (Action action : actions)
+            postDecisionStates.add(StateUtils.computePostDecisionState(state, action, this));
+
+        INDArray v = neuralNet.output(postDecisionStates);
+        double q[] = new double[actions.size()];
+        for (int i = 0; i < q.length; i++)
+            q[i] = v.getDouble(i, 0) + estimateUnknownCost(postDecisionStates.get(i)) +
+                    computeKnownCost(postDecisionStates.get(i), actions.get(i));
+        return q;
+    }
+
+    /**
+     * Computes min_a Q(s',a) for the next state s' of each transition,
+     * evaluating the post-decision states of the whole batch with a single forward pass.
+     */
+    private double[] getGreedyQ(int[] slots, CachedNeuralNetwork neuralNet) {
+        int count = 0;
+        for (int row = 0; row < batchSize; row++) {
+            final int next = expReplay.getNextState(slots[row]);
+            for (int a = 0; a < codec.getActionsCount(); a++) {
+                if (!codec.isValid(next, a))
+                    continue;
+                final int pds = codec.pds(next, a);
+                State pdState = codec.getState(pds);
+                nextPostDecisionStates[count] = pds;
+                nextCosts[count] = estimateUnknownCost(pdState) + computeKnownCost(pdState, codec.getAction(a));
+                count++;
+            }
+            groupEnd[row] = count;
+        }
+
+        INDArray v = neuralNet.output(nextPostDecisionStates, count, features);
+        double greedyQ[] = new double[batchSize];
+        int i = 0;
+        for (int row = 0; row < greedyQ.length; row++) {
+            greedyQ[row] = Double.POSITIVE_INFINITY;
+            for (; i < groupEnd[row]; i++)
+                greedyQ[row] = Math.min(greedyQ[row], v.getDouble(i, 0) + nextCosts[i]);
+        }
+        return greedyQ;
+    }
+
+    private double computeKnownCost(State postDecisionState, Action action) {
+        double knownCost = computeActionCost(action);
+        knownCost += (StateUtils.computeDeploymentCostNormalized(postDecisionState, this) * this.getwResources());
+        return knownCost;
+    }
+
     public double estimateUnknownCost (State pds) {
         if (this.useEstimatedUnknownCost) {
             // Here we assume that lambda does not change..
@@ -183,4 +235,14 @@ public class DeepVLearningOM extends DeepLearningOM {
         // return network Q-function prediction associated to action a in state s
         return getQ(s, a);
     }
+
+    @Override
+    public boolean supportsBatchEvaluation() {
+        return true;
+    }
+
+    @Override
+    public double[] evaluateActions(State s, List<Action> actions) {
+        return getQ(s, actions, this.network);
+    }
 }
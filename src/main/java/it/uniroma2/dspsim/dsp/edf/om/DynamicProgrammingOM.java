@@ -2,15 +2,18 @@ package it.uniroma2.dspsim.dsp.edf.om;
 
 import it.uniroma2.dspsim.Configuration;
 import it.uniroma2.dspsim.ConfigurationKeys;
-import it.uniroma2.dspsim.InputRateFileReader;
 import it.uniroma2.dspsim.dsp.Operator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
 import it.uniroma2.dspsim.utils.MathUtils;
-import it.uniroma2.dspsim.utils.matrix.DoubleMatrix;
-import it.uniroma2.dspsim.utils.matrix.IntegerMatrix;
+import it.uniroma2.dspsim.utils.matrix.TransitionKernel;
+import it.uniroma2.dspsim.utils.trace.InputRateTrace;
+import it.uniroma2.dspsim.utils.trace.TraceCache;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 public abstract class DynamicProgrammingOM extends RewardBasedOM {
 
@@ -19,7 +22,7 @@ public abstract class DynamicProgrammingOM extends RewardBasedOM {
     private double gamma;
 
     // p matrix
-    protected DoubleMatrix<Integer, Integer> pMatrix;
+    protected TransitionKernel pMatrix;
 
     public DynamicProgrammingOM(Operator operator) {
         super(operator);
@@ -37,31 +40,52 @@ public abstract class DynamicProgrammingOM extends RewardBasedOM {
         buildQ();
     }
 
-    static public DoubleMatrix<Integer, Integer> buildPMatrix(String inputRateFilePath, int maxInputRate, int inputRateLevels) throws IOException {
-        InputRateFileReader inputRateFileReader = new InputRateFileReader(inputRateFilePath);
+    /* kernels estimated from each trace, released along with the trace */
+    static private final Map<InputRateTrace, Map<String, TransitionKernel>> pMatrixCache = new WeakHashMap<>();
 
-        IntegerMatrix<Integer, Integer> transitionMatrix = computeTransitionMatrix(inputRateFileReader, maxInputRate, inputRateLevels);
-
-        DoubleMatrix<Integer, Integer> pMatrix = new DoubleMatrix<>(0.0);
-
-        for (Integer x : transitionMatrix.getRowLabels()) {
-            Integer total = transitionMatrix.rowSum(x);
-            for (Integer y : transitionMatrix.getColLabels(x)) {
-                pMatrix.setValue(x, y, transitionMatrix.getValue(x, y).doubleValue() / total.doubleValue());
+    /**
+     * Estimates input rate level transition probabilities from a trace.
+     * The returned kernel is immutable and is shared among operator managers (and runs).
+     */
+    static public TransitionKernel buildPMatrix(String inputRateFilePath, int maxInputRate, int inputRateLevels) throws IOException {
+        InputRateTrace trace = TraceCache.get(inputRateFilePath);
+        final String key = maxInputRate + "/" + inputRateLevels;
+
+        synchronized (pMatrixCache) {
+            Map<String, TransitionKernel> kernels = pMatrixCache.computeIfAbsent(trace, t -> new HashMap<>());
+            TransitionKernel kernel = kernels.get(key);
+            if (kernel == null) {
+                kernel = estimatePMatrix(trace, maxInputRate, inputRateLevels);
+                kernels.put(key, kernel);
             }
+            return kernel;
         }
+    }
 
-        return pMatrix;
+    static private TransitionKernel estimatePMatrix(InputRateTrace trace, int maxInputRate, int inputRateLevels) {
+        int[][] transitionMatrix = computeTransitionMatrix(trace, maxInputRate, inputRateLevels);
+
+        double[][] pMatrix = new double[inputRateLevels][inputRateLevels];
+        for (int x = 0; x < inputRateLevels; x++) {
+            int total = 0;
+            for (int y = 0; y < inputRateLevels; y++)
+                total += transitionMatrix[x][y];
+            if (total == 0)
+                continue;
+            for (int y = 0; y < inputRateLevels; y++)
+                pMatrix[x][y] = (double) transitionMatrix[x][y] / (double) total;
+        }
+
+        return TransitionKernel.fromArray(pMatrix);
     }
 
-    static private IntegerMatrix<Integer, Integer> computeTransitionMatrix(InputRateFileReader inputRateFileReader, int maxInputRate,
-                                                                           int inputRateLevels) throws IOException {
-        IntegerMatrix<Integer, Integer> transitionMatrix = new IntegerMatrix<>(0);
-        if (inputRateFileReader.hasNext()) {
-            int prevInputRateLevel = MathUtils.discretizeValue(maxInputRate, inputRateFileReader.next(), inputRateLevels);
-            while (inputRateFileReader.hasNext()) {
-                int inputRateLevel = MathUtils.discretizeValue(maxInputRate, inputRateFileReader.next(), inputRateLevels);
-                transitionMatrix.add(prevInputRateLevel, inputRateLevel, 1);
+    static private int[][] computeTransitionMatrix(InputRateTrace trace, int maxInputRate, int inputRateLevels) {
+        int[][] transitionMatrix = new int[inputRateLevels][inputRateLevels];
+        if (trace.size() > 0) {
+            int prevInputRateLevel = MathUtils.discretizeValue(maxInputRate, trace.get(0), inputRateLevels);
+            for (int i = 1; i < trace.size(); i++) {
+                int inputRateLevel = MathUtils.discretizeValue(maxInputRate, trace.get(i), inputRateLevels);
+                transitionMatrix[prevInputRateLevel][inputRateLevel]++;
                 prevInputRateLevel = inputRateLevel;
             }
         }
@@ -90,7 +114,7 @@ public abstract class DynamicProgrammingOM extends RewardBasedOM {
         return gamma;
     }
 
-    public DoubleMatrix<Integer, Integer> getpMatrix() {
+    public TransitionKernel getpMatrix() {
         return pMatrix;
     }
 }
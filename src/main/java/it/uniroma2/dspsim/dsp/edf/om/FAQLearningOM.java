@@ -44,6 +44,7 @@ public class FAQLearningOM extends ReinforcementLearningOM {
         if (PolicyIOUtils.shouldLoadPolicy(configuration)) {
             this.functionApproximationManager.load(PolicyIOUtils.getFileForLoading(this.operator, "fa"));
         }
+        this.functionApproximationManager.compile(this);
 
         double alphaInitValue = configuration.getDouble(ConfigurationKeys.QL_OM_ALPHA_KEY, 1.0);
         double alphaDecay = configuration.getDouble(ConfigurationKeys.QL_OM_ALPHA_DECAY_KEY, 0.98);
@@ -177,13 +178,9 @@ public class FAQLearningOM extends ReinforcementLearningOM {
     }
 
     private void updateWeights(double delta, State state, Action action) {
-        if (!Double.isNaN(delta)) {
-            for (Feature f : this.functionApproximationManager.getFeatures()) {
-                double updatingValue = f.isActive(state, action, this) ? this.alpha.getValue() * delta : 0.0;
-                if (updatingValue != 0.0)
-                    f.update(updatingValue, state, action, this);
-            }
-        }
+        final double updatingValue = this.alpha.getValue() * delta;
+        if (!Double.isNaN(delta) && updatingValue != 0.0)
+            this.functionApproximationManager.update(updatingValue, state, action, this);
     }
 
     /**
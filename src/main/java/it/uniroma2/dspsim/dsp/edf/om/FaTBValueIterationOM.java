@@ -4,7 +4,6 @@ import it.uniroma2.dspsim.Configuration;
 import it.uniroma2.dspsim.ConfigurationKeys;
 import it.uniroma2.dspsim.dsp.Operator;
 import it.uniroma2.dspsim.dsp.edf.om.fa.FunctionApproximationManager;
-import it.uniroma2.dspsim.dsp.edf.om.fa.features.Feature;
 import it.uniroma2.dspsim.dsp.edf.om.fa.features.simple.ReconfigurationFeature;
 import it.uniroma2.dspsim.dsp.edf.om.fa.features.tiling.Tiling;
 import it.uniroma2.dspsim.dsp.edf.om.fa.features.tiling.TilingBuilder;
@@ -74,13 +73,16 @@ public class FaTBValueIterationOM extends BaseTBValueIterationOM {
 
     @Override
     protected void learn(double tbviDelta, double reward, State state, Action action) {
-        if (!Double.isNaN(tbviDelta)) {
-            for (Feature f : this.functionApproximationManager.getFeatures()) {
-                double updatingValue = f.isActive(state, action, this) ? this.alpha * tbviDelta : 0.0;
-                if (updatingValue != 0.0)
-                    f.update(updatingValue, state, action, this);
-            }
-        }
+        final double updatingValue = this.alpha * tbviDelta;
+        if (!Double.isNaN(tbviDelta) && updatingValue != 0.0)
+            this.functionApproximationManager.update(updatingValue, state, action, this);
+    }
+
+    @Override
+    protected boolean supportsParallelTbvi() {
+        // compiled features: evaluations only read the weight array,
+        // updates are plain (Hogwild) increments of its elements
+        return this.functionApproximationManager.isCompiled();
     }
 
     @Override
@@ -146,6 +148,8 @@ public class FaTBValueIterationOM extends BaseTBValueIterationOM {
         if (PolicyIOUtils.shouldLoadPolicy(Configuration.getInstance())) {
             this.functionApproximationManager.load(PolicyIOUtils.getFileForLoading(this.operator, "fa"));
         }
+
+        this.functionApproximationManager.compile(this);
     }
 
     @Override
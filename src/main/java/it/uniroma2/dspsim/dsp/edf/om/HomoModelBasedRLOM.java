@@ -16,12 +16,15 @@ import it.uniroma2.dspsim.dsp.edf.om.rl.states.KLambdaState;
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ActionIterator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.PolicyIOUtils;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.PrioritizedSweeping;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateUtils;
 import it.uniroma2.dspsim.dsp.queueing.OperatorQueueModel;
 import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
 import it.uniroma2.dspsim.stats.Statistics;
-import it.uniroma2.dspsim.utils.matrix.DoubleMatrix;
+import it.uniroma2.dspsim.utils.matrix.BinaryTableFile;
+import it.uniroma2.dspsim.utils.matrix.TransitionKernel;
 import it.uniroma2.dspsim.utils.parameter.VariableParameter;
 import org.checkerframework.checker.units.qual.K;
 import org.slf4j.Logger;
@@ -37,6 +40,8 @@ public class HomoModelBasedRLOM extends ReinforcementLearningOM {
 
 	private int[][] transitionsMatrix;
 	private double[][] pMatrix;
+	/* compact copy of pMatrix used during backups */
+	private TransitionKernel pKernel;
 
 	private double gamma;
 
@@ -60,6 +65,13 @@ public class HomoModelBasedRLOM extends ReinforcementLearningOM {
 	private int onlineVIMaxIter;
 	private  ComputingInfrastructure homoInfra;
 
+	/* with PRIORITIZED backups, the schedule above is not used */
+	private ModelBasedBackupMode backupMode;
+	private PrioritizedSweeping sweeping;
+	private final PrioritizedSweeping.Model sweepingModel = new SweepingModel();
+	/* homogeneous state space, used by prioritized sweeping */
+	private StateCodec codec;
+
 	private int updatedStateActions = 0;
 
 	private int time = 0;
@@ -99,6 +111,14 @@ public class HomoModelBasedRLOM extends ReinforcementLearningOM {
 
 		homoInfra = ComputingInfrastructure.getInfrastructure().cloneWithSingleNodeType(0); // TODO
 
+		this.backupMode = ModelBasedBackupMode.fromString(conf.getString(ConfigurationKeys.MB_BACKUP_MODE, "full"));
+		if (backupMode == ModelBasedBackupMode.PRIORITIZED) {
+			this.codec = new StateCodec(getStateRepresentation(), operator.getMaxParallelism(), homoInfra,
+					getInputRateLevels());
+			this.sweeping = new PrioritizedSweeping(codec, gamma, conf.getInteger(ConfigurationKeys.MB_PS_BUDGET, 1000),
+					conf.getDouble(ConfigurationKeys.MB_PS_THRESHOLD, 1E-4));
+		}
+
 	}
 
 	private Operator approximateOperatorModel (Operator op)
@@ -139,7 +159,8 @@ public class HomoModelBasedRLOM extends ReinforcementLearningOM {
 			}
 		}
 
-		this.estimatedCost = VTableFactory.newVTable(operator.getMaxParallelism(), getInputRateLevels());
+		// estimated SLO violation probabilities
+		this.estimatedCost = VTableFactory.newVTable(operator.getMaxParallelism(), getInputRateLevels(), 1.0);
 		QTable q = QTableFactory.newQTable(operator.getMaxParallelism(), getInputRateLevels());
 
 		if (PolicyIOUtils.shouldLoadPolicy(Configuration.getInstance())) {
@@ -152,6 +173,15 @@ public class HomoModelBasedRLOM extends ReinforcementLearningOM {
 	}
 
 	private void dumpProbabilityMatrix (File f) {
+		if (PolicyIOUtils.shouldDumpBinary()) {
+			try {
+				BinaryTableFile.writeMatrix(f, this.pMatrix);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+
 		try {
 			FileOutputStream fileOut = new FileOutputStream(f.getAbsolutePath());
 			ObjectOutputStream out = new ObjectOutputStream(fileOut);
@@ -167,6 +197,15 @@ public class HomoModelBasedRLOM extends ReinforcementLearningOM {
 
 
 	private void loadProbabilityMatrix (File f) {
+		if (BinaryTableFile.isBinaryTableFile(f)) {
+			try {
+				this.pMatrix = BinaryTableFile.readMatrix(f, PolicyIOUtils.shouldVerifyChecksum());
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+
 		try {
 			FileInputStream fileIn = new FileInputStream(f.getAbsolutePath());
 			ObjectInputStream in = new ObjectInputStream(fileIn);
@@ -222,6 +261,10 @@ public class HomoModelBasedRLOM extends ReinforcementLearningOM {
 			pMatrix[iLambda][endState] = newP;
 		}
 
+		/* Costs of the current deployment, to find the entries changed below */
+		final int currentDeployment = codec != null ? codec.rankDeployment(currentState.getActualDeployment()) : -1;
+		final double[] oldCosts = sweeping != null ? deploymentCosts(currentDeployment) : null;
+
 		/* Update cost estimate */
 		final double oldval = estimatedCost.getV(currentState);
 		final double newval = (1.0 - alpha.getValue()) * oldval + alpha.getValue() * unknownCost;
@@ -252,6 +295,11 @@ public class HomoModelBasedRLOM extends ReinforcementLearningOM {
 		}
 		decrementAlpha();
 
+		if (sweeping != null) {
+			prioritizedSweeping(iLambda, jLambda, totalTrans, currentDeployment, oldCosts);
+			return;
+		}
+
 		/* Do a full backup */
 		if (time == nextFullBackupTime) {
 			this.fullBackup();
@@ -272,6 +320,70 @@ public class HomoModelBasedRLOM extends ReinforcementLearningOM {
 	}
 
 
+	private double[] deploymentCosts(int deployment) {
+		double[] costs = new double[getInputRateLevels()];
+		for (int l = 0; l < costs.length; l++)
+			costs[l] = estimatedCost.getV(codec.getState(deployment * getInputRateLevels() + l));
+		return costs;
+	}
+
+	/**
+	 * Backs up the (state, action) pairs most affected by the last observation,
+	 * i.e., by the new transition estimates from iLambda and the new cost estimates.
+	 */
+	private void prioritizedSweeping(int iLambda, int jLambda, int totalTrans, int currentDeployment, double[] oldCosts) {
+		long _t0 = System.currentTimeMillis();
+		this.pKernel = TransitionKernel.fromArray(pMatrix);
+
+		sweeping.transitionObserved(iLambda, jLambda, totalTrans, sweepingModel);
+		final double[] newCosts = deploymentCosts(currentDeployment);
+		for (int l = 0; l < newCosts.length; l++) {
+			sweeping.propagate(currentDeployment * getInputRateLevels() + l,
+					(newCosts[l] - oldCosts[l]) * getwSLO(), sweepingModel);
+		}
+
+		updatedStateActions += sweeping.sweep(sweepingModel);
+
+		this.trainingEpochsCount.update(updatedStateActions);
+		updatedStateActions = 0;
+		this.planningTimeMetric.update((int)(System.currentTimeMillis() - _t0));
+	}
+
+	private class SweepingModel implements PrioritizedSweeping.Model {
+		@Override
+		public double getQ(int s, int a) {
+			return qTable.getQ(codec.getState(s), codec.getAction(a));
+		}
+
+		@Override
+		public void backup(int s, int a) {
+			final State state = codec.getState(s);
+			final Action action = codec.getAction(a);
+			qTable.setQ(state, action, evaluateQ(state, action));
+		}
+
+		@Override
+		public double immediateCost(int s, int a) {
+			return HomoModelBasedRLOM.this.immediateCost(codec.getAction(a), codec.getState(codec.pds(s, a)));
+		}
+
+		@Override
+		public double nextStateCost(int next) {
+			return HomoModelBasedRLOM.this.nextStateCost(codec.getState(next));
+		}
+
+		@Override
+		public double value(int s) {
+			final State state = codec.getState(s);
+			return qTable.getQ(state, getActionSelectionPolicy().selectAction(state));
+		}
+
+		@Override
+		public double transitionProbability(int fromLambda, int toLambda) {
+			return pMatrix[fromLambda][toLambda];
+		}
+	}
+
 	@Override
 	public double evaluateAction(State s, Action a) {
 		if (a.getResTypeIndex() > 0)
@@ -281,6 +393,7 @@ public class HomoModelBasedRLOM extends ReinforcementLearningOM {
 
 	private double fullBackup() {
 		long _t0 = System.currentTimeMillis();
+		this.pKernel = TransitionKernel.fromArray(pMatrix);
 
 
 		double delta = 0.0;
@@ -333,32 +446,43 @@ public class HomoModelBasedRLOM extends ReinforcementLearningOM {
 	}
 
 	private double evaluateQ(State s, Action a) {
-		double cost = 0.0;
-		// compute reconfiguration cost
-		if (a.getDelta() != 0)
-			cost += this.getwReconf();
 		// from s,a compute pds
 		State pds = StateUtils.computePostDecisionState(s, a, this);
-		// compute deployment cost using pds wighted on wRes
-		cost += StateUtils.computeDeploymentCostNormalized(pds, this) * this.getwResources();
+		double cost = immediateCost(a, pds);
 
-		for (int lambda = 0; lambda < pMatrix.length; lambda++) {
+		final int sLambda = s.getLambda();
+		for (int k = pKernel.rowStart(sLambda); k < pKernel.rowEnd(sLambda); k++) {
+			final int lambda = pKernel.column(k);
 			// change pds.lambda to lambda
 			pds.setLambda(lambda);
-			// get Q(s, a) using the greedy action selection policy
-			// from post decision state with lambda as pds.lambda
-			Action greedyAction = getActionSelectionPolicy().selectAction(pds);
-			double q = qTable.getQ(pds, greedyAction);
 			// get transition probability from s.lambda to lambda level
-			double p = pMatrix[s.getLambda()][lambda];
-			// compute slo violation cost
-			double pdCost = estimatedCost.getV(pds) * this.getwSLO();
+			double p = pKernel.probability(k);
 
-			cost += p * (pdCost + gamma * q);
+			cost += p * nextStateCost(pds);
 		}
 		return cost;
 	}
 
+	private double immediateCost(Action a, State pds) {
+		double cost = 0.0;
+		// compute reconfiguration cost
+		if (a.getDelta() != 0)
+			cost += this.getwReconf();
+		// compute deployment cost using pds wighted on wRes
+		cost += StateUtils.computeDeploymentCostNormalized(pds, this) * this.getwResources();
+		return cost;
+	}
+
+	private double nextStateCost(State next) {
+		// get Q(s, a) using the greedy action selection policy
+		// from post decision state with lambda as pds.lambda
+		Action greedyAction = getActionSelectionPolicy().selectAction(next);
+		double q = qTable.getQ(next, greedyAction);
+		// compute slo violation cost
+		double pdCost = estimatedCost.getV(next) * this.getwSLO();
+		return pdCost + gamma * q;
+	}
+
 	protected void dumpQOnFile(String filename) {
 		// create file
 		File file = new File(filename);
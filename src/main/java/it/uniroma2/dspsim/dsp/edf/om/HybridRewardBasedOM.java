@@ -85,6 +85,14 @@ public abstract class HybridRewardBasedOM extends RewardBasedOM implements Actio
         }
     }
 
+    @Override
+    public void close() {
+        if (this.offLineOM != null)
+            this.offLineOM.close();
+        if (this.onLineOM != null)
+            this.onLineOM.close();
+    }
+
     /**
      * ABSTRACT METHODS
      */
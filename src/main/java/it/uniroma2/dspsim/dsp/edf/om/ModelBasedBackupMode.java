@@ -0,0 +1,21 @@
+package it.uniroma2.dspsim.dsp.edf.om;
+
+/**
+ * How model-based OMs update Q after each observed transition.
+ * FULL: periodic value iteration sweeps over the whole state space (default).
+ * PRIORITIZED: prioritized sweeping, backing up only the most affected pairs at every step.
+ */
+public enum ModelBasedBackupMode {
+    FULL,
+    PRIORITIZED;
+
+    public static ModelBasedBackupMode fromString(String str) throws IllegalArgumentException {
+        if (str.equalsIgnoreCase("full")) {
+            return FULL;
+        } else if (str.equalsIgnoreCase("prioritized") || str.equalsIgnoreCase("ps")) {
+            return PRIORITIZED;
+        } else {
+            throw new IllegalArgumentException("Not valid model-based backup mode: " + str);
+        }
+    }
+}
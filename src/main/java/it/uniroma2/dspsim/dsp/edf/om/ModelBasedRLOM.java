@@ -5,23 +5,27 @@ import it.uniroma2.dspsim.ConfigurationKeys;
 import it.uniroma2.dspsim.dsp.Operator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.*;
 import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicy;
-import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicyType;
-import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.factory.ActionSelectionPolicyFactory;
+import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.concrete.CompiledGreedyActionSelectionPolicy;
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ActionIterator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.PolicyIOUtils;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.PostDecisionKernel;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.PrioritizedSweeping;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateUtils;
 import it.uniroma2.dspsim.dsp.queueing.OperatorQueueModel;
 import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
 import it.uniroma2.dspsim.stats.Statistics;
-import it.uniroma2.dspsim.utils.matrix.DoubleMatrix;
+import it.uniroma2.dspsim.utils.matrix.BinaryTableFile;
+import it.uniroma2.dspsim.utils.matrix.TransitionKernel;
 import it.uniroma2.dspsim.utils.parameter.VariableParameter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.Random;
+import java.util.function.IntToDoubleFunction;
 
 public class ModelBasedRLOM extends ReinforcementLearningOM {
 
@@ -30,6 +34,13 @@ public class ModelBasedRLOM extends ReinforcementLearningOM {
 
 	private int[][] transitionsMatrix;
 	private double[][] pMatrix;
+	/* compact copy of pMatrix used during backups */
+	private TransitionKernel pKernel;
+	private StateCodec codec;
+	/* greedy values of the states, kept current as Q is backed up */
+	private PostDecisionKernel pdsKernel;
+	private final PostDecisionKernel.QFunction qFunction = (s, a) -> qTable.getQ(codec.getState(s), codec.getAction(a));
+	private final IntToDoubleFunction sloCost = next -> estimatedCost.getV(codec.getState(next)) * this.getwSLO();
 
 	private double gamma;
 
@@ -55,6 +66,11 @@ public class ModelBasedRLOM extends ReinforcementLearningOM {
 	private double fullBackupIntervalUpdateCoeff;
 	private int onlineVIMaxIter;
 
+	/* with PRIORITIZED backups, the schedule above is not used */
+	private ModelBasedBackupMode backupMode;
+	private PrioritizedSweeping sweeping;
+	private final PrioritizedSweeping.Model sweepingModel = new SweepingModel();
+
 	private int updatedStateActions = 0;
 
 	private int time = 0;
@@ -94,6 +110,15 @@ public class ModelBasedRLOM extends ReinforcementLearningOM {
 		this.maxErr = conf.getDouble(ConfigurationKeys.VI_APPROX_MODEL_MAX_ERR, 0.1);
 		this.minErr = conf.getDouble(ConfigurationKeys.VI_APPROX_MODEL_MIN_ERR, 0.05);
 
+		this.codec = new StateCodec(getStateRepresentation(), operator.getMaxParallelism(),
+				ComputingInfrastructure.getInfrastructure(), getInputRateLevels());
+		this.pdsKernel = new PostDecisionKernel(codec, gamma);
+
+		this.backupMode = ModelBasedBackupMode.fromString(conf.getString(ConfigurationKeys.MB_BACKUP_MODE, "full"));
+		if (backupMode == ModelBasedBackupMode.PRIORITIZED) {
+			this.sweeping = new PrioritizedSweeping(codec, gamma, conf.getInteger(ConfigurationKeys.MB_PS_BUDGET, 1000),
+					conf.getDouble(ConfigurationKeys.MB_PS_THRESHOLD, 1E-4));
+		}
 
 		if (initWithVI) {
 			offlinePlanning();
@@ -101,6 +126,8 @@ public class ModelBasedRLOM extends ReinforcementLearningOM {
 			offlineObservationsParam = 0;
 		}
 
+		pdsKernel.refresh(qFunction);
+		getCompiledPolicy().compile(codec);
 	}
 
 	private Operator approximateOperatorModel (Operator op)
@@ -123,7 +150,7 @@ public class ModelBasedRLOM extends ReinforcementLearningOM {
 		}
 		ValueIterationOM viOM = new ValueIterationOM(initializationOperator);
 		QTable viQ = viOM.getQTable();
-		DoubleMatrix<Integer,Integer> viP = viOM.getPMatrix();
+		TransitionKernel viP = viOM.getPMatrix();
 
 		// init costs and transition estimates based on offline phase output
 		/* Update cost estimate */
@@ -163,7 +190,12 @@ public class ModelBasedRLOM extends ReinforcementLearningOM {
 
 	@Override
 	protected ActionSelectionPolicy initActionSelectionPolicy() {
-		return  ActionSelectionPolicyFactory.getPolicy(ActionSelectionPolicyType.GREEDY, this);
+		// compiled at the end of the constructor, then updated state by state after each backup
+		return new CompiledGreedyActionSelectionPolicy(this);
+	}
+
+	private CompiledGreedyActionSelectionPolicy getCompiledPolicy() {
+		return (CompiledGreedyActionSelectionPolicy) getActionSelectionPolicy();
 	}
 
 	private void decrementAlpha() {
@@ -187,7 +219,8 @@ public class ModelBasedRLOM extends ReinforcementLearningOM {
 			}
 		}
 
-		this.estimatedCost = VTableFactory.newVTable(operator.getMaxParallelism(), getInputRateLevels());
+		// estimated SLO violation probabilities
+		this.estimatedCost = VTableFactory.newVTable(operator.getMaxParallelism(), getInputRateLevels(), 1.0);
 		QTable q = QTableFactory.newQTable(operator.getMaxParallelism(), getInputRateLevels());
 
 		if (PolicyIOUtils.shouldLoadPolicy(Configuration.getInstance())) {
@@ -200,6 +233,15 @@ public class ModelBasedRLOM extends ReinforcementLearningOM {
 	}
 
 	private void dumpProbabilityMatrix (File f) {
+		if (PolicyIOUtils.shouldDumpBinary()) {
+			try {
+				BinaryTableFile.writeMatrix(f, this.pMatrix);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+
 		try {
 			FileOutputStream fileOut = new FileOutputStream(f.getAbsolutePath());
 			ObjectOutputStream out = new ObjectOutputStream(fileOut);
@@ -214,6 +256,15 @@ public class ModelBasedRLOM extends ReinforcementLearningOM {
 	}
 
 	private void loadProbabilityMatrix (File f) {
+		if (BinaryTableFile.isBinaryTableFile(f)) {
+			try {
+				this.pMatrix = BinaryTableFile.readMatrix(f, PolicyIOUtils.shouldVerifyChecksum());
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+
 		try {
 			FileInputStream fileIn = new FileInputStream(f.getAbsolutePath());
 			ObjectInputStream in = new ObjectInputStream(fileIn);
@@ -266,6 +317,10 @@ public class ModelBasedRLOM extends ReinforcementLearningOM {
 			pMatrix[iLambda][endState] = newP;
 		}
 
+		/* Costs of the current deployment, to find the entries changed below */
+		final int currentDeployment = codec.rankDeployment(currentState.getActualDeployment());
+		final double[] oldCosts = sweeping != null ? deploymentCosts(currentDeployment) : null;
+
 		/* Update cost estimate */
 		final double oldval = estimatedCost.getV(currentState);
 		final double newval = (1.0 - alpha.getValue()) * oldval + alpha.getValue() * unknownCost;
@@ -296,6 +351,11 @@ public class ModelBasedRLOM extends ReinforcementLearningOM {
 		}
 		decrementAlpha();
 
+		if (sweeping != null) {
+			prioritizedSweeping(iLambda, jLambda, totalTrans, currentDeployment, oldCosts);
+			return;
+		}
+
 		/* Do a full backup */
 		if (time == nextFullBackupTime) {
 			this.fullBackup();
@@ -310,24 +370,86 @@ public class ModelBasedRLOM extends ReinforcementLearningOM {
 	}
 
 
+	private double[] deploymentCosts(int deployment) {
+		double[] costs = new double[getInputRateLevels()];
+		for (int l = 0; l < costs.length; l++)
+			costs[l] = estimatedCost.getV(codec.getState(deployment * getInputRateLevels() + l));
+		return costs;
+	}
+
+	/**
+	 * Backs up the (state, action) pairs most affected by the last observation,
+	 * i.e., by the new transition estimates from iLambda and the new cost estimates.
+	 */
+	private void prioritizedSweeping(int iLambda, int jLambda, int totalTrans, int currentDeployment, double[] oldCosts) {
+		long _t0 = System.currentTimeMillis();
+		this.pKernel = TransitionKernel.fromArray(pMatrix);
+
+		sweeping.transitionObserved(iLambda, jLambda, totalTrans, sweepingModel);
+		final double[] newCosts = deploymentCosts(currentDeployment);
+		for (int l = 0; l < newCosts.length; l++) {
+			sweeping.propagate(currentDeployment * getInputRateLevels() + l,
+					(newCosts[l] - oldCosts[l]) * getwSLO(), sweepingModel);
+		}
+
+		updatedStateActions += sweeping.sweep(sweepingModel);
+
+		this.trainingEpochsCount.update(updatedStateActions);
+		updatedStateActions = 0;
+		this.planningTimeMetric.update((int)(System.currentTimeMillis() - _t0));
+	}
+
+	private class SweepingModel implements PrioritizedSweeping.Model {
+		@Override
+		public double getQ(int s, int a) {
+			return qTable.getQ(codec.getState(s), codec.getAction(a));
+		}
+
+		@Override
+		public void backup(int s, int a) {
+			qTable.setQ(codec.getState(s), codec.getAction(a), evaluateQ(s, a));
+			pdsKernel.refresh(s, qFunction);
+			getCompiledPolicy().update(s);
+		}
+
+		@Override
+		public double immediateCost(int s, int a) {
+			return ModelBasedRLOM.this.immediateCost(a, codec.pds(s, a));
+		}
+
+		@Override
+		public double nextStateCost(int next) {
+			return ModelBasedRLOM.this.nextStateCost(next);
+		}
+
+		@Override
+		public double value(int s) {
+			return pdsKernel.value(s);
+		}
+
+		@Override
+		public double transitionProbability(int fromLambda, int toLambda) {
+			return pMatrix[fromLambda][toLambda];
+		}
+	}
+
 	@Override
 	public double evaluateAction(State s, Action a) {
 		return qTable.getQ(s,a);
 	}
 
-	private double fullBackup() {
+	/* package-private, as it is also invoked by the benchmarks */
+	double fullBackup() {
 		long _t0 = System.currentTimeMillis();
+		this.pKernel = TransitionKernel.fromArray(pMatrix);
 
 		double delta = 0.0;
 		for (int iter = 0; iter < onlineVIMaxIter; ++iter) {
 			delta = 0.0;
+			pdsKernel.refresh(qFunction);
 
-			StateIterator stateIterator = new StateIterator(this.getStateRepresentation(), this.operator.getMaxParallelism(),
-					ComputingInfrastructure.getInfrastructure(), this.getInputRateLevels());
-
-			while (stateIterator.hasNext()) {
-				State state = stateIterator.next();
-				double newDelta = computeValueIteration(state);
+			for (int s = 0; s < codec.getStatesCount(); s++) {
+				double newDelta = computeValueIteration(s);
 				delta = Math.max(delta, newDelta);
 
 				if (System.currentTimeMillis() - _t0 > 1000.0*SINGLE_ITERATION_HARD_TIMEOUT_SEC)
@@ -346,54 +468,52 @@ public class ModelBasedRLOM extends ReinforcementLearningOM {
 		return delta;
 	}
 
-	protected double computeValueIteration(State state) {
+	protected double computeValueIteration(int s) {
 		double delta = 0.0;
+		double value = Double.POSITIVE_INFINITY;
 
-		ActionIterator actionIterator = new ActionIterator();
-
-		while (actionIterator.hasNext()) {
-			Action action = actionIterator.next();
-			if (!validateAction(state, action))
+		final State state = codec.getState(s);
+		for (int a = 0; a < codec.getActionsCount(); a++) {
+			if (!codec.isValid(s, a))
 				continue;
 
+			final Action action = codec.getAction(a);
 			double oldQ = qTable.getQ(state, action);
-			double newQ = evaluateQ(state, action);
+			double newQ = evaluateQ(s, a);
 			qTable.setQ(state, action, newQ);
 
 			delta = Math.max(delta, Math.abs(newQ - oldQ));
+			value = Math.min(value, newQ);
 			++updatedStateActions;
 		}
+		pdsKernel.setValue(s, value);
+		getCompiledPolicy().update(s);
 
 		return delta;
 	}
 
-	private double evaluateQ(State s, Action a) {
+	private double evaluateQ(int s, int a) {
+		// from s,a compute pds
+		final int pds = codec.pds(s, a);
+		// expected slo cost and greedy value over the lambda levels reachable from s.getLambda()
+		return pdsKernel.backup(immediateCost(a, pds), pds, pKernel, sloCost);
+	}
+
+	private double immediateCost(int a, int pds) {
 		double cost = 0.0;
 		// compute reconfiguration cost
-		if (a.getDelta() != 0)
+		if (codec.getAction(a).getDelta() != 0)
 			cost += this.getwReconf();
-		// from s,a compute pds
-		State pds = StateUtils.computePostDecisionState(s, a, this);
 		// compute deployment cost using pds wighted on wRes
-		cost += StateUtils.computeDeploymentCostNormalized(pds, this) * this.getwResources();
-
-		for (int lambda = 0; lambda < pMatrix.length; lambda++) {
-			// change pds.lambda to lambda
-			pds.setLambda(lambda);
-			// get Q(s, a) using the greedy action selection policy
-			// from post decision state with lambda as pds.lambda
-			Action greedyAction = getActionSelectionPolicy().selectAction(pds);
-			double q = qTable.getQ(pds, greedyAction);
-			// get transition probability from s.lambda to lambda level
-			double p = pMatrix[s.getLambda()][lambda];
-			// compute slo violation cost
-			double pdCost = estimatedCost.getV(pds) * this.getwSLO();
-
-			cost += p * (pdCost + gamma * q);
-		}
+		cost += StateUtils.computeDeploymentCostNormalized(codec.getState(pds), this) * this.getwResources();
 		return cost;
 	}
 
+	private double nextStateCost(int next) {
+		// slo violation cost plus the greedy value of next
+		return sloCost.applyAsDouble(next) + gamma * pdsKernel.value(next);
+	}
+
 	protected void dumpQOnFile(String filename) {
 		// create file
 		File file = new File(filename);
@@ -30,6 +30,14 @@ public abstract class OperatorManager {
 
 	}
 
+	/**
+	 * Called at the end of the simulation, before saving the policy.
+	 */
+	public void close()
+	{
+
+	}
+
 	private Operator approximateOperator = null;
 
 	private Operator approximateOperatorModel (Configuration conf)
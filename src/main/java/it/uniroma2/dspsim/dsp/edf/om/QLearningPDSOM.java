@@ -4,7 +4,6 @@ import it.uniroma2.dspsim.Configuration;
 import it.uniroma2.dspsim.ConfigurationKeys;
 import it.uniroma2.dspsim.dsp.Operator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
-import it.uniroma2.dspsim.dsp.edf.om.rl.QTable;
 import it.uniroma2.dspsim.dsp.edf.om.rl.VTable;
 import it.uniroma2.dspsim.dsp.edf.om.rl.VTableFactory;
 import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicy;
@@ -13,6 +12,7 @@ import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.factory.ActionSelection
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ActionIterator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.PolicyIOUtils;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateUtils;
 import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
@@ -88,34 +88,13 @@ public class QLearningPDSOM extends ReinforcementLearningOM {
 
     private void offlinePlanning() {
         ValueIterationOM viOM = new ValueIterationOM(operator);
-        QTable viQ = viOM.getQTable();
-
-        // init costs and transition estimates based on offline phase output
-        /* Update cost estimate */
-        StateIterator stateIterator = new StateIterator(this.getStateRepresentation(), this.operator.getMaxParallelism(),
-                ComputingInfrastructure.getInfrastructure(), this.getInputRateLevels());
-
-        while (stateIterator.hasNext()) {
-            State s = stateIterator.next();
-
-            ActionIterator actionIterator = new ActionIterator();
-            while (actionIterator.hasNext()) {
-                Action action = actionIterator.next();
-                if (!validateAction(s, action))
-                    continue;
-
-                double q = viQ.getQ(s, action);
-                State pds = StateUtils.computePostDecisionState(s, action, this);
-                double knownCost = 0.0;
-                if (action.getDelta() != 0)
-                    knownCost += getwReconf();
-                knownCost += getwResources() * StateUtils.computeDeploymentCostNormalized(pds, this);
-                double v = q - knownCost;
-
-                this.vTable.setV(pds, v);
-            }
 
-        }
+        // init post-decision values based on offline phase output,
+        // computed by the same backup kernel used by VI
+        final StateCodec codec = viOM.getStateCodec();
+        final double[] values = viOM.computePostDecisionValues();
+        for (int pds = 0; pds < values.length; pds++)
+            this.vTable.setV(codec.getState(pds), values[pds]);
     }
 
     @Override
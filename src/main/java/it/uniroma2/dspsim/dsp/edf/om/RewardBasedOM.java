@@ -13,12 +13,15 @@ import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicyCa
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ActionIterator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.OperatorPerformanceTable;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateUtils;
 import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
 import it.uniroma2.dspsim.stats.Statistics;
 import it.uniroma2.dspsim.stats.metrics.CountMetric;
 import it.uniroma2.dspsim.stats.metrics.RealValuedMetric;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 public abstract class RewardBasedOM extends OperatorManager {
 
     protected Action lastChosenAction;
@@ -38,6 +41,11 @@ public abstract class RewardBasedOM extends OperatorManager {
 
     private ActionSelectionPolicy actionSelectionPolicy;
 
+    /* performance tables, built on first use, for each (approximate speedups, approximate model) pair */
+    private final AtomicReferenceArray<OperatorPerformanceTable> performanceTables = new AtomicReferenceArray<>(4);
+    /* whether the state space is small enough to tabulate the performance, computed on first use */
+    private Boolean performanceTabulable;
+
     public RewardBasedOM(Operator operator) {
         super(operator);
 
@@ -155,6 +163,48 @@ public abstract class RewardBasedOM extends OperatorManager {
                         ComputingInfrastructure.getInfrastructure().getNodeTypes()[action.getResTypeIndex()]);
     }
 
+    /**
+     * Performance of the operator (or its approximate model) in every discretized state,
+     * for planners enumerating the state space.
+     * The table is rebuilt when the operator is replaced or the infrastructure is updated.
+     */
+    public OperatorPerformanceTable getPerformanceTable(boolean approximateNodeSpeedups, boolean approximateOperatorModel) {
+        final int i = (approximateNodeSpeedups ? 2 : 0) + (approximateOperatorModel ? 1 : 0);
+        final Operator op = approximateOperatorModel ? getApproximateOperator() : getOperator();
+
+        OperatorPerformanceTable table = performanceTables.get(i);
+        if (table != null && table.isValidFor(op))
+            return table;
+
+        synchronized (performanceTables) {
+            table = performanceTables.get(i);
+            if (table == null || !table.isValidFor(op)) {
+                final ComputingInfrastructure infra = ComputingInfrastructure.getInfrastructure();
+                table = OperatorPerformanceTable.build(op, getOperator().getSloRespTime(),
+                        approximateNodeSpeedups ? infra.getEstimatedNodeTypes() : infra.getNodeTypes(),
+                        maxInputRate, inputRateLevels);
+                performanceTables.set(i, table);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Performance table, unless the state space has more than OperatorPerformanceTable.MAX_STATES states.
+     * @return null if the performance should be evaluated on demand
+     */
+    public OperatorPerformanceTable getPerformanceTableIfTabulable(boolean approximateNodeSpeedups,
+                                                                   boolean approximateOperatorModel) {
+        if (performanceTabulable == null) {
+            performanceTabulable = OperatorPerformanceTable.isTabulable(
+                    ComputingInfrastructure.getInfrastructure().getNodeTypes().length,
+                    getOperator().getMaxParallelism(), inputRateLevels);
+        }
+        if (!performanceTabulable)
+            return null;
+        return getPerformanceTable(approximateNodeSpeedups, approximateOperatorModel);
+    }
+
     public void forgetLastAction() {
         this.lastChosenAction = null;
     }
@@ -0,0 +1,26 @@
+package it.uniroma2.dspsim.dsp.edf.om;
+
+/**
+ * How TBVI trajectories are generated.
+ * SEQUENTIAL: a single trajectory at a time (default).
+ * HOGWILD: parallel trajectory workers updating Q concurrently without locks.
+ * BATCHED: parallel trajectory workers computing batches of updates against the same Q,
+ * applied in a fixed order after each batch (reproducible for a given number of threads).
+ */
+public enum TBVIParallelMode {
+    SEQUENTIAL,
+    HOGWILD,
+    BATCHED;
+
+    public static TBVIParallelMode fromString(String str) throws IllegalArgumentException {
+        if (str.equalsIgnoreCase("sequential") || str.equalsIgnoreCase("none")) {
+            return SEQUENTIAL;
+        } else if (str.equalsIgnoreCase("hogwild")) {
+            return HOGWILD;
+        } else if (str.equalsIgnoreCase("batched")) {
+            return BATCHED;
+        } else {
+            throw new IllegalArgumentException("Not valid TBVI parallel mode: " + str);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package it.uniroma2.dspsim.dsp.edf.om;
+
+/**
+ * How value iteration sweeps are executed.
+ * SEQUENTIAL: in-place sweep on a single thread (default).
+ * SYNC: parallel Jacobi sweep, all backups read the Q of the previous sweep.
+ * ASYNC: parallel Gauss-Seidel sweep, each partition updates Q in place.
+ */
+public enum ValueIterationMode {
+    SEQUENTIAL,
+    SYNC,
+    ASYNC;
+
+    public static ValueIterationMode fromString(String str) throws IllegalArgumentException {
+        if (str.equalsIgnoreCase("sequential") || str.equalsIgnoreCase("none")) {
+            return SEQUENTIAL;
+        } else if (str.equalsIgnoreCase("sync")) {
+            return SYNC;
+        } else if (str.equalsIgnoreCase("async")) {
+            return ASYNC;
+        } else {
+            throw new IllegalArgumentException("Not valid value iteration mode: " + str);
+        }
+    }
+}
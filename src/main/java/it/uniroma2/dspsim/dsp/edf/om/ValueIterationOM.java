@@ -4,20 +4,23 @@ import it.uniroma2.dspsim.Configuration;
 import it.uniroma2.dspsim.ConfigurationKeys;
 import it.uniroma2.dspsim.dsp.Operator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
+import it.uniroma2.dspsim.dsp.edf.om.rl.ArrayBasedQTable;
 import it.uniroma2.dspsim.dsp.edf.om.rl.QTable;
 import it.uniroma2.dspsim.dsp.edf.om.rl.QTableFactory;
 import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicy;
 import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicyCallback;
-import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicyType;
-import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.factory.ActionSelectionPolicyFactory;
+import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.concrete.CompiledGreedyActionSelectionPolicy;
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ActionIterator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.OperatorPerformanceTable;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.PolicyIOUtils;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.PostDecisionKernel;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateUtils;
 import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
 import it.uniroma2.dspsim.stats.Statistics;
-import it.uniroma2.dspsim.utils.matrix.DoubleMatrix;
+import it.uniroma2.dspsim.utils.matrix.TransitionKernel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,7 +28,9 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Set;
+import java.util.function.IntToDoubleFunction;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class ValueIterationOM extends DynamicProgrammingOM implements ActionSelectionPolicyCallback {
 
@@ -33,6 +38,21 @@ public class ValueIterationOM extends DynamicProgrammingOM implements ActionSele
     private Logger logger = LoggerFactory.getLogger(ValueIterationOM.class);
     private int updatedStateActions = 0;
 
+    /* primitive encoding of the state space used by sweeps */
+    protected StateCodec codec;
+    /* greedy values and weighted SLO costs of the states, refreshed at each sweep */
+    private PostDecisionKernel pdsKernel;
+    private double[] sloCosts;
+    private final PostDecisionKernel.QFunction qFunction =
+            (s, a) -> evaluateAction(codec.getState(s), codec.getAction(a));
+    private final IntToDoubleFunction sloCost = s -> sloCosts[s];
+
+    /* parallel sweeps */
+    private ValueIterationMode mode;
+    private ForkJoinPool sweepPool;
+    private double[] nextQ;
+    private int stateActionsPerSweep = 0;
+
     public ValueIterationOM(Operator operator) {
         super(operator);
 
@@ -42,6 +62,21 @@ public class ValueIterationOM extends DynamicProgrammingOM implements ActionSele
         long maxTimeMillis = configuration.getLong(ConfigurationKeys.VI_MAX_TIME_SECONDS_KEY, 60L) * 1000;
         double theta = configuration.getDouble(ConfigurationKeys.VI_THETA_KEY, 1E-5);
 
+        this.mode = ValueIterationMode.fromString(
+                configuration.getString(ConfigurationKeys.VI_PARALLEL_MODE_KEY, "sequential"));
+        if (this.mode != ValueIterationMode.SEQUENTIAL && !supportsParallelSweeps()) {
+            logger.warn("Parallel sweeps not supported by {}: running sequential VI", getClass().getSimpleName());
+            this.mode = ValueIterationMode.SEQUENTIAL;
+        }
+        if (this.mode == ValueIterationMode.ASYNC && !(this.qTable instanceof ArrayBasedQTable)) {
+            // in-place concurrent updates are only safe on the array-based table
+            logger.warn("Async VI requires the array-based Q table: running sync VI");
+            this.mode = ValueIterationMode.SYNC;
+        }
+        int threads = configuration.getInteger(ConfigurationKeys.VI_PARALLEL_THREADS_KEY, 0);
+        if (threads < 1)
+            threads = Runtime.getRuntime().availableProcessors();
+
         // We can replace the embedded operator if an approximate model is required
         final boolean useApproximateModel = configuration.getBoolean(ConfigurationKeys.VI_APPROX_MODEL, false);
         Operator realOperator = this.operator;
@@ -49,10 +84,27 @@ public class ValueIterationOM extends DynamicProgrammingOM implements ActionSele
             this.operator = getApproximateOperator();
         }
 
-        valueIteration(maxIterations, maxTimeMillis, theta);
+        this.codec = new StateCodec(getStateRepresentation(), this.operator.getMaxParallelism(),
+                ComputingInfrastructure.getInfrastructure(), getInputRateLevels());
+        this.pdsKernel = new PostDecisionKernel(codec, getGamma());
+
+        if (this.mode != ValueIterationMode.SEQUENTIAL)
+            this.sweepPool = new ForkJoinPool(threads);
+        try {
+            valueIteration(maxIterations, maxTimeMillis, theta);
+        } finally {
+            if (this.sweepPool != null) {
+                this.sweepPool.shutdown();
+                this.sweepPool = null;
+            }
+            // only needed while planning
+            this.nextQ = null;
+        }
 
         this.operator = realOperator;
 
+        compilePolicy();
+
         dumpQOnFile(String.format("%s/qtable",
                 Configuration.getInstance().getString(ConfigurationKeys.OUTPUT_BASE_PATH_KEY, "")));
     }
@@ -66,7 +118,7 @@ public class ValueIterationOM extends DynamicProgrammingOM implements ActionSele
         return this.qTable;
     }
 
-    protected DoubleMatrix<Integer, Integer> getPMatrix() {
+    protected TransitionKernel getPMatrix() {
         return pMatrix;
     }
 
@@ -94,68 +146,236 @@ public class ValueIterationOM extends DynamicProgrammingOM implements ActionSele
         this.planningTimeMetric.update((int)(System.currentTimeMillis() - startIterationTime));
     }
 
-    private double vi() {
-        double delta = 0.0;
+    /**
+     * Runs a single sweep over the state space.
+     * Package-private, as it is also invoked by the benchmarks.
+     * @return max Q variation
+     */
+    double vi() {
+        if (this.mode != ValueIterationMode.SEQUENTIAL)
+            return parallelVi();
 
-        StateIterator stateIterator = new StateIterator(this.getStateRepresentation(), this.operator.getMaxParallelism(),
-                ComputingInfrastructure.getInfrastructure(), this.getInputRateLevels());
+        double delta = 0.0;
+        prepareSweep();
 
-        while (stateIterator.hasNext()) {
-            State state = stateIterator.next();
-            double newDelta = computeValueIteration(state);
+        for (int s = 0; s < codec.getStatesCount(); s++) {
+            double newDelta = computeValueIteration(codec.getState(s));
             delta = Math.max(delta, newDelta);
         }
 
         return delta;
     }
 
-    protected double computeValueIteration(State state) {
+    /**
+     * Parallel sweep over the indexed state space.
+     * In SYNC mode new values are buffered and copied into the Q table at the end of the sweep,
+     * in ASYNC mode each worker updates the Q table in place.
+     */
+    private double parallelVi() {
+        if (stateActionsPerSweep == 0)
+            prepareParallelSweeps();
+        prepareSweep();
+
+        final boolean jacobi = (this.mode == ValueIterationMode.SYNC);
+        double delta = sweepPool.invoke(new SweepTask(0, codec.getStatesCount(), jacobi));
+
+        if (jacobi) {
+            // delta between stored values, as tables with reduced precision round Q
+            delta = 0.0;
+            final int actions = codec.getActionsCount();
+            for (int s = 0; s < codec.getStatesCount(); s++) {
+                final State state = codec.getState(s);
+                for (int a = 0; a < actions; a++) {
+                    if (!codec.isValid(s, a))
+                        continue;
+                    final Action action = codec.getAction(a);
+                    final double oldQ = qTable.getQ(state, action);
+                    qTable.setQ(state, action, nextQ[s * actions + a]);
+                    delta = Math.max(delta, Math.abs(qTable.getQ(state, action) - oldQ));
+                }
+            }
+        }
+
+        updatedStateActions += stateActionsPerSweep;
+        return delta;
+    }
+
+    /**
+     * Caches the greedy value and the weighted SLO cost of every state.
+     */
+    private void prepareSweep() {
+        pdsKernel.refresh(qFunction);
+
+        final OperatorPerformanceTable performance = getPerformanceTable(false, false);
+        if (sloCosts == null)
+            sloCosts = new double[codec.getStatesCount()];
+        for (int s = 0; s < sloCosts.length; s++)
+            sloCosts[s] = (performance.isSLOViolated(s) ? 1.0 : 0.0) * this.getwSLO();
+    }
+
+    private void prepareParallelSweeps() {
+        // workers only read the codec
+        codec.materializeStates();
+
+        for (int s = 0; s < codec.getStatesCount(); s++) {
+            final State state = codec.getState(s);
+            for (int a = 0; a < codec.getActionsCount(); a++) {
+                if (!codec.isValid(s, a))
+                    continue;
+                // the map-based table inserts missing entries on read: fill it
+                // so that workers only ever read it concurrently
+                final Action action = codec.getAction(a);
+                qTable.setQ(state, action, qTable.getQ(state, action));
+                stateActionsPerSweep++;
+            }
+        }
+
+        if (this.mode == ValueIterationMode.SYNC)
+            nextQ = new double[Math.multiplyExact(codec.getStatesCount(), codec.getActionsCount())];
+    }
+
+    private double backupState(int s, boolean jacobi) {
+        final State state = codec.getState(s);
+        final int actions = codec.getActionsCount();
         double delta = 0.0;
+        double value = Double.POSITIVE_INFINITY;
+
+        for (int a = 0; a < actions; a++) {
+            if (!codec.isValid(s, a))
+                continue;
 
-        ActionIterator actionIterator = new ActionIterator();
+            final Action action = codec.getAction(a);
+            double oldQ = qTable.getQ(state, action);
+            double newQ = evaluateQ(s, a);
+            if (jacobi) {
+                nextQ[s * actions + a] = newQ;
+            } else {
+                qTable.setQ(state, action, newQ);
+                newQ = qTable.getQ(state, action);
+            }
+
+            delta = Math.max(delta, Math.abs(newQ - oldQ));
+            value = Math.min(value, newQ);
+        }
+
+        // in place updates are seen by the following backups of the sweep
+        if (!jacobi)
+            pdsKernel.setValue(s, value);
+        return delta;
+    }
+
+    /**
+     * Subclasses updating additional tables in computeValueIteration
+     * must override this to return false.
+     */
+    protected boolean supportsParallelSweeps() {
+        return true;
+    }
+
+    private class SweepTask extends RecursiveTask<Double> {
+        private final int from;
+        private final int to;
+        private final boolean jacobi;
+
+        SweepTask(int from, int to, boolean jacobi) {
+            this.from = from;
+            this.to = to;
+            this.jacobi = jacobi;
+        }
+
+        @Override
+        protected Double compute() {
+            final int grain = Math.max(16, codec.getStatesCount() / (8 * sweepPool.getParallelism()));
+            if (to - from <= grain) {
+                double delta = 0.0;
+                for (int i = from; i < to; i++)
+                    delta = Math.max(delta, backupState(i, jacobi));
+                return delta;
+            }
 
-        while (actionIterator.hasNext()) {
-            Action action = actionIterator.next();
-            if (!validateAction(state, action))
+            final int mid = (from + to) >>> 1;
+            SweepTask left = new SweepTask(from, mid, jacobi);
+            left.fork();
+            double rightDelta = new SweepTask(mid, to, jacobi).compute();
+            return Math.max(left.join(), rightDelta);
+        }
+    }
+
+    protected double computeValueIteration(State state) {
+        double delta = 0.0;
+        double value = Double.POSITIVE_INFINITY;
+
+        final int s = codec.encode(state);
+        for (int a = 0; a < codec.getActionsCount(); a++) {
+            if (!codec.isValid(s, a))
                 continue;
 
+            final Action action = codec.getAction(a);
             double oldQ = qTable.getQ(state, action);
-            double newQ = evaluateQ(state, action);
+            double newQ = evaluateQ(s, a);
             qTable.setQ(state, action, newQ);
+            // tables with reduced precision round Q: deltas and values refer to the stored Q
+            newQ = qTable.getQ(state, action);
             updatedStateActions++;
 
             delta = Math.max(delta, Math.abs(newQ - oldQ));
+            value = Math.min(value, newQ);
         }
 
+        pdsKernel.setValue(s, value);
         return delta;
     }
 
-    private double evaluateQ(State s, Action a) {
+    private double evaluateQ(int s, int a) {
         double cost = 0.0;
         // compute reconfiguration cost
-        if (a.getDelta() != 0)
+        if (codec.getAction(a).getDelta() != 0)
             cost += this.getwReconf();
         // from s,a compute pds
-        State pds = StateUtils.computePostDecisionState(s, a, this);
+        final int pds = codec.pds(s, a);
         // compute deployment cost using pds wighted on wRes
-        cost += StateUtils.computeDeploymentCostNormalized(pds, this) * this.getwResources();
-        // for each lambda level with p != 0 in s.getLambda() row
-        Set<Integer> possibleLambdas = getpMatrix().getColLabels(s.getLambda());
-        for (int lambda : possibleLambdas) {
-            // change pds.lambda to lambda
-            pds.setLambda(lambda);
-            // get Q(s, a) using the greedy action selection policy
-            // from post decision state with lambda as pds.lambda
-            Action greedyAction = getActionSelectionPolicy().selectAction(pds);
-            double q = qTable.getQ(pds, greedyAction);
-            // get transition probability from s.lambda to lambda level
-            double p = getpMatrix().getValue(s.getLambda(), lambda);
-            // compute slo violation cost
-            double pdCost = StateUtils.computeSLOCost(pds, this) * this.getwSLO();
-
-            cost += p * (pdCost + getGamma() * q);
+        cost += StateUtils.computeDeploymentCostNormalized(codec.getState(pds), this) * this.getwResources();
+        // expected slo cost and greedy value over the lambda levels reachable from s.getLambda()
+        return pdsKernel.backup(cost, pds, getpMatrix(), sloCost);
+    }
+
+    /**
+     * Expected cost to go from each post-decision state w.r.t. the planned Q, i.e. Q(s, a)
+     * minus the reconfiguration and resources costs for any (s, a) leading to it.
+     * @return values indexed as the states of getStateCodec()
+     */
+    protected double[] computePostDecisionValues() {
+        if (sloCosts == null)
+            prepareSweep();
+        else
+            pdsKernel.refresh(qFunction);
+
+        double[] values = new double[codec.getStatesCount()];
+        for (int pds = 0; pds < values.length; pds++)
+            values[pds] = pdsKernel.postDecisionValue(pds, getpMatrix(), sloCost);
+        return values;
+    }
+
+    protected StateCodec getStateCodec() {
+        return codec;
+    }
+
+    /**
+     * Materializes the greedy policy after planning, so that online decisions are array lookups.
+     * The dumped policy is loaded instead if planning did not update the loaded Q.
+     */
+    protected void compilePolicy() {
+        if (!(getActionSelectionPolicy() instanceof CompiledGreedyActionSelectionPolicy))
+            return;
+
+        CompiledGreedyActionSelectionPolicy policy = (CompiledGreedyActionSelectionPolicy) getActionSelectionPolicy();
+        if (PolicyIOUtils.shouldLoadPolicy(Configuration.getInstance()) && updatedStateActions == 0) {
+            File f = PolicyIOUtils.getFileForLoading(this.operator, "greedyPolicy");
+            if (f.isFile())
+                policy.load(f, codec);
         }
-        return cost;
+        if (!policy.isCompiled())
+            policy.compile(codec);
     }
 
     @Override
@@ -179,7 +399,8 @@ public class ValueIterationOM extends DynamicProgrammingOM implements ActionSele
 
     @Override
     protected ActionSelectionPolicy initActionSelectionPolicy() {
-        return ActionSelectionPolicyFactory.getPolicy(ActionSelectionPolicyType.GREEDY, this);
+        // greedy until compiled
+        return new CompiledGreedyActionSelectionPolicy(this);
     }
 
     public double computeSLOViolationProbability (State s, Action a) {
@@ -234,6 +455,10 @@ public class ValueIterationOM extends DynamicProgrammingOM implements ActionSele
     public void savePolicy()
     {
         this.qTable.dump(PolicyIOUtils.getFileForDumping(this.operator, "qTable"));
+        if (getActionSelectionPolicy() instanceof CompiledGreedyActionSelectionPolicy) {
+            ((CompiledGreedyActionSelectionPolicy) getActionSelectionPolicy())
+                    .dump(PolicyIOUtils.getFileForDumping(this.operator, "greedyPolicy"));
+        }
 
         //StateIterator stateIterator = new StateIterator(this.getStateRepresentation(), this.operator.getMaxParallelism(),
         //        ComputingInfrastructure.getInfrastructure(), this.getInputRateLevels());
@@ -8,14 +8,14 @@ import it.uniroma2.dspsim.dsp.edf.om.request.SplitQReconfigurationScore;
 import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
 import it.uniroma2.dspsim.dsp.edf.om.rl.MapBasedQTable;
 import it.uniroma2.dspsim.dsp.edf.om.rl.QTable;
-import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicy;
 import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicyCallback;
-import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.concrete.GreedyActionSelectionPolicy;
+import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.concrete.CompiledGreedyActionSelectionPolicy;
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ActionIterator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateUtils;
 import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.utils.matrix.TransitionKernel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,7 +23,6 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Set;
 
 public class ValueIterationSplitQOM extends ValueIterationOM {
 
@@ -38,7 +37,7 @@ public class ValueIterationSplitQOM extends ValueIterationOM {
 
 	private QTable respTimeQ;
 
-	private ActionSelectionPolicy freeReconfigurationActionSelection;
+	private CompiledGreedyActionSelectionPolicy freeReconfigurationActionSelection;
 
 	double MAX_Q_RESPTIME; // TODO
 
@@ -46,7 +45,8 @@ public class ValueIterationSplitQOM extends ValueIterationOM {
 		super(operator);
 		MAX_Q_RESPTIME = 10*operator.getSloRespTime(); // TODO
 
-		freeReconfigurationActionSelection = new GreedyActionSelectionPolicy(new FreeReconfSelectionPolicyCallback());
+		freeReconfigurationActionSelection = new CompiledGreedyActionSelectionPolicy(new FreeReconfSelectionPolicyCallback());
+		freeReconfigurationActionSelection.compile(getStateCodec());
 	}
 
 	@Override
@@ -62,6 +62,12 @@ public class ValueIterationSplitQOM extends ValueIterationOM {
 		this.voidPolicyRespTimeQ = new MapBasedQTable(0.0);
 	}
 
+	@Override
+	protected boolean supportsParallelSweeps() {
+		// split Q tables are map-based and updated in place
+		return false;
+	}
+
 		@Override
 	protected double computeValueIteration(State state) {
 		double delta = 0.0;
@@ -105,14 +111,15 @@ public class ValueIterationSplitQOM extends ValueIterationOM {
 		/* we just need a copy of the state object */
 		State pds = StateUtils.computePostDecisionState(s, ActionIterator.getDoNothingAction(), this);
 
-		Set<Integer> possibleLambdas = getpMatrix().getColLabels(s.getLambda());
-		for (int lambda : possibleLambdas) {
+		final TransitionKernel kernel = getpMatrix();
+		for (int k = kernel.rowStart(s.getLambda()); k < kernel.rowEnd(s.getLambda()); k++) {
+			final int lambda = kernel.column(k);
 			// change pds.lambda to lambda
 			pds.setLambda(lambda); // this is now the next state
 			Action greedyAction = ActionIterator.getDoNothingAction();
 			double q = respTimeQ.getQ(pds, greedyAction);
 			// get transition probability from s.lambda to lambda level
-			double p = getpMatrix().getValue(s.getLambda(), lambda);
+			double p = kernel.probability(k);
 
 			double pdCost = StateUtils.computeRespTime(pds, this);
 			if (Double.isInfinite(pdCost) || Double.isNaN(pdCost)) {
@@ -132,8 +139,9 @@ public class ValueIterationSplitQOM extends ValueIterationOM {
 		// compute deployment cost using pds wighted on wRes
 		cost += StateUtils.computeDeploymentCostNormalized(pds, this);
 		// for each lambda level with p != 0 in s.getLambda() row
-		Set<Integer> possibleLambdas = getpMatrix().getColLabels(s.getLambda());
-		for (int lambda : possibleLambdas) {
+		final TransitionKernel kernel = getpMatrix();
+		for (int k = kernel.rowStart(s.getLambda()); k < kernel.rowEnd(s.getLambda()); k++) {
+			final int lambda = kernel.column(k);
 			// change pds.lambda to lambda
 			pds.setLambda(lambda);
 			// get Q(s, a) using the greedy action selection policy
@@ -141,7 +149,7 @@ public class ValueIterationSplitQOM extends ValueIterationOM {
 			Action greedyAction = getActionSelectionPolicy().selectAction(pds);
 			double q = resourcesQ.getQ(pds, greedyAction);
 			// get transition probability from s.lambda to lambda level
-			double p = getpMatrix().getValue(s.getLambda(), lambda);
+			double p = kernel.probability(k);
 
 			cost += p * getGamma() * q;
 		}
@@ -157,8 +165,9 @@ public class ValueIterationSplitQOM extends ValueIterationOM {
 		// from s,a compute pds
 		State pds = StateUtils.computePostDecisionState(s, a, this);
 		// for each lambda level with p != 0 in s.getLambda() row
-		Set<Integer> possibleLambdas = getpMatrix().getColLabels(s.getLambda());
-		for (int lambda : possibleLambdas) {
+		final TransitionKernel kernel = getpMatrix();
+		for (int k = kernel.rowStart(s.getLambda()); k < kernel.rowEnd(s.getLambda()); k++) {
+			final int lambda = kernel.column(k);
 			// change pds.lambda to lambda
 			pds.setLambda(lambda);
 			// get Q(s, a) using the greedy action selection policy
@@ -166,7 +175,7 @@ public class ValueIterationSplitQOM extends ValueIterationOM {
 			Action greedyAction = getActionSelectionPolicy().selectAction(pds);
 			double q = reconfigurationQ.getQ(pds, greedyAction);
 			// get transition probability from s.lambda to lambda level
-			double p = getpMatrix().getValue(s.getLambda(), lambda);
+			double p = kernel.probability(k);
 
 			cost += p * getGamma() * q;
 		}
@@ -179,8 +188,9 @@ public class ValueIterationSplitQOM extends ValueIterationOM {
 		// from s,a compute pds
 		State pds = StateUtils.computePostDecisionState(s, a, this);
 		// for each lambda level with p != 0 in s.getLambda() row
-		Set<Integer> possibleLambdas = getpMatrix().getColLabels(s.getLambda());
-		for (int lambda : possibleLambdas) {
+		final TransitionKernel kernel = getpMatrix();
+		for (int k = kernel.rowStart(s.getLambda()); k < kernel.rowEnd(s.getLambda()); k++) {
+			final int lambda = kernel.column(k);
 			// change pds.lambda to lambda
 			pds.setLambda(lambda);
 			// get Q(s, a) using the greedy action selection policy
@@ -188,7 +198,7 @@ public class ValueIterationSplitQOM extends ValueIterationOM {
 			Action greedyAction = getActionSelectionPolicy().selectAction(pds);
 			double q = sloQ.getQ(pds, greedyAction);
 			// get transition probability from s.lambda to lambda level
-			double p = getpMatrix().getValue(s.getLambda(), lambda);
+			double p = kernel.probability(k);
 			// compute slo violation cost
 			double pdCost = StateUtils.computeSLOCost(pds, this);
 
@@ -205,8 +215,9 @@ public class ValueIterationSplitQOM extends ValueIterationOM {
 		// from s,a compute pds
 		State pds = StateUtils.computePostDecisionState(s, a, this);
 		// for each lambda level with p != 0 in s.getLambda() row
-		Set<Integer> possibleLambdas = getpMatrix().getColLabels(s.getLambda());
-		for (int lambda : possibleLambdas) {
+		final TransitionKernel kernel = getpMatrix();
+		for (int k = kernel.rowStart(s.getLambda()); k < kernel.rowEnd(s.getLambda()); k++) {
+			final int lambda = kernel.column(k);
 			// change pds.lambda to lambda
 			pds.setLambda(lambda); // this is now the next state
 			// get Q(s, a) using the greedy action selection policy
@@ -214,7 +225,7 @@ public class ValueIterationSplitQOM extends ValueIterationOM {
 			Action greedyAction = getActionSelectionPolicy().selectAction(pds);
 			double q = respTimeQ.getQ(pds, greedyAction);
 			// get transition probability from s.lambda to lambda level
-			double p = getpMatrix().getValue(s.getLambda(), lambda);
+			double p = kernel.probability(k);
 
 			double pdCost = StateUtils.computeRespTime(pds, this);
 			if (Double.isInfinite(pdCost) || Double.isNaN(pdCost)) {
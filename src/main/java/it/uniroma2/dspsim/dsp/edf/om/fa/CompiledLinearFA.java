@@ -0,0 +1,188 @@
+package it.uniroma2.dspsim.dsp.edf.om.fa;
+
+import it.uniroma2.dspsim.dsp.edf.om.RewardBasedOM;
+import it.uniroma2.dspsim.dsp.edf.om.fa.features.Feature;
+import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
+import it.uniroma2.dspsim.utils.Tuple2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Linear function approximation over a list of features, compiled for the
+ * (state, action) pairs of a StateCodec.
+ *
+ * The weights of all the features are stored in a single contiguous array.
+ * For each valid (state, action) pair, the offsets of the weights that are evaluated
+ * (at most one per feature) and of those that are updated (the ones of the active features)
+ * are precomputed and stored in CSR form, so that evaluations and updates are sparse
+ * dot products with no allocation.
+ * The weights can be converted from and to the weights of the features, which are
+ * still used for serialization.
+ */
+public class CompiledLinearFA {
+
+    private final StateCodec codec;
+    private final int actionsCount;
+
+    /* evaluated weights of (s,a) in evalOffsets[evalStart[r] .. evalStart[r+1]), with r = s*actionsCount+a */
+    private final int[] evalStart;
+    private final int[] evalOffsets;
+    /* updated weights of (s,a), likewise */
+    private final int[] updateStart;
+    private final int[] updateOffsets;
+
+    private final double[] weights;
+
+    /* weights of feature f in [featureStart[f], featureStart[f+1]), with their feature keys */
+    private final int[] featureStart;
+    private final Object[] keys;
+
+    private CompiledLinearFA(StateCodec codec, int[] evalStart, int[] evalOffsets, int[] updateStart,
+                             int[] updateOffsets, int[] featureStart, Object[] keys) {
+        this.codec = codec;
+        this.actionsCount = codec.getActionsCount();
+        this.evalStart = evalStart;
+        this.evalOffsets = evalOffsets;
+        this.updateStart = updateStart;
+        this.updateOffsets = updateOffsets;
+        this.featureStart = featureStart;
+        this.keys = keys;
+        this.weights = new double[keys.length];
+    }
+
+    /**
+     * Maps the weights of every valid (state, action) pair of the codec to flat offsets,
+     * and imports the current weights of the features.
+     */
+    public static CompiledLinearFA compile(List<Feature> features, StateCodec codec, RewardBasedOM om) {
+        final int featuresCount = features.size();
+        final int rows = codec.getStatesCount() * codec.getActionsCount();
+
+        List<Map<Object, Integer>> keyIds = new ArrayList<>(featuresCount);
+        for (int f = 0; f < featuresCount; f++)
+            keyIds.add(new HashMap<>());
+
+        // local ids of the evaluated weights, feature by feature (-1 if none), and whether they are updated
+        int[] localIds = new int[rows * featuresCount];
+        boolean[] updated = new boolean[rows * featuresCount];
+        int evalCount = 0, updateCount = 0;
+        for (int s = 0; s < codec.getStatesCount(); s++) {
+            final State state = codec.getState(s);
+            for (int a = 0; a < codec.getActionsCount(); a++) {
+                final int row = s * codec.getActionsCount() + a;
+                for (int f = 0; f < featuresCount; f++) {
+                    final int i = row * featuresCount + f;
+                    localIds[i] = -1;
+                    if (!codec.isValid(s, a))
+                        continue;
+                    final Feature feature = features.get(f);
+                    final Action action = codec.getAction(a);
+                    final Object key = feature.getWeightKey(state, action, om);
+                    if (key == null)
+                        continue;
+                    final Map<Object, Integer> ids = keyIds.get(f);
+                    localIds[i] = ids.computeIfAbsent(key, k -> ids.size());
+                    updated[i] = feature.isActive(state, action, om);
+                    evalCount++;
+                    if (updated[i])
+                        updateCount++;
+                }
+            }
+        }
+
+        int[] featureStart = new int[featuresCount + 1];
+        for (int f = 0; f < featuresCount; f++)
+            featureStart[f + 1] = featureStart[f] + keyIds.get(f).size();
+
+        Object[] keys = new Object[featureStart[featuresCount]];
+        for (int f = 0; f < featuresCount; f++) {
+            for (Map.Entry<Object, Integer> e : keyIds.get(f).entrySet())
+                keys[featureStart[f] + e.getValue()] = e.getKey();
+        }
+
+        int[] evalStart = new int[rows + 1];
+        int[] evalOffsets = new int[evalCount];
+        int[] updateStart = new int[rows + 1];
+        int[] updateOffsets = new int[updateCount];
+        int e = 0, u = 0;
+        for (int row = 0; row < rows; row++) {
+            evalStart[row] = e;
+            updateStart[row] = u;
+            for (int f = 0; f < featuresCount; f++) {
+                final int i = row * featuresCount + f;
+                if (localIds[i] < 0)
+                    continue;
+                evalOffsets[e++] = featureStart[f] + localIds[i];
+                if (updated[i])
+                    updateOffsets[u++] = featureStart[f] + localIds[i];
+            }
+        }
+        evalStart[rows] = e;
+        updateStart[rows] = u;
+
+        CompiledLinearFA fa = new CompiledLinearFA(codec, evalStart, evalOffsets, updateStart, updateOffsets,
+                featureStart, keys);
+        fa.importWeights(features);
+        return fa;
+    }
+
+    public double evaluate(int state, int action) {
+        final int row = state * actionsCount + action;
+        double q = 0.0;
+        for (int i = evalStart[row]; i < evalStart[row + 1]; i++)
+            q += weights[evalOffsets[i]];
+        return q;
+    }
+
+    public double evaluate(State state, Action action) {
+        return evaluate(codec.encode(state), action.getIndex());
+    }
+
+    /**
+     * Adds value to the weights of the features active in (state, action).
+     */
+    public void update(int state, int action, double value) {
+        final int row = state * actionsCount + action;
+        for (int i = updateStart[row]; i < updateStart[row + 1]; i++)
+            weights[updateOffsets[i]] += value;
+    }
+
+    public void update(State state, Action action, double value) {
+        update(codec.encode(state), action.getIndex(), value);
+    }
+
+    /**
+     * Copies the weights of the features; weights not reachable from any (state, action) pair are ignored.
+     */
+    public void importWeights(List<Feature> features) {
+        for (int f = 0; f < features.size(); f++) {
+            Map<Object, Integer> offsets = new HashMap<>();
+            for (int i = featureStart[f]; i < featureStart[f + 1]; i++)
+                offsets.put(keys[i], i);
+            for (Tuple2<Object, Double> w : features.get(f).getWeights()) {
+                final Integer offset = offsets.get(w.getK());
+                if (offset != null)
+                    weights[offset] = w.getV();
+            }
+        }
+    }
+
+    /**
+     * Copies the weights back into the features.
+     */
+    public void exportWeights(List<Feature> features) {
+        for (int f = 0; f < features.size(); f++) {
+            for (int i = featureStart[f]; i < featureStart[f + 1]; i++)
+                features.get(f).setWeight(keys[i], weights[i]);
+        }
+    }
+
+    public int getWeightsCount() {
+        return weights.length;
+    }
+}
@@ -4,6 +4,9 @@ import it.uniroma2.dspsim.dsp.edf.om.RewardBasedOM;
 import it.uniroma2.dspsim.dsp.edf.om.fa.features.Feature;
 import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.DenseStateIndexer;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
 
 import java.io.*;
 import java.util.ArrayList;
@@ -13,11 +16,56 @@ public class FunctionApproximationManager {
 
     private List<Feature> features;
 
+    /* if not null, evaluations and updates use the compiled features */
+    private CompiledLinearFA compiled = null;
+    private StateCodec codec;
+    private RewardBasedOM om;
+
     public FunctionApproximationManager() {
         this.features = new ArrayList<>();
     }
 
+    /* larger state spaces are not compiled, as compilation takes memory linear in their size */
+    private static final long MAX_COMPILED_PAIRS = 1L << 21;
+
+    /**
+     * Compiles the features for the (state, action) pairs of the codec.
+     * Features must not be added or removed afterwards.
+     */
+    public void compile(StateCodec codec, RewardBasedOM om) {
+        this.codec = codec;
+        this.om = om;
+        this.compiled = CompiledLinearFA.compile(this.features, codec, om);
+    }
+
+    /**
+     * Compiles the features for the state space of om, unless it has more than
+     * MAX_COMPILED_PAIRS (state, action) pairs: features are then evaluated one by one.
+     */
+    public void compile(RewardBasedOM om) {
+        final ComputingInfrastructure infrastructure = ComputingInfrastructure.getInfrastructure();
+        final int resTypes = infrastructure.getNodeTypes().length;
+        final int maxParallelism = om.getOperator().getMaxParallelism();
+        try {
+            final DenseStateIndexer indexer = new DenseStateIndexer(resTypes, maxParallelism, om.getInputRateLevels());
+            if ((long) indexer.size() * (1 + 2 * resTypes) > MAX_COMPILED_PAIRS)
+                return;
+        } catch (ArithmeticException e) {
+            // not even indexable
+            return;
+        }
+
+        compile(new StateCodec(om.getStateRepresentation(), maxParallelism, infrastructure, om.getInputRateLevels()), om);
+    }
+
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
     public double evaluateQ(State state, Action action, RewardBasedOM om) {
+        if (compiled != null)
+            return compiled.evaluate(state, action);
+
         double q = 0.0;
         for (Feature f : this.features) {
             q += f.evaluate(state, action, om);
@@ -25,6 +73,20 @@ public class FunctionApproximationManager {
         return q;
     }
 
+    /**
+     * Adds updateValue to the weights of the features active in (state, action).
+     */
+    public void update(double updateValue, State state, Action action, RewardBasedOM om) {
+        if (compiled != null) {
+            compiled.update(state, action, updateValue);
+            return;
+        }
+
+        for (Feature f : this.features) {
+            f.update(updateValue, state, action, om);
+        }
+    }
+
     public void addFeature(Feature feature) {
         this.features.add(feature);
     }
@@ -37,11 +99,25 @@ public class FunctionApproximationManager {
         return this.features.remove(position);
     }
 
+    /**
+     * If compiled, the weights of the features are not kept up to date:
+     * use exportWeights() to read them.
+     */
     public List<Feature> getFeatures() {
         return features;
     }
 
+    /**
+     * Copies the compiled weights, if any, into the features.
+     */
+    public void exportWeights() {
+        if (compiled != null)
+            compiled.exportWeights(this.features);
+    }
+
     public void dump(File f) {
+        // the features are serialized, as before compilation
+        exportWeights();
         try {
             FileOutputStream fileOut = new FileOutputStream(f.getAbsolutePath());
             ObjectOutputStream out = new ObjectOutputStream(fileOut);
@@ -63,6 +139,9 @@ public class FunctionApproximationManager {
             in.close();
             fileIn.close();
 
+            if (compiled != null)
+                compile(codec, om);
+
         } catch (IOException i) {
             i.printStackTrace();
         } catch (ClassNotFoundException c) {
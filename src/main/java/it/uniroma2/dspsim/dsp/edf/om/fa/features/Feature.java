@@ -28,5 +28,12 @@ public abstract class Feature implements Serializable {
     public abstract double evaluate(State state, Action action, RewardBasedOM om);
     public abstract List<Tuple2<Object, Double>> getWeights();
 
+    /**
+     * Key (as returned by getWeights) of the weight used to evaluate (state, action),
+     * or null if the feature evaluates to 0.
+     */
+    public abstract Object getWeightKey(State state, Action action, RewardBasedOM om);
+    public abstract void setWeight(Object key, double value);
+
     public abstract int getWeightsCount();
 }
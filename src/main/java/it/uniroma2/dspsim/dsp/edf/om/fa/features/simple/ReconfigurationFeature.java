@@ -47,6 +47,16 @@ public class ReconfigurationFeature extends Feature {
         return Collections.singletonList(new Tuple2<>(0, this.weights[0]));
     }
 
+    @Override
+    public Object getWeightKey(State state, Action action, RewardBasedOM om) {
+        return isActive(state, action, om) ? 0 : null;
+    }
+
+    @Override
+    public void setWeight(Object key, double value) {
+        this.weights[0] = value;
+    }
+
     @Override
     public int getWeightsCount() {
         return this.weights.length;
@@ -85,6 +85,18 @@ public abstract class Tiling extends Feature implements Serializable {
         return weights;
     }
 
+    @Override
+    public Object getWeightKey(State state, Action action, RewardBasedOM om) {
+        // as in evaluate, coordinates out of the tiling are mapped to the closest tile
+        return this.shape.map(sa2Coordinate3D(state, action, om), this);
+    }
+
+    @Override
+    public void setWeight(Object key, double value) {
+        Coordinate3D coordinate3D = (Coordinate3D) key;
+        this.weights.setValue((int) coordinate3D.getX(), (int) coordinate3D.getY(), (int) coordinate3D.getZ(), value);
+    }
+
     private boolean contains(State state, Action action, RewardBasedOM om) {
         Coordinate3D coordinate3D = sa2Coordinate3D(state, action, om);
 
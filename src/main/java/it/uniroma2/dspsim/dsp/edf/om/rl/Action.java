@@ -6,9 +6,9 @@ import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
 import java.util.Objects;
 
 public class Action extends AbstractAction {
-    private int delta;
-    private int resTypeIndex;
-    private int index;
+    private final int delta;
+    private final int resTypeIndex;
+    private final int index;
 
     public Action (int index, int delta, int resTypeIndex) {
         this.index = index;
@@ -1,39 +1,105 @@
 package it.uniroma2.dspsim.dsp.edf.om.rl;
 
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.DenseStateIndexer;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.PolicyIOUtils;
+import it.uniroma2.dspsim.utils.matrix.BinaryTableFile;
+import it.uniroma2.dspsim.utils.matrix.DoubleStore;
+import it.uniroma2.dspsim.utils.matrix.StoragePrecision;
 
 import java.io.*;
+import java.util.Arrays;
+import java.util.Objects;
 
 public class ArrayBasedQTable implements QTable, Serializable {
 
+	/* as computed for the table before dense indexing, so that older dumps can be loaded */
+	private static final long serialVersionUID = -3073613467400132190L;
+
 	private double arr[];
+	/* set in place of arr with reduced precision, or when loaded from a binary table file */
+	private transient DoubleStore store;
 	private int size;
 	private int maxActionHash;
+	/* if null, states are indexed by their (sparse) hash code */
+	private DenseStateIndexer indexer;
 
 	public ArrayBasedQTable(double initializationValue, int maxStateHash, int maxActionHash) {
-		this.size = (1+maxActionHash)*(1+maxStateHash);
+		this.size = Math.multiplyExact(1+maxActionHash, 1+maxStateHash);
 		arr = new double[size];
-		for (int i = 0; i<size; i++) {
-			arr[i] = initializationValue;
+		Arrays.fill(arr, initializationValue);
+
+		this.maxActionHash = maxActionHash;
+	}
+
+	/**
+	 * Densely packed table, with exactly one row per valid (k, lambda) state.
+	 */
+	public ArrayBasedQTable(double initializationValue, DenseStateIndexer indexer, int maxActionHash) {
+		this(initializationValue, indexer, maxActionHash, StoragePrecision.DOUBLE, 0.0);
+	}
+
+	/**
+	 * Densely packed table, storing values with the given precision.
+	 * @param bound upper bound of Q values, for quantized tables
+	 */
+	public ArrayBasedQTable(double initializationValue, DenseStateIndexer indexer, int maxActionHash,
+							StoragePrecision precision, double bound) {
+		this.size = Math.multiplyExact(1+maxActionHash, indexer.size());
+		if (precision == StoragePrecision.DOUBLE) {
+			arr = new double[size];
+			Arrays.fill(arr, initializationValue);
+		} else {
+			store = precision.newStore(size, bound);
+			for (int i = 0; i < size; i++)
+				store.set(i, initializationValue);
 		}
 
 		this.maxActionHash = maxActionHash;
+		this.indexer = indexer;
+	}
+
+	private int index(State s, AbstractAction a) {
+		final int stateIndex = indexer != null ? indexer.index(s) : s.hashCode();
+		return (maxActionHash + 1)*stateIndex + a.hashCode();
 	}
 
 	@Override
 	public double getQ(State s, AbstractAction a) {
-		int index = (maxActionHash + 1)*s.hashCode() + a.hashCode();
-		return arr[index];
+		final int i = index(s, a);
+		return arr != null ? arr[i] : store.get(i);
 	}
 
 	@Override
 	public void setQ(State s, AbstractAction a, double value) {
-		int index = (maxActionHash + 1)*s.hashCode() + a.hashCode();
-		arr[index]	= value;
+		final int i = index(s, a);
+		if (arr != null)
+			arr[i] = value;
+		else
+			store.set(i, value);
+	}
+
+	private int[] shape() {
+		if (indexer == null)
+			return new int[]{size, maxActionHash, 0, 0, 0};
+		return new int[]{size, maxActionHash, indexer.getResTypes(), indexer.getMaxParallelism(),
+				indexer.getLambdaLevels()};
 	}
 
 	@Override
 	public void dump(File f) {
+		if (PolicyIOUtils.shouldDumpBinary()) {
+			try {
+				if (arr != null)
+					BinaryTableFile.write(f, BinaryTableFile.KIND_Q_TABLE, shape(), arr);
+				else
+					BinaryTableFile.write(f, BinaryTableFile.KIND_Q_TABLE, shape(), store);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+
 		try {
 			FileOutputStream fileOut = new FileOutputStream(f.getAbsolutePath());
 			ObjectOutputStream out = new ObjectOutputStream(fileOut);
@@ -47,19 +113,68 @@ public class ArrayBasedQTable implements QTable, Serializable {
 		}
 	}
 
+	/**
+	 * Values held in a store are written as a temporary array, leaving the store in use.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("arr", arr != null ? arr : store.toArray());
+		fields.put("size", size);
+		fields.put("maxActionHash", maxActionHash);
+		fields.put("indexer", indexer);
+		out.writeFields();
+	}
+
+	/**
+	 * Moves the values of a table indexed by hash code to the dense layout.
+	 */
+	private double[] reindex(double sparse[]) {
+		final int hashCodes[] = indexer.hashCodes();
+		double dense[] = new double[size];
+		for (int s = 0; s < hashCodes.length; s++) {
+			final int from = (maxActionHash + 1) * hashCodes[s];
+			if (from + maxActionHash >= sparse.length)
+				throw new RuntimeException("Trying to load malformed QTable");
+			System.arraycopy(sparse, from, dense, (maxActionHash + 1) * s, maxActionHash + 1);
+		}
+		return dense;
+	}
+
 	@Override
 	public void load(File f) {
+		if (BinaryTableFile.isBinaryTableFile(f)) {
+			try {
+				BinaryTableFile table = BinaryTableFile.open(f, BinaryTableFile.KIND_Q_TABLE,
+						PolicyIOUtils.shouldVerifyChecksum());
+				table.checkShape(shape());
+				this.store = table.getData();
+				this.arr = null;
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+
 		try {
 			FileInputStream fileIn = new FileInputStream(f.getAbsolutePath());
 			ObjectInputStream in = new ObjectInputStream(fileIn);
 			ArrayBasedQTable loaded = (ArrayBasedQTable)  in.readObject();
-			if (loaded.size != this.size || loaded.maxActionHash != this.maxActionHash) {
-				throw new RuntimeException("Trying to load malformed QTable");
-			}
 			in.close();
 			fileIn.close();
 
+			if (loaded.indexer == null && this.indexer != null && loaded.maxActionHash == this.maxActionHash) {
+				// table indexed by hash code
+				this.arr = reindex(loaded.arr);
+				this.store = null;
+				return;
+			}
+			if (loaded.size != this.size || loaded.maxActionHash != this.maxActionHash ||
+					!Objects.equals(loaded.indexer, this.indexer)) {
+				throw new RuntimeException("Trying to load malformed QTable");
+			}
+
 			this.arr = loaded.arr;
+			this.store = null;
 		} catch (IOException i) {
 			i.printStackTrace();
 		} catch (ClassNotFoundException c) {
@@ -1,34 +1,99 @@
 package it.uniroma2.dspsim.dsp.edf.om.rl;
 
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.DenseStateIndexer;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.PolicyIOUtils;
+import it.uniroma2.dspsim.utils.matrix.BinaryTableFile;
+import it.uniroma2.dspsim.utils.matrix.DoubleStore;
+import it.uniroma2.dspsim.utils.matrix.StoragePrecision;
 
 import java.io.*;
+import java.util.Arrays;
+import java.util.Objects;
 
 public class ArrayBasedVTable implements VTable, Serializable {
 
+	/* as computed for the table before dense indexing, so that older dumps can be loaded */
+	private static final long serialVersionUID = -2120646525097528181L;
+
 	private double arr[];
+	/* set in place of arr with reduced precision, or when loaded from a binary table file */
+	private transient DoubleStore store;
 	private int size;
+	/* if null, states are indexed by their (sparse) hash code */
+	private DenseStateIndexer indexer;
 
 	public ArrayBasedVTable(double initializationValue, int maxStateHash) {
 		this.size = 1+maxStateHash;
 		arr = new double[size];
-		for (int i = 0; i<size; i++) {
-			arr[i] = initializationValue;
+		Arrays.fill(arr, initializationValue);
+	}
+
+	/**
+	 * Densely packed table, with exactly one entry per valid (k, lambda) state.
+	 */
+	public ArrayBasedVTable(double initializationValue, DenseStateIndexer indexer) {
+		this(initializationValue, indexer, StoragePrecision.DOUBLE, 0.0);
+	}
+
+	/**
+	 * Densely packed table, storing values with the given precision.
+	 * @param bound upper bound of V values, for quantized tables
+	 */
+	public ArrayBasedVTable(double initializationValue, DenseStateIndexer indexer, StoragePrecision precision,
+							double bound) {
+		this.size = indexer.size();
+		if (precision == StoragePrecision.DOUBLE) {
+			arr = new double[size];
+			Arrays.fill(arr, initializationValue);
+		} else {
+			store = precision.newStore(size, bound);
+			for (int i = 0; i < size; i++)
+				store.set(i, initializationValue);
 		}
+
+		this.indexer = indexer;
+	}
+
+	private int index(State s) {
+		return indexer != null ? indexer.index(s) : s.hashCode();
 	}
 
 	@Override
 	public double getV(State s) {
-		return arr[s.hashCode()];
+		final int i = index(s);
+		return arr != null ? arr[i] : store.get(i);
 	}
 
 	@Override
 	public void setV(State s, double value) {
-		arr[s.hashCode()]	= value;
+		final int i = index(s);
+		if (arr != null)
+			arr[i] = value;
+		else
+			store.set(i, value);
+	}
+
+	private int[] shape() {
+		if (indexer == null)
+			return new int[]{size, 0, 0, 0};
+		return new int[]{size, indexer.getResTypes(), indexer.getMaxParallelism(), indexer.getLambdaLevels()};
 	}
 
 	@Override
 	public void dump(File f) {
+		if (PolicyIOUtils.shouldDumpBinary()) {
+			try {
+				if (arr != null)
+					BinaryTableFile.write(f, BinaryTableFile.KIND_V_TABLE, shape(), arr);
+				else
+					BinaryTableFile.write(f, BinaryTableFile.KIND_V_TABLE, shape(), store);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+
 		try {
 			FileOutputStream fileOut = new FileOutputStream(f.getAbsolutePath());
 			ObjectOutputStream out = new ObjectOutputStream(fileOut);
@@ -42,19 +107,65 @@ public class ArrayBasedVTable implements VTable, Serializable {
 		}
 	}
 
+	/**
+	 * Values held in a store are written as a temporary array, leaving the store in use.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("arr", arr != null ? arr : store.toArray());
+		fields.put("size", size);
+		fields.put("indexer", indexer);
+		out.writeFields();
+	}
+
+	/**
+	 * Moves the values of a table indexed by hash code to the dense layout.
+	 */
+	private double[] reindex(double sparse[]) {
+		final int hashCodes[] = indexer.hashCodes();
+		double dense[] = new double[size];
+		for (int s = 0; s < hashCodes.length; s++) {
+			if (hashCodes[s] >= sparse.length)
+				throw new RuntimeException("Trying to load malformed VTable");
+			dense[s] = sparse[hashCodes[s]];
+		}
+		return dense;
+	}
+
 	@Override
 	public void load(File f) {
+		if (BinaryTableFile.isBinaryTableFile(f)) {
+			try {
+				BinaryTableFile table = BinaryTableFile.open(f, BinaryTableFile.KIND_V_TABLE,
+						PolicyIOUtils.shouldVerifyChecksum());
+				table.checkShape(shape());
+				this.store = table.getData();
+				this.arr = null;
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+
 		try {
 			FileInputStream fileIn = new FileInputStream(f.getAbsolutePath());
 			ObjectInputStream in = new ObjectInputStream(fileIn);
 			ArrayBasedVTable loaded = (ArrayBasedVTable)  in.readObject();
-			if (loaded.size != this.size) {
-				throw new RuntimeException("Trying to load malformed QTable");
-			}
 			in.close();
 			fileIn.close();
 
+			if (loaded.indexer == null && this.indexer != null) {
+				// table indexed by hash code
+				this.arr = reindex(loaded.arr);
+				this.store = null;
+				return;
+			}
+			if (loaded.size != this.size || !Objects.equals(loaded.indexer, this.indexer)) {
+				throw new RuntimeException("Trying to load malformed QTable");
+			}
+
 			this.arr = loaded.arr;
+			this.store = null;
 		} catch (IOException i) {
 			i.printStackTrace();
 		} catch (ClassNotFoundException c) {
@@ -2,11 +2,9 @@ package it.uniroma2.dspsim.dsp.edf.om.rl;
 
 import it.uniroma2.dspsim.Configuration;
 import it.uniroma2.dspsim.ConfigurationKeys;
-import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
-import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
-import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ActionIterator;
-import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.DenseStateIndexer;
 import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.utils.matrix.StoragePrecision;
 
 public class QTableFactory {
 
@@ -28,29 +26,30 @@ public class QTableFactory {
 
 	public static ArrayBasedQTable newArrayBasedQTable (int maxParallelism, int lambdaLevels)
 	{
-		long states = 0;
-
-		int maxActionHash = -1;
-		int maxStateHash = -1;
-		StateIterator stateIterator = new StateIterator(StateType.K_LAMBDA, maxParallelism,
-				ComputingInfrastructure.getInfrastructure(), lambdaLevels);
-		while (stateIterator.hasNext()) {
-			State state = stateIterator.next();
-			states++;
-			int h = state.hashCode();
-			if (h  > maxStateHash)
-				maxStateHash = h;
-			ActionIterator actionIterator = new ActionIterator();
-			while (actionIterator.hasNext()) {
-				Action action = actionIterator.next();
-				h = action.hashCode();
-				if (h > maxActionHash)
-					maxActionHash = h;
-			}
-		}
-
-		System.out.printf("States = %d\n", states);
-
-		return new ArrayBasedQTable(0.0, maxStateHash, maxActionHash);
+		final int resTypes = ComputingInfrastructure.getInfrastructure().getNodeTypes().length;
+		DenseStateIndexer indexer = new DenseStateIndexer(resTypes, maxParallelism, lambdaLevels);
+
+		System.out.printf("States = %d\n", indexer.size());
+
+		// see Action.hashCode(): scaling actions are hashed in 1..2*resTypes
+		return new ArrayBasedQTable(0.0, indexer, 2 * resTypes, getStoragePrecision(), getValueBound());
+	}
+
+	public static StoragePrecision getStoragePrecision()
+	{
+		return StoragePrecision.fromString(Configuration.getInstance()
+				.getString(ConfigurationKeys.RL_QTABLE_PRECISION, "double"));
+	}
+
+	/**
+	 * Upper bound of expected discounted costs, i.e. the max cost per step over (1 - gamma).
+	 */
+	public static double getValueBound()
+	{
+		Configuration conf = Configuration.getInstance();
+		final double maxCost = conf.getDouble(ConfigurationKeys.RL_OM_RECONFIG_WEIGHT_KEY, 0.33) +
+				conf.getDouble(ConfigurationKeys.RL_OM_SLO_WEIGHT_KEY, 0.33) +
+				conf.getDouble(ConfigurationKeys.RL_OM_RESOURCES_WEIGHT_KEY, 0.33);
+		return maxCost / (1.0 - conf.getDouble(ConfigurationKeys.DP_GAMMA_KEY, 0.99));
 	}
 }
@@ -2,9 +2,7 @@ package it.uniroma2.dspsim.dsp.edf.om.rl;
 
 import it.uniroma2.dspsim.Configuration;
 import it.uniroma2.dspsim.ConfigurationKeys;
-import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
-import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
-import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.DenseStateIndexer;
 import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
 
 public class VTableFactory {
@@ -12,10 +10,18 @@ public class VTableFactory {
 	private VTableFactory() {}
 
 	public static VTable newVTable(int maxParallelism, int lambdaLevels)
+	{
+		return newVTable(maxParallelism, lambdaLevels, QTableFactory.getValueBound());
+	}
+
+	/**
+	 * @param bound upper bound of the stored values, for quantized tables
+	 */
+	public static VTable newVTable(int maxParallelism, int lambdaLevels, double bound)
 	{
 		String impl = Configuration.getInstance().getString(ConfigurationKeys.RL_DEFAULT_QTABLE_IMPL, "map");
 		if (impl.equalsIgnoreCase("array"))
-			return newArrayBasedVTable(maxParallelism, lambdaLevels);
+			return newArrayBasedVTable(maxParallelism, lambdaLevels, bound);
 		else
 			return newMapBasedVTable();
 	}
@@ -27,16 +33,13 @@ public class VTableFactory {
 
 	public static ArrayBasedVTable newArrayBasedVTable (int maxParallelism, int lambdaLevels)
 	{
-		int maxStateHash = -1;
-		StateIterator stateIterator = new StateIterator(StateType.K_LAMBDA, maxParallelism,
-				ComputingInfrastructure.getInfrastructure(), lambdaLevels);
-		while (stateIterator.hasNext()) {
-			State state = stateIterator.next();
-			int h = state.hashCode();
-			if (h  > maxStateHash)
-				maxStateHash = h;
-		}
-
-		return new ArrayBasedVTable(0.0, maxStateHash);
+		return newArrayBasedVTable(maxParallelism, lambdaLevels, QTableFactory.getValueBound());
+	}
+
+	public static ArrayBasedVTable newArrayBasedVTable (int maxParallelism, int lambdaLevels, double bound)
+	{
+		final int resTypes = ComputingInfrastructure.getInfrastructure().getNodeTypes().length;
+		return new ArrayBasedVTable(0.0, new DenseStateIndexer(resTypes, maxParallelism, lambdaLevels),
+				QTableFactory.getStoragePrecision(), bound);
 	}
 }
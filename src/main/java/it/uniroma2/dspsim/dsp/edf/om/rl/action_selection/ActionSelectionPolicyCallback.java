@@ -3,7 +3,30 @@ package it.uniroma2.dspsim.dsp.edf.om.rl.action_selection;
 import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
 
+import java.util.List;
+
 public interface ActionSelectionPolicyCallback {
     boolean validateAction(State s, Action a);
     double evaluateAction(State s, Action a);
+
+    /**
+     * Whether evaluateActions() is cheaper than evaluating the actions one at a time.
+     * Greedy policies collect the valid actions for evaluateActions() only if it is.
+     */
+    default boolean supportsBatchEvaluation() {
+        return false;
+    }
+
+    /**
+     * Evaluates a set of actions in the same state.
+     * Callbacks backed by a neural network override it to evaluate all the actions
+     * with a single forward pass, along with supportsBatchEvaluation().
+     * @return value of each action, in the same order
+     */
+    default double[] evaluateActions(State s, List<Action> actions) {
+        double values[] = new double[actions.size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = evaluateAction(s, actions.get(i));
+        return values;
+    }
 }
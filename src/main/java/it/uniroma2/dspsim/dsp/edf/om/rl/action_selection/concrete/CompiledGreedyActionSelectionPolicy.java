@@ -0,0 +1,133 @@
+package it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.concrete;
+
+import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
+import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicy;
+import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicyCallback;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.PolicyIOUtils;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
+import it.uniroma2.dspsim.utils.matrix.BinaryTableFile;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Greedy policy materialized into an array of action indexes, indexed by the
+ * dense state index of a StateCodec: once compiled, selecting an action is a single array load.
+ *
+ * Until compile() is called, actions are selected by a GreedyActionSelectionPolicy over the same
+ * callback. When the action values change, update() recomputes the greedy action of a single state.
+ * Ties are broken as in GreedyActionSelectionPolicy, i.e. in favor of the lowest action index.
+ */
+public class CompiledGreedyActionSelectionPolicy extends ActionSelectionPolicy {
+
+    private final GreedyActionSelectionPolicy greedy;
+
+    private StateCodec codec = null;
+    /* greedy action index of each state, -1 if no action is valid */
+    private byte[] policy = null;
+
+    public CompiledGreedyActionSelectionPolicy(ActionSelectionPolicyCallback aspCallback) {
+        super(aspCallback);
+        this.greedy = new GreedyActionSelectionPolicy(aspCallback);
+    }
+
+    /**
+     * Computes the greedy action of every state of the codec.
+     * If action indexes do not fit a byte, the policy is left uncompiled, hence
+     * actions are still selected by greedy search.
+     */
+    public void compile(StateCodec codec) {
+        if (codec.getActionsCount() > Byte.MAX_VALUE) {
+            this.codec = null;
+            this.policy = null;
+            return;
+        }
+
+        this.codec = codec;
+        this.policy = new byte[codec.getStatesCount()];
+        for (int s = 0; s < policy.length; s++)
+            policy[s] = greedyAction(s);
+    }
+
+    /**
+     * Recomputes the greedy action of state s, e.g. after its action values changed.
+     * Does nothing if the policy is not compiled.
+     */
+    public void update(int s) {
+        if (policy != null)
+            policy[s] = greedyAction(s);
+    }
+
+    private byte greedyAction(int s) {
+        final State state = codec.getState(s);
+        int bestAction = -1;
+        double bestQ = 0.0;
+        for (int a = 0; a < codec.getActionsCount(); a++) {
+            final Action action = codec.getAction(a);
+            if (!this.aspCallback.validateAction(state, action))
+                continue;
+            final double q = this.aspCallback.evaluateAction(state, action);
+            if (bestAction < 0 || q < bestQ) {
+                bestQ = q;
+                bestAction = a;
+            }
+        }
+        return (byte) bestAction;
+    }
+
+    @Override
+    public Action selectAction(State s) {
+        if (policy == null)
+            return greedy.selectAction(s);
+
+        final int a = policy[codec.encode(s)];
+        return a < 0 ? null : codec.getAction(a);
+    }
+
+    public boolean isCompiled() {
+        return policy != null;
+    }
+
+    /**
+     * Greedy action index of state s, -1 if no action is valid.
+     */
+    public int getActionIndex(int s) {
+        return policy[s];
+    }
+
+    private static int[] shape(StateCodec codec) {
+        return new int[]{codec.getResTypes(), codec.getMaxParallelism(), codec.getLambdaLevels(),
+                codec.getActionsCount()};
+    }
+
+    /**
+     * Dumps the action indexes in the binary table format. Does nothing if the policy is not compiled.
+     */
+    public void dump(File f) {
+        if (policy == null)
+            return;
+        try {
+            BinaryTableFile.writeBytes(f, BinaryTableFile.KIND_POLICY, shape(codec), policy);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Loads a policy dumped for the state space of codec, in place of compiling it.
+     */
+    public void load(File f, StateCodec codec) {
+        try {
+            BinaryTableFile table = BinaryTableFile.open(f, BinaryTableFile.KIND_POLICY,
+                    PolicyIOUtils.shouldVerifyChecksum());
+            table.checkShape(shape(codec));
+
+            final byte[] loaded = table.getBytes(codec.getStatesCount());
+            this.codec = codec;
+            this.policy = loaded;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -6,6 +6,9 @@ import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicyCa
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
 import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ActionIterator;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class GreedyActionSelectionPolicy extends ActionSelectionPolicy {
 
     public GreedyActionSelectionPolicy(ActionSelectionPolicyCallback aspCallback) {
@@ -14,6 +17,9 @@ public class GreedyActionSelectionPolicy extends ActionSelectionPolicy {
 
     @Override
     public Action selectAction(State s) {
+        if (this.aspCallback.supportsBatchEvaluation())
+            return selectActionBatched(s);
+
         ActionIterator ait = new ActionIterator();
         Action newAction = null;
         double bestQ = 0.0;
@@ -33,4 +39,29 @@ public class GreedyActionSelectionPolicy extends ActionSelectionPolicy {
         //   System.out.println(newAction.getIndex());
         return newAction;
     }
+
+    private Action selectActionBatched(State s) {
+        ActionIterator ait = new ActionIterator();
+        List<Action> validActions = new ArrayList<>();
+        while (ait.hasNext()) {
+            final Action a = ait.next();
+            if (this.aspCallback.validateAction(s, a))
+                validActions.add(a);
+        }
+        if (validActions.isEmpty())
+            return null;
+
+        // all the actions are evaluated at once
+        final double q[] = this.aspCallback.evaluateActions(s, validActions);
+
+        Action newAction = null;
+        double bestQ = 0.0;
+        for (int i = 0; i < q.length; i++) {
+            if (newAction == null || q[i] < bestQ) {
+                bestQ = q[i];
+                newAction = validActions.get(i);
+            }
+        }
+        return newAction;
+    }
 }
@@ -11,35 +11,42 @@ public class ActionIterator implements Iterator<Action> {
      * (do nothing action), (-1, 0), (-1, 1), ...
      * (+1, 0), (+1, 1...)
      */
-    private int delta = -1;
-    private int resTypeIndex = -1;
+    private final Action[] actions;
     private int actionIndex = 0;
-    boolean first = true;
+
+    /* Actions are immutable: they are created once per number of node types and shared */
+    private static volatile Action[] cachedActions = new Action[0];
+
+    public ActionIterator() {
+        this.actions = getActions(ComputingInfrastructure.getInfrastructure().getNodeTypes().length);
+    }
+
+    private static Action[] getActions(int resTypes) {
+        Action[] cached = cachedActions;
+        if (cached.length == 1 + 2 * resTypes)
+            return cached;
+
+        cached = new Action[1 + 2 * resTypes];
+        cached[0] = new Action(0, 0, 0);
+        for (int i = 0; i < resTypes; i++) {
+            cached[1 + i] = new Action(1 + i, -1, i);
+            cached[1 + resTypes + i] = new Action(1 + resTypes + i, 1, i);
+        }
+        cachedActions = cached;
+        return cached;
+    }
 
     @Override
     public boolean hasNext() {
-        return delta < 1 || resTypeIndex < (ComputingInfrastructure.getInfrastructure().getNodeTypes().length-1);
+        return actionIndex < actions.length;
     }
 
     @Override
     public Action next() {
-        if (first) {
-            first = false;
-            return new Action(0,0, 0);
-        }
-
         if (!hasNext())
             return null;
 
-        ++resTypeIndex;
-        ++actionIndex;
-        if (resTypeIndex >= (ComputingInfrastructure.getInfrastructure().getNodeTypes().length)) {
-            // start generating actions (1, x)
-            resTypeIndex = 0;
-            delta = 1;
-        }
-
-        return new Action(actionIndex, delta, resTypeIndex);
+        return actions[actionIndex++];
     }
 
     static public Action getDoNothingAction()
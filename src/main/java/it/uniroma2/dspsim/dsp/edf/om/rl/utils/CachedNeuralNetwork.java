@@ -6,6 +6,9 @@ import it.uniroma2.dspsim.utils.HashCache;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.List;
 
 public class CachedNeuralNetwork {
 
@@ -16,14 +19,28 @@ public class CachedNeuralNetwork {
 	private HashCache<State, Object> networkCache = null;
 	private NeuralStateRepresentation neuralStateRepresentation;
 
+	private final int cacheSize;
+
 	public CachedNeuralNetwork(MultiLayerConfiguration conf, int cacheSize, NeuralStateRepresentation nnRepr) {
-		this.network = new MultiLayerNetwork(conf);
+		this(new MultiLayerNetwork(conf), cacheSize, nnRepr);
 		this.network.init();
+	}
+
+	private CachedNeuralNetwork(MultiLayerNetwork network, int cacheSize, NeuralStateRepresentation nnRepr) {
+		this.network = network;
+		this.cacheSize = cacheSize;
 		if (cacheSize > 0)
 			this.networkCache = new HashCache<>(cacheSize);
 		this.neuralStateRepresentation = nnRepr;
 	}
 
+	/**
+	 * Independent copy of the network parameters, with an empty cache.
+	 */
+	public CachedNeuralNetwork copy() {
+		return new CachedNeuralNetwork(this.network.clone(), cacheSize, neuralStateRepresentation);
+	}
+
 	public INDArray output(State s) {
 		if (networkCache != null && networkCache.containsKey(s)) {
 			++hits;
@@ -39,6 +56,68 @@ public class CachedNeuralNetwork {
 		return output;
 	}
 
+	/**
+	 * Evaluates the network on a minibatch of states, with a single forward pass
+	 * for all the states that are not cached.
+	 * @return matrix with the network output for each state, row by row
+	 */
+	public INDArray output(List<State> states) {
+		final int n = states.size();
+		INDArray cached[] = null;
+		int missing = n;
+
+		if (networkCache != null) {
+			cached = new INDArray[n];
+			for (int i = 0; i < n; i++) {
+				cached[i] = (INDArray) networkCache.get(states.get(i));
+				if (cached[i] != null) {
+					++hits;
+					--missing;
+				}
+			}
+		}
+
+		INDArray computed = null;
+		if (missing > 0) {
+			INDArray input = Nd4j.create(missing, neuralStateRepresentation.getRepresentationLength());
+			int row = 0;
+			for (int i = 0; i < n; i++) {
+				if (cached == null || cached[i] == null)
+					input.putRow(row++, buildInput(states.get(i)));
+			}
+			computed = this.network.output(input);
+
+			if (missing == n && networkCache == null)
+				return computed;
+		}
+
+		final int outputs = computed != null ? computed.columns() : cached[0].columns();
+		INDArray output = Nd4j.create(n, outputs);
+		int row = 0;
+		for (int i = 0; i < n; i++) {
+			if (cached != null && cached[i] != null) {
+				output.putRow(i, cached[i]);
+			} else {
+				INDArray rowOutput = computed.getRow(row++);
+				output.putRow(i, rowOutput);
+				if (networkCache != null)
+					networkCache.put(states.get(i), rowOutput.dup());
+			}
+		}
+
+		return output;
+	}
+
+	/**
+	 * Evaluates the network on the first count codec states in states, with inputs
+	 * filled from their cached features. Outputs are not cached.
+	 */
+	public INDArray output(int[] states, int count, StateFeatureCache features) {
+		INDArray input = Nd4j.create(count, features.getFeaturesCount());
+		features.fill(states, count, input);
+		return this.network.output(input);
+	}
+
 	private INDArray buildInput(State state) {
 		return state.arrayRepresentation(this.neuralStateRepresentation);
 	}
@@ -0,0 +1,166 @@
+package it.uniroma2.dspsim.dsp.edf.om.rl.utils;
+
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.factory.StateFactory;
+
+import java.io.Serializable;
+
+/**
+ * Perfect hash of (k, lambda) states onto [0, size()).
+ *
+ * Deployments with total parallelism in 1..maxParallelism are ranked combinatorially
+ * in the same (colex) order used by StateIterator: the rank of k counts the vectors
+ * preceding it, i.e. those with equal higher components and a smaller i-th component.
+ * The index of a state is then rank(k) * lambdaLevels + lambda.
+ */
+public class DenseStateIndexer implements Serializable {
+
+    private final int resTypes;
+    private final int maxParallelism;
+    private final int lambdaLevels;
+    private final int deploymentsCount;
+
+    /* count[m][r]: number of vectors of m non negative components with sum <= r */
+    private final int[][] count;
+
+    public DenseStateIndexer(int resTypes, int maxParallelism, int lambdaLevels) {
+        this.resTypes = resTypes;
+        this.maxParallelism = maxParallelism;
+        this.lambdaLevels = lambdaLevels;
+
+        this.count = new int[resTypes + 1][maxParallelism + 1];
+        for (int r = 0; r <= maxParallelism; r++)
+            count[0][r] = 1;
+        for (int m = 1; m <= resTypes; m++) {
+            int partial = 0;
+            for (int r = 0; r <= maxParallelism; r++) {
+                partial = Math.addExact(partial, count[m - 1][r]);
+                count[m][r] = partial;
+            }
+        }
+        // the empty deployment is not a valid state
+        this.deploymentsCount = count[resTypes][maxParallelism] - 1;
+        Math.multiplyExact(deploymentsCount, lambdaLevels);
+    }
+
+    /**
+     * Dense rank of a deployment, in [0, getDeploymentsCount()).
+     * Shorter deployments (e.g., over a single node type infrastructure) are
+     * ranked as if padded with zeros.
+     */
+    public int rankDeployment(int[] k) {
+        int rank = 0;
+        int rem = maxParallelism;
+        for (int i = Math.min(resTypes, k.length) - 1; i >= 0; i--) {
+            final int ki = k[i];
+            rank += count[i + 1][rem] - count[i + 1][rem - ki];
+            rem -= ki;
+        }
+        return rank - 1;
+    }
+
+    /**
+     * Deployment with the given rank, i.e. the inverse of rankDeployment.
+     */
+    public int[] unrankDeployment(int rank) {
+        int[] k = new int[resTypes];
+        int r = rank + 1;
+        int rem = maxParallelism;
+        for (int i = resTypes - 1; i >= 0; i--) {
+            // largest k[i] such that the vectors preceding it do not exceed r
+            int ki = 0;
+            while (ki < rem && count[i + 1][rem] - count[i + 1][rem - ki - 1] <= r)
+                ki++;
+            r -= count[i + 1][rem] - count[i + 1][rem - ki];
+            k[i] = ki;
+            rem -= ki;
+        }
+        return k;
+    }
+
+    /**
+     * All valid deployments, in rank order.
+     */
+    public int[][] deployments() {
+        int[][] deployments = new int[deploymentsCount][];
+        int[] k = new int[resTypes];
+        int sum = 0;
+        for (int d = 0; d < deploymentsCount; d++) {
+            // increment with index 0 as least significant digit, skipping vectors exceeding max parallelism
+            for (int i = 0; i < resTypes; i++) {
+                if (sum < maxParallelism) {
+                    k[i]++;
+                    sum++;
+                    break;
+                }
+                sum -= k[i];
+                k[i] = 0;
+            }
+            deployments[d] = k.clone();
+        }
+        return deployments;
+    }
+
+    /**
+     * Hash codes of the states in index order, i.e. their indexes in tables indexed by hash code.
+     */
+    public int[] hashCodes() {
+        int[] hashCodes = new int[size()];
+        int[][] deployments = deployments();
+        for (int d = 0; d < deploymentsCount; d++) {
+            for (int lambda = 0; lambda < lambdaLevels; lambda++) {
+                State s = StateFactory.createState(StateType.K_LAMBDA, -1, deployments[d], lambda,
+                        lambdaLevels - 1, maxParallelism);
+                hashCodes[d * lambdaLevels + lambda] = s.hashCode();
+            }
+        }
+        return hashCodes;
+    }
+
+    public int index(int[] k, int lambda) {
+        return rankDeployment(k) * lambdaLevels + lambda;
+    }
+
+    public int index(State s) {
+        return index(s.getActualDeployment(), s.getLambda());
+    }
+
+    /**
+     * Number of valid states, i.e. the size of a dense table over this space.
+     */
+    public int size() {
+        return deploymentsCount * lambdaLevels;
+    }
+
+    public int getDeploymentsCount() {
+        return deploymentsCount;
+    }
+
+    public int getResTypes() {
+        return resTypes;
+    }
+
+    public int getMaxParallelism() {
+        return maxParallelism;
+    }
+
+    public int getLambdaLevels() {
+        return lambdaLevels;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DenseStateIndexer)) return false;
+        DenseStateIndexer that = (DenseStateIndexer) o;
+        return resTypes == that.resTypes &&
+                maxParallelism == that.maxParallelism &&
+                lambdaLevels == that.lambdaLevels;
+    }
+
+    @Override
+    public int hashCode() {
+        return (resTypes * 31 + maxParallelism) * 31 + lambdaLevels;
+    }
+}
@@ -2,49 +2,117 @@ package it.uniroma2.dspsim.dsp.edf.om.rl.utils;
 
 import it.uniroma2.dspsim.Configuration;
 import it.uniroma2.dspsim.ConfigurationKeys;
-import org.apache.commons.collections4.queue.CircularFifoQueue;
 
-import java.util.*;
+import java.util.Random;
 
+/**
+ * Replay memory of the last maxSize transitions.
+ *
+ * Transitions are stored as primitive columns: state index (as encoded by a StateCodec),
+ * action index, reward and next state index (-1 if none).
+ * Mini-batches are sampled without replacement in O(batch size), by a partial
+ * Fisher-Yates shuffle of a permutation of the slots that is kept across calls.
+ */
 public class ExperienceReplay {
 
-	private CircularFifoQueue<Transition> transitions;
-	private Random r;
+	private final int[] states;
+	private final int[] actions;
+	private final double[] rewards;
+	private final int[] nextStates;
+
+	/* permutation of the slots in [0, size) */
+	private final int[] permutation;
+
+	private int size = 0;
+	private int head = 0;
+	protected Random r;
 
 	public ExperienceReplay (int maxSize) {
-		this.transitions = new CircularFifoQueue<>(maxSize);
+		this.states = new int[maxSize];
+		this.actions = new int[maxSize];
+		this.rewards = new double[maxSize];
+		this.nextStates = new int[maxSize];
+		this.permutation = new int[maxSize];
 
 		final int seed = Configuration.getInstance().getInteger(ConfigurationKeys.DL_OM_ND4j_RANDOM_SEED_KET, 123);
 		this.r = new Random(seed);
 	}
 
-	public void add (Transition transition) {
-		this.transitions.add(transition);
+	/**
+	 * Stores a transition, replacing the oldest one if the memory is full.
+	 * @return the slot of the transition
+	 */
+	public int add (int state, int action, double reward, int nextState) {
+		final int slot = head;
+		states[head] = state;
+		actions[head] = action;
+		rewards[head] = reward;
+		nextStates[head] = nextState;
+
+		if (size < states.length) {
+			permutation[size] = size;
+			++size;
+		}
+		head = (head + 1) % states.length;
+		return slot;
 	}
 
-	public Collection<Transition> sampleBatch(int batchSize)
+	/**
+	 * Samples batchSize distinct slots.
+	 * @param slots destination of the sampled slots, with at least batchSize elements
+	 * @return false if fewer than batchSize transitions are stored
+	 */
+	public boolean sampleBatch(int batchSize, int[] slots)
 	{
-		int storageSize = transitions.size();
-		if (storageSize < batchSize)
-			return null;
-
-		Set<Integer> intSet = new HashSet<>();
-		while (intSet.size() < batchSize) {
-			int rd = r.nextInt(storageSize);
-			intSet.add(rd);
-		}
+		if (size < batchSize)
+			return false;
 
-		ArrayList<Transition> batch = new ArrayList<>(batchSize);
-		Iterator<Integer> iter = intSet.iterator();
-		while (iter.hasNext()) {
-			Transition trans = transitions.get(iter.next());
-			batch.add(trans);
+		for (int i = 0; i < batchSize; i++) {
+			final int j = i + r.nextInt(size - i);
+			final int slot = permutation[j];
+			permutation[j] = permutation[i];
+			permutation[i] = slot;
+			slots[i] = slot;
 		}
 
-		return batch;
+		return true;
+	}
+
+	/**
+	 * Importance-sampling weight of the i-th transition of the last sampled batch.
+	 */
+	public double getWeight(int i) {
+		return 1.0;
+	}
+
+	/**
+	 * Updates the priority of a transition after computing its TD error.
+	 * Uniform sampling ignores priorities.
+	 */
+	public void updatePriority(int slot, double tdError) {
+	}
+
+	public boolean isPrioritized() {
+		return false;
+	}
+
+	public int getState(int slot) {
+		return states[slot];
+	}
+
+	public int getAction(int slot) {
+		return actions[slot];
+	}
+
+	public double getReward(int slot) {
+		return rewards[slot];
+	}
+
+	public int getNextState(int slot) {
+		return nextStates[slot];
 	}
 
 	public int getSize () {
-		return this.transitions.size();
+		return size;
 	}
 }
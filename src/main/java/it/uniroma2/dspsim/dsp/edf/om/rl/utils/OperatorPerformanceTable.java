@@ -0,0 +1,153 @@
+package it.uniroma2.dspsim.dsp.edf.om.rl.utils;
+
+import it.uniroma2.dspsim.dsp.Operator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.infrastructure.NodeType;
+import it.uniroma2.dspsim.utils.MathUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Response time, utilization and SLO violation of an operator in every discretized
+ * (deployment, lambda) state, indexed by DenseStateIndexer.
+ *
+ * Values are the ones StateUtils would compute with the queue model of the operator.
+ * A table is stale once the node types of its infrastructure are updated.
+ * Larger state spaces than MAX_STATES are not tabulated, as online OMs only visit a few states:
+ * performance is then evaluated on demand.
+ */
+public class OperatorPerformanceTable {
+
+    public static final long MAX_STATES = 1L << 21;
+
+    /* smaller tables are built on the calling thread */
+    private static final int PARALLEL_BUILD_MIN_DEPLOYMENTS = 64;
+
+    private final Operator operator;
+    private final ComputingInfrastructure infrastructure;
+    private final int infrastructureVersion;
+    private final DenseStateIndexer indexer;
+
+    private final double[] respTime;
+    private final double[] utilization;
+    private final boolean[] sloViolated;
+
+    private OperatorPerformanceTable(Operator operator, ComputingInfrastructure infrastructure, DenseStateIndexer indexer) {
+        this.operator = operator;
+        this.infrastructure = infrastructure;
+        this.infrastructureVersion = infrastructure.getVersion();
+        this.indexer = indexer;
+        this.respTime = new double[indexer.size()];
+        this.utilization = new double[indexer.size()];
+        this.sloViolated = new boolean[indexer.size()];
+    }
+
+    /**
+     * @param operator operator whose queue model is evaluated
+     * @param sloRespTime response time SLO
+     * @param nodeTypes node types of the instances (e.g., with estimated speedups)
+     */
+    public static OperatorPerformanceTable build(Operator operator, double sloRespTime, NodeType[] nodeTypes,
+                                                 int maxInputRate, int inputRateLevels) {
+        final OperatorPerformanceTable table = new OperatorPerformanceTable(operator,
+                ComputingInfrastructure.getInfrastructure(),
+                new DenseStateIndexer(nodeTypes.length, operator.getMaxParallelism(), inputRateLevels));
+
+        final int[][] deployments = table.indexer.deployments();
+        final double[] inputRates = new double[inputRateLevels];
+        for (int l = 0; l < inputRateLevels; l++)
+            inputRates[l] = MathUtils.remapDiscretizedValue(maxInputRate, l, inputRateLevels);
+
+        if (deployments.length < PARALLEL_BUILD_MIN_DEPLOYMENTS) {
+            for (int d = 0; d < deployments.length; d++)
+                table.fill(d, deployments[d], nodeTypes, inputRates, sloRespTime);
+            return table;
+        }
+
+        // the pool threads inherit the run context of the calling thread
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            pool.submit(() -> IntStream.range(0, deployments.length).parallel()
+                    .forEach(d -> table.fill(d, deployments[d], nodeTypes, inputRates, sloRespTime))).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Could not build performance table of " + operator, e);
+        } finally {
+            pool.shutdown();
+        }
+        return table;
+    }
+
+    /**
+     * @return whether the (deployment, lambda) state space has at most MAX_STATES states
+     */
+    public static boolean isTabulable(int resTypes, int maxParallelism, int inputRateLevels) {
+        try {
+            return new DenseStateIndexer(resTypes, maxParallelism, inputRateLevels).size() <= MAX_STATES;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    private void fill(int deploymentId, int[] deployment, NodeType[] nodeTypes, double[] inputRates, double sloRespTime) {
+        // same instances order as StateUtils.getOperatorInstances
+        List<NodeType> instances = new ArrayList<>();
+        for (int i = 0; i < deployment.length; i++) {
+            for (int j = 0; j < deployment[i]; j++)
+                instances.add(nodeTypes[i]);
+        }
+
+        for (int l = 0; l < inputRates.length; l++) {
+            final int index = deploymentId * inputRates.length + l;
+            respTime[index] = operator.responseTime(inputRates[l], instances);
+            utilization[index] = operator.utilization(inputRates[l], instances);
+            sloViolated[index] = respTime[index] > sloRespTime;
+        }
+    }
+
+    /**
+     * @return false if the table was built for another operator or the infrastructure has been updated
+     */
+    public boolean isValidFor(Operator operator) {
+        return this.operator == operator && infrastructure.getVersion() == infrastructureVersion;
+    }
+
+    public int index(State s) {
+        return indexer.index(s);
+    }
+
+    public double getRespTime(int index) {
+        return respTime[index];
+    }
+
+    public double getRespTime(State s) {
+        return respTime[index(s)];
+    }
+
+    public double getUtilization(int index) {
+        return utilization[index];
+    }
+
+    public double getUtilization(State s) {
+        return utilization[index(s)];
+    }
+
+    public boolean isSLOViolated(int index) {
+        return sloViolated[index];
+    }
+
+    /**
+     * 1 if the SLO is violated in s, 0 otherwise.
+     */
+    public double getSLOCost(State s) {
+        return sloViolated[index(s)] ? 1.0 : 0.0;
+    }
+
+    public DenseStateIndexer getIndexer() {
+        return indexer;
+    }
+}
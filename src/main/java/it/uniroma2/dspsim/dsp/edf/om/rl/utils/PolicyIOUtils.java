@@ -23,6 +23,21 @@ public class PolicyIOUtils {
 		return !policyDir.isEmpty();
 	}
 
+	/**
+	 * Tables are dumped in the binary (memory-mappable) format unless Java serialization is requested.
+	 * Loading accepts both formats.
+	 */
+	static public boolean shouldDumpBinary ()
+	{
+		String format = Configuration.getInstance().getString(ConfigurationKeys.POLICY_DUMP_FORMAT_KEY, "binary");
+		return !format.equalsIgnoreCase("java");
+	}
+
+	static public boolean shouldVerifyChecksum ()
+	{
+		return Configuration.getInstance().getBoolean(ConfigurationKeys.POLICY_VERIFY_CHECKSUM_KEY, false);
+	}
+
 	static private String getFilename (Operator operator, String fileName)
 	{
 		return String.format("%s-%s", operator.getName(), fileName);
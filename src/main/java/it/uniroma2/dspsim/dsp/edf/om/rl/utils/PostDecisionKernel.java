@@ -0,0 +1,101 @@
+package it.uniroma2.dspsim.dsp.edf.om.rl.utils;
+
+import it.uniroma2.dspsim.utils.matrix.TransitionKernel;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Expected backups through post-decision states, over the states of a StateCodec.
+ *
+ * Q(s, a) = c(s, a) + sum_l' p(l, l') * (cost(pds_l') + gamma * V(pds_l')), where pds_l' is
+ * the post-decision state of (s, a) with input rate level l', and V(s) = min_a Q(s, a).
+ * The greedy values V are cached in an array: they are recomputed once per sweep by refresh(),
+ * and planners updating Q in place keep them current with setValue(), so that each backup
+ * is a dot product over a row of the transition kernel.
+ */
+public class PostDecisionKernel {
+
+    /**
+     * Access to the Q function of the planner.
+     */
+    public interface QFunction {
+        double getQ(int s, int a);
+    }
+
+    private final StateCodec codec;
+    private final double gamma;
+    private final double[] values;
+
+    public PostDecisionKernel(StateCodec codec, double gamma) {
+        this.codec = codec;
+        this.gamma = gamma;
+        this.values = new double[codec.getStatesCount()];
+    }
+
+    /**
+     * Recomputes the greedy value of every state.
+     */
+    public void refresh(QFunction q) {
+        for (int s = 0; s < values.length; s++)
+            values[s] = greedyValue(s, q);
+    }
+
+    /**
+     * Recomputes the greedy value of s, e.g. after some of its Q values changed.
+     */
+    public double refresh(int s, QFunction q) {
+        values[s] = greedyValue(s, q);
+        return values[s];
+    }
+
+    private double greedyValue(int s, QFunction q) {
+        boolean found = false;
+        double best = 0.0;
+        for (int a = 0; a < codec.getActionsCount(); a++) {
+            if (!codec.isValid(s, a))
+                continue;
+            final double v = q.getQ(s, a);
+            if (!found || v < best) {
+                best = v;
+                found = true;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Cached greedy value min_a Q(s, a).
+     */
+    public double value(int s) {
+        return values[s];
+    }
+
+    public void setValue(int s, double value) {
+        values[s] = value;
+    }
+
+    /**
+     * Backs up a (state, action) pair through its post-decision state.
+     * @param immediateCost reconfiguration and resources cost of the pair
+     * @param pds post-decision state, with the input rate level of the pre-decision state
+     * @param kernel input rate transition probabilities
+     * @param cost weighted (SLO) cost of the states reached from pds
+     * @return the backed up Q value
+     */
+    public double backup(double immediateCost, int pds, TransitionKernel kernel, IntToDoubleFunction cost) {
+        final int lambda = codec.lambdaOf(pds);
+        double q = immediateCost;
+        for (int k = kernel.rowStart(lambda); k < kernel.rowEnd(lambda); k++) {
+            final int next = codec.withLambda(pds, kernel.column(k));
+            q += kernel.probability(k) * (cost.applyAsDouble(next) + gamma * values[next]);
+        }
+        return q;
+    }
+
+    /**
+     * Expected cost to go from pds, i.e. its post-decision value.
+     */
+    public double postDecisionValue(int pds, TransitionKernel kernel, IntToDoubleFunction cost) {
+        return backup(0.0, pds, kernel, cost);
+    }
+}
@@ -0,0 +1,97 @@
+package it.uniroma2.dspsim.dsp.edf.om.rl.utils;
+
+/**
+ * Replay memory sampling transitions proportionally to their priority
+ * p = (|TD error| + epsilon)^alpha, as in prioritized experience replay.
+ *
+ * Priorities are kept in a SumTree: each batch is drawn by splitting the total
+ * priority into batchSize equal segments and sampling one transition from each,
+ * in O(batch size * log(memory size)). New transitions get the maximum priority
+ * seen so far, so that they are replayed at least once.
+ * The bias introduced by non-uniform sampling is compensated by the importance-sampling
+ * weights (N * P(i))^-beta, normalized by their maximum within the batch; beta is
+ * annealed linearly to 1 over a given number of batches.
+ */
+public class PrioritizedExperienceReplay extends ExperienceReplay {
+
+	private final SumTree priorities;
+	private final double alpha;
+	private final double beta0;
+	private final long betaSteps;
+	private final double epsilon;
+
+	private double maxPriority = 1.0;
+	private long batches = 0;
+
+	/* weights of the last sampled batch */
+	private double[] weights = new double[0];
+
+	public PrioritizedExperienceReplay(int maxSize, double alpha, double beta, long betaSteps, double epsilon) {
+		super(maxSize);
+		this.priorities = new SumTree(maxSize);
+		this.alpha = alpha;
+		this.beta0 = beta;
+		this.betaSteps = betaSteps;
+		this.epsilon = epsilon;
+	}
+
+	@Override
+	public int add(int state, int action, double reward, int nextState) {
+		final int slot = super.add(state, action, reward, nextState);
+		priorities.set(slot, maxPriority);
+		return slot;
+	}
+
+	@Override
+	public boolean sampleBatch(int batchSize, int[] slots) {
+		if (getSize() < batchSize)
+			return false;
+
+		if (weights.length < batchSize)
+			weights = new double[batchSize];
+
+		final double total = priorities.total();
+		final double segment = total / batchSize;
+		final double beta = getBeta();
+		double maxWeight = 0.0;
+		for (int i = 0; i < batchSize; i++) {
+			final int slot = priorities.find((i + r.nextDouble()) * segment);
+			slots[i] = slot;
+			final double probability = priorities.get(slot) / total;
+			weights[i] = Math.pow(getSize() * probability, -beta);
+			maxWeight = Math.max(maxWeight, weights[i]);
+		}
+		for (int i = 0; i < batchSize; i++)
+			weights[i] /= maxWeight;
+
+		++batches;
+		return true;
+	}
+
+	private double getBeta() {
+		if (betaSteps <= 0 || batches >= betaSteps)
+			return 1.0;
+		return beta0 + (1.0 - beta0) * batches / betaSteps;
+	}
+
+	@Override
+	public double getWeight(int i) {
+		return weights[i];
+	}
+
+	@Override
+	public void updatePriority(int slot, double tdError) {
+		final double p = Math.pow(Math.abs(tdError) + epsilon, alpha);
+		priorities.set(slot, p);
+		maxPriority = Math.max(maxPriority, p);
+	}
+
+	@Override
+	public boolean isPrioritized() {
+		return true;
+	}
+
+	public double getPriority(int slot) {
+		return priorities.get(slot);
+	}
+}
@@ -0,0 +1,137 @@
+package it.uniroma2.dspsim.dsp.edf.om.rl.utils;
+
+import it.uniroma2.dspsim.utils.IndexedPriorityQueue;
+
+/**
+ * Prioritized sweeping over the (state, action) pairs of a StateCodec.
+ *
+ * Pairs are queued with a priority that estimates their Bellman error: when the
+ * value or the cost of a state changes by delta, the priority of each pair that
+ * may reach it grows by p * |delta|, p being the transition probability.
+ * Each call to sweep() backs up at most budget pairs, in order of priority, and
+ * queues the predecessors of the states whose greedy value changed.
+ */
+public class PrioritizedSweeping {
+
+    /**
+     * Access to the estimated model and the Q function of the planner.
+     */
+    public interface Model {
+        double getQ(int s, int a);
+
+        /**
+         * Recomputes Q(s, a) with a full (expected) backup.
+         */
+        void backup(int s, int a);
+
+        /**
+         * Reconfiguration and resources cost of taking action a in s.
+         */
+        double immediateCost(int s, int a);
+
+        /**
+         * Weighted SLO cost of next plus its discounted greedy value.
+         */
+        double nextStateCost(int next);
+
+        /**
+         * Greedy value min_a Q(s, a).
+         */
+        double value(int s);
+
+        double transitionProbability(int fromLambda, int toLambda);
+    }
+
+    private final StateCodec codec;
+    private final IndexedPriorityQueue queue;
+    private final double gamma;
+    private final int budget;
+    private final double threshold;
+
+    public PrioritizedSweeping(StateCodec codec, double gamma, int budget, double threshold) {
+        this.codec = codec;
+        this.queue = new IndexedPriorityQueue(Math.multiplyExact(codec.getStatesCount(), codec.getActionsCount()));
+        this.gamma = gamma;
+        this.budget = budget;
+        this.threshold = threshold;
+    }
+
+    public void push(int s, int a, double priority) {
+        if (priority > 0.0)
+            queue.increase(s * codec.getActionsCount() + a, priority);
+    }
+
+    /**
+     * Queues the pairs (s', a') from which s can be reached, as a quantity
+     * of s Q(s', a') depends on (e.g., its weighted cost) changed by delta.
+     */
+    public void propagate(int s, double delta, Model model) {
+        final double change = Math.abs(delta);
+        if (change == 0.0)
+            return;
+
+        final int actionsCount = codec.getActionsCount();
+        final int lambdaLevels = codec.getLambdaLevels();
+        final int lambda = codec.lambdaOf(s);
+        final int[] pairs = codec.getPdsPredecessors(codec.deploymentOf(s));
+        for (int fromLambda = 0; fromLambda < lambdaLevels; fromLambda++) {
+            final double p = model.transitionProbability(fromLambda, lambda);
+            if (p <= 0.0)
+                continue;
+            for (int pair : pairs) {
+                final int d = pair / actionsCount;
+                push(d * lambdaLevels + fromLambda, pair % actionsCount, p * change);
+            }
+        }
+    }
+
+    /**
+     * Queues the pairs affected by a new observation of the fromLambda -> toLambda transition,
+     * with totalObservations transitions now observed from fromLambda.
+     * As the row becomes p' = p + (e_toLambda - p) / totalObservations, the expected next state cost
+     * of each pair changes by (cost(toLambda) - expected cost) / totalObservations, where
+     * the expected cost under the old row is taken from the current Q.
+     */
+    public void transitionObserved(int fromLambda, int toLambda, int totalObservations, Model model) {
+        final int lambdaLevels = codec.getLambdaLevels();
+        for (int d = 0; d < codec.getDeploymentsCount(); d++) {
+            final int s = d * lambdaLevels + fromLambda;
+            for (int a = 0; a < codec.getActionsCount(); a++) {
+                if (!codec.isValid(s, a))
+                    continue;
+                final double expected = model.getQ(s, a) - model.immediateCost(s, a);
+                final double observed = model.nextStateCost(codec.withLambda(codec.pds(s, a), toLambda));
+                push(s, a, Math.abs(observed - expected) / totalObservations);
+            }
+        }
+    }
+
+    /**
+     * Backs up the pairs with highest priority, until the budget is exhausted
+     * or no priority exceeds the threshold.
+     * @return number of backups
+     */
+    public int sweep(Model model) {
+        final int actionsCount = codec.getActionsCount();
+        int backups = 0;
+        while (backups < budget && !queue.isEmpty() && queue.peekPriority() > threshold) {
+            final int pair = queue.poll();
+            final int s = pair / actionsCount;
+
+            final double oldValue = model.value(s);
+            model.backup(s, pair % actionsCount);
+            ++backups;
+
+            propagate(s, gamma * (model.value(s) - oldValue), model);
+        }
+        return backups;
+    }
+
+    public int getQueuedPairs() {
+        return queue.size();
+    }
+
+    public void clear() {
+        queue.clear();
+    }
+}
@@ -0,0 +1,260 @@
+package it.uniroma2.dspsim.dsp.edf.om.rl.utils;
+
+import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.factory.StateFactory;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+
+/**
+ * Primitive encoding of the (k, lambda) state space.
+ *
+ * States are numbered by DenseStateIndexer, so that the index of a state is
+ * deploymentId * lambdaLevels + lambda and matches State.getIndex() of iterated states. Post-decision transitions and
+ * action validity are precomputed, so planners can run backups on plain ints.
+ *
+ * Actions are identified by their ActionIterator index: 0 is the do-nothing action,
+ * 1..n remove a replica of type (a-1), n+1..2n add a replica of type (a-n-1).
+ *
+ * Codecs created with onDemand() precompute nothing, for state spaces too large to be
+ * enumerated: deployments, post-decision states and State objects are computed at each access,
+ * and pds predecessors are not available.
+ */
+public class StateCodec {
+
+    private final StateType stateType;
+    private final int resTypes;
+    private final int maxParallelism;
+    private final int lambdaLevels;
+    private final int actionsCount;
+    private final int deploymentsCount;
+
+    private final DenseStateIndexer indexer;
+
+    /* tables below are null in codecs created with onDemand() */
+    private final int[][] deployments;
+    /* pdsDeployment[d * actionsCount + a]: deployment after action a, -1 if not valid */
+    private final int[] pdsDeployment;
+    /* predecessors[d]: pairs d' * actionsCount + a such that action a leads from d' to d */
+    private final int[][] predecessors;
+
+    private final Action[] actions;
+    private final State[] states;
+
+    public StateCodec(StateType stateType, int maxParallelism, ComputingInfrastructure infrastructure, int lambdaLevels) {
+        this(stateType, maxParallelism, infrastructure, lambdaLevels, true);
+    }
+
+    /**
+     * Codec with no precomputed tables, e.g. for learners that only visit a few states.
+     */
+    public static StateCodec onDemand(StateType stateType, int maxParallelism, ComputingInfrastructure infrastructure,
+                                      int lambdaLevels) {
+        return new StateCodec(stateType, maxParallelism, infrastructure, lambdaLevels, false);
+    }
+
+    private StateCodec(StateType stateType, int maxParallelism, ComputingInfrastructure infrastructure, int lambdaLevels,
+                       boolean tabulated) {
+        this.stateType = stateType;
+        this.resTypes = infrastructure.getNodeTypes().length;
+        this.maxParallelism = maxParallelism;
+        this.lambdaLevels = lambdaLevels;
+        this.actionsCount = 1 + 2 * resTypes;
+
+        this.indexer = new DenseStateIndexer(resTypes, maxParallelism, lambdaLevels);
+        this.deploymentsCount = indexer.getDeploymentsCount();
+
+        this.actions = new Action[actionsCount];
+        if (ComputingInfrastructure.getInfrastructure().getNodeTypes().length == resTypes) {
+            ActionIterator ait = new ActionIterator();
+            while (ait.hasNext()) {
+                Action a = ait.next();
+                actions[a.getIndex()] = a;
+            }
+        } else {
+            // e.g., single node type view of the infrastructure: same numbering as ActionIterator
+            actions[0] = ActionIterator.getDoNothingAction();
+            for (int i = 0; i < resTypes; i++) {
+                actions[1 + i] = new Action(1 + i, -1, i);
+                actions[1 + resTypes + i] = new Action(1 + resTypes + i, 1, i);
+            }
+        }
+
+        if (!tabulated) {
+            this.deployments = null;
+            this.pdsDeployment = null;
+            this.predecessors = null;
+            this.states = null;
+            return;
+        }
+
+        this.deployments = indexer.deployments();
+        this.pdsDeployment = new int[Math.multiplyExact(deploymentsCount, actionsCount)];
+        for (int d = 0; d < deploymentsCount; d++) {
+            final int[] dep = deployments[d];
+            for (int a = 0; a < actionsCount; a++)
+                pdsDeployment[d * actionsCount + a] = computePdsDeployment(d, dep, a);
+        }
+
+        int[] predecessorsCount = new int[deploymentsCount];
+        for (int pds : pdsDeployment)
+            if (pds >= 0)
+                predecessorsCount[pds]++;
+        this.predecessors = new int[deploymentsCount][];
+        for (int d = 0; d < deploymentsCount; d++)
+            predecessors[d] = new int[predecessorsCount[d]];
+        for (int pair = 0; pair < pdsDeployment.length; pair++) {
+            final int pds = pdsDeployment[pair];
+            if (pds >= 0)
+                predecessors[pds][--predecessorsCount[pds]] = pair;
+        }
+
+        this.states = new State[Math.multiplyExact(deploymentsCount, lambdaLevels)];
+    }
+
+    private static int sum(int[] k) {
+        int s = 0;
+        for (int v : k)
+            s += v;
+        return s;
+    }
+
+    private int computePdsDeployment(int d, int[] dep, int a) {
+        final int delta = actions[a].getDelta();
+        final int res = actions[a].getResTypeIndex();
+        final int parallelism = sum(dep);
+        if (delta == 0)
+            return d;
+        if (dep[res] + delta < 0 || parallelism + delta < 1 || parallelism + delta > maxParallelism)
+            return -1;
+
+        dep[res] += delta;
+        final int pds = rankDeployment(dep);
+        dep[res] -= delta;
+        return pds;
+    }
+
+    private int pdsDeployment(int d, int a) {
+        if (pdsDeployment != null)
+            return pdsDeployment[d * actionsCount + a];
+        return computePdsDeployment(d, indexer.unrankDeployment(d), a);
+    }
+
+    /**
+     * Dense rank of a deployment, in [0, getDeploymentsCount()).
+     */
+    public int rankDeployment(int[] k) {
+        return indexer.rankDeployment(k);
+    }
+
+    public int encode(int[] k, int lambda) {
+        return rankDeployment(k) * lambdaLevels + lambda;
+    }
+
+    public int encode(State s) {
+        return encode(s.getActualDeployment(), s.getLambda());
+    }
+
+    public int deploymentOf(int index) {
+        return index / lambdaLevels;
+    }
+
+    public int lambdaOf(int index) {
+        return index % lambdaLevels;
+    }
+
+    public int withLambda(int index, int lambda) {
+        return index - index % lambdaLevels + lambda;
+    }
+
+    /**
+     * Shared array: callers must not modify it.
+     */
+    public int[] getDeployment(int deploymentId) {
+        if (deployments == null)
+            return indexer.unrankDeployment(deploymentId);
+        return deployments[deploymentId];
+    }
+
+    public boolean isValid(int index, int action) {
+        return pdsDeployment(deploymentOf(index), action) >= 0;
+    }
+
+    /**
+     * Post-decision state index (same lambda), -1 if the action is not valid.
+     */
+    public int pds(int index, int action) {
+        final int d = pdsDeployment(deploymentOf(index), action);
+        return d < 0 ? -1 : d * lambdaLevels + lambdaOf(index);
+    }
+
+    /**
+     * (deployment, action) pairs whose post-decision deployment is deploymentId,
+     * encoded as deployment * getActionsCount() + action.
+     * Shared array: callers must not modify it.
+     */
+    public int[] getPdsPredecessors(int deploymentId) {
+        if (predecessors == null)
+            throw new UnsupportedOperationException("Pds predecessors are not tabulated by on demand codecs");
+        return predecessors[deploymentId];
+    }
+
+    public Action getAction(int action) {
+        return actions[action];
+    }
+
+    /**
+     * Canonical State object for an index, created on first access.
+     * The returned object is shared and must not be modified.
+     * Not thread safe: call materializeStates() before sharing the codec among threads.
+     * On demand codecs return a new object at each call.
+     */
+    public State getState(int index) {
+        if (states == null)
+            return StateFactory.createState(stateType, index, getDeployment(deploymentOf(index)),
+                    lambdaOf(index), lambdaLevels - 1, maxParallelism);
+
+        State s = states[index];
+        if (s == null) {
+            s = StateFactory.createState(stateType, index, deployments[deploymentOf(index)],
+                    lambdaOf(index), lambdaLevels - 1, maxParallelism);
+            states[index] = s;
+        }
+        return s;
+    }
+
+    public void materializeStates() {
+        if (states == null)
+            return;
+        for (int i = 0; i < states.length; i++)
+            getState(i);
+    }
+
+    public DenseStateIndexer getIndexer() {
+        return indexer;
+    }
+
+    public int getStatesCount() {
+        return deploymentsCount * lambdaLevels;
+    }
+
+    public int getDeploymentsCount() {
+        return deploymentsCount;
+    }
+
+    public int getActionsCount() {
+        return actionsCount;
+    }
+
+    public int getLambdaLevels() {
+        return lambdaLevels;
+    }
+
+    public int getMaxParallelism() {
+        return maxParallelism;
+    }
+
+    public int getResTypes() {
+        return resTypes;
+    }
+}
@@ -0,0 +1,110 @@
+package it.uniroma2.dspsim.dsp.edf.om.rl.utils;
+
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.NeuralStateRepresentation;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Network input features of the states of a StateCodec, computed on first access.
+ * Mini-batch inputs are filled by copying the cached features, with no per-sample encoding.
+ * Up to MAX_CACHED_STATES states are cached in an array indexed by state; in larger state
+ * spaces the most recently used features are kept in a bounded map.
+ */
+public class StateFeatureCache {
+
+    private final StateCodec codec;
+    private final NeuralStateRepresentation repr;
+    private final int featuresCount;
+
+    public static final int MAX_CACHED_STATES = 1 << 18;
+
+    /* features[s]: null until state s is first encoded; null in large state spaces */
+    private final double[][] features;
+    /* least recently used features are evicted; null in small state spaces */
+    private final Map<Integer, double[]> recentFeatures;
+
+    private float[] floatScratch = null;
+    private double[] doubleScratch = null;
+
+    public StateFeatureCache(StateCodec codec, NeuralStateRepresentation repr) {
+        this.codec = codec;
+        this.repr = repr;
+        this.featuresCount = repr.getRepresentationLength();
+        if (codec.getStatesCount() <= MAX_CACHED_STATES) {
+            this.features = new double[codec.getStatesCount()][];
+            this.recentFeatures = null;
+        } else {
+            this.features = null;
+            this.recentFeatures = new LinkedHashMap<Integer, double[]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, double[]> eldest) {
+                    return size() > MAX_CACHED_STATES;
+                }
+            };
+        }
+    }
+
+    /**
+     * Shared array: callers must not modify it.
+     */
+    public double[] getFeatures(int state) {
+        double[] f = features != null ? features[state] : recentFeatures.get(state);
+        if (f == null) {
+            f = encode(state);
+            if (features != null)
+                features[state] = f;
+            else
+                recentFeatures.put(state, f);
+        }
+        return f;
+    }
+
+    private double[] encode(int state) {
+        INDArray array = codec.getState(state).arrayRepresentation(repr);
+        double[] f = new double[featuresCount];
+        for (int i = 0; i < featuresCount; i++)
+            f[i] = array.getDouble(i);
+        return f;
+    }
+
+    /**
+     * Writes the features of the given states into the first rows of dest.
+     */
+    public void fill(int[] states, int count, INDArray dest) {
+        if (dest.isView() || dest.ordering() != 'c' || dest.rows() != count || dest.columns() != featuresCount) {
+            for (int row = 0; row < count; row++) {
+                final double[] f = getFeatures(states[row]);
+                for (int i = 0; i < featuresCount; i++)
+                    dest.putScalar(row, i, f[i]);
+            }
+            return;
+        }
+
+        // contiguous matrix: the whole buffer is replaced at once
+        final int length = count * featuresCount;
+        if (dest.data().dataType() == DataBuffer.Type.DOUBLE) {
+            if (doubleScratch == null || doubleScratch.length != length)
+                doubleScratch = new double[length];
+            for (int row = 0; row < count; row++)
+                System.arraycopy(getFeatures(states[row]), 0, doubleScratch, row * featuresCount, featuresCount);
+            dest.data().setData(doubleScratch);
+        } else {
+            if (floatScratch == null || floatScratch.length != length)
+                floatScratch = new float[length];
+            for (int row = 0; row < count; row++) {
+                final double[] f = getFeatures(states[row]);
+                final int offset = row * featuresCount;
+                for (int i = 0; i < featuresCount; i++)
+                    floatScratch[offset + i] = (float) f[i];
+            }
+            dest.data().setData(floatScratch);
+        }
+    }
+
+    public int getFeaturesCount() {
+        return featuresCount;
+    }
+}
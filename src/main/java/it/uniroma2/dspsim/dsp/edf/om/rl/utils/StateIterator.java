@@ -6,7 +6,6 @@ import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
 import it.uniroma2.dspsim.dsp.edf.om.rl.states.factory.StateFactory;
 import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
 
-import java.util.Arrays;
 import java.util.Iterator;
 
 public class StateIterator implements Iterator<State> {
@@ -86,7 +85,7 @@ public class StateIterator implements Iterator<State> {
                 if ((this.k[i] + 1) <= this.maxParallelism) {
                     this.k[i]++;
                     // check that sum of new k is less than max parallelism
-                    if (Arrays.stream(k).sum() <= this.maxParallelism)
+                    if (sum(this.k) <= this.maxParallelism)
                         break;
                 }
                 // otherwise
@@ -95,6 +94,13 @@ public class StateIterator implements Iterator<State> {
         }
     }
 
+    private static int sum(int[] k) {
+        int s = 0;
+        for (int v : k)
+            s += v;
+        return s;
+    }
+
     private int[] resetK() {
         return new int[this.resourcesNumber];
     }
@@ -40,10 +40,13 @@ public class StateUtils {
     }
 
     private static double computeDeploymentCost(State state) {
-        List<NodeType> operatorInstances = getOperatorInstances(state);
+        final int[] deployment = state.getActualDeployment();
+        final NodeType[] nodeTypes = ComputingInfrastructure.getInfrastructure().getNodeTypes();
         double deploymentCost = 0.0;
-        for (NodeType nt : operatorInstances)
-            deploymentCost += nt.getCost();
+        for (int i = 0; i < deployment.length; i++) {
+            for (int j = 0; j < deployment[i]; j++)
+                deploymentCost += nodeTypes[i].getCost();
+        }
 
         return deploymentCost;
     }
@@ -71,14 +74,20 @@ public class StateUtils {
         return operatorInstances;
     }
 
+    /**
+     * 1 if the SLO is expected to be violated in the state, 0 otherwise.
+     * Values are read from the performance table of the OM, if the state space is small enough.
+     */
     public static double computeSLOCost(State state, RewardBasedOM om, boolean approximateNodeSpeedups,
                                         boolean approximateOperatorModel) {
-        double cost = 0.0;
+        OperatorPerformanceTable table = om.getPerformanceTableIfTabulable(approximateNodeSpeedups,
+                approximateOperatorModel);
+        if (table != null)
+            return table.getSLOCost(state);
 
         List<NodeType> operatorInstances = getOperatorInstances(state);
         if (approximateNodeSpeedups) {
-            ComputingInfrastructure infra = ComputingInfrastructure.getInfrastructure();
-            NodeType[] approxNodeTypes = infra.getEstimatedNodeTypes();
+            NodeType[] approxNodeTypes = ComputingInfrastructure.getInfrastructure().getEstimatedNodeTypes();
 
             List<NodeType> approximateInstances = new ArrayList<>(operatorInstances.size());
             for (NodeType nt : operatorInstances) {
@@ -88,14 +97,9 @@ public class StateUtils {
         }
 
         double inputRate = MathUtils.remapDiscretizedValue(om.getMaxInputRate(), state.getLambda(), om.getInputRateLevels());
+        Operator op = approximateOperatorModel ? om.getApproximateOperator() : om.getOperator();
 
-        Operator op = approximateOperatorModel? om.getApproximateOperator() : om.getOperator();
-
-        final double respTime = op.responseTime(inputRate, operatorInstances);
-        if (respTime > om.getOperator().getSloRespTime())
-            cost += 1.0;
-
-        return cost;
+        return op.responseTime(inputRate, operatorInstances) > om.getOperator().getSloRespTime() ? 1.0 : 0.0;
     }
 
     public static double computeSLOCost (State state, RewardBasedOM om) {
@@ -103,6 +107,9 @@ public class StateUtils {
     }
 
     public static double computeRespTime (State state, RewardBasedOM om) {
+        OperatorPerformanceTable table = om.getPerformanceTableIfTabulable(false, false);
+        if (table != null)
+            return table.getRespTime(state);
         return computeRespTime(state, om.getOperator(), om.getMaxInputRate(), om.getInputRateLevels());
     }
 
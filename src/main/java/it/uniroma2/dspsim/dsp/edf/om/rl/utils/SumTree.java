@@ -0,0 +1,63 @@
+package it.uniroma2.dspsim.dsp.edf.om.rl.utils;
+
+/**
+ * Binary tree over non-negative leaf values, where each internal node stores the
+ * sum of its children. Updates and proportional lookups take O(log n).
+ *
+ * Nodes are stored in an array as an implicit heap: the children of node i are
+ * 2i and 2i+1, and the leaves occupy [leaves, 2*leaves).
+ */
+public class SumTree {
+
+	private final int capacity;
+	private final int leaves;
+	private final double[] nodes;
+
+	public SumTree(int capacity) {
+		int leaves = 1;
+		while (leaves < capacity)
+			leaves <<= 1;
+		this.capacity = capacity;
+		this.leaves = leaves;
+		this.nodes = new double[2 * leaves];
+	}
+
+	public void set(int index, double value) {
+		int node = index + leaves;
+		nodes[node] = value;
+		// sums are recomputed rather than adjusted, so that rounding errors do not accumulate
+		for (node >>= 1; node > 0; node >>= 1)
+			nodes[node] = nodes[2 * node] + nodes[2 * node + 1];
+	}
+
+	public double get(int index) {
+		return nodes[index + leaves];
+	}
+
+	public double total() {
+		return nodes[1];
+	}
+
+	/**
+	 * Returns the leaf i such that sum(leaves before i) <= prefixSum < sum(leaves up to i).
+	 * Values of prefixSum out of [0, total()) are clamped to the first/last leaf with
+	 * a positive value.
+	 */
+	public int find(double prefixSum) {
+		int node = 1;
+		while (node < leaves) {
+			final int left = 2 * node;
+			if (prefixSum < nodes[left] || nodes[left + 1] <= 0.0) {
+				node = left;
+			} else {
+				prefixSum -= nodes[left];
+				node = left + 1;
+			}
+		}
+		return Math.min(node - leaves, capacity - 1);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+}
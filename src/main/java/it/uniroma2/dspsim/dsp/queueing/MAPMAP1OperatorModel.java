@@ -5,19 +5,42 @@ import it.uniroma2.dspsim.ConfigurationKeys;
 import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
 import it.uniroma2.dspsim.infrastructure.NodeType;
 
-import java.io.*;
+import it.uniroma2.dspsim.utils.matrix.BinaryTableFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * NOTE: Experimental.
  * Operator replicas modeled as MAP/MAP/1  queues.
- * We rely on an external Python script to pre-compute performance metrics.
+ * Performance metrics are pre-computed for every integer arrival rate with MAPPH1Solver,
+ * and cached on disk, keyed by service time moments and arrival MAP.
  */
 public class MAPMAP1OperatorModel implements OperatorQueueModel {
 
-	private Map<Double,PerformanceTable> speedup2perf = new HashMap<>();
+	/* bumped whenever the solver changes the tabulated values, so that stale cache files are ignored */
+	private static final int SOLVER_VERSION = 2;
+	private static final int MAX_RATE = 5000;
+
+	/* default arrival process */
+	private static final double[][] DEFAULT_D0 = {{-1.5, 0.5}, {0.5, -4.5}};
+	private static final double[][] DEFAULT_D1 = {{1.0, 0.0}, {0.0, 4.0}};
+
+	/* performance tables can be looked up concurrently (e.g., while building planner tables) */
+	private Map<Double,PerformanceTable> speedup2perf = new ConcurrentHashMap<>();
 	private double serviceTimeMean;
-	private Double mapSCV = null;
+	private double mapSCV;
+
+	private final String workloadArgs;
+	private final double[][] d0;
+	private final double[][] d1;
+	private final File cacheDir;
 
 	public double getServiceTimeVariance() {
 		return serviceTimeVar;
@@ -30,86 +53,108 @@ public class MAPMAP1OperatorModel implements OperatorQueueModel {
 
 	private double serviceTimeVar;
 
-	public MAPMAP1OperatorModel(double serviceTimeMean, double serviceTimeVariance) throws IOException, InterruptedException {
+	public MAPMAP1OperatorModel(double serviceTimeMean, double serviceTimeVariance) {
 		this.serviceTimeMean = serviceTimeMean;
 		this.serviceTimeVar = serviceTimeVariance;
 
-		for (NodeType nt : ComputingInfrastructure.getInfrastructure().getNodeTypes()) {
-			final double speedup = nt.getCpuSpeedup();
-			computePerfForSpeedup(speedup);
+		Configuration conf = Configuration.getInstance();
+		this.workloadArgs = conf.getString(ConfigurationKeys.OPERATOR_RESPTIME_EVALUATION_SCRIPT_WORKLOAD_ARGS, "").trim();
+		final String cacheDirName = conf.getString(ConfigurationKeys.OPERATOR_RESPTIME_MAPMAP1_CACHE_DIR,
+				new File(System.getProperty("java.io.tmpdir"), "dspsim-mapmap1").getPath());
+		this.cacheDir = cacheDirName.isEmpty() ? null : new File(cacheDirName);
+
+		if (workloadArgs.isEmpty()) {
+			this.d0 = DEFAULT_D0;
+			this.d1 = DEFAULT_D1;
+		} else {
+			// <map states> <D0,0,0> <D0,0,1> ... <D1,0,0> ...
+			final double[] params = Arrays.stream(workloadArgs.split("\\s+")).mapToDouble(Double::parseDouble).toArray();
+			final int n = (int) params[0];
+			if (params.length != 1 + 2 * n * n)
+				throw new IllegalArgumentException("Invalid MAP workload args: " + workloadArgs);
+			this.d0 = new double[n][n];
+			this.d1 = new double[n][n];
+			for (int i = 0; i < n; i++) {
+				for (int j = 0; j < n; j++) {
+					d0[i][j] = params[1 + i * n + j];
+					d1[i][j] = params[1 + n * n + i * n + j];
+				}
+			}
 		}
+		final double mapMean = MAPPH1Solver.mapMoment(d0, d1, 1);
+		this.mapSCV = (MAPPH1Solver.mapMoment(d0, d1, 2) - mapMean * mapMean) / (mapMean * mapMean);
+
+		// tables of different speedups are independent
+		Arrays.stream(ComputingInfrastructure.getInfrastructure().getNodeTypes())
+				.mapToDouble(NodeType::getCpuSpeedup)
+				.distinct()
+				.parallel()
+				.forEach(this::computePerfForSpeedup);
 	}
 
 	private void computePerfForSpeedup (double speedup) {
-		final double st_mean = this.serviceTimeMean / speedup;
-		final double st_var = this.serviceTimeVar / (speedup * speedup);
-
-		try {
-			speedup2perf.put(speedup, computePerf(st_mean, st_var));
-		} catch (IOException | InterruptedException e) {
-			e.printStackTrace();
-			System.exit(3);
-		}
+		speedup2perf.computeIfAbsent(speedup, s -> {
+			final double st_mean = this.serviceTimeMean / s;
+			final double st_var = this.serviceTimeVar / (s * s);
+			return computePerf(st_mean, st_var);
+		});
 	}
 
-	private PerformanceTable computePerf(double stMean, double stVar) throws IOException, InterruptedException {
-
-		Configuration conf = Configuration.getInstance();
-		final String TEMP_FILE = "/tmp/perf";
-		final String pythonScript = conf.getString(ConfigurationKeys.OPERATOR_RESPTIME_EVALUATION_SCRIPT, "");
-		final String workloadArgs = conf.getString(ConfigurationKeys.OPERATOR_RESPTIME_EVALUATION_SCRIPT_WORKLOAD_ARGS, "");
-
-		StringBuilder cmd = new StringBuilder();
-		cmd.append("python3 ");
-		cmd.append(pythonScript);
-		cmd.append(" ");
-		cmd.append(TEMP_FILE);
-		cmd.append(" ");
-		cmd.append(String.format(Locale.ROOT, "%.8f",stMean));
-		cmd.append(" ");
-		cmd.append(String.format(Locale.ROOT, "%.8f",stVar));
-		cmd.append(" ");
-		cmd.append(workloadArgs);
-		System.out.println("Running: " + cmd.toString());
-		Process p = Runtime.getRuntime().exec(cmd.toString());
-
-		// just consume output
-		BufferedReader b = new BufferedReader(new InputStreamReader(p.getInputStream()));
-		String l;
-		while ((l = b.readLine()) != null) {
+	private PerformanceTable computePerf(double stMean, double stVar) {
+		final File cacheFile = cacheFile(stMean, stVar);
+		if (cacheFile != null && cacheFile.isFile()) {
+			try {
+				double[][] cached = BinaryTableFile.readMatrix(cacheFile, true);
+				return new PerformanceTable(1.0 / stMean, cached[0], cached[1]);
+			} catch (IOException e) {
+				// corrupted or outdated: solved again and replaced
+				e.printStackTrace();
+			}
 		}
-		b.close();
-		b = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-		while ((l = b.readLine()) != null) {
+
+		final MAPPH1Solver solver = new MAPPH1Solver(d0, d1, stMean, stVar);
+		// integer rates below the service rate (1/stMean may be rounded up)
+		final int rates = (int) Math.min(Math.ceil(1.0 / stMean - 1E-9), MAX_RATE);
+		double[][] perf = new double[2][rates];
+		for (int rate = 0; rate < rates; rate++) {
+			perf[0][rate] = stMean * rate;
+			// no queueing in the limit of no arrivals
+			perf[1][rate] = rate == 0 ? stMean : solver.responseTime(rate);
 		}
-		b.close();
 
-		p.waitFor();
-		if (p.exitValue() != 0) {
-			throw new RuntimeException("solver failed with code " + p.exitValue());
+		if (cacheFile != null)
+			writeCacheFile(cacheFile, perf);
+		return new PerformanceTable(1.0 / stMean, perf[0], perf[1]);
+	}
+
+	private File cacheFile(double stMean, double stVar) {
+		if (cacheDir == null)
+			return null;
+		final String key = String.format(Locale.ROOT, "%d;%s;%s;%s", SOLVER_VERSION,
+				Double.toString(stMean), Double.toString(stVar), workloadArgs);
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			StringBuilder name = new StringBuilder("perf-");
+			for (byte b : digest.digest(key.getBytes(StandardCharsets.UTF_8)))
+				name.append(String.format("%02x", b));
+			return new File(cacheDir, name.append(".bin").toString());
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
 		}
+	}
 
-		ArrayList<Double> rates = new ArrayList<>();
-		ArrayList<Double> utils = new ArrayList<>();
-		ArrayList<Double> respTimes = new ArrayList<>();
-
-		// ROW: rate; util; respT
-		Scanner myReader = new Scanner(new File(TEMP_FILE));
-		while (myReader.hasNextLine()) {
-			String line = myReader.nextLine();
-			if (line.startsWith("SCV:")) {
-				String[] fields = line.split(":");
-				this.mapSCV = Double.parseDouble(fields[1]);
-				System.out.println("MAP SCV: " + this.mapSCV);
-			} else {
-				double values[] = Arrays.stream(line.split(";")).mapToDouble(Double::parseDouble).toArray();
-				rates.add(values[0]);
-				utils.add(values[1]);
-				respTimes.add(values[2]);
-			}
+	/**
+	 * Table files are written to a temporary file and renamed, so that concurrent runs never read
+	 * a partially written table.
+	 */
+	private static void writeCacheFile(File cacheFile, double[][] perf) {
+		try {
+			Files.createDirectories(cacheFile.getParentFile().toPath());
+			BinaryTableFile.writeMatrix(cacheFile, perf);
+		} catch (IOException e) {
+			// the cache is an optimization only
+			e.printStackTrace();
 		}
-		myReader.close();
-		return new PerformanceTable(rates.toArray(new Double[0]), utils.toArray(new Double[0]), respTimes.toArray(new Double[0]));
 	}
 
 	public double responseTime(double arrivalRate, double speedup)
@@ -152,47 +197,54 @@ public class MAPMAP1OperatorModel implements OperatorQueueModel {
 		return new MG1OperatorQueueModel(newMean, newVar); // TODO: we lose the MAP-based representation
 	}
 
+	/**
+	 * Metrics at integer arrival rates, linearly interpolated in between.
+	 * Beyond the last tabulated rate, metrics are extrapolated up to the service rate,
+	 * where the queue becomes unstable.
+	 */
 	static class PerformanceTable {
+		private double serviceRate;
 		private double utilizations[];
 		private double responseTimes[];
 
-		public PerformanceTable(Double[] rates, Double[] utils, Double[] respTimes) {
-			int validRates = rates.length;
-			//int validRates = 0;
-			//for (int i = 0; i<rates.length; i++) {
-			//	if (rates[i] < 1.0)	 {
-			//		break;
-			//	}
-			//	++validRates;
-			//}
-
-			this.utilizations = new double[validRates];
-			this.responseTimes = new double[validRates];
-
+		public PerformanceTable(double serviceRate, double[] utils, double[] respTimes) {
+			this.serviceRate = serviceRate;
+			this.utilizations = utils;
+			this.responseTimes = respTimes;
+		}
 
-			for (int i = 0; i<validRates; i++) {
-				this.utilizations[i] = utils[i];
-				this.responseTimes[i] = respTimes[i];
-			}
+		private static double interpolate(double[] values, double rate) {
+			if (rate <= 0.0)
+				return values[0];
+			final int i = (int) rate;
+			if (i >= values.length - 1)
+				return values[values.length - 1];
+			final double w = rate - i;
+			return values[i] + w * (values[i + 1] - values[i]);
 		}
 
 		public double getUtil (double rate) {
-			int index = (int)(Math.ceil(rate)) - 1;
-			if (index < this.utilizations.length)
-				return this.utilizations[index];
-			else
+			if (rate >= serviceRate)
 				return Double.POSITIVE_INFINITY;
+			if (rate > utilizations.length - 1)
+				return rate / serviceRate;
+			return interpolate(this.utilizations, rate);
 		}
 
 		public double getRespTime (double rate) {
-			int index = (int)(Math.ceil(rate)) - 1;
-			if (index < this.responseTimes.length)
-				return this.responseTimes[index];
-			else
+			if (rate >= serviceRate)
 				return Double.POSITIVE_INFINITY;
+			final int last = responseTimes.length - 1;
+			if (rate <= last)
+				return interpolate(this.responseTimes, rate);
+
+			// waiting time grows as rho/(1-rho), which is exact for Poisson arrivals
+			final double serviceTime = responseTimes[0];
+			if (last == 0)
+				return serviceTime / (1.0 - rate / serviceRate);
+			final double lastWaitingTime = responseTimes[last] - serviceTime;
+			return serviceTime + lastWaitingTime * rate * (serviceRate - last) / (last * (serviceRate - rate));
 		}
 	}
 
 }
-
-
@@ -0,0 +1,328 @@
+package it.uniroma2.dspsim.dsp.queueing;
+
+/**
+ * Matrix-analytic solver of MAP/PH/1 FCFS queues.
+ *
+ * Service times are fitted with an acyclic PH distribution matching their first
+ * two moments (as butools APHFrom2Moments). The queue is a QBD whose level is the
+ * number of jobs in the system and whose phase is (arrival phase, service phase);
+ * its rate matrix R is computed by logarithmic reduction, and the mean response
+ * time follows from Little's law.
+ */
+public class MAPPH1Solver {
+
+	private static final int MAX_PH_SIZE = 100;
+	private static final int MAX_REDUCTION_STEPS = 64;
+	private static final double REDUCTION_TOLERANCE = 1E-14;
+	/* close to saturation, rounding errors may keep the error above REDUCTION_TOLERANCE */
+	private static final double STALLED_REDUCTION_TOLERANCE = 1E-10;
+
+	/* arrival MAP with unit mean inter-arrival time */
+	private final double[][] d0;
+	private final double[][] d1;
+	private final double arrivalSCV;
+
+	/* service APH */
+	private final double[] alpha;
+	private final double[][] a;
+	private final double[] exitRates;
+
+	public MAPPH1Solver(double[][] d0, double[][] d1, double stMean, double stVar) {
+		final double mapMean = mapMoment(d0, d1, 1);
+		this.d0 = scale(d0, mapMean);
+		this.d1 = scale(d1, mapMean);
+		this.arrivalSCV = (mapMoment(d0, d1, 2) - mapMean * mapMean) / (mapMean * mapMean);
+
+		/* APH matching the first two service time moments */
+		final double cv2 = stVar / (stMean * stMean);
+		final double lambda = 1.0 / stMean;
+		final int n = cv2 > 0.0 ? (int) Math.min(Math.max(Math.ceil(1.0 / cv2), 2), MAX_PH_SIZE) : MAX_PH_SIZE;
+		// lower variability than Erlang-n is approximated with Erlang-n
+		final double p = Math.min(1.0, 1.0 / (cv2 + 1.0 + (cv2 - 1.0) / (n - 1)));
+		this.a = new double[n][n];
+		for (int i = 0; i < n - 1; i++) {
+			a[i][i] = -lambda * p * n;
+			a[i][i + 1] = lambda * p * n;
+		}
+		a[n - 1][n - 1] = -lambda * n;
+		this.alpha = new double[n];
+		alpha[0] = p;
+		alpha[n - 1] += 1.0 - p;
+		this.exitRates = new double[n];
+		for (int i = 0; i < n; i++) {
+			double sum = 0.0;
+			for (int j = 0; j < n; j++)
+				sum += a[i][j];
+			exitRates[i] = -sum;
+		}
+	}
+
+	public double getArrivalSCV() {
+		return arrivalSCV;
+	}
+
+	/**
+	 * Mean response (sojourn) time with the given arrival rate, infinity if the queue is not stable.
+	 */
+	public double responseTime(double arrivalRate) {
+		final int m = d0.length;
+		final int n = alpha.length;
+		final int mn = m * n;
+
+		final double[][] sd0 = scale(d0, arrivalRate);
+		final double[][] sd1 = scale(d1, arrivalRate);
+
+		/* QBD blocks: up, local and down transitions */
+		final double[][] up = kron(sd1, identity(n));
+		final double[][] local = add(kron(sd0, identity(n)), kron(identity(m), a));
+		final double[][] down = kron(identity(m), outer(exitRates, alpha));
+
+		final double[][] g = logarithmicReduction(up, local, down);
+		if (g == null)
+			return Double.POSITIVE_INFINITY;
+		// R = up (-local - up G)^-1
+		final double[][] r = multiply(up, inverse(scale(add(local, multiply(up, g)), -1.0)));
+
+		/* boundary: level 0 holds the arrival phase only */
+		final int size = m + mn;
+		final double[][] k = new double[size][size];
+		final double[][] level1 = add(local, multiply(r, down));
+		for (int i = 0; i < m; i++) {
+			for (int j = 0; j < m; j++)
+				k[i][j] = sd0[i][j];
+			for (int j = 0; j < n; j++)
+				for (int l = 0; l < m; l++)
+					k[i][m + l * n + j] = sd1[i][l] * alpha[j];
+		}
+		for (int i = 0; i < mn; i++) {
+			k[m + i][i / n] = exitRates[i % n];
+			for (int j = 0; j < mn; j++)
+				k[m + i][m + j] = level1[i][j];
+		}
+
+		/* replace one balance equation with normalization: pi0 1 + pi1 (I-R)^-1 1 = 1 */
+		final double[][] iMinusRInv = inverse(add(identity(mn), scale(r, -1.0)));
+		final double[] levelSums = rowSums(iMinusRInv);
+		for (int i = 0; i < m; i++)
+			k[i][0] = 1.0;
+		for (int i = 0; i < mn; i++)
+			k[m + i][0] = levelSums[i];
+
+		final double[] rhs = new double[size];
+		rhs[0] = 1.0;
+		final double[] pi = solve(transpose(k), rhs);
+
+		// mean number in system: pi1 (I-R)^-2 1
+		final double[] weights = rowSums(multiply(iMinusRInv, iMinusRInv));
+		double jobs = 0.0;
+		for (int i = 0; i < mn; i++)
+			jobs += pi[m + i] * weights[i];
+
+		return jobs / arrivalRate;
+	}
+
+	/**
+	 * Minimal solution of down + local G + up G^2 = 0 (Latouche and Ramaswami),
+	 * null if G is not stochastic, i.e. the queue is not stable.
+	 */
+	private static double[][] logarithmicReduction(double[][] up, double[][] local, double[][] down) {
+		final int size = local.length;
+		final double[][] localInv = inverse(scale(local, -1.0));
+		double[][] b0 = multiply(localInv, up);
+		double[][] b2 = multiply(localInv, down);
+		double[][] g = b2;
+		double[][] t = b0;
+		double lastErr = Double.POSITIVE_INFINITY;
+
+		for (int step = 0; step < MAX_REDUCTION_STEPS; step++) {
+			final double[][] u = add(multiply(b0, b2), multiply(b2, b0));
+			final double[][] inv = inverse(add(identity(size), scale(u, -1.0)));
+			b0 = multiply(inv, multiply(b0, b0));
+			b2 = multiply(inv, multiply(b2, b2));
+			g = add(g, multiply(t, b2));
+			t = multiply(t, b0);
+
+			double err = 0.0;
+			for (double sum : rowSums(g))
+				err = Math.max(err, Math.abs(1.0 - sum));
+			if (err < REDUCTION_TOLERANCE || (err >= lastErr && err < STALLED_REDUCTION_TOLERANCE))
+				return g;
+			lastErr = err;
+		}
+		return null;
+	}
+
+	/**
+	 * k-th moment of the inter-arrival time: k! pi (-D0)^-k 1, pi being the
+	 * stationary distribution of the phase at arrival instants.
+	 */
+	static double mapMoment(double[][] d0, double[][] d1, int k) {
+		final int m = d0.length;
+		final double[][] minusD0Inv = inverse(scale(d0, -1.0));
+		final double[][] p = multiply(minusD0Inv, d1);
+
+		// pi P = pi, pi 1 = 1
+		final double[][] sys = transpose(add(p, scale(identity(m), -1.0)));
+		for (int j = 0; j < m; j++)
+			sys[0][j] = 1.0;
+		final double[] rhs = new double[m];
+		rhs[0] = 1.0;
+		double[] v = solve(sys, rhs);
+
+		double factorial = 1.0;
+		for (int i = 1; i <= k; i++) {
+			v = multiply(v, minusD0Inv);
+			factorial *= i;
+		}
+		double sum = 0.0;
+		for (double x : v)
+			sum += x;
+		return factorial * sum;
+	}
+
+	/* dense linear algebra on small matrices */
+
+	private static double[][] identity(int n) {
+		double[][] m = new double[n][n];
+		for (int i = 0; i < n; i++)
+			m[i][i] = 1.0;
+		return m;
+	}
+
+	private static double[][] scale(double[][] x, double c) {
+		double[][] y = new double[x.length][];
+		for (int i = 0; i < x.length; i++) {
+			y[i] = new double[x[i].length];
+			for (int j = 0; j < x[i].length; j++)
+				y[i][j] = x[i][j] * c;
+		}
+		return y;
+	}
+
+	private static double[][] add(double[][] x, double[][] y) {
+		double[][] z = new double[x.length][x[0].length];
+		for (int i = 0; i < x.length; i++)
+			for (int j = 0; j < x[0].length; j++)
+				z[i][j] = x[i][j] + y[i][j];
+		return z;
+	}
+
+	private static double[][] multiply(double[][] x, double[][] y) {
+		final int cols = y[0].length;
+		double[][] z = new double[x.length][cols];
+		for (int i = 0; i < x.length; i++) {
+			for (int l = 0; l < y.length; l++) {
+				final double xil = x[i][l];
+				if (xil == 0.0)
+					continue;
+				for (int j = 0; j < cols; j++)
+					z[i][j] += xil * y[l][j];
+			}
+		}
+		return z;
+	}
+
+	private static double[] multiply(double[] v, double[][] x) {
+		double[] z = new double[x[0].length];
+		for (int l = 0; l < v.length; l++)
+			for (int j = 0; j < z.length; j++)
+				z[j] += v[l] * x[l][j];
+		return z;
+	}
+
+	private static double[][] kron(double[][] x, double[][] y) {
+		final int p = y.length, q = y[0].length;
+		double[][] z = new double[x.length * p][x[0].length * q];
+		for (int i = 0; i < x.length; i++)
+			for (int j = 0; j < x[0].length; j++)
+				for (int k = 0; k < p; k++)
+					for (int l = 0; l < q; l++)
+						z[i * p + k][j * q + l] = x[i][j] * y[k][l];
+		return z;
+	}
+
+	private static double[][] outer(double[] u, double[] v) {
+		double[][] z = new double[u.length][v.length];
+		for (int i = 0; i < u.length; i++)
+			for (int j = 0; j < v.length; j++)
+				z[i][j] = u[i] * v[j];
+		return z;
+	}
+
+	private static double[][] transpose(double[][] x) {
+		double[][] z = new double[x[0].length][x.length];
+		for (int i = 0; i < x.length; i++)
+			for (int j = 0; j < x[0].length; j++)
+				z[j][i] = x[i][j];
+		return z;
+	}
+
+	private static double[] rowSums(double[][] x) {
+		double[] s = new double[x.length];
+		for (int i = 0; i < x.length; i++)
+			for (double v : x[i])
+				s[i] += v;
+		return s;
+	}
+
+	/**
+	 * Gauss-Jordan inversion with partial pivoting.
+	 */
+	private static double[][] inverse(double[][] x) {
+		final int n = x.length;
+		double[][] w = new double[n][2 * n];
+		for (int i = 0; i < n; i++) {
+			System.arraycopy(x[i], 0, w[i], 0, n);
+			w[i][n + i] = 1.0;
+		}
+		eliminate(w, n);
+		double[][] inv = new double[n][n];
+		for (int i = 0; i < n; i++)
+			System.arraycopy(w[i], n, inv[i], 0, n);
+		return inv;
+	}
+
+	/**
+	 * Solves x z = b.
+	 */
+	private static double[] solve(double[][] x, double[] b) {
+		final int n = x.length;
+		double[][] w = new double[n][n + 1];
+		for (int i = 0; i < n; i++) {
+			System.arraycopy(x[i], 0, w[i], 0, n);
+			w[i][n] = b[i];
+		}
+		eliminate(w, n);
+		double[] z = new double[n];
+		for (int i = 0; i < n; i++)
+			z[i] = w[i][n];
+		return z;
+	}
+
+	/* reduces the first n columns of w to the identity */
+	private static void eliminate(double[][] w, int n) {
+		final int cols = w[0].length;
+		for (int c = 0; c < n; c++) {
+			int pivot = c;
+			for (int i = c + 1; i < n; i++)
+				if (Math.abs(w[i][c]) > Math.abs(w[pivot][c]))
+					pivot = i;
+			if (w[pivot][c] == 0.0)
+				throw new ArithmeticException("Singular matrix");
+			final double[] tmp = w[c];
+			w[c] = w[pivot];
+			w[pivot] = tmp;
+
+			final double inv = 1.0 / w[c][c];
+			for (int j = c; j < cols; j++)
+				w[c][j] *= inv;
+			for (int i = 0; i < n; i++) {
+				final double f = w[i][c];
+				if (i == c || f == 0.0)
+					continue;
+				for (int j = c; j < cols; j++)
+					w[i][j] -= f * w[c][j];
+			}
+		}
+	}
+}
@@ -2,6 +2,7 @@ package it.uniroma2.dspsim.infrastructure;
 
 import it.uniroma2.dspsim.Configuration;
 import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.RunContext;
 import it.uniroma2.dspsim.dsp.edf.om.OperatorManagerType;
 
 import java.util.Arrays;
@@ -15,17 +16,30 @@ public class ComputingInfrastructure {
 	/* A copy of nodeTypes with estimated speedups */
 	private NodeType[] estimatedNodeTypes = null;
 
+	/* incremented whenever node types are updated, to invalidate derived tables */
+	private volatile int version = 0;
+
 	private ComputingInfrastructure() {}
 
 	static private ComputingInfrastructure infrastructure = null;
 
 	static public ComputingInfrastructure getInfrastructure() {
-		if (infrastructure != null)
-			return infrastructure;
+		final RunContext context = RunContext.current();
+		final ComputingInfrastructure infra = context != null ? context.getInfrastructure() : infrastructure;
+		if (infra != null)
+			return infra;
 
 		throw new RuntimeException("Infrastructure has not been initialized!");
 	}
 
+	static private void setInfrastructure(ComputingInfrastructure infra) {
+		final RunContext context = RunContext.current();
+		if (context != null)
+			context.setInfrastructure(infra);
+		else
+			infrastructure = infra;
+	}
+
 	public ComputingInfrastructure cloneWithSingleNodeType (int nodeTypeIndex) {
 			ComputingInfrastructure infra = new ComputingInfrastructure();
 			NodeType nt = new NodeType(0, "", this.nodeTypes[nodeTypeIndex].getCost(),
@@ -84,8 +98,9 @@ public class ComputingInfrastructure {
 	}
 
 	static public ComputingInfrastructure initDefaultInfrastructure (int numOfResTypes) {
-		infrastructure = newDefaultInfrastructure(numOfResTypes);
-		return infrastructure;
+		ComputingInfrastructure infra = newDefaultInfrastructure(numOfResTypes);
+		setInfrastructure(infra);
+		return infra;
 	}
 
 	static public ComputingInfrastructure initDefaultInfrastructure () {
@@ -101,23 +116,35 @@ public class ComputingInfrastructure {
 	 * @return ComputingInfrastructure
 	 */
 	static public ComputingInfrastructure initCustomInfrastructure(final double[] cpuSpeedups, int numOfResTypes) {
-		infrastructure = new ComputingInfrastructure();
-		infrastructure.nodeTypes = new NodeType[numOfResTypes];
+		ComputingInfrastructure infra = new ComputingInfrastructure();
+		infra.nodeTypes = new NodeType[numOfResTypes];
 
 		double[] cpuSpeedupsAvailable = Arrays.stream(cpuSpeedups, 0, numOfResTypes).sorted().toArray();
 
 		for (int i = 0; i < cpuSpeedupsAvailable.length; i++) {
-			infrastructure.nodeTypes[i] = new NodeType(i, String.format("Res-%d", i),
+			infra.nodeTypes[i] = new NodeType(i, String.format("Res-%d", i),
 					cpuSpeedupsAvailable[i], cpuSpeedupsAvailable[i]);
 		}
 
-		return infrastructure;
+		setInfrastructure(infra);
+		return infra;
 	}
 
 	public NodeType[] getNodeTypes() {
 		return nodeTypes;
 	}
 
+	/**
+	 * To be called after changing cost or speedup of node types.
+	 */
+	public void nodeTypesUpdated() {
+		this.version++;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
 	public NodeType getMostExpensiveResType () {
 		Double cost = null;
 		NodeType nodeType = null;
@@ -0,0 +1,25 @@
+package it.uniroma2.dspsim.stats;
+
+/**
+ * Format of the sampled time series.
+ * BINARY: binary tables (see BinaryTableFile), one row per sample (default).
+ * TEXT: one sample per line, columns separated by ';'.
+ */
+public enum SamplingFormat {
+	BINARY,
+	TEXT;
+
+	public static SamplingFormat fromString(String str) throws IllegalArgumentException {
+		if (str.equalsIgnoreCase("binary")) {
+			return BINARY;
+		} else if (str.equalsIgnoreCase("text")) {
+			return TEXT;
+		} else {
+			throw new IllegalArgumentException("Not valid sampling format: " + str);
+		}
+	}
+
+	public String getExtension() {
+		return this == BINARY ? "bin" : "txt";
+	}
+}
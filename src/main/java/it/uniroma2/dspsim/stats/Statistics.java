@@ -1,5 +1,6 @@
 package it.uniroma2.dspsim.stats;
 
+import it.uniroma2.dspsim.RunContext;
 import it.uniroma2.dspsim.stats.metrics.Metric;
 
 import java.io.*;
@@ -7,12 +8,22 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Statistics {
 
 	static private Statistics instance = null;
 
-	static synchronized public Statistics getInstance() {
+	static public Statistics getInstance() {
+		final RunContext context = RunContext.current();
+		if (context != null)
+			return context.getStatistics();
+
+		return getGlobalInstance();
+	}
+
+	static synchronized private Statistics getGlobalInstance() {
 		if (instance == null) {
 			instance = new Statistics();
 		}
@@ -50,15 +61,49 @@ public class Statistics {
 		return this.metrics.get(id);
 	}
 
-	public void dumpSorted()
-	{
-		List<String> lines = new ArrayList<>(metrics.size());
+	/* writes the sampled time series in background */
+	private ExecutorService samplesWriter = null;
+
+	public synchronized ExecutorService getSamplesWriter() {
+		if (samplesWriter == null) {
+			samplesWriter = Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, "samples-writer");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return samplesWriter;
+	}
+
+	/**
+	 * Closes every metric, waiting for their samples to be written.
+	 */
+	public void close() {
 		for (Metric m : metrics.values())
+			m.close();
+
+		synchronized (this) {
+			if (samplesWriter != null) {
+				samplesWriter.shutdown();
+				samplesWriter = null;
+			}
+		}
+	}
+
+	private List<String> summaryLines() {
+		List<String> lines = new ArrayList<>(metrics.size());
+		for (Metric m : metrics.values()) {
 			lines.add(m.toString());
+			lines.addAll(m.dumpSummary());
+		}
 
 		Collections.sort(lines);
+		return lines;
+	}
 
-		for (String s : lines)
+	public void dumpSorted()
+	{
+		for (String s : summaryLines())
 			System.out.println(s);
 	}
 
@@ -67,12 +112,13 @@ public class Statistics {
 		dumpAll(System.out);
 	}
 
+	/**
+	 * Writes the final value of every metric, after closing them so that
+	 * the windowed aggregates of the samples are complete.
+	 */
 	public void dumpAll(OutputStream out) {
-		List<String> lines = new ArrayList<>(metrics.size());
-		for (Metric m : metrics.values())
-			lines.add(m.toString());
-
-		Collections.sort(lines);
+		close();
+		List<String> lines = summaryLines();
 
 		try {
 			for (String l : lines) {
@@ -0,0 +1,240 @@
+package it.uniroma2.dspsim.stats;
+
+import it.uniroma2.dspsim.Configuration;
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.utils.matrix.BinaryTableFile;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Records the values of a metric at every simulation step, in constant memory.
+ *
+ * Samples are collected in primitive buffers, which are handed over to the
+ * samples writer of the Statistics as they fill up and recycled once written.
+ * The series can be downsampled, keeping one sample every n steps; moreover,
+ * mean, max and sum of the values are aggregated over windows of a fixed number
+ * of steps (e.g., per hour), and written to a separate file.
+ */
+public class TimeSeriesSampler {
+
+	private static final int ROWS_PER_BUFFER = 4096;
+	/* buffers per series: writing can lag behind sampling by at most BUFFERS-1 of them */
+	private static final int BUFFERS = 3;
+
+	/* mean, max, sum */
+	private static final int WINDOW_COLUMNS = 3;
+
+	private final ExecutorService writer;
+	private final Series values;
+	private final Series windows;
+	private final int downsampling;
+	private final int window;
+
+	private long step = 0;
+	private boolean closed = false;
+
+	/* current window */
+	private double windowSum = 0.0;
+	private double windowMax = Double.NEGATIVE_INFINITY;
+	private int windowCount = 0;
+
+	/* over all windows */
+	private double maxWindowMean = Double.NEGATIVE_INFINITY;
+	private double maxWindowSum = Double.NEGATIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * @param windowsFile destination of the windowed aggregates, null if window is 0
+	 * @param downsampling one sample out of downsampling is recorded
+	 * @param window steps per aggregation window, 0 to disable aggregation
+	 */
+	public TimeSeriesSampler(File valuesFile, File windowsFile, SamplingFormat format, int downsampling, int window,
+							 ExecutorService writer) {
+		this.writer = writer;
+		this.downsampling = Math.max(1, downsampling);
+		this.window = window;
+		this.values = new Series(valuesFile, format, 1);
+		this.windows = window > 0 ? new Series(windowsFile, format, WINDOW_COLUMNS) : null;
+	}
+
+	/**
+	 * Creates a sampler writing to the output directory of the current run,
+	 * according to the configured format, downsampling and window.
+	 *
+	 * @param name file name, with no extension
+	 * @param aggregateWindows whether windowed aggregates should be computed, if enabled
+	 */
+	public static TimeSeriesSampler create(String name, boolean aggregateWindows) {
+		Configuration conf = Configuration.getInstance();
+		final String outDir = conf.getString(ConfigurationKeys.OUTPUT_BASE_PATH_KEY, ".");
+		final SamplingFormat format = SamplingFormat.fromString(
+				conf.getString(ConfigurationKeys.STATS_SAMPLING_FORMAT, "binary"));
+		final int downsampling = conf.getInteger(ConfigurationKeys.STATS_SAMPLING_DOWNSAMPLING, 1);
+		final int window = aggregateWindows ? conf.getInteger(ConfigurationKeys.STATS_SAMPLING_WINDOW, 0) : 0;
+
+		final File valuesFile = new File(outDir, String.format("%s.%s", name, format.getExtension()));
+		final File windowsFile = new File(outDir, String.format("%s-windows.%s", name, format.getExtension()));
+		return new TimeSeriesSampler(valuesFile, windowsFile, format, downsampling, window,
+				Statistics.getInstance().getSamplesWriter());
+	}
+
+	public void sample(double value) {
+		if (step++ % downsampling == 0)
+			values.add(value);
+
+		if (windows == null)
+			return;
+		windowSum += value;
+		windowMax = Math.max(windowMax, value);
+		if (++windowCount == window)
+			closeWindow();
+	}
+
+	private void closeWindow() {
+		final double mean = windowSum / windowCount;
+		windows.add(mean);
+		windows.add(windowMax);
+		windows.add(windowSum);
+
+		maxWindowMean = Math.max(maxWindowMean, mean);
+		maxWindowSum = Math.max(maxWindowSum, windowSum);
+		max = Math.max(max, windowMax);
+
+		windowSum = 0.0;
+		windowMax = Double.NEGATIVE_INFINITY;
+		windowCount = 0;
+	}
+
+	/**
+	 * Writes the pending samples (and the last, possibly partial, window) and closes the files.
+	 * Returns once everything has been written.
+	 */
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+
+		List<Future<?>> pending = new ArrayList<>(2);
+		if (windows != null) {
+			if (windowCount > 0)
+				closeWindow();
+			pending.add(windows.close());
+		}
+		pending.add(values.close());
+
+		try {
+			for (Future<?> f : pending)
+				f.get();
+		} catch (InterruptedException | ExecutionException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Summary of the windowed aggregates, as lines of the final statistics.
+	 */
+	public List<String> dumpSummary(String id) {
+		if (windows == null || maxWindowMean == Double.NEGATIVE_INFINITY)
+			return Collections.emptyList();
+
+		List<String> lines = new ArrayList<>(3);
+		lines.add(String.format("%s_Max = %s", id, max));
+		lines.add(String.format("%s_MaxWindowMean = %s", id, maxWindowMean));
+		lines.add(String.format("%s_MaxWindowSum = %s", id, maxWindowSum));
+		return lines;
+	}
+
+	/**
+	 * Rows with a fixed number of columns, buffered and written by the samples writer.
+	 */
+	private class Series {
+		private final int columns;
+		private final BlockingQueue<double[]> free = new ArrayBlockingQueue<>(BUFFERS);
+		private Closeable sink = null;
+		private BinaryTableFile.Writer binarySink = null;
+		private Writer textSink = null;
+
+		private double[] buffer;
+		private int size = 0;
+
+		Series(File f, SamplingFormat format, int columns) {
+			this.columns = columns;
+			for (int i = 0; i < BUFFERS - 1; i++)
+				free.add(new double[ROWS_PER_BUFFER * columns]);
+			this.buffer = new double[ROWS_PER_BUFFER * columns];
+
+			try {
+				if (format == SamplingFormat.BINARY) {
+					binarySink = BinaryTableFile.openWriter(f, BinaryTableFile.KIND_TIME_SERIES, columns);
+					sink = binarySink;
+				} else {
+					textSink = new BufferedWriter(new FileWriter(f));
+					sink = textSink;
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		void add(double value) {
+			buffer[size++] = value;
+			if (size == buffer.length)
+				flush();
+		}
+
+		private void flush() {
+			if (size == 0 || sink == null) {
+				size = 0;
+				return;
+			}
+
+			final double[] chunk = buffer;
+			final int length = size;
+			try {
+				// blocks if the writer is lagging behind
+				buffer = free.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				buffer = new double[chunk.length];
+			}
+			size = 0;
+
+			writer.submit(() -> {
+				try {
+					write(chunk, length);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+				free.offer(chunk);
+			});
+		}
+
+		private void write(double[] chunk, int length) throws IOException {
+			if (binarySink != null) {
+				binarySink.write(chunk, 0, length);
+				return;
+			}
+			for (int i = 0; i < length; i++) {
+				textSink.write(Double.toString(chunk[i]));
+				textSink.write((i + 1) % columns == 0 ? "\n" : ";");
+			}
+		}
+
+		Future<?> close() {
+			flush();
+			return writer.submit(() -> {
+				if (sink == null)
+					return;
+				try {
+					sink.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			});
+		}
+	}
+}
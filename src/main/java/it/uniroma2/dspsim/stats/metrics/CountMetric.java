@@ -1,5 +1,7 @@
 package it.uniroma2.dspsim.stats.metrics;
 
+import it.uniroma2.dspsim.stats.TimeSeriesSampler;
+
 public class CountMetric extends Metric {
 
 	private long count = 0;
@@ -8,9 +10,21 @@ public class CountMetric extends Metric {
 		super(id);
 	}
 
+	/**
+	 * @param sampleValues whether updates should be sampled (updates with 0 should be
+	 *                     issued at the steps with no events)
+	 */
+	public CountMetric (String id, boolean sampleValues) {
+		super(id);
+
+		if (sampleValues)
+			setSampler(TimeSeriesSampler.create(String.format("%s-values", id.replace(' ', '_')), true));
+	}
+
 	@Override
 	public void update(Integer intValue) {
 		count += intValue;
+		sample(intValue);
 	}
 
 	@Override
@@ -1,9 +1,17 @@
 package it.uniroma2.dspsim.stats.metrics;
 
+import it.uniroma2.dspsim.stats.TimeSeriesSampler;
+
+import java.util.Collections;
+import java.util.List;
+
 public abstract class Metric {
 
 	protected String id;
 
+	/* records every update, if not null */
+	private TimeSeriesSampler sampler = null;
+
 	public Metric(String id) {
 		this.id = id;
 	}
@@ -19,9 +27,28 @@ public abstract class Metric {
 		return String.format("%s = %s", id, dumpValue());
 	}
 
+	public void setSampler(TimeSeriesSampler sampler) {
+		this.sampler = sampler;
+	}
+
+	protected void sample(double value) {
+		if (sampler != null)
+			sampler.sample(value);
+	}
+
+	/**
+	 * Additional lines of the final statistics (e.g., windowed aggregates of the samples).
+	 */
+	public List<String> dumpSummary() {
+		if (sampler == null)
+			return Collections.emptyList();
+		return sampler.dumpSummary(id);
+	}
+
 	public void close()
 	{
-
+		if (sampler != null)
+			sampler.close();
 	}
 
 	/**
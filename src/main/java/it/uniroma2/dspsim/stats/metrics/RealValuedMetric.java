@@ -1,18 +1,13 @@
 package it.uniroma2.dspsim.stats.metrics;
 
-import it.uniroma2.dspsim.Configuration;
-import it.uniroma2.dspsim.ConfigurationKeys;
-
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import it.uniroma2.dspsim.stats.TimeSeriesSampler;
 
 public class RealValuedMetric extends Metric {
 
 	private double sum = 0.0;
 	private long count = 0;
 
-	private PrintWriter valuesSampler = null;
-	private PrintWriter avgSampler = null;
+	private TimeSeriesSampler avgSampler = null;
 
 	public RealValuedMetric(String id) {
 		this(id, false, false);
@@ -21,25 +16,12 @@ public class RealValuedMetric extends Metric {
 	public RealValuedMetric(String id, boolean sampleAllValues, boolean sampleAvg) {
 		super(id);
 
-		final String outDir = Configuration.getInstance().getString(ConfigurationKeys.OUTPUT_BASE_PATH_KEY,".");
 		final String normalizedId = id.replace(' ', '_');
 		if (sampleAllValues) {
-			final String filename = String.format("%s/%s-values.txt", outDir, normalizedId);
-
-			try {
-				this.valuesSampler = new PrintWriter(filename);
-			} catch (FileNotFoundException e) {
-				e.printStackTrace();
-			}
+			setSampler(TimeSeriesSampler.create(String.format("%s-values", normalizedId), true));
 		}
 		if (sampleAvg) {
-			final String filename = String.format("%s/%s-avg.txt", outDir, normalizedId);
-
-			try {
-				this.avgSampler = new PrintWriter(filename);
-			} catch (FileNotFoundException e) {
-				e.printStackTrace();
-			}
+			this.avgSampler = TimeSeriesSampler.create(String.format("%s-avg", normalizedId), false);
 		}
 	}
 
@@ -53,10 +35,9 @@ public class RealValuedMetric extends Metric {
 		sum += realValue;
 		count++;
 
-		if (this.valuesSampler != null)
-			this.valuesSampler.println(realValue);
+		sample(realValue);
 		if (this.avgSampler != null)
-			this.avgSampler.println(getAvg());
+			this.avgSampler.sample(getAvg());
 	}
 
 	public double getAvg() {
@@ -71,8 +52,7 @@ public class RealValuedMetric extends Metric {
 	@Override
 	public void close()
 	{
-		if (this.valuesSampler != null)
-			this.valuesSampler.close();
+		super.close();
 		if (this.avgSampler != null)
 			this.avgSampler.close();
 	}
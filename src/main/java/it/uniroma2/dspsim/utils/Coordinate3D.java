@@ -1,5 +1,7 @@
 package it.uniroma2.dspsim.utils;
 
+import java.util.Objects;
+
 public class Coordinate3D {
     private double x, y, z;
 
@@ -20,4 +22,19 @@ public class Coordinate3D {
     public double getZ() {
         return z;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Coordinate3D that = (Coordinate3D) o;
+        return Double.compare(that.x, x) == 0 &&
+                Double.compare(that.y, y) == 0 &&
+                Double.compare(that.z, z) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(x, y, z);
+    }
 }
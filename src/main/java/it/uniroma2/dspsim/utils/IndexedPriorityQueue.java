@@ -0,0 +1,123 @@
+package it.uniroma2.dspsim.utils;
+
+/**
+ * Max-priority queue of integer ids in [0, capacity), backed by a binary heap.
+ * Each id is queued at most once: increasing the priority of a queued id
+ * moves it up in the heap instead of inserting a duplicate.
+ */
+public class IndexedPriorityQueue {
+
+	private final int[] heap;
+	/* position of each id in the heap, -1 if not queued */
+	private final int[] position;
+	private final double[] priority;
+	private int size = 0;
+
+	public IndexedPriorityQueue(int capacity) {
+		this.heap = new int[capacity];
+		this.position = new int[capacity];
+		this.priority = new double[capacity];
+		for (int i = 0; i < capacity; i++)
+			position[i] = -1;
+	}
+
+	/**
+	 * Adds amount to the priority of id, queueing it if needed.
+	 * Amount must be non-negative.
+	 */
+	public void increase(int id, double amount) {
+		if (position[id] < 0) {
+			priority[id] = amount;
+			heap[size] = id;
+			position[id] = size;
+			siftUp(size++);
+		} else {
+			priority[id] += amount;
+			siftUp(position[id]);
+		}
+	}
+
+	public boolean contains(int id) {
+		return position[id] >= 0;
+	}
+
+	/**
+	 * Priority of id, 0 if not queued.
+	 */
+	public double getPriority(int id) {
+		return position[id] < 0 ? 0.0 : priority[id];
+	}
+
+	public double peekPriority() {
+		if (size == 0)
+			throw new IllegalStateException("Empty queue");
+		return priority[heap[0]];
+	}
+
+	/**
+	 * Removes and returns the id with the highest priority.
+	 */
+	public int poll() {
+		if (size == 0)
+			throw new IllegalStateException("Empty queue");
+		final int top = heap[0];
+		position[top] = -1;
+		if (--size > 0) {
+			heap[0] = heap[size];
+			position[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++)
+			position[heap[i]] = -1;
+		size = 0;
+	}
+
+	private void siftUp(int i) {
+		final int id = heap[i];
+		final double p = priority[id];
+		while (i > 0) {
+			final int parent = (i - 1) >>> 1;
+			if (priority[heap[parent]] >= p)
+				break;
+			move(parent, i);
+			i = parent;
+		}
+		heap[i] = id;
+		position[id] = i;
+	}
+
+	private void siftDown(int i) {
+		final int id = heap[i];
+		final double p = priority[id];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size)
+				break;
+			if (child + 1 < size && priority[heap[child + 1]] > priority[heap[child]])
+				child++;
+			if (priority[heap[child]] <= p)
+				break;
+			move(child, i);
+			i = child;
+		}
+		heap[i] = id;
+		position[id] = i;
+	}
+
+	private void move(int from, int to) {
+		heap[to] = heap[from];
+		position[heap[to]] = to;
+	}
+}
@@ -0,0 +1,414 @@
+package it.uniroma2.dspsim.utils.matrix;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary file holding a flat table of doubles, shorts or bytes.
+ *
+ * Layout (little-endian):
+ * magic (int), version (int), kind (int), element type (int), shape length (int), shape (int[]),
+ * payload length (long), payload CRC32 (long), padding up to a multiple of 8 bytes,
+ * payload (double[], short[] or byte[]).
+ * Files of version 1 have no element type and a payload of doubles.
+ *
+ * The kind tells which table has been dumped; the meaning of the shape is up to
+ * the table (e.g., node types, max parallelism, input rate levels).
+ * Tables of doubles are loaded by mapping the payload, with no deserialization.
+ * Files are written to a temporary file and then renamed, hence tables mapped from
+ * a file are never truncated while a new table is dumped to the same path.
+ */
+public class BinaryTableFile {
+
+    public static final int MAGIC = 0x54505344; // "DSPT"
+    public static final int VERSION = 2;
+
+    public static final int KIND_Q_TABLE = 1;
+    public static final int KIND_V_TABLE = 2;
+    public static final int KIND_JOINT_Q_TABLE = 3;
+    public static final int KIND_MATRIX = 4;
+    public static final int KIND_TIME_SERIES = 5;
+    public static final int KIND_POLICY = 6;
+    public static final int KIND_JOINT_POLICY = 7;
+
+    public static final int ELEMENT_DOUBLE = 1;
+    public static final int ELEMENT_SHORT = 2;
+    public static final int ELEMENT_BYTE = 3;
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private final int kind;
+    private final int elementType;
+    private final int[] shape;
+    /* payload of a table of doubles */
+    private final MappedDoubleArray data;
+    /* payload of a table of shorts or bytes */
+    private final ByteBuffer smallData;
+
+    private BinaryTableFile(int kind, int elementType, int[] shape, MappedDoubleArray data, ByteBuffer smallData) {
+        this.kind = kind;
+        this.elementType = elementType;
+        this.shape = shape;
+        this.data = data;
+        this.smallData = smallData;
+    }
+
+    public int getKind() {
+        return kind;
+    }
+
+    public int[] getShape() {
+        return shape.clone();
+    }
+
+    public int getElementType() {
+        return elementType;
+    }
+
+    public MappedDoubleArray getData() {
+        checkElementType(ELEMENT_DOUBLE);
+        return data;
+    }
+
+    /**
+     * Checks whether f starts with the binary table magic number.
+     */
+    public static boolean isBinaryTableFile(File f) {
+        if (!f.isFile() || f.length() < Integer.BYTES)
+            return false;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(f))) {
+            return Integer.reverseBytes(in.readInt()) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static int elementBytes(int elementType) throws IOException {
+        switch (elementType) {
+            case ELEMENT_DOUBLE:
+                return Double.BYTES;
+            case ELEMENT_SHORT:
+                return Short.BYTES;
+            case ELEMENT_BYTE:
+                return Byte.BYTES;
+            default:
+                throw new IOException("Unknown table element type: " + elementType);
+        }
+    }
+
+    /* ints preceding the shape: magic, version, kind, (element type,) shape length */
+    private static int prefixInts(int version) {
+        return version == 1 ? 4 : 5;
+    }
+
+    private static int headerSize(int version, int shapeLength) {
+        final int size = prefixInts(version) * Integer.BYTES + shapeLength * Integer.BYTES + 2 * Long.BYTES;
+        return (size + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+    }
+
+    private static ByteBuffer header(int kind, int elementType, int[] shape, long length, long checksum) {
+        ByteBuffer header = ByteBuffer.allocate(headerSize(VERSION, shape.length)).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(kind);
+        header.putInt(elementType);
+        header.putInt(shape.length);
+        for (int dim : shape)
+            header.putInt(dim);
+        header.putLong(length);
+        header.putLong(checksum);
+        header.rewind();
+        return header;
+    }
+
+    public static void write(File f, int kind, int[] shape, double[] values) throws IOException {
+        write(f, kind, shape, values.length, i -> values[i]);
+    }
+
+    public static void write(File f, int kind, int[] shape, int length, IntToDoubleFunction values) throws IOException {
+        writePayload(f, kind, ELEMENT_DOUBLE, shape, length, (buffer, i) -> buffer.putDouble(values.applyAsDouble((int) i)));
+    }
+
+    public static void write(File f, int kind, int[] shape, DoubleStore values) throws IOException {
+        writePayload(f, kind, ELEMENT_DOUBLE, shape, values.length(), (buffer, i) -> buffer.putDouble(values.get(i)));
+    }
+
+    /**
+     * Writes a table of 16 bit values (e.g., action indexes).
+     */
+    public static void writeShorts(File f, int kind, int[] shape, short[] values) throws IOException {
+        writePayload(f, kind, ELEMENT_SHORT, shape, values.length, (buffer, i) -> buffer.putShort(values[(int) i]));
+    }
+
+    /**
+     * Writes a table of 8 bit values (e.g., action indexes).
+     */
+    public static void writeBytes(File f, int kind, int[] shape, byte[] values) throws IOException {
+        writePayload(f, kind, ELEMENT_BYTE, shape, values.length, (buffer, i) -> buffer.put(values[(int) i]));
+    }
+
+    /* puts the i-th value of the payload into the buffer */
+    private interface ElementWriter {
+        void put(ByteBuffer buffer, long i);
+    }
+
+    /**
+     * Temporary file in the directory of f, to be renamed to f once written.
+     */
+    private static File tempFileFor(File f) throws IOException {
+        return File.createTempFile(f.getName(), ".tmp", f.getAbsoluteFile().getParentFile());
+    }
+
+    private static void replace(File tmp, File f) throws IOException {
+        Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writePayload(File f, int kind, int elementType, int[] shape, long length,
+                                     ElementWriter values) throws IOException {
+        File tmp = tempFileFor(f);
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+            final int headerSize = headerSize(VERSION, shape.length);
+            channel.position(headerSize);
+
+            // the buffer size is a multiple of the size of any element
+            CRC32 crc = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            for (long i = 0; i < length; i++) {
+                if (!buffer.hasRemaining())
+                    flush(channel, buffer, crc);
+                values.put(buffer, i);
+            }
+            flush(channel, buffer, crc);
+
+            // header is written last, as it holds the checksum
+            ByteBuffer header = header(kind, elementType, shape, length, crc.getValue());
+            channel.position(0);
+            while (header.hasRemaining())
+                channel.write(header);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        replace(tmp, f);
+    }
+
+    /**
+     * Opens a writer of a table with the given number of columns, whose rows are appended
+     * while they are produced. The header (and so the shape) is written on close.
+     */
+    public static Writer openWriter(File f, int kind, int columns) throws IOException {
+        return new Writer(f, kind, columns);
+    }
+
+    public static class Writer implements Closeable {
+
+        private final File file;
+        private final File tmp;
+        private final FileChannel channel;
+        private final int kind;
+        private final int columns;
+        private final CRC32 crc = new CRC32();
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long length = 0;
+
+        private Writer(File f, int kind, int columns) throws IOException {
+            this.kind = kind;
+            this.columns = columns;
+            this.file = f;
+            this.tmp = tempFileFor(f);
+            this.channel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE);
+            channel.position(headerSize(VERSION, 2));
+        }
+
+        /**
+         * Appends count values, in row-major order.
+         */
+        public void write(double[] values, int offset, int count) throws IOException {
+            for (int i = offset; i < offset + count; i++) {
+                if (!buffer.hasRemaining())
+                    flush(channel, buffer, crc);
+                buffer.putDouble(values[i]);
+            }
+            length += count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush(channel, buffer, crc);
+                if (length % columns != 0)
+                    throw new IOException(String.format("Incomplete row in table: %d values, %d columns", length, columns));
+                ByteBuffer header = header(kind, ELEMENT_DOUBLE, new int[]{(int) (length / columns), columns}, length,
+                        crc.getValue());
+                channel.position(0);
+                while (header.hasRemaining())
+                    channel.write(header);
+            } catch (IOException e) {
+                channel.close();
+                tmp.delete();
+                throw e;
+            }
+            channel.close();
+            replace(tmp, file);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.array(), 0, buffer.limit());
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Maps a table file. A payload of doubles is mapped copy-on-write: it can be modified
+     * in memory, but the file is never changed. Files that cannot be opened for writing
+     * are mapped read-only, and written segments are copied to the heap.
+     *
+     * @param expectedKind kind of table the caller is able to load
+     * @param verifyChecksum whether the whole payload should be read to verify its checksum
+     */
+    public static BinaryTableFile open(File f, int expectedKind, boolean verifyChecksum) throws IOException {
+        // a private mapping requires a channel opened for writing, even if the file is never written
+        final boolean writable = f.canWrite();
+        try (FileChannel channel = writable ?
+                FileChannel.open(f.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE) :
+                FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer prefix = ByteBuffer.allocate(prefixInts(VERSION) * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, prefix, 0);
+            if (prefix.getInt() != MAGIC)
+                throw new IOException("Not a binary table file: " + f);
+            final int version = prefix.getInt();
+            if (version != VERSION && version != 1)
+                throw new IOException(String.format("Unsupported table file version %d: %s", version, f));
+            final int kind = prefix.getInt();
+            if (kind != expectedKind)
+                throw new IOException(String.format("Unexpected table kind %d (expected %d): %s", kind, expectedKind, f));
+            final int elementType = version == 1 ? ELEMENT_DOUBLE : prefix.getInt();
+            final int shapeLength = prefix.getInt();
+
+            final int headerSize = headerSize(version, shapeLength);
+            ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+            header.position(prefixInts(version) * Integer.BYTES);
+            int[] shape = new int[shapeLength];
+            for (int i = 0; i < shapeLength; i++)
+                shape[i] = header.getInt();
+            final long length = header.getLong();
+            final long checksum = header.getLong();
+
+            final long payloadSize = length * elementBytes(elementType);
+            if (channel.size() != headerSize + payloadSize)
+                throw new IOException("Truncated table file: " + f);
+            if (verifyChecksum && checksum(channel, headerSize) != checksum)
+                throw new IOException("Checksum mismatch in table file: " + f);
+
+            final FileChannel.MapMode mode = writable ? FileChannel.MapMode.PRIVATE : FileChannel.MapMode.READ_ONLY;
+            if (elementType == ELEMENT_DOUBLE)
+                return new BinaryTableFile(kind, elementType, shape,
+                        new MappedDoubleArray(channel, headerSize, length, mode), null);
+
+            if (payloadSize > Integer.MAX_VALUE)
+                throw new IOException("Table file too large: " + f);
+            ByteBuffer smallData = channel.map(mode, headerSize, payloadSize).order(ByteOrder.LITTLE_ENDIAN);
+            return new BinaryTableFile(kind, elementType, shape, null, smallData);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of table file");
+        }
+        buffer.flip();
+    }
+
+    private static long checksum(FileChannel channel, long offset) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        long position = offset;
+        int read;
+        while ((read = channel.read(buffer, position)) > 0) {
+            crc.update(buffer.array(), 0, read);
+            position += read;
+            buffer.clear();
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Writes a rectangular matrix, in row-major order.
+     */
+    public static void writeMatrix(File f, double[][] matrix) throws IOException {
+        final int rows = matrix.length;
+        final int cols = rows > 0 ? matrix[0].length : 0;
+        write(f, KIND_MATRIX, new int[]{rows, cols}, Math.multiplyExact(rows, cols), i -> matrix[i / cols][i % cols]);
+    }
+
+    public static double[][] readMatrix(File f, boolean verifyChecksum) throws IOException {
+        BinaryTableFile table = open(f, KIND_MATRIX, verifyChecksum);
+        final int rows = table.shape[0];
+        final int cols = table.shape[1];
+        double[][] matrix = new double[rows][cols];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                matrix[i][j] = table.data.get((long) i * cols + j);
+        return matrix;
+    }
+
+    /**
+     * Reads the count values of a table written by writeShorts().
+     */
+    public short[] getShorts(int count) {
+        checkElementType(ELEMENT_SHORT);
+        checkLength(smallData.capacity() / Short.BYTES, count);
+        short[] values = new short[count];
+        smallData.duplicate().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Reads the count values of a table written by writeBytes().
+     */
+    public byte[] getBytes(int count) {
+        checkElementType(ELEMENT_BYTE);
+        checkLength(smallData.capacity(), count);
+        byte[] values = new byte[count];
+        smallData.duplicate().get(values);
+        return values;
+    }
+
+    private void checkElementType(int expectedType) {
+        if (elementType != expectedType)
+            throw new RuntimeException(String.format("Trying to load malformed table: element type %d (expected %d)",
+                    elementType, expectedType));
+    }
+
+    private static void checkLength(long length, int expectedLength) {
+        if (length != expectedLength)
+            throw new RuntimeException(String.format("Trying to load malformed table: %d values (expected %d)",
+                    length, expectedLength));
+    }
+
+    /**
+     * Throws if the shape of the loaded table differs from the expected one.
+     */
+    public void checkShape(int[] expectedShape) {
+        if (!Arrays.equals(shape, expectedShape))
+            throw new RuntimeException(String.format("Trying to load malformed table: shape %s (expected %s)",
+                    Arrays.toString(shape), Arrays.toString(expectedShape)));
+    }
+}
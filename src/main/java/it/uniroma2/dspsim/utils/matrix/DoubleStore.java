@@ -0,0 +1,19 @@
+package it.uniroma2.dspsim.utils.matrix;
+
+/**
+ * Flat table of values read and written as doubles, with long indexes,
+ * whatever the representation of the values.
+ */
+public interface DoubleStore {
+
+    double get(long i);
+
+    void set(long i, double value);
+
+    long length();
+
+    /**
+     * Copies the values in a double array (i.e., in the heap).
+     */
+    double[] toArray();
+}
@@ -0,0 +1,65 @@
+package it.uniroma2.dspsim.utils.matrix;
+
+/**
+ * Non-negative values (e.g., expected discounted costs) quantized to 16 bits,
+ * i.e. in a quarter of the memory of a double array.
+ * Value v is stored as round(v / scale), with the scale of the table set so that
+ * the given bound is the largest representable value; negative values are stored as 0.
+ * If a larger value is written, the scale is doubled until the value fits and the
+ * table is requantized; this is not thread-safe, hence the bound should hold.
+ */
+public class Fixed16Array implements DoubleStore {
+
+    private static final int MAX_LEVEL = 0xFFFF;
+
+    private final short[] values;
+    private double scale;
+
+    public Fixed16Array(int length, double bound) {
+        if (!(bound > 0.0) || Double.isInfinite(bound))
+            throw new IllegalArgumentException("Not valid bound for 16-bit quantization: " + bound);
+        this.values = new short[length];
+        this.scale = bound / MAX_LEVEL;
+    }
+
+    @Override
+    public double get(long i) {
+        return (values[(int) i] & MAX_LEVEL) * scale;
+    }
+
+    @Override
+    public void set(long i, double value) {
+        if (value > MAX_LEVEL * scale)
+            rescale(value);
+        values[(int) i] = (short) Math.max(0L, Math.round(value / scale));
+    }
+
+    private synchronized void rescale(double value) {
+        double newScale = scale;
+        while (value > MAX_LEVEL * newScale)
+            newScale *= 2.0;
+        for (int i = 0; i < values.length; i++)
+            values[i] = (short) Math.round((values[i] & MAX_LEVEL) * scale / newScale);
+        scale = newScale;
+    }
+
+    /**
+     * Quantization step, i.e. twice the maximum rounding error.
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    @Override
+    public long length() {
+        return values.length;
+    }
+
+    @Override
+    public double[] toArray() {
+        double[] arr = new double[values.length];
+        for (int i = 0; i < arr.length; i++)
+            arr[i] = get(i);
+        return arr;
+    }
+}
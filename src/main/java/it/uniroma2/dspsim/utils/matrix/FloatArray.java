@@ -0,0 +1,36 @@
+package it.uniroma2.dspsim.utils.matrix;
+
+/**
+ * Values stored as floats, i.e. in half the memory of a double array.
+ */
+public class FloatArray implements DoubleStore {
+
+    private final float[] values;
+
+    public FloatArray(int length) {
+        this.values = new float[length];
+    }
+
+    @Override
+    public double get(long i) {
+        return values[(int) i];
+    }
+
+    @Override
+    public void set(long i, double value) {
+        values[(int) i] = (float) value;
+    }
+
+    @Override
+    public long length() {
+        return values.length;
+    }
+
+    @Override
+    public double[] toArray() {
+        double[] arr = new double[values.length];
+        for (int i = 0; i < arr.length; i++)
+            arr[i] = values[i];
+        return arr;
+    }
+}
@@ -0,0 +1,114 @@
+package it.uniroma2.dspsim.utils.matrix;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Array of little-endian doubles backed by a memory-mapped file region, or by
+ * direct buffers outside of the heap (see allocateDirect()), with long indexes.
+ * The region is split in segments, as a single mapping cannot exceed 2 GB.
+ */
+public class MappedDoubleArray implements DoubleStore {
+
+    /* 2^27 doubles = 1 GB per segment */
+    private static final int SEGMENT_SHIFT = 27;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final DoubleBuffer[] segments;
+    private final long length;
+
+    /**
+     * Maps length doubles starting at offset. The channel can be closed afterwards.
+     * With MapMode.PRIVATE the mapped pages are shared among processes until written,
+     * and writes are never propagated to the file. With MapMode.READ_ONLY a segment is
+     * copied to the heap the first time it is written.
+     */
+    public MappedDoubleArray(FileChannel channel, long offset, long length, FileChannel.MapMode mode) throws IOException {
+        this.length = length;
+        final int nSegments = (int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        this.segments = new DoubleBuffer[nSegments];
+        for (int i = 0; i < nSegments; i++) {
+            final long first = (long) i << SEGMENT_SHIFT;
+            final long count = Math.min(length - first, 1L << SEGMENT_SHIFT);
+            segments[i] = channel.map(mode, offset + first * Double.BYTES, count * Double.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asDoubleBuffer();
+        }
+    }
+
+    private MappedDoubleArray(DoubleBuffer[] segments, long length) {
+        this.segments = segments;
+        this.length = length;
+    }
+
+    /**
+     * Allocates length doubles (initialized to 0) in direct buffers, outside of the heap.
+     */
+    public static MappedDoubleArray allocateDirect(long length) {
+        final int nSegments = (int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        DoubleBuffer[] segments = new DoubleBuffer[nSegments];
+        for (int i = 0; i < nSegments; i++) {
+            final long count = Math.min(length - ((long) i << SEGMENT_SHIFT), 1L << SEGMENT_SHIFT);
+            segments[i] = ByteBuffer.allocateDirect((int) count * Double.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asDoubleBuffer();
+        }
+        return new MappedDoubleArray(segments, length);
+    }
+
+    /**
+     * Maps length doubles (initialized to 0) on a new sparse file f, whose pages are
+     * loaded lazily and can be evicted by the OS, so that the array can exceed the memory.
+     * Writes go to the file, which is deleted on exit.
+     */
+    public static MappedDoubleArray mapScratchFile(File f, long length) throws IOException {
+        f.deleteOnExit();
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return new MappedDoubleArray(channel, 0, length, FileChannel.MapMode.READ_WRITE);
+        }
+    }
+
+    @Override
+    public double get(long i) {
+        return segments[(int) (i >>> SEGMENT_SHIFT)].get((int) (i & SEGMENT_MASK));
+    }
+
+    @Override
+    public void set(long i, double value) {
+        final int s = (int) (i >>> SEGMENT_SHIFT);
+        DoubleBuffer segment = segments[s];
+        if (segment.isReadOnly())
+            segment = writableSegment(s);
+        segment.put((int) (i & SEGMENT_MASK), value);
+    }
+
+    private synchronized DoubleBuffer writableSegment(int s) {
+        DoubleBuffer segment = segments[s];
+        if (segment.isReadOnly()) {
+            DoubleBuffer copy = DoubleBuffer.allocate(segment.capacity());
+            copy.put(segment.duplicate());
+            segments[s] = copy;
+            segment = copy;
+        }
+        return segment;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public double[] toArray() {
+        double[] arr = new double[Math.toIntExact(length)];
+        for (int i = 0; i < arr.length; i++)
+            arr[i] = get(i);
+        return arr;
+    }
+}
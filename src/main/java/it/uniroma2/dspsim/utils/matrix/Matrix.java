@@ -3,11 +3,12 @@ package it.uniroma2.dspsim.utils.matrix;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public abstract class Matrix<X, Y, V extends Number> implements MatrixOps<X, Y, V> {
+public abstract class Matrix<X, Y, V extends Number> implements MatrixOps<X, Y, V>, Serializable {
     protected Table<X, Y, V> table;
 
     protected V initValue;
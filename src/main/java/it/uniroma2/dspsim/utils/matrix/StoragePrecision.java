@@ -0,0 +1,41 @@
+package it.uniroma2.dspsim.utils.matrix;
+
+/**
+ * Precision of the values stored in (heap) tables. Values are always read and
+ * written as doubles, so that backups accumulate in double precision.
+ * DOUBLE: 8 bytes per value (default).
+ * FLOAT: 4 bytes per value.
+ * FIXED16: 2 bytes per value, quantized relative to a bound of the values (see Fixed16Array).
+ */
+public enum StoragePrecision {
+    DOUBLE,
+    FLOAT,
+    FIXED16;
+
+    public static StoragePrecision fromString(String str) throws IllegalArgumentException {
+        if (str.equalsIgnoreCase("double")) {
+            return DOUBLE;
+        } else if (str.equalsIgnoreCase("float")) {
+            return FLOAT;
+        } else if (str.equalsIgnoreCase("fixed16") || str.equalsIgnoreCase("16bit")) {
+            return FIXED16;
+        } else {
+            throw new IllegalArgumentException("Not valid storage precision: " + str);
+        }
+    }
+
+    /**
+     * Allocates a table with reduced precision; double tables are plain arrays.
+     * @param bound upper bound of the stored values, used by FIXED16
+     */
+    public DoubleStore newStore(int length, double bound) {
+        switch (this) {
+            case FLOAT:
+                return new FloatArray(length);
+            case FIXED16:
+                return new Fixed16Array(length, bound);
+            default:
+                throw new IllegalStateException("Double precision tables are stored in double arrays");
+        }
+    }
+}
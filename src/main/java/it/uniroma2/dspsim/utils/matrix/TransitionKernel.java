@@ -0,0 +1,128 @@
+package it.uniroma2.dspsim.utils.matrix;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Immutable sparse transition matrix over input rate levels, stored in CSR form.
+ * Non-zero entries of row x are at positions [rowStart(x), rowEnd(x)) of the
+ * column and probability arrays, sorted by column.
+ */
+public class TransitionKernel {
+
+    private final int[] rowPtr;
+    private final int[] columns;
+    private final double[] probabilities;
+
+    private TransitionKernel(int[] rowPtr, int[] columns, double[] probabilities) {
+        this.rowPtr = rowPtr;
+        this.columns = columns;
+        this.probabilities = probabilities;
+    }
+
+    /**
+     * Compacts a matrix with labels in [0, levels).
+     */
+    public static TransitionKernel fromMatrix(DoubleMatrix<Integer, Integer> matrix, int levels) {
+        int[] rowPtr = new int[levels + 1];
+        int nonZeros = 0;
+        for (int x = 0; x < levels; x++) {
+            rowPtr[x] = nonZeros;
+            for (Integer y : matrix.getColLabels(x)) {
+                if (matrix.getValue(x, y) != 0.0)
+                    nonZeros++;
+            }
+        }
+        rowPtr[levels] = nonZeros;
+
+        int[] columns = new int[nonZeros];
+        double[] probabilities = new double[nonZeros];
+        for (int x = 0; x < levels; x++) {
+            Set<Integer> labels = matrix.getColLabels(x);
+            int[] sorted = new int[labels.size()];
+            int n = 0;
+            for (Integer y : labels)
+                sorted[n++] = y;
+            Arrays.sort(sorted);
+
+            int k = rowPtr[x];
+            for (int y : sorted) {
+                double p = matrix.getValue(x, y);
+                if (p == 0.0)
+                    continue;
+                if (y < 0 || y >= levels)
+                    throw new IllegalArgumentException("Transition to level out of range: " + y);
+                columns[k] = y;
+                probabilities[k] = p;
+                k++;
+            }
+        }
+
+        return new TransitionKernel(rowPtr, columns, probabilities);
+    }
+
+    public static TransitionKernel fromArray(double[][] matrix) {
+        final int levels = matrix.length;
+        int[] rowPtr = new int[levels + 1];
+        int nonZeros = 0;
+        for (int x = 0; x < levels; x++) {
+            rowPtr[x] = nonZeros;
+            for (double p : matrix[x])
+                if (p != 0.0)
+                    nonZeros++;
+        }
+        rowPtr[levels] = nonZeros;
+
+        int[] columns = new int[nonZeros];
+        double[] probabilities = new double[nonZeros];
+        int k = 0;
+        for (int x = 0; x < levels; x++) {
+            for (int y = 0; y < matrix[x].length; y++) {
+                if (matrix[x][y] != 0.0) {
+                    columns[k] = y;
+                    probabilities[k] = matrix[x][y];
+                    k++;
+                }
+            }
+        }
+
+        return new TransitionKernel(rowPtr, columns, probabilities);
+    }
+
+    public int getLevels() {
+        return rowPtr.length - 1;
+    }
+
+    public int rowStart(int x) {
+        return rowPtr[x];
+    }
+
+    public int rowEnd(int x) {
+        return rowPtr[x + 1];
+    }
+
+    public int column(int k) {
+        return columns[k];
+    }
+
+    public double probability(int k) {
+        return probabilities[k];
+    }
+
+    /**
+     * Random access to a single entry; prefer iterating the row in hot loops.
+     */
+    public double getValue(int x, int y) {
+        int k = Arrays.binarySearch(columns, rowPtr[x], rowPtr[x + 1], y);
+        return k >= 0 ? probabilities[k] : 0.0;
+    }
+
+    public double[][] toArray() {
+        final int levels = getLevels();
+        double[][] matrix = new double[levels][levels];
+        for (int x = 0; x < levels; x++)
+            for (int k = rowPtr[x]; k < rowPtr[x + 1]; k++)
+                matrix[x][columns[k]] = probabilities[k];
+        return matrix;
+    }
+}
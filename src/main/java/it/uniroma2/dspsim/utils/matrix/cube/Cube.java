@@ -3,12 +3,13 @@ package it.uniroma2.dspsim.utils.matrix.cube;
 import it.uniroma2.dspsim.utils.Tuple2;
 import it.uniroma2.dspsim.utils.matrix.Matrix;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 
-public abstract class Cube<Z, X, Y, V extends Number> {
+public abstract class Cube<Z, X, Y, V extends Number> implements Serializable {
     private HashMap<Z, Matrix<X, Y, V>> cube;
     private V initValue;
 
@@ -0,0 +1,81 @@
+package it.uniroma2.dspsim.utils.trace;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Immutable sequence of input rate samples, one per time slot.
+ * Instances are safe to share among threads.
+ */
+public abstract class InputRateTrace {
+
+	public abstract int size();
+
+	public abstract double get(int i);
+
+	public static InputRateTrace of(double values[]) {
+		return new ArrayTrace(values);
+	}
+
+	static InputRateTrace of(DoubleBuffer values) {
+		return new DoubleBufferTrace(values);
+	}
+
+	static InputRateTrace of(FloatBuffer values) {
+		return new FloatBufferTrace(values);
+	}
+
+	private static class ArrayTrace extends InputRateTrace {
+		private final double values[];
+
+		ArrayTrace(double values[]) {
+			this.values = values;
+		}
+
+		@Override
+		public int size() {
+			return values.length;
+		}
+
+		@Override
+		public double get(int i) {
+			return values[i];
+		}
+	}
+
+	private static class DoubleBufferTrace extends InputRateTrace {
+		private final DoubleBuffer values;
+
+		DoubleBufferTrace(DoubleBuffer values) {
+			this.values = values;
+		}
+
+		@Override
+		public int size() {
+			return values.limit();
+		}
+
+		@Override
+		public double get(int i) {
+			return values.get(i);
+		}
+	}
+
+	private static class FloatBufferTrace extends InputRateTrace {
+		private final FloatBuffer values;
+
+		FloatBufferTrace(FloatBuffer values) {
+			this.values = values;
+		}
+
+		@Override
+		public int size() {
+			return values.limit();
+		}
+
+		@Override
+		public double get(int i) {
+			return values.get(i);
+		}
+	}
+}
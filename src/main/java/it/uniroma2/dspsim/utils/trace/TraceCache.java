@@ -0,0 +1,51 @@
+package it.uniroma2.dspsim.utils.trace;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of parsed input rate traces, so that the simulation, the
+ * estimation of transition probabilities and the OMs relying on perfect prediction
+ * read and parse each trace once.
+ * Entries are invalidated if the file is modified.
+ */
+public class TraceCache {
+
+	private static final Map<String, Entry> cache = new HashMap<>();
+
+	private TraceCache() {}
+
+	private static class Entry {
+		final long lastModified;
+		final long length;
+		final InputRateTrace trace;
+
+		Entry(long lastModified, long length, InputRateTrace trace) {
+			this.lastModified = lastModified;
+			this.length = length;
+			this.trace = trace;
+		}
+	}
+
+	public static synchronized InputRateTrace get(String path) throws IOException {
+		File f = new File(path);
+		if (!f.isFile())
+			throw new FileNotFoundException(path);
+
+		final String key = f.getCanonicalPath();
+		Entry entry = cache.get(key);
+		if (entry == null || entry.lastModified != f.lastModified() || entry.length != f.length()) {
+			entry = new Entry(f.lastModified(), f.length(), TraceReader.read(f));
+			cache.put(key, entry);
+		}
+
+		return entry.trace;
+	}
+
+	public static synchronized void clear() {
+		cache.clear();
+	}
+}
@@ -0,0 +1,263 @@
+package it.uniroma2.dspsim.utils.trace;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads input rate traces. Supported formats, detected from the file content:
+ * - text, one value per line;
+ * - gzip-compressed text;
+ * - binary, i.e., a little-endian header (magic, version, element size in bytes,
+ *   reserved, number of samples) followed by float32 or float64 samples,
+ *   which is memory-mapped.
+ */
+public class TraceReader {
+
+	public static final int BINARY_MAGIC = 0x52505344; // "DSPR"
+	public static final int BINARY_VERSION = 1;
+	private static final int BINARY_HEADER_SIZE = 24;
+
+	private static final int GZIP_MAGIC = 0x8b1f;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_TOKEN_LENGTH = 64;
+	/* largest number of significant digits that fits exactly in a double mantissa */
+	private static final int MAX_FAST_DIGITS = 15;
+	private static final double POW10[] = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private TraceReader() {}
+
+	public static InputRateTrace read(File f) throws IOException {
+		final int magic = readMagic(f);
+		if (magic == BINARY_MAGIC)
+			return readBinary(f);
+
+		InputStream in = new FileInputStream(f);
+		try {
+			if ((magic & 0xffff) == GZIP_MAGIC)
+				in = new GZIPInputStream(in, BUFFER_SIZE);
+			return parseText(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static int readMagic(File f) throws IOException {
+		try (InputStream in = new FileInputStream(f)) {
+			byte b[] = new byte[4];
+			int n = 0;
+			int read;
+			while (n < b.length && (read = in.read(b, n, b.length - n)) > 0)
+				n += read;
+			if (n < b.length)
+				return n >= 2 ? (b[0] & 0xff) | (b[1] & 0xff) << 8 : 0;
+			return ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN).getInt();
+		}
+	}
+
+	/**
+	 * Parses whitespace-separated decimal values, with no per-value allocation.
+	 * Values with at most 15 significant digits and small exponents are converted
+	 * exactly with a single floating point operation; other values are handed over
+	 * to Double.parseDouble.
+	 */
+	public static InputRateTrace parseText(InputStream in) throws IOException {
+		final byte buffer[] = new byte[BUFFER_SIZE];
+		final byte token[] = new byte[MAX_TOKEN_LENGTH];
+
+		double values[] = new double[BUFFER_SIZE];
+		int count = 0;
+
+		int tokenLength = 0;
+		boolean slow = false;
+		boolean negative = false;
+		boolean sawDigit = false;
+		boolean sawExponentDigit = false;
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean inFraction = false;
+		boolean inExponent = false;
+		boolean negativeExponent = false;
+		int exponent = 0;
+
+		int read;
+		boolean eof = false;
+		while (!eof) {
+			read = in.read(buffer);
+			if (read < 0) {
+				eof = true;
+				read = 1;
+				buffer[0] = '\n';
+			}
+
+			for (int i = 0; i < read; i++) {
+				final byte c = buffer[i];
+
+				if (c == '\n' || c == '\r' || c == ' ' || c == '\t' || c == ',') {
+					if (tokenLength == 0)
+						continue;
+
+					if (!sawDigit || (inExponent && !sawExponentDigit))
+						slow = true;
+
+					double value;
+					final int exp10 = (negativeExponent ? -exponent : exponent) - fractionDigits;
+					if (!slow && mantissa == 0) {
+						value = 0.0;
+					} else if (!slow && exp10 >= 0 && exp10 < POW10.length) {
+						value = mantissa * POW10[exp10];
+					} else if (!slow && exp10 < 0 && -exp10 < POW10.length) {
+						value = mantissa / POW10[-exp10];
+					} else {
+						value = Double.parseDouble(new String(token, 0, tokenLength, StandardCharsets.US_ASCII));
+						negative = false;
+					}
+					if (negative)
+						value = -value;
+
+					if (count == values.length)
+						values = Arrays.copyOf(values, Math.multiplyExact(values.length, 2));
+					values[count++] = value;
+
+					tokenLength = 0;
+					slow = false;
+					negative = false;
+					sawDigit = false;
+					sawExponentDigit = false;
+					mantissa = 0;
+					digits = 0;
+					fractionDigits = 0;
+					inFraction = false;
+					inExponent = false;
+					negativeExponent = false;
+					exponent = 0;
+					continue;
+				}
+
+				if (tokenLength == MAX_TOKEN_LENGTH)
+					throw new NumberFormatException("Trace value too long");
+				final boolean first = tokenLength == 0;
+				token[tokenLength++] = c;
+				if (slow)
+					continue;
+
+				if (c >= '0' && c <= '9') {
+					if (inExponent) {
+						sawExponentDigit = true;
+						exponent = exponent * 10 + (c - '0');
+						if (exponent > 1000)
+							slow = true;
+					} else {
+						sawDigit = true;
+						if (mantissa != 0 || c != '0')
+							digits++;
+						if (digits > MAX_FAST_DIGITS)
+							slow = true;
+						mantissa = mantissa * 10 + (c - '0');
+						if (inFraction)
+							fractionDigits++;
+					}
+				} else if (c == '.' && !inFraction && !inExponent) {
+					inFraction = true;
+				} else if ((c == 'e' || c == 'E') && !inExponent && tokenLength > 1) {
+					inExponent = true;
+				} else if (c == '-' && first) {
+					negative = true;
+				} else if (c == '+' && first) {
+					// nothing to do
+				} else if ((c == '-' || c == '+') && inExponent && (token[tokenLength - 2] | 0x20) == 'e') {
+					negativeExponent = c == '-';
+				} else {
+					// anything else (e.g., NaN, hexadecimal values) is left to Double.parseDouble
+					slow = true;
+				}
+			}
+		}
+
+		return InputRateTrace.of(Arrays.copyOf(values, count));
+	}
+
+	private static InputRateTrace readBinary(File f) throws IOException {
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(BINARY_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0)
+					throw new IOException("Truncated trace file: " + f);
+			}
+			header.flip();
+			header.getInt(); // magic
+			final int version = header.getInt();
+			if (version != BINARY_VERSION)
+				throw new IOException(String.format("Unsupported trace file version %d: %s", version, f));
+			final int elementSize = header.getInt();
+			header.getInt(); // reserved
+			final long count = header.getLong();
+
+			if (elementSize != Float.BYTES && elementSize != Double.BYTES)
+				throw new IOException(String.format("Unsupported trace element size %d: %s", elementSize, f));
+			if (channel.size() != BINARY_HEADER_SIZE + count * elementSize)
+				throw new IOException("Truncated trace file: " + f);
+
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, BINARY_HEADER_SIZE, count * elementSize);
+			mapped.order(ByteOrder.LITTLE_ENDIAN);
+			if (elementSize == Float.BYTES)
+				return InputRateTrace.of(mapped.asFloatBuffer());
+			else
+				return InputRateTrace.of(mapped.asDoubleBuffer());
+		}
+	}
+
+	/**
+	 * Writes a trace in the binary format.
+	 * @param singlePrecision whether samples are stored as float32 rather than float64
+	 */
+	public static void writeBinary(File f, InputRateTrace trace, boolean singlePrecision) throws IOException {
+		final int elementSize = singlePrecision ? Float.BYTES : Double.BYTES;
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(f), BUFFER_SIZE)) {
+			ByteBuffer header = ByteBuffer.allocate(BINARY_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(BINARY_MAGIC);
+			header.putInt(BINARY_VERSION);
+			header.putInt(elementSize);
+			header.putInt(0);
+			header.putLong(trace.size());
+			out.write(header.array());
+
+			ByteBuffer element = ByteBuffer.allocate(elementSize).order(ByteOrder.LITTLE_ENDIAN);
+			for (int i = 0; i < trace.size(); i++) {
+				element.clear();
+				if (singlePrecision)
+					element.putFloat((float) trace.get(i));
+				else
+					element.putDouble(trace.get(i));
+				out.write(element.array());
+			}
+		}
+	}
+
+	/**
+	 * Converts a trace to the binary format.
+	 * Usage: TraceReader input output [float32|float64]
+	 */
+	public static void main(String args[]) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: TraceReader <input> <output> [float32|float64]");
+			System.exit(1);
+		}
+
+		final boolean singlePrecision = args.length > 2 && args[2].equalsIgnoreCase("float32");
+		InputRateTrace trace = read(new File(args[0]));
+		writeBinary(new File(args[1]), trace, singlePrecision);
+		System.out.printf("Converted %d samples\n", trace.size());
+	}
+}
@@ -1,9 +1,16 @@
 import it.uniroma2.dspsim.dsp.Application;
 import it.uniroma2.dspsim.dsp.ApplicationBuilder;
+import it.uniroma2.dspsim.dsp.Operator;
+import it.uniroma2.dspsim.dsp.Reconfiguration;
+import it.uniroma2.dspsim.dsp.queueing.MG1OperatorQueueModel;
 import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.infrastructure.NodeType;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.*;
+
 public class TestApplication {
 
 	@Before
@@ -21,4 +28,81 @@ public class TestApplication {
 		app = ApplicationBuilder.buildForkJoinApplication();
 		System.out.println(app.getAllPaths());
 	}
+
+	private static double pathsLatency(Application app, double inputRate)
+	{
+		double latency = 0.0;
+		for (ArrayList<Operator> path : app.getAllPaths()) {
+			double pathLatency = 0.0;
+			for (Operator op : path)
+				pathLatency += op.responseTime(inputRate, op.getInstances());
+			latency = Math.max(latency, pathLatency);
+		}
+		return latency;
+	}
+
+	private static void assertLatencyMatchesPaths(Application app)
+	{
+		NodeType types[] = ComputingInfrastructure.getInfrastructure().getNodeTypes();
+		Random r = new Random(123);
+		Map<Operator, Double> opRespTime = new HashMap<>();
+
+		for (int step = 0; step < 200; step++) {
+			// reconfigure a random operator from time to time
+			if (step % 3 == 0) {
+				Operator op = app.getOperators().get(r.nextInt(app.getOperators().size()));
+				if (op.getInstances().size() < op.getMaxParallelism())
+					op.reconfigure(Reconfiguration.scaleOut(types[r.nextInt(types.length)]));
+				else
+					op.reconfigure(Reconfiguration.scaleIn(op.getInstances().get(0)));
+			}
+
+			// the input rate changes every other step
+			final double inputRate = 50.0 + 10.0 * (step / 2 % 20);
+			Assert.assertEquals(pathsLatency(app, inputRate), app.endToEndLatency(inputRate), 0.0);
+
+			for (Operator op : app.getOperators())
+				opRespTime.put(op, op.responseTime(inputRate, op.getInstances()));
+			Assert.assertEquals(pathsLatency(app, inputRate), app.endToEndLatency(opRespTime), 0.0);
+		}
+	}
+
+	@Test
+	public void testLatencyMatchesPaths()
+	{
+		assertLatencyMatchesPaths(ApplicationBuilder.buildForkJoinApplication());
+		assertLatencyMatchesPaths(ApplicationBuilder.simpleTreeApplication());
+
+		// diamond with an additional shortcut edge and two sinks
+		Application app = new Application();
+		Operator ops[] = new Operator[5];
+		for (int i = 0; i < ops.length; i++) {
+			ops[i] = new Operator("op" + i, new MG1OperatorQueueModel(1 / (100.0 + 20 * i), 0.0), 5);
+			app.addOperator(ops[i]);
+		}
+		app.addEdge(ops[0], ops[1]);
+		app.addEdge(ops[0], ops[2]);
+		app.addEdge(ops[1], ops[3]);
+		app.addEdge(ops[2], ops[3]);
+		app.addEdge(ops[0], ops[3]);
+		app.addEdge(ops[2], ops[4]);
+		assertLatencyMatchesPaths(app);
+	}
+
+	@Test
+	public void testLatencyAfterNodeTypesUpdate()
+	{
+		Application app = ApplicationBuilder.buildForkJoinApplication();
+		final double inputRate = 100.0;
+		final double latency = app.endToEndLatency(inputRate);
+
+		// node types are updated in place, as in a scenario update, with the same input rate
+		ComputingInfrastructure infra = ComputingInfrastructure.getInfrastructure();
+		for (NodeType type : infra.getNodeTypes())
+			type.setCpuSpeedup(type.getCpuSpeedup() * 2.0);
+		infra.nodeTypesUpdated();
+
+		Assert.assertEquals(pathsLatency(app, inputRate), app.endToEndLatency(inputRate), 0.0);
+		Assert.assertTrue(app.endToEndLatency(inputRate) < latency);
+	}
 }
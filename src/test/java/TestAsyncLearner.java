@@ -0,0 +1,107 @@
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.ConfigurationOverrides;
+import it.uniroma2.dspsim.dsp.Operator;
+import it.uniroma2.dspsim.dsp.edf.om.DeepQLearningOM;
+import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ActionIterator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.CachedNeuralNetwork;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
+import it.uniroma2.dspsim.dsp.queueing.MG1OperatorQueueModel;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TestAsyncLearner {
+
+    private static final int MAX_PARALLELISM = 3;
+    private static final int STEPS = 500;
+
+    @Rule
+    public final ConfigurationOverrides conf = new ConfigurationOverrides();
+
+    /* exposes the learning step and the networks of the OM */
+    private static class AsyncDeepQLearningOM extends DeepQLearningOM {
+
+        AsyncDeepQLearningOM(Operator operator) {
+            super(operator);
+        }
+
+        void step(State oldState, Action action, State currentState, double reward) {
+            learningStep(oldState, action, currentState, reward);
+        }
+
+        CachedNeuralNetwork getActingNetwork() {
+            return network;
+        }
+
+        CachedNeuralNetwork getLearnerNetwork() {
+            return learnerNetwork;
+        }
+    }
+
+    @Before
+    public void setup() {
+        conf.set(ConfigurationKeys.TRAINING_INPUT_FILE_PATH_KEY, "traces/profile_last_month.dat");
+        conf.set(ConfigurationKeys.OUTPUT_BASE_PATH_KEY, System.getProperty("java.io.tmpdir"));
+        conf.set(ConfigurationKeys.DL_OM_ASYNC_LEARNER, "true");
+        conf.set(ConfigurationKeys.DL_OM_ASYNC_PUBLISH_PERIOD, "5");
+        // no fit is skipped, however late the learner thread starts
+        conf.set(ConfigurationKeys.DL_OM_ASYNC_MAX_PENDING_FITS, Integer.toString(STEPS));
+        conf.set(ConfigurationKeys.DL_OM_FIT_EVERY_ITERS, "1");
+        ComputingInfrastructure.initDefaultInfrastructure(2);
+    }
+
+    private static Thread findLearnerThread(Operator operator) {
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().equals("learner-" + operator.getName()))
+                return t;
+        }
+        return null;
+    }
+
+    @Test
+    public void actingNetworkGetsLearnerWeights() throws InterruptedException {
+        Operator operator = new Operator("async", new MG1OperatorQueueModel(1 / 160.0, 0.0), MAX_PARALLELISM);
+        operator.setSloRespTime(0.065);
+        AsyncDeepQLearningOM om = new AsyncDeepQLearningOM(operator);
+
+        final INDArray initialParams = om.getActingNetwork().params().dup();
+        Assert.assertNotSame(om.getLearnerNetwork(), om.getActingNetwork());
+
+        List<State> states = new ArrayList<>();
+        StateIterator it = new StateIterator(StateType.K_LAMBDA, MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), om.getInputRateLevels());
+        while (it.hasNext())
+            states.add(it.next());
+
+        Random r = new Random(5);
+        for (int i = 0; i < STEPS; i++) {
+            State s = states.get(r.nextInt(states.size()));
+            Action a = ActionIterator.getDoNothingAction();
+            State next = states.get(r.nextInt(states.size()));
+            om.step(s, a, next, r.nextDouble());
+        }
+
+        Thread learner = findLearnerThread(operator);
+        Assert.assertNotNull(learner);
+
+        om.close();
+
+        // the learner thread is stopped, after publishing its final network
+        learner.join(10000);
+        Assert.assertFalse(learner.isAlive());
+        Assert.assertNotSame(om.getLearnerNetwork(), om.getActingNetwork());
+        Assert.assertEquals(0.0, om.getLearnerNetwork().params().sub(om.getActingNetwork().params())
+                .norm1Number().doubleValue(), 0.0);
+        Assert.assertTrue(initialParams.sub(om.getActingNetwork().params()).norm1Number().doubleValue() > 0.0);
+    }
+}
@@ -0,0 +1,380 @@
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.ConfigurationOverrides;
+import it.uniroma2.dspsim.dsp.edf.am.centralized.*;
+import it.uniroma2.dspsim.dsp.edf.om.rl.*;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ActionIterator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.DenseStateIndexer;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.utils.matrix.BinaryTableFile;
+import it.uniroma2.dspsim.utils.matrix.MappedDoubleArray;
+import it.uniroma2.dspsim.utils.matrix.StoragePrecision;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+
+public class TestBinaryTableFile {
+
+    private static final int MAX_PARALLELISM = 4;
+    private static final int LAMBDA_LEVELS = 6;
+
+    @Rule
+    public final ConfigurationOverrides conf = new ConfigurationOverrides();
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        ComputingInfrastructure.initDefaultInfrastructure(3);
+        file = File.createTempFile("table", ".bin");
+        file.deleteOnExit();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static double value(State s, Action a) {
+        return s.getIndex() * 0.5 + a.getIndex();
+    }
+
+    private ArrayBasedQTable filledQTable() {
+        ArrayBasedQTable qTable = QTableFactory.newArrayBasedQTable(MAX_PARALLELISM, LAMBDA_LEVELS);
+        StateIterator it = new StateIterator(StateType.K_LAMBDA, MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+        while (it.hasNext()) {
+            State s = it.next();
+            ActionIterator ait = new ActionIterator();
+            while (ait.hasNext()) {
+                Action a = ait.next();
+                qTable.setQ(s, a, value(s, a));
+            }
+        }
+        return qTable;
+    }
+
+    private void assertQTable(QTable qTable) {
+        StateIterator it = new StateIterator(StateType.K_LAMBDA, MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+        while (it.hasNext()) {
+            State s = it.next();
+            ActionIterator ait = new ActionIterator();
+            while (ait.hasNext()) {
+                Action a = ait.next();
+                Assert.assertEquals(value(s, a), qTable.getQ(s, a), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void qTableRoundTrip() {
+        filledQTable().dump(file);
+        Assert.assertTrue(BinaryTableFile.isBinaryTableFile(file));
+
+        ArrayBasedQTable loaded = QTableFactory.newArrayBasedQTable(MAX_PARALLELISM, LAMBDA_LEVELS);
+        loaded.load(file);
+        assertQTable(loaded);
+
+        // loaded tables can be updated and dumped again, without changing the mapped file
+        State s = new StateIterator(StateType.K_LAMBDA, MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS).next();
+        Action nop = ActionIterator.getDoNothingAction();
+        loaded.setQ(s, nop, -1.0);
+        Assert.assertEquals(-1.0, loaded.getQ(s, nop), 0.0);
+        ArrayBasedQTable reloaded = QTableFactory.newArrayBasedQTable(MAX_PARALLELISM, LAMBDA_LEVELS);
+        reloaded.load(file);
+        assertQTable(reloaded);
+    }
+
+    @Test
+    public void dumpOverMappedTable() {
+        filledQTable().dump(file);
+        ArrayBasedQTable loaded = QTableFactory.newArrayBasedQTable(MAX_PARALLELISM, LAMBDA_LEVELS);
+        loaded.load(file);
+
+        // the loaded table is dumped, modified, to the file it is mapped from
+        State s = new StateIterator(StateType.K_LAMBDA, MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS).next();
+        Action nop = ActionIterator.getDoNothingAction();
+        final double old = loaded.getQ(s, nop);
+        loaded.setQ(s, nop, -1.0);
+        loaded.dump(file);
+        loaded.setQ(s, nop, old);
+        assertQTable(loaded);
+
+        ArrayBasedQTable reloaded = QTableFactory.newArrayBasedQTable(MAX_PARALLELISM, LAMBDA_LEVELS);
+        reloaded.load(file);
+        Assert.assertEquals(-1.0, reloaded.getQ(s, nop), 0.0);
+    }
+
+    @Test
+    public void javaFormatIsStillLoaded() {
+        conf.set(ConfigurationKeys.POLICY_DUMP_FORMAT_KEY, "java");
+        filledQTable().dump(file);
+        Assert.assertFalse(BinaryTableFile.isBinaryTableFile(file));
+
+        ArrayBasedQTable loaded = QTableFactory.newArrayBasedQTable(MAX_PARALLELISM, LAMBDA_LEVELS);
+        loaded.load(file);
+        assertQTable(loaded);
+    }
+
+    @Test
+    public void javaDumpKeepsReducedPrecisionStore() {
+        conf.set(ConfigurationKeys.POLICY_DUMP_FORMAT_KEY, "java");
+        DenseStateIndexer indexer = new DenseStateIndexer(3, MAX_PARALLELISM, LAMBDA_LEVELS);
+        ArrayBasedQTable qTable = new ArrayBasedQTable(0.0, indexer, 2 * 3, StoragePrecision.FLOAT, 0.0);
+        ArrayBasedVTable vTable = new ArrayBasedVTable(0.0, indexer, StoragePrecision.FLOAT, 0.0);
+        State s = new StateIterator(StateType.K_LAMBDA, MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS).next();
+        Action nop = ActionIterator.getDoNothingAction();
+
+        qTable.setQ(s, nop, 0.1);
+        qTable.dump(file);
+        ArrayBasedQTable loaded = QTableFactory.newArrayBasedQTable(MAX_PARALLELISM, LAMBDA_LEVELS);
+        loaded.load(file);
+        Assert.assertEquals((float) 0.1, loaded.getQ(s, nop), 0.0);
+
+        vTable.setV(s, 0.1);
+        vTable.dump(file);
+        ArrayBasedVTable loadedV = VTableFactory.newArrayBasedVTable(MAX_PARALLELISM, LAMBDA_LEVELS);
+        loadedV.load(file);
+        Assert.assertEquals((float) 0.1, loadedV.getV(s), 0.0);
+
+        // the dumped tables still round values to float
+        qTable.setQ(s, nop, 0.2);
+        vTable.setV(s, 0.2);
+        Assert.assertEquals((float) 0.2, qTable.getQ(s, nop), 0.0);
+        Assert.assertEquals((float) 0.2, vTable.getV(s), 0.0);
+    }
+
+    @Test
+    public void hashIndexedJavaDumpIsLoaded() {
+        conf.set(ConfigurationKeys.POLICY_DUMP_FORMAT_KEY, "java");
+        int maxStateHash = 0;
+        StateIterator it = new StateIterator(StateType.K_LAMBDA, MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+        while (it.hasNext())
+            maxStateHash = Math.max(maxStateHash, it.next().hashCode());
+        final int maxActionHash = 2 * ComputingInfrastructure.getInfrastructure().getNodeTypes().length;
+
+        // tables dumped before dense indexing
+        ArrayBasedQTable qTable = new ArrayBasedQTable(0.0, maxStateHash, maxActionHash);
+        ArrayBasedVTable vTable = new ArrayBasedVTable(0.0, maxStateHash);
+        it = new StateIterator(StateType.K_LAMBDA, MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+        while (it.hasNext()) {
+            State s = it.next();
+            vTable.setV(s, s.getIndex() * 2.0);
+            ActionIterator ait = new ActionIterator();
+            while (ait.hasNext()) {
+                Action a = ait.next();
+                qTable.setQ(s, a, value(s, a));
+            }
+        }
+
+        qTable.dump(file);
+        ArrayBasedQTable loaded = QTableFactory.newArrayBasedQTable(MAX_PARALLELISM, LAMBDA_LEVELS);
+        loaded.load(file);
+        assertQTable(loaded);
+
+        vTable.dump(file);
+        ArrayBasedVTable loadedV = VTableFactory.newArrayBasedVTable(MAX_PARALLELISM, LAMBDA_LEVELS);
+        loadedV.load(file);
+        it = new StateIterator(StateType.K_LAMBDA, MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+        while (it.hasNext()) {
+            State s = it.next();
+            Assert.assertEquals(s.getIndex() * 2.0, loadedV.getV(s), 0.0);
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void shapeMismatchIsRejected() {
+        filledQTable().dump(file);
+        QTableFactory.newArrayBasedQTable(MAX_PARALLELISM + 1, LAMBDA_LEVELS).load(file);
+    }
+
+    @Test
+    public void vTableRoundTrip() {
+        ArrayBasedVTable vTable = VTableFactory.newArrayBasedVTable(MAX_PARALLELISM, LAMBDA_LEVELS);
+        StateIterator it = new StateIterator(StateType.K_LAMBDA, MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+        while (it.hasNext()) {
+            State s = it.next();
+            vTable.setV(s, s.getIndex() * 2.0);
+        }
+        vTable.dump(file);
+
+        ArrayBasedVTable loaded = VTableFactory.newArrayBasedVTable(MAX_PARALLELISM, LAMBDA_LEVELS);
+        loaded.load(file);
+        it = new StateIterator(StateType.K_LAMBDA, MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+        while (it.hasNext()) {
+            State s = it.next();
+            Assert.assertEquals(s.getIndex() * 2.0, loaded.getV(s), 0.0);
+        }
+    }
+
+    @Test
+    public void matrixRoundTrip() throws IOException {
+        double[][] matrix = {{0.5, 0.5, 0.0}, {0.1, 0.2, 0.7}};
+        BinaryTableFile.writeMatrix(file, matrix);
+        double[][] loaded = BinaryTableFile.readMatrix(file, true);
+        Assert.assertEquals(matrix.length, loaded.length);
+        for (int i = 0; i < matrix.length; i++)
+            Assert.assertArrayEquals(matrix[i], loaded[i], 0.0);
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptionIsDetected() throws IOException {
+        BinaryTableFile.writeMatrix(file, new double[][]{{1.0, 2.0}, {3.0, 4.0}});
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 1);
+            raf.write(0x7f);
+        }
+        BinaryTableFile.readMatrix(file, true);
+    }
+
+    @Test
+    public void smallElementsRoundTrip() throws IOException {
+        final short[] shorts = {-1, 0, 300, Short.MAX_VALUE, Short.MIN_VALUE};
+        final byte[] bytes = {-1, 0, 5, Byte.MAX_VALUE, Byte.MIN_VALUE};
+        final int[] shape = {shorts.length};
+
+        BinaryTableFile.writeShorts(file, BinaryTableFile.KIND_POLICY, shape, shorts);
+        final long shortsFileLength = file.length();
+        BinaryTableFile table = BinaryTableFile.open(file, BinaryTableFile.KIND_POLICY, true);
+        Assert.assertEquals(BinaryTableFile.ELEMENT_SHORT, table.getElementType());
+        Assert.assertArrayEquals(shorts, table.getShorts(shorts.length));
+
+        BinaryTableFile.writeBytes(file, BinaryTableFile.KIND_POLICY, shape, bytes);
+        table = BinaryTableFile.open(file, BinaryTableFile.KIND_POLICY, true);
+        Assert.assertEquals(BinaryTableFile.ELEMENT_BYTE, table.getElementType());
+        Assert.assertArrayEquals(bytes, table.getBytes(bytes.length));
+
+        // same header, one byte less per value
+        Assert.assertEquals(shortsFileLength - bytes.length, file.length());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void elementTypeMismatchIsRejected() throws IOException {
+        BinaryTableFile.writeBytes(file, BinaryTableFile.KIND_POLICY, new int[]{2}, new byte[]{1, 2});
+        BinaryTableFile.open(file, BinaryTableFile.KIND_POLICY, true).getData();
+    }
+
+    @Test
+    public void version1FileIsLoaded() throws IOException {
+        // version 1 header: no element type, payload of doubles
+        ByteBuffer payload = ByteBuffer.allocate(2 * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        payload.putDouble(1.5).putDouble(-2.0);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        ByteBuffer header = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(BinaryTableFile.MAGIC).putInt(1).putInt(BinaryTableFile.KIND_MATRIX).putInt(2);
+        header.putInt(1).putInt(2);
+        header.putLong(2).putLong(crc.getValue());
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(header.array());
+            out.write(payload.array());
+        }
+
+        double[][] loaded = BinaryTableFile.readMatrix(file, true);
+        Assert.assertArrayEquals(new double[]{1.5, -2.0}, loaded[0], 0.0);
+    }
+
+    @Test
+    public void jointQTableRoundTrip() throws IOException {
+        for (JointQTableStorage storage : JointQTableStorage.values())
+            jointQTableRoundTrip(storage);
+    }
+
+    private void jointQTableRoundTrip(JointQTableStorage storage) throws IOException {
+        ComputingInfrastructure.initDefaultInfrastructure(1);
+        final int[] maxParallelism = {2, 3};
+        final int[] spaceShape = {1, 3, 2, 3};
+        JointQTable qTable = JointQTable.createQTable(2, maxParallelism, 3, storage);
+
+        int i = 0;
+        JointStateIterator it = new JointStateIterator(2, maxParallelism, ComputingInfrastructure.getInfrastructure(), 3);
+        while (it.hasNext()) {
+            JointState s = it.next();
+            JointActionIterator ait = new JointActionIterator(2);
+            while (ait.hasNext()) {
+                JointAction a = ait.next();
+                if (s.validateAction(a))
+                    qTable.setQ(s, a, i++);
+            }
+        }
+        qTable.dump(file, spaceShape);
+
+        JointQTable loaded = JointQTable.load(file, spaceShape, 2, true);
+        i = 0;
+        it = new JointStateIterator(2, maxParallelism, ComputingInfrastructure.getInfrastructure(), 3);
+        while (it.hasNext()) {
+            JointState s = it.next();
+            JointActionIterator ait = new JointActionIterator(2);
+            while (ait.hasNext()) {
+                JointAction a = ait.next();
+                if (s.validateAction(a))
+                    Assert.assertEquals(i++, loaded.getQ(s, a), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void jointQTableJavaSerialization() throws IOException, ClassNotFoundException {
+        ComputingInfrastructure.initDefaultInfrastructure(1);
+        final int[] maxParallelism = {2, 3};
+        JointQTable qTable = JointQTable.createQTable(2, maxParallelism, 3, JointQTableStorage.HEAP,
+                StoragePrecision.FLOAT, 0.0);
+        JointState s = new JointStateIterator(2, maxParallelism, ComputingInfrastructure.getInfrastructure(), 3).next();
+        JointAction a = new JointActionIterator(2).next();
+        qTable.setQ(s, a, 0.1);
+
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(qTable);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+            JointQTable loaded = (JointQTable) in.readObject();
+            Assert.assertEquals((float) 0.1, loaded.getQ(s, a), 0.0);
+        }
+
+        // the serialized table still rounds values to float
+        qTable.setQ(s, a, 0.2);
+        Assert.assertEquals((float) 0.2, qTable.getQ(s, a), 0.0);
+    }
+
+    @Test(expected = NotSerializableException.class)
+    public void offHeapJointQTableIsNotSerialized() throws IOException {
+        ComputingInfrastructure.initDefaultInfrastructure(1);
+        JointQTable qTable = JointQTable.createQTable(2, new int[]{2, 3}, 3, JointQTableStorage.DIRECT);
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(qTable);
+        }
+    }
+
+    @Test
+    public void scratchArrayBeyondIntIndexes() throws IOException {
+        // sparse file: only the written pages are allocated
+        final long length = (1L << 31) + 16;
+        MappedDoubleArray arr = MappedDoubleArray.mapScratchFile(file, length);
+        Assert.assertEquals(length, arr.length());
+        arr.set(length - 1, 1.5);
+        arr.set(1L << 31, -2.0);
+        arr.set(3, 4.0);
+        Assert.assertEquals(1.5, arr.get(length - 1), 0.0);
+        Assert.assertEquals(-2.0, arr.get(1L << 31), 0.0);
+        Assert.assertEquals(4.0, arr.get(3), 0.0);
+        Assert.assertEquals(0.0, arr.get(length - 2), 0.0);
+    }
+}
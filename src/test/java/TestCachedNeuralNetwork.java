@@ -0,0 +1,140 @@
+import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
+import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicyCallback;
+import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.concrete.GreedyActionSelectionPolicy;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.NeuralStateRepresentation;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.CachedNeuralNetwork;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.NeuralNetworkConfigurator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestCachedNeuralNetwork {
+
+    private static final int MAX_PARALLELISM = 3;
+    private static final int LAMBDA_LEVELS = 10;
+
+    private StateCodec codec;
+    private NeuralStateRepresentation repr;
+
+    @Before
+    public void setup() {
+        ComputingInfrastructure.initDefaultInfrastructure(2);
+        codec = new StateCodec(StateType.K_LAMBDA, MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+        codec.materializeStates();
+        repr = new NeuralStateRepresentation(MAX_PARALLELISM, LAMBDA_LEVELS);
+    }
+
+    private CachedNeuralNetwork buildNetwork(int cacheSize) {
+        Nd4j.getRandom().setSeed(12345);
+        return new CachedNeuralNetwork(
+                NeuralNetworkConfigurator.configure(repr.getRepresentationLength(), codec.getActionsCount()),
+                cacheSize, repr);
+    }
+
+    private void assertBatchMatchesSingle(CachedNeuralNetwork network) {
+        List<State> states = new ArrayList<>();
+        for (int s = 0; s < codec.getStatesCount(); s += 3)
+            states.add(codec.getState(s));
+        // duplicates are allowed
+        states.add(codec.getState(0));
+
+        INDArray batch = network.output(states);
+        Assert.assertEquals(states.size(), batch.rows());
+        for (int i = 0; i < states.size(); i++) {
+            INDArray single = network.output(states.get(i));
+            for (int j = 0; j < codec.getActionsCount(); j++)
+                Assert.assertEquals(single.getDouble(j), batch.getDouble(i, j), 1E-5);
+        }
+    }
+
+    @Test
+    public void batchMatchesSingleOutput() {
+        assertBatchMatchesSingle(buildNetwork(0));
+    }
+
+    @Test
+    public void batchMatchesSingleOutputWithCache() {
+        CachedNeuralNetwork network = buildNetwork(1000);
+        // partially fill the cache
+        for (int s = 0; s < codec.getStatesCount(); s += 2)
+            network.output(codec.getState(s));
+        assertBatchMatchesSingle(network);
+        Assert.assertTrue(network.getHits() > 0);
+    }
+
+    @Test
+    public void copiesAreIndependent() {
+        CachedNeuralNetwork network = buildNetwork(1000);
+        CachedNeuralNetwork copy = network.copy();
+        State state = codec.getState(5);
+        final double before = copy.output(state).getDouble(0);
+        Assert.assertEquals(network.output(state).getDouble(0), before, 0.0);
+
+        INDArray input = state.arrayRepresentation(repr);
+        INDArray labels = Nd4j.ones(1, codec.getActionsCount()).muli(100.0);
+        for (int i = 0; i < 10; i++)
+            network.fit(input, labels);
+
+        Assert.assertNotEquals(before, network.output(state).getDouble(0), 1E-6);
+        Assert.assertEquals(before, copy.output(state).getDouble(0), 0.0);
+    }
+
+    private int greedyBatches(CachedNeuralNetwork network, boolean batching) {
+        final int batches[] = {0};
+        ActionSelectionPolicyCallback callback = new ActionSelectionPolicyCallback() {
+            @Override
+            public boolean validateAction(State s, Action a) {
+                return s.validateAction(a);
+            }
+
+            @Override
+            public double evaluateAction(State s, Action a) {
+                return network.output(s).getDouble(a.getIndex());
+            }
+
+            @Override
+            public boolean supportsBatchEvaluation() {
+                return batching;
+            }
+
+            @Override
+            public double[] evaluateActions(State s, List<Action> actions) {
+                batches[0]++;
+                return ActionSelectionPolicyCallback.super.evaluateActions(s, actions);
+            }
+        };
+
+        GreedyActionSelectionPolicy greedy = new GreedyActionSelectionPolicy(callback);
+        for (int s = 0; s < codec.getStatesCount(); s++) {
+            State state = codec.getState(s);
+            Action best = null;
+            for (int a = 0; a < codec.getActionsCount(); a++) {
+                if (!codec.isValid(s, a))
+                    continue;
+                Action action = codec.getAction(a);
+                if (best == null || callback.evaluateAction(state, action) < callback.evaluateAction(state, best))
+                    best = action;
+            }
+            Assert.assertEquals(best, greedy.selectAction(state));
+        }
+        return batches[0];
+    }
+
+    @Test
+    public void greedyPolicyUsesBatchedEvaluation() {
+        final CachedNeuralNetwork network = buildNetwork(0);
+        Assert.assertEquals(codec.getStatesCount(), greedyBatches(network, true));
+        // callbacks that do not batch are evaluated one action at a time
+        Assert.assertEquals(0, greedyBatches(network, false));
+    }
+}
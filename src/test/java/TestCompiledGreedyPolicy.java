@@ -0,0 +1,184 @@
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.ConfigurationOverrides;
+import it.uniroma2.dspsim.dsp.Operator;
+import it.uniroma2.dspsim.dsp.edf.om.ValueIterationOM;
+import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
+import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.ActionSelectionPolicyCallback;
+import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.concrete.CompiledGreedyActionSelectionPolicy;
+import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.concrete.GreedyActionSelectionPolicy;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.PolicyIOUtils;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
+import it.uniroma2.dspsim.dsp.queueing.MG1OperatorQueueModel;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+public class TestCompiledGreedyPolicy {
+
+    private static final int MAX_PARALLELISM = 4;
+    private static final int LAMBDA_LEVELS = 6;
+
+    private StateCodec codec;
+    private double[] q;
+
+    @Rule
+    public final ConfigurationOverrides conf = new ConfigurationOverrides();
+
+    private final ActionSelectionPolicyCallback callback = new ActionSelectionPolicyCallback() {
+        @Override
+        public boolean validateAction(State s, Action a) {
+            return s.validateAction(a);
+        }
+
+        @Override
+        public double evaluateAction(State s, Action a) {
+            return q[codec.encode(s) * codec.getActionsCount() + a.getIndex()];
+        }
+    };
+
+    @Before
+    public void setup() {
+        ComputingInfrastructure.initDefaultInfrastructure(2);
+        codec = new StateCodec(StateType.K_LAMBDA, MAX_PARALLELISM, ComputingInfrastructure.getInfrastructure(),
+                LAMBDA_LEVELS);
+        q = new double[codec.getStatesCount() * codec.getActionsCount()];
+        Random r = new Random(7);
+        // few distinct values, so that ties are frequent
+        for (int i = 0; i < q.length; i++)
+            q[i] = r.nextInt(4);
+    }
+
+    private void assertSameAsGreedy(CompiledGreedyActionSelectionPolicy compiled) {
+        GreedyActionSelectionPolicy greedy = new GreedyActionSelectionPolicy(callback);
+        for (int s = 0; s < codec.getStatesCount(); s++) {
+            State state = codec.getState(s);
+            Assert.assertEquals(greedy.selectAction(state), compiled.selectAction(state));
+        }
+    }
+
+    @Test
+    public void compiledMatchesGreedy() {
+        CompiledGreedyActionSelectionPolicy compiled = new CompiledGreedyActionSelectionPolicy(callback);
+        assertSameAsGreedy(compiled);
+        compiled.compile(codec);
+        Assert.assertTrue(compiled.isCompiled());
+        assertSameAsGreedy(compiled);
+    }
+
+    @Test
+    public void updateFollowsValues() {
+        CompiledGreedyActionSelectionPolicy compiled = new CompiledGreedyActionSelectionPolicy(callback);
+        compiled.compile(codec);
+
+        Random r = new Random(11);
+        for (int i = 0; i < 200; i++) {
+            final int s = r.nextInt(codec.getStatesCount());
+            final int a = r.nextInt(codec.getActionsCount());
+            q[s * codec.getActionsCount() + a] = r.nextInt(4) - 1;
+            compiled.update(s);
+        }
+        assertSameAsGreedy(compiled);
+    }
+
+    @Test
+    public void dumpAndLoad() throws IOException {
+        CompiledGreedyActionSelectionPolicy compiled = new CompiledGreedyActionSelectionPolicy(callback);
+        compiled.compile(codec);
+
+        File f = File.createTempFile("policy", null);
+        try {
+            compiled.dump(f);
+
+            CompiledGreedyActionSelectionPolicy loaded = new CompiledGreedyActionSelectionPolicy(callback);
+            loaded.load(f, codec);
+            Assert.assertTrue(loaded.isCompiled());
+            for (int s = 0; s < codec.getStatesCount(); s++)
+                Assert.assertEquals(compiled.getActionIndex(s), loaded.getActionIndex(s));
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void tooManyActionsAreNotCompiled() {
+        // 1 + 2 * 64 actions do not fit a byte
+        double[] speedups = new double[64];
+        for (int i = 0; i < speedups.length; i++)
+            speedups[i] = 1.0 + 0.1 * i;
+        ComputingInfrastructure.initCustomInfrastructure(speedups, speedups.length);
+        codec = new StateCodec(StateType.K_LAMBDA, 1, ComputingInfrastructure.getInfrastructure(), 2);
+        Assert.assertTrue(codec.getActionsCount() > Byte.MAX_VALUE);
+        q = new double[codec.getStatesCount() * codec.getActionsCount()];
+        Random r = new Random(5);
+        for (int i = 0; i < q.length; i++)
+            q[i] = r.nextInt(4);
+
+        CompiledGreedyActionSelectionPolicy policy = new CompiledGreedyActionSelectionPolicy(callback);
+        policy.compile(codec);
+        Assert.assertFalse(policy.isCompiled());
+        policy.update(0);
+        assertSameAsGreedy(policy);
+    }
+
+    private ValueIterationOM plan(Operator operator, long maxTimeSeconds) {
+        conf.set(ConfigurationKeys.VI_MAX_TIME_SECONDS_KEY, Long.toString(maxTimeSeconds));
+        return new ValueIterationOM(operator);
+    }
+
+    @Test
+    public void valueIterationLoadsDumpedPolicy() throws IOException {
+        conf.set(ConfigurationKeys.TRAINING_INPUT_FILE_PATH_KEY, "traces/profile_last_month.dat");
+        conf.set(ConfigurationKeys.OUTPUT_BASE_PATH_KEY, System.getProperty("java.io.tmpdir"));
+        File dir = Files.createTempDirectory("policy").toFile();
+        conf.set(ConfigurationKeys.OM_POLICY_DUMP_DIR, dir.getAbsolutePath());
+        conf.set(ConfigurationKeys.OM_POLICY_LOAD_DIR, "");
+
+        Operator operator = new Operator("vi", new MG1OperatorQueueModel(1 / 160.0, 0.0), MAX_PARALLELISM);
+        operator.setSloRespTime(0.065);
+        ValueIterationOM planned = plan(operator, 60);
+        planned.savePolicy();
+
+        // replaced by a policy that is not greedy w.r.t. the dumped Q
+        codec = new StateCodec(StateType.K_LAMBDA, MAX_PARALLELISM, ComputingInfrastructure.getInfrastructure(),
+                planned.getInputRateLevels());
+        q = new double[codec.getStatesCount() * codec.getActionsCount()];
+        for (int i = 0; i < q.length; i++)
+            q[i] = -(i % codec.getActionsCount());
+        CompiledGreedyActionSelectionPolicy dumped = new CompiledGreedyActionSelectionPolicy(callback);
+        dumped.compile(codec);
+        dumped.dump(PolicyIOUtils.getFileForDumping(operator, "greedyPolicy"));
+
+        try {
+            conf.set(ConfigurationKeys.OM_POLICY_DUMP_DIR, "");
+            conf.set(ConfigurationKeys.OM_POLICY_LOAD_DIR, dir.getAbsolutePath());
+
+            // not planned: the dumped policy is used
+            ValueIterationOM loaded = plan(operator, 0);
+            for (int s = 0; s < codec.getStatesCount(); s++) {
+                State state = codec.getState(s);
+                Assert.assertEquals(dumped.selectAction(state), loaded.getActionSelectionPolicy().selectAction(state));
+            }
+
+            // planned again: the policy is compiled from the updated Q
+            ValueIterationOM replanned = plan(operator, 60);
+            GreedyActionSelectionPolicy greedy = new GreedyActionSelectionPolicy(replanned);
+            for (int s = 0; s < codec.getStatesCount(); s++) {
+                State state = codec.getState(s);
+                Assert.assertEquals(greedy.selectAction(state), replanned.getActionSelectionPolicy().selectAction(state));
+            }
+        } finally {
+            for (File f : dir.listFiles())
+                f.delete();
+            dir.delete();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+import it.uniroma2.dspsim.dsp.Operator;
+import it.uniroma2.dspsim.dsp.edf.om.QLearningOM;
+import it.uniroma2.dspsim.dsp.edf.om.RewardBasedOM;
+import it.uniroma2.dspsim.dsp.edf.om.fa.FunctionApproximationManager;
+import it.uniroma2.dspsim.dsp.edf.om.fa.features.simple.ReconfigurationFeature;
+import it.uniroma2.dspsim.dsp.edf.om.fa.features.tiling.TilingBuilder;
+import it.uniroma2.dspsim.dsp.edf.om.fa.features.tiling.TilingType;
+import it.uniroma2.dspsim.dsp.edf.om.fa.features.tiling.shape.RectangleTilingShape;
+import it.uniroma2.dspsim.dsp.edf.om.fa.features.tiling.shape.StripeTilingShape;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
+import it.uniroma2.dspsim.dsp.queueing.MG1OperatorQueueModel;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+public class TestCompiledLinearFA {
+
+    private static final int MAX_PARALLELISM = 5;
+
+    private RewardBasedOM om;
+    private StateCodec codec;
+
+    @Before
+    public void setup() {
+        ComputingInfrastructure.initDefaultInfrastructure(3);
+        om = new QLearningOM(new Operator("op", new MG1OperatorQueueModel(1.0, 0.0), MAX_PARALLELISM));
+        codec = new StateCodec(om.getStateRepresentation(), MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), om.getInputRateLevels());
+    }
+
+    private FunctionApproximationManager buildFA() {
+        final int lambdaLevels = om.getInputRateLevels();
+        FunctionApproximationManager fa = new FunctionApproximationManager();
+        fa.addFeature(new ReconfigurationFeature(1));
+        fa.addFeature(new ReconfigurationFeature(-1));
+        // smaller than the state space, so that some pairs are out of the tilings
+        fa.addFeature(new TilingBuilder()
+                .setShape(new RectangleTilingShape(4, 5, 8))
+                .setXRange(1, MAX_PARALLELISM)
+                .setYRange(0, lambdaLevels - 3)
+                .setZRange(1, 8)
+                .build(TilingType.K_LAMBDA_RES_TYPE));
+        fa.addFeature(new TilingBuilder()
+                .setShape(new StripeTilingShape(MAX_PARALLELISM + 1, 2.0, 8))
+                .setXRange(1, MAX_PARALLELISM + 1)
+                .setYRange(0, lambdaLevels)
+                .setZRange(1, 8)
+                .build(TilingType.K_LAMBDA_RES_TYPE));
+        return fa;
+    }
+
+    private void assertSameQ(FunctionApproximationManager expected, FunctionApproximationManager actual) {
+        for (int s = 0; s < codec.getStatesCount(); s++) {
+            for (int a = 0; a < codec.getActionsCount(); a++) {
+                if (!codec.isValid(s, a))
+                    continue;
+                Assert.assertEquals(expected.evaluateQ(codec.getState(s), codec.getAction(a), om),
+                        actual.evaluateQ(codec.getState(s), codec.getAction(a), om), 0.0);
+            }
+        }
+    }
+
+    private void randomUpdates(FunctionApproximationManager fa, int count) {
+        Random r = new Random(42);
+        for (int i = 0; i < count; i++) {
+            int s, a;
+            do {
+                s = r.nextInt(codec.getStatesCount());
+                a = r.nextInt(codec.getActionsCount());
+            } while (!codec.isValid(s, a));
+            fa.update(r.nextDouble() - 0.3, codec.getState(s), codec.getAction(a), om);
+        }
+    }
+
+    @Test
+    public void compiledMatchesFeatures() {
+        FunctionApproximationManager compiled = buildFA();
+        randomUpdates(compiled, 200);
+        // weights set before compilation are imported
+        compiled.compile(codec, om);
+        randomUpdates(compiled, 300);
+
+        FunctionApproximationManager expected = buildFA();
+        randomUpdates(expected, 200);
+        randomUpdates(expected, 300);
+        assertSameQ(expected, compiled);
+    }
+
+    @Test
+    public void dumpIsReadableByFeatures() throws IOException {
+        FunctionApproximationManager compiled = buildFA();
+        compiled.compile(codec, om);
+        randomUpdates(compiled, 500);
+
+        File f = File.createTempFile("fa-weights", null);
+        try {
+            compiled.dump(f);
+
+            FunctionApproximationManager loaded = new FunctionApproximationManager();
+            loaded.load(f);
+            Assert.assertEquals(4, loaded.getFeatures().size());
+            assertSameQ(compiled, loaded);
+
+            FunctionApproximationManager reloaded = buildFA();
+            reloaded.compile(codec, om);
+            reloaded.load(f);
+            assertSameQ(compiled, reloaded);
+        } finally {
+            f.delete();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+import it.uniroma2.dspsim.dsp.edf.om.rl.*;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ActionIterator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.DenseStateIndexer;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class TestDenseStateIndexer {
+
+    private static final int LAMBDA_LEVELS = 5;
+
+    @Test
+    public void indexIsPerfectAndDense() {
+        for (int n = 1; n <= 4; n++) {
+            for (int p = 1; p <= 6; p++) {
+                ComputingInfrastructure.initDefaultInfrastructure(n);
+                DenseStateIndexer indexer = new DenseStateIndexer(n, p, LAMBDA_LEVELS);
+
+                boolean[] seen = new boolean[indexer.size()];
+                int count = 0;
+                StateIterator it = new StateIterator(StateType.K_LAMBDA, p,
+                        ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+                while (it.hasNext()) {
+                    State s = it.next();
+                    int index = indexer.index(s);
+                    Assert.assertEquals(s.getIndex(), index);
+                    Assert.assertFalse(seen[index]);
+                    seen[index] = true;
+                    count++;
+                }
+                Assert.assertEquals(count, indexer.size());
+            }
+        }
+    }
+
+    @Test
+    public void unrankInvertsRank() {
+        for (int n = 1; n <= 4; n++) {
+            for (int p = 1; p <= 6; p++) {
+                DenseStateIndexer indexer = new DenseStateIndexer(n, p, LAMBDA_LEVELS);
+                int[][] deployments = indexer.deployments();
+                for (int d = 0; d < deployments.length; d++) {
+                    Assert.assertEquals(d, indexer.rankDeployment(deployments[d]));
+                    Assert.assertArrayEquals(deployments[d], indexer.unrankDeployment(d));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void largeSpaceSize() {
+        // C(20,10) - 1 deployments of up to 10 replicas over 10 node types
+        DenseStateIndexer indexer = new DenseStateIndexer(10, 10, 1);
+        Assert.assertEquals(184755, indexer.getDeploymentsCount());
+    }
+
+    @Test
+    public void denseTablesRoundTrip() throws IOException {
+        ComputingInfrastructure.initDefaultInfrastructure(3);
+        final int maxParallelism = 4;
+        ArrayBasedQTable qTable = QTableFactory.newArrayBasedQTable(maxParallelism, LAMBDA_LEVELS);
+        ArrayBasedVTable vTable = VTableFactory.newArrayBasedVTable(maxParallelism, LAMBDA_LEVELS);
+
+        StateIterator it = new StateIterator(StateType.K_LAMBDA, maxParallelism,
+                ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+        while (it.hasNext()) {
+            State s = it.next();
+            vTable.setV(s, s.getIndex());
+            ActionIterator ait = new ActionIterator();
+            while (ait.hasNext()) {
+                Action a = ait.next();
+                qTable.setQ(s, a, s.getIndex() * 100 + a.getIndex());
+            }
+        }
+
+        File qFile = File.createTempFile("qtable", ".ser");
+        File vFile = File.createTempFile("vtable", ".ser");
+        qFile.deleteOnExit();
+        vFile.deleteOnExit();
+        qTable.dump(qFile);
+        vTable.dump(vFile);
+        ArrayBasedQTable loadedQ = QTableFactory.newArrayBasedQTable(maxParallelism, LAMBDA_LEVELS);
+        loadedQ.load(qFile);
+        ArrayBasedVTable loadedV = VTableFactory.newArrayBasedVTable(maxParallelism, LAMBDA_LEVELS);
+        loadedV.load(vFile);
+
+        it = new StateIterator(StateType.K_LAMBDA, maxParallelism,
+                ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+        while (it.hasNext()) {
+            State s = it.next();
+            Assert.assertEquals(s.getIndex(), loadedV.getV(s), 0.0);
+            ActionIterator ait = new ActionIterator();
+            while (ait.hasNext()) {
+                Action a = ait.next();
+                Assert.assertEquals(s.getIndex() * 100 + a.getIndex(), loadedQ.getQ(s, a), 0.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.NeuralStateRepresentation;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ExperienceReplay;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateFeatureCache;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import org.junit.Assert;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class TestExperienceReplay {
+
+    @Test
+    public void batchesAreDistinct() {
+        ExperienceReplay replay = new ExperienceReplay(100);
+        int[] slots = new int[32];
+        for (int i = 0; i < 31; i++)
+            replay.add(i, i % 3, i, i + 1);
+        Assert.assertFalse(replay.sampleBatch(32, slots));
+
+        replay.add(31, 1, 31, -1);
+        for (int iter = 0; iter < 100; iter++) {
+            Assert.assertTrue(replay.sampleBatch(32, slots));
+            Set<Integer> sampled = new HashSet<>();
+            for (int slot : slots) {
+                Assert.assertTrue(sampled.add(slot));
+                Assert.assertEquals(slot, replay.getState(slot));
+                Assert.assertEquals(slot % 3, replay.getAction(slot));
+                Assert.assertEquals(slot, replay.getReward(slot), 0.0);
+            }
+            Assert.assertEquals(32, sampled.size());
+        }
+    }
+
+    @Test
+    public void oldestTransitionsAreReplaced() {
+        final int memory = 10;
+        ExperienceReplay replay = new ExperienceReplay(memory);
+        for (int i = 0; i < 25; i++)
+            replay.add(i, 0, 0.0, -1);
+        Assert.assertEquals(memory, replay.getSize());
+
+        int[] slots = new int[memory];
+        Assert.assertTrue(replay.sampleBatch(memory, slots));
+        Set<Integer> states = new HashSet<>();
+        for (int slot : slots)
+            states.add(replay.getState(slot));
+        for (int i = 15; i < 25; i++)
+            Assert.assertTrue(states.contains(i));
+    }
+
+    @Test
+    public void featuresMatchStateRepresentation() {
+        ComputingInfrastructure.initDefaultInfrastructure(2);
+        StateCodec codec = new StateCodec(StateType.K_LAMBDA, 3, ComputingInfrastructure.getInfrastructure(), 10);
+        NeuralStateRepresentation repr = new NeuralStateRepresentation(3, 10);
+        StateFeatureCache features = new StateFeatureCache(codec, repr);
+
+        int[] states = {0, 7, codec.getStatesCount() - 1, 7};
+        INDArray contiguous = Nd4j.create(states.length, features.getFeaturesCount());
+        features.fill(states, states.length, contiguous);
+        // larger destination: filled row by row
+        INDArray larger = Nd4j.create(states.length + 2, features.getFeaturesCount());
+        features.fill(states, states.length, larger);
+
+        for (int row = 0; row < states.length; row++) {
+            INDArray expected = codec.getState(states[row]).arrayRepresentation(repr);
+            for (int i = 0; i < features.getFeaturesCount(); i++) {
+                Assert.assertEquals(expected.getDouble(i), contiguous.getDouble(row, i), 0.0);
+                Assert.assertEquals(expected.getDouble(i), larger.getDouble(row, i), 0.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.ConfigurationOverrides;
+import it.uniroma2.dspsim.dsp.queueing.MAPMAP1OperatorModel;
+import it.uniroma2.dspsim.dsp.queueing.MAPPH1Solver;
+import it.uniroma2.dspsim.dsp.queueing.MG1OperatorQueueModel;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.infrastructure.NodeType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+public class TestMAPPH1Solver {
+
+    private static final double MU = 180.0;
+    private static final double[][] POISSON_D0 = {{-1.0}};
+    private static final double[][] POISSON_D1 = {{1.0}};
+
+    @Rule
+    public final ConfigurationOverrides conf = new ConfigurationOverrides();
+
+    private File cacheDir;
+
+    @Before
+    public void setup() throws IOException {
+        ComputingInfrastructure.initDefaultInfrastructure(2);
+        cacheDir = Files.createTempDirectory("mapmap1").toFile();
+        conf.set(ConfigurationKeys.OPERATOR_RESPTIME_MAPMAP1_CACHE_DIR, cacheDir.getPath());
+        conf.set(ConfigurationKeys.OPERATOR_RESPTIME_EVALUATION_SCRIPT_WORKLOAD_ARGS, "1 -1 1");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = cacheDir.listFiles();
+        if (files != null)
+            for (File f : files)
+                f.delete();
+        cacheDir.delete();
+    }
+
+    private void assertMatchesPollaczekKhinchine(double[][] d0, double[][] d1, double scv) {
+        final double stMean = 1.0 / MU;
+        final double stVar = scv * stMean * stMean;
+        MAPPH1Solver solver = new MAPPH1Solver(d0, d1, stMean, stVar);
+        MG1OperatorQueueModel mg1 = new MG1OperatorQueueModel(stMean, stVar);
+        Assert.assertEquals(1.0, solver.getArrivalSCV(), 1E-9);
+        for (double rate = 10.0; rate < MU; rate += 17.5) {
+            final double expected = mg1.responseTime(rate, 1.0);
+            Assert.assertEquals(expected, solver.responseTime(rate), expected * 1E-8);
+        }
+        Assert.assertEquals(Double.POSITIVE_INFINITY, solver.responseTime(MU * 1.01), 0.0);
+    }
+
+    @Test
+    public void poissonArrivalsMatchMG1() {
+        // APH fitting two moments is exact for M/G/1 mean values
+        assertMatchesPollaczekKhinchine(POISSON_D0, POISSON_D1, 0.5);
+        assertMatchesPollaczekKhinchine(POISSON_D0, POISSON_D1, 1.0);
+        assertMatchesPollaczekKhinchine(POISSON_D0, POISSON_D1, 3.0);
+    }
+
+    @Test
+    public void multiPhasePoissonArrivalsMatchMG1() {
+        // phases switch with no effect on the arrival rate
+        assertMatchesPollaczekKhinchine(new double[][]{{-3.0, 1.0}, {1.0, -3.0}},
+                new double[][]{{2.0, 0.0}, {0.0, 2.0}}, 0.5);
+    }
+
+    @Test
+    public void burstyArrivalsIncreaseResponseTime() {
+        final double[][] d0 = {{-1.5, 0.5}, {0.5, -4.5}};
+        final double[][] d1 = {{1.0, 0.0}, {0.0, 4.0}};
+        MAPPH1Solver solver = new MAPPH1Solver(d0, d1, 1.0 / MU, 0.5 / MU / MU);
+        MG1OperatorQueueModel mg1 = new MG1OperatorQueueModel(1.0 / MU, 0.5 / MU / MU);
+        Assert.assertTrue(solver.getArrivalSCV() > 1.0);
+
+        double last = 1.0 / MU;
+        for (double rate = 10.0; rate < MU; rate += 10.0) {
+            final double r = solver.responseTime(rate);
+            Assert.assertTrue(r > last);
+            Assert.assertTrue(r > mg1.responseTime(rate, 1.0));
+            last = r;
+        }
+    }
+
+    @Test
+    public void interpolatesTabulatedRates() {
+        MAPMAP1OperatorModel model = new MAPMAP1OperatorModel(1.0 / MU, 0.5 / MU / MU);
+        MG1OperatorQueueModel mg1 = new MG1OperatorQueueModel(1.0 / MU, 0.5 / MU / MU);
+
+        Assert.assertEquals(1.0 / MU, model.responseTime(0.0, 1.0), 1E-12);
+        Assert.assertEquals(mg1.responseTime(100.0, 1.0), model.responseTime(100.0, 1.0), 1E-9);
+        final double interpolated = model.responseTime(100.25, 1.0);
+        Assert.assertEquals(0.75 * model.responseTime(100.0, 1.0) + 0.25 * model.responseTime(101.0, 1.0),
+                interpolated, 1E-12);
+        Assert.assertEquals(mg1.responseTime(100.25, 1.0), interpolated, 1E-6);
+        Assert.assertEquals(100.25 / MU, model.utilization(100.25, 1.0), 1E-12);
+        Assert.assertEquals(Double.POSITIVE_INFINITY, model.responseTime(MU + 0.5, 1.0), 0.0);
+    }
+
+    @Test
+    public void extrapolatesBeyondLastTabulatedRate() {
+        MAPMAP1OperatorModel model = new MAPMAP1OperatorModel(1.0 / MU, 0.5 / MU / MU);
+        MG1OperatorQueueModel mg1 = new MG1OperatorQueueModel(1.0 / MU, 0.5 / MU / MU);
+
+        // rates up to MU - 1 are tabulated, the queue is stable up to MU
+        final double rate = MU - 0.5;
+        final double expected = mg1.responseTime(rate, 1.0);
+        Assert.assertEquals(expected, model.responseTime(rate, 1.0), expected * 1E-6);
+        Assert.assertEquals(rate / MU, model.utilization(rate, 1.0), 1E-12);
+        Assert.assertEquals(Double.POSITIVE_INFINITY, model.responseTime(MU, 1.0), 0.0);
+        Assert.assertEquals(Double.POSITIVE_INFINITY, model.utilization(MU, 1.0), 0.0);
+    }
+
+    private void assertSameTables(MAPMAP1OperatorModel expected, MAPMAP1OperatorModel actual) {
+        for (NodeType nt : ComputingInfrastructure.getInfrastructure().getNodeTypes()) {
+            final double speedup = nt.getCpuSpeedup();
+            for (double rate = 0.0; rate < MU * speedup; rate += 7.3)
+                Assert.assertEquals(expected.responseTime(rate, speedup), actual.responseTime(rate, speedup), 0.0);
+        }
+    }
+
+    @Test
+    public void tablesAreCachedOnDisk() throws IOException {
+        MAPMAP1OperatorModel model = new MAPMAP1OperatorModel(1.0 / MU, 0.5 / MU / MU);
+        File[] files = cacheDir.listFiles();
+        Assert.assertNotNull(files);
+        Assert.assertEquals(ComputingInfrastructure.getInfrastructure().getNodeTypes().length, files.length);
+
+        // another run with the same parameters only reads the cached tables
+        final long modified = files[0].lastModified();
+        MAPMAP1OperatorModel cached = new MAPMAP1OperatorModel(1.0 / MU, 0.5 / MU / MU);
+        Assert.assertEquals(modified, files[0].lastModified());
+        assertSameTables(model, cached);
+
+        // a different workload is solved again
+        conf.set(ConfigurationKeys.OPERATOR_RESPTIME_EVALUATION_SCRIPT_WORKLOAD_ARGS, "");
+        new MAPMAP1OperatorModel(1.0 / MU, 0.5 / MU / MU);
+        Assert.assertEquals(2 * files.length, cacheDir.listFiles().length);
+
+        // corrupted tables are replaced
+        conf.set(ConfigurationKeys.OPERATOR_RESPTIME_EVALUATION_SCRIPT_WORKLOAD_ARGS, "1 -1 1");
+        try (RandomAccessFile raf = new RandomAccessFile(files[0], "rw")) {
+            raf.seek(raf.length() - 1);
+            raf.write(0x7f);
+        }
+        MAPMAP1OperatorModel recomputed = new MAPMAP1OperatorModel(1.0 / MU, 0.5 / MU / MU);
+        assertSameTables(model, recomputed);
+    }
+}
@@ -0,0 +1,86 @@
+import it.uniroma2.dspsim.dsp.Operator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.OperatorPerformanceTable;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateUtils;
+import it.uniroma2.dspsim.dsp.queueing.MG1OperatorQueueModel;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.infrastructure.NodeType;
+import it.uniroma2.dspsim.utils.MathUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestOperatorPerformanceTable {
+
+    private static final int MAX_INPUT_RATE = 600;
+    private static final int LAMBDA_LEVELS = 20;
+    private static final double SLO = 0.065;
+
+    private Operator newOperator(int maxParallelism) {
+        Operator op = new Operator("op", new MG1OperatorQueueModel(1 / 160.0, 0.0), maxParallelism);
+        op.setSloRespTime(SLO);
+        return op;
+    }
+
+    private void assertMatchesQueueModel(OperatorPerformanceTable table, Operator op) {
+        StateIterator it = new StateIterator(StateType.K_LAMBDA, op.getMaxParallelism(),
+                ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+        while (it.hasNext()) {
+            State s = it.next();
+            final double rate = MathUtils.remapDiscretizedValue(MAX_INPUT_RATE, s.getLambda(), LAMBDA_LEVELS);
+            final double respTime = op.responseTime(rate, StateUtils.getOperatorInstances(s));
+            Assert.assertEquals(respTime, table.getRespTime(s), 0.0);
+            Assert.assertEquals(op.utilization(rate, StateUtils.getOperatorInstances(s)), table.getUtilization(s), 0.0);
+            Assert.assertEquals(respTime > SLO ? 1.0 : 0.0, table.getSLOCost(s), 0.0);
+        }
+    }
+
+    @Test
+    public void matchesQueueModel() {
+        ComputingInfrastructure.initDefaultInfrastructure(2);
+        Operator op = newOperator(5);
+        OperatorPerformanceTable table = OperatorPerformanceTable.build(op, SLO,
+                ComputingInfrastructure.getInfrastructure().getNodeTypes(), MAX_INPUT_RATE, LAMBDA_LEVELS);
+        assertMatchesQueueModel(table, op);
+    }
+
+    @Test
+    public void parallelBuildMatchesQueueModel() {
+        ComputingInfrastructure.initDefaultInfrastructure(3);
+        Operator op = newOperator(8);
+        OperatorPerformanceTable table = OperatorPerformanceTable.build(op, SLO,
+                ComputingInfrastructure.getInfrastructure().getNodeTypes(), MAX_INPUT_RATE, LAMBDA_LEVELS);
+        Assert.assertTrue(table.getIndexer().getDeploymentsCount() > 64);
+        assertMatchesQueueModel(table, op);
+    }
+
+    @Test
+    public void largeSpacesAreNotTabulated() {
+        Assert.assertTrue(OperatorPerformanceTable.isTabulable(2, 5, LAMBDA_LEVELS));
+        Assert.assertFalse(OperatorPerformanceTable.isTabulable(10, 20, 30));
+        // the number of states overflows int
+        Assert.assertFalse(OperatorPerformanceTable.isTabulable(30, 30, 30));
+    }
+
+    @Test
+    public void invalidatedByInfrastructureUpdates() {
+        ComputingInfrastructure.initDefaultInfrastructure(2);
+        ComputingInfrastructure infra = ComputingInfrastructure.getInfrastructure();
+        Operator op = newOperator(4);
+        OperatorPerformanceTable table = OperatorPerformanceTable.build(op, SLO, infra.getNodeTypes(),
+                MAX_INPUT_RATE, LAMBDA_LEVELS);
+        Assert.assertTrue(table.isValidFor(op));
+        Assert.assertFalse(table.isValidFor(newOperator(4)));
+
+        NodeType nt = infra.getNodeTypes()[0];
+        nt.setCpuSpeedup(nt.getCpuSpeedup() * 2.0);
+        infra.nodeTypesUpdated();
+        Assert.assertFalse(table.isValidFor(op));
+
+        OperatorPerformanceTable updated = OperatorPerformanceTable.build(op, SLO, infra.getNodeTypes(),
+                MAX_INPUT_RATE, LAMBDA_LEVELS);
+        Assert.assertTrue(updated.isValidFor(op));
+        assertMatchesQueueModel(updated, op);
+    }
+}
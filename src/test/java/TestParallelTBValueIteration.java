@@ -0,0 +1,74 @@
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.ConfigurationOverrides;
+import it.uniroma2.dspsim.dsp.Operator;
+import it.uniroma2.dspsim.dsp.edf.om.FaTBValueIterationOM;
+import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ActionIterator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
+import it.uniroma2.dspsim.dsp.queueing.MG1OperatorQueueModel;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestParallelTBValueIteration {
+
+    private static final int MAX_PARALLELISM = 3;
+
+    @Rule
+    public final ConfigurationOverrides conf = new ConfigurationOverrides();
+
+    @Before
+    public void setup() {
+        ComputingInfrastructure.initDefaultInfrastructure(2);
+
+        conf.set(ConfigurationKeys.TRAINING_INPUT_FILE_PATH_KEY, "traces/profile_last_month.dat");
+        conf.set(ConfigurationKeys.OUTPUT_BASE_PATH_KEY, System.getProperty("java.io.tmpdir"));
+        conf.set(ConfigurationKeys.TBVI_EXEC_ITERATIONS_KEY, "20000");
+        conf.set(ConfigurationKeys.TBVI_EXEC_SECONDS_KEY, "0");
+        conf.set(ConfigurationKeys.TBVI_PARALLEL_THREADS_KEY, "3");
+    }
+
+    private FaTBValueIterationOM plan(String mode) {
+        conf.set(ConfigurationKeys.TBVI_PARALLEL_MODE_KEY, mode);
+        Operator operator = new Operator("tbvi", new MG1OperatorQueueModel(1 / 160.0, 0.0), MAX_PARALLELISM);
+        operator.setSloRespTime(0.065);
+        return new FaTBValueIterationOM(operator);
+    }
+
+    private double maxDifference(FaTBValueIterationOM expected, FaTBValueIterationOM actual) {
+        StateIterator stateIterator = new StateIterator(StateType.K_LAMBDA, MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), expected.getInputRateLevels());
+        double maxDiff = 0.0;
+        while (stateIterator.hasNext()) {
+            State s = stateIterator.next();
+            ActionIterator actionIterator = new ActionIterator();
+            while (actionIterator.hasNext()) {
+                Action a = actionIterator.next();
+                if (!s.validateAction(a))
+                    continue;
+                maxDiff = Math.max(maxDiff, Math.abs(expected.evaluateAction(s, a) - actual.evaluateAction(s, a)));
+            }
+        }
+        return maxDiff;
+    }
+
+    @Test
+    public void batchedIsReproducible() {
+        FaTBValueIterationOM first = plan("batched");
+        FaTBValueIterationOM second = plan("batched");
+        Assert.assertEquals(0.0, maxDifference(first, second), 0.0);
+    }
+
+    @Test
+    public void hogwildApproximatesSequential() {
+        // long enough for the difference to be mostly due to the different trajectories
+        conf.set(ConfigurationKeys.TBVI_EXEC_ITERATIONS_KEY, "200000");
+        FaTBValueIterationOM sequential = plan("sequential");
+        FaTBValueIterationOM hogwild = plan("hogwild");
+        Assert.assertEquals(0.0, maxDifference(sequential, hogwild), 2.0);
+    }
+}
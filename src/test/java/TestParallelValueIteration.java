@@ -0,0 +1,79 @@
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.ConfigurationOverrides;
+import it.uniroma2.dspsim.dsp.Operator;
+import it.uniroma2.dspsim.dsp.edf.om.ValueIterationOM;
+import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ActionIterator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
+import it.uniroma2.dspsim.dsp.queueing.MG1OperatorQueueModel;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestParallelValueIteration {
+
+    private static final int MAX_PARALLELISM = 3;
+
+    @Rule
+    public final ConfigurationOverrides conf = new ConfigurationOverrides();
+
+    @Before
+    public void setup() {
+        ComputingInfrastructure.initDefaultInfrastructure(2);
+
+        conf.set(ConfigurationKeys.TRAINING_INPUT_FILE_PATH_KEY, "traces/profile_last_month.dat");
+        conf.set(ConfigurationKeys.OUTPUT_BASE_PATH_KEY, System.getProperty("java.io.tmpdir"));
+        conf.set(ConfigurationKeys.VI_THETA_KEY, "1E-6");
+        conf.set(ConfigurationKeys.VI_MAX_TIME_SECONDS_KEY, "60");
+        conf.set(ConfigurationKeys.RL_DEFAULT_QTABLE_IMPL, "array");
+    }
+
+    private ValueIterationOM plan(String mode) {
+        conf.set(ConfigurationKeys.VI_PARALLEL_MODE_KEY, mode);
+        Operator operator = new Operator("vi", new MG1OperatorQueueModel(1 / 160.0, 0.0), MAX_PARALLELISM);
+        operator.setSloRespTime(0.065);
+        return new ValueIterationOM(operator);
+    }
+
+    private void assertSameQ(ValueIterationOM expected, ValueIterationOM actual) {
+        final int lambdaLevels = expected.getInputRateLevels();
+        StateIterator stateIterator = new StateIterator(StateType.K_LAMBDA, MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), lambdaLevels);
+        while (stateIterator.hasNext()) {
+            State s = stateIterator.next();
+            ActionIterator actionIterator = new ActionIterator();
+            while (actionIterator.hasNext()) {
+                Action a = actionIterator.next();
+                if (!s.validateAction(a))
+                    continue;
+                Assert.assertEquals(expected.evaluateAction(s, a), actual.evaluateAction(s, a), 1E-3);
+            }
+        }
+    }
+
+    @Test
+    public void syncMatchesSequential() {
+        ValueIterationOM sequential = plan("sequential");
+        ValueIterationOM sync = plan("sync");
+        assertSameQ(sequential, sync);
+    }
+
+    @Test
+    public void asyncMatchesSequential() {
+        ValueIterationOM sequential = plan("sequential");
+        ValueIterationOM async = plan("async");
+        assertSameQ(sequential, async);
+    }
+
+    @Test
+    public void asyncOnMapTableFallsBackToSync() {
+        conf.set(ConfigurationKeys.RL_DEFAULT_QTABLE_IMPL, "map");
+        ValueIterationOM sequential = plan("sequential");
+        ValueIterationOM async = plan("async");
+        assertSameQ(sequential, async);
+    }
+}
@@ -0,0 +1,118 @@
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.PostDecisionKernel;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.utils.matrix.TransitionKernel;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestPostDecisionKernel {
+
+    private static final int MAX_PARALLELISM = 4;
+    private static final int LAMBDA_LEVELS = 6;
+    private static final double GAMMA = 0.9;
+
+    private StateCodec codec;
+    private TransitionKernel kernel;
+    private double[] sloCost;
+    private double[] actionCost;
+
+    @Before
+    public void setup() {
+        ComputingInfrastructure.initDefaultInfrastructure(2);
+        codec = new StateCodec(StateType.K_LAMBDA, MAX_PARALLELISM, ComputingInfrastructure.getInfrastructure(),
+                LAMBDA_LEVELS);
+
+        Random r = new Random(5);
+        double[][] p = new double[LAMBDA_LEVELS][LAMBDA_LEVELS];
+        for (int i = 0; i < LAMBDA_LEVELS; i++) {
+            double sum = 0.0;
+            for (int j = 0; j < LAMBDA_LEVELS; j++) {
+                p[i][j] = Math.abs(i - j) <= 1 ? r.nextDouble() : 0.0;
+                sum += p[i][j];
+            }
+            for (int j = 0; j < LAMBDA_LEVELS; j++)
+                p[i][j] /= sum;
+        }
+        kernel = TransitionKernel.fromArray(p);
+
+        sloCost = new double[codec.getStatesCount()];
+        for (int s = 0; s < sloCost.length; s++)
+            sloCost[s] = r.nextDouble();
+        actionCost = new double[codec.getActionsCount()];
+        for (int a = 1; a < actionCost.length; a++)
+            actionCost[a] = r.nextDouble();
+    }
+
+    private double immediateCost(int pds, int a) {
+        return actionCost[a] + codec.deploymentOf(pds) / (double) codec.getDeploymentsCount();
+    }
+
+    /* value iteration with a greedy scan over the actions of each next state */
+    private double[] referenceQ(int sweeps) {
+        final int actions = codec.getActionsCount();
+        double[] q = new double[codec.getStatesCount() * actions];
+        for (int i = 0; i < sweeps; i++) {
+            for (int s = 0; s < codec.getStatesCount(); s++) {
+                for (int a = 0; a < actions; a++) {
+                    if (!codec.isValid(s, a))
+                        continue;
+                    final int pds = codec.pds(s, a);
+                    double newQ = immediateCost(pds, a);
+                    final int lambda = codec.lambdaOf(s);
+                    for (int k = kernel.rowStart(lambda); k < kernel.rowEnd(lambda); k++) {
+                        final int next = codec.withLambda(pds, kernel.column(k));
+                        double best = Double.POSITIVE_INFINITY;
+                        for (int b = 0; b < actions; b++) {
+                            if (codec.isValid(next, b))
+                                best = Math.min(best, q[next * actions + b]);
+                        }
+                        newQ += kernel.probability(k) * (sloCost[next] + GAMMA * best);
+                    }
+                    q[s * actions + a] = newQ;
+                }
+            }
+        }
+        return q;
+    }
+
+    @Test
+    public void kernelMatchesGreedyScan() {
+        final int actions = codec.getActionsCount();
+        final double[] q = new double[codec.getStatesCount() * actions];
+        final PostDecisionKernel pdsKernel = new PostDecisionKernel(codec, GAMMA);
+        final PostDecisionKernel.QFunction qFunction = (s, a) -> q[s * actions + a];
+
+        for (int i = 0; i < 300; i++) {
+            pdsKernel.refresh(qFunction);
+            for (int s = 0; s < codec.getStatesCount(); s++) {
+                for (int a = 0; a < actions; a++) {
+                    if (!codec.isValid(s, a))
+                        continue;
+                    final int pds = codec.pds(s, a);
+                    q[s * actions + a] = pdsKernel.backup(immediateCost(pds, a), pds, kernel, next -> sloCost[next]);
+                }
+                pdsKernel.refresh(s, qFunction);
+            }
+        }
+
+        final double[] expected = referenceQ(300);
+        for (int i = 0; i < q.length; i++)
+            Assert.assertEquals(expected[i], q[i], 1E-9);
+
+        // post-decision values are Q without the immediate costs
+        pdsKernel.refresh(qFunction);
+        for (int s = 0; s < codec.getStatesCount(); s++) {
+            for (int a = 0; a < actions; a++) {
+                if (!codec.isValid(s, a))
+                    continue;
+                final int pds = codec.pds(s, a);
+                Assert.assertEquals(q[s * actions + a] - immediateCost(pds, a),
+                        pdsKernel.postDecisionValue(pds, kernel, next -> sloCost[next]), 1E-9);
+            }
+        }
+    }
+}
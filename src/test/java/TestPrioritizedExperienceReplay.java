@@ -0,0 +1,74 @@
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.PrioritizedExperienceReplay;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.SumTree;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPrioritizedExperienceReplay {
+
+    @Test
+    public void sumTreeFindsPrefixSums() {
+        // not a power of two
+        SumTree tree = new SumTree(5);
+        double[] values = {1.0, 0.0, 2.5, 0.5, 3.0};
+        for (int i = 0; i < values.length; i++)
+            tree.set(i, values[i]);
+        Assert.assertEquals(7.0, tree.total(), 1E-12);
+
+        Assert.assertEquals(0, tree.find(0.0));
+        Assert.assertEquals(0, tree.find(0.99));
+        Assert.assertEquals(2, tree.find(1.0));
+        Assert.assertEquals(2, tree.find(3.49));
+        Assert.assertEquals(3, tree.find(3.5));
+        Assert.assertEquals(4, tree.find(4.0));
+        Assert.assertEquals(4, tree.find(6.99));
+        // rounding errors beyond the total
+        Assert.assertEquals(4, tree.find(7.0 + 1E-9));
+
+        tree.set(4, 0.0);
+        Assert.assertEquals(4.0, tree.total(), 1E-12);
+        Assert.assertEquals(3, tree.find(4.0 - 1E-9));
+        Assert.assertEquals(3, tree.find(4.0));
+    }
+
+    @Test
+    public void samplingIsProportionalToPriority() {
+        final int memory = 4;
+        PrioritizedExperienceReplay replay = new PrioritizedExperienceReplay(memory, 1.0, 0.0, 0, 0.0);
+        for (int i = 0; i < memory; i++)
+            replay.add(i, 0, 0.0, -1);
+        // priorities 1, 2, 3, 4
+        for (int i = 0; i < memory; i++)
+            replay.updatePriority(i, i + 1);
+
+        final int batches = 20000;
+        int[] slots = new int[2];
+        int[] counts = new int[memory];
+        for (int b = 0; b < batches; b++) {
+            Assert.assertTrue(replay.sampleBatch(2, slots));
+            for (int slot : slots)
+                counts[slot]++;
+
+            // beta = 1 (no annealing): weights are proportional to 1/p, the largest being 1
+            final double p0 = slots[0] + 1, p1 = slots[1] + 1;
+            Assert.assertEquals(Math.max(replay.getWeight(0), replay.getWeight(1)), 1.0, 1E-12);
+            Assert.assertEquals(p1 / p0, replay.getWeight(0) / replay.getWeight(1), 1E-9);
+        }
+
+        for (int i = 0; i < memory; i++)
+            Assert.assertEquals((i + 1) / 10.0, counts[i] / (2.0 * batches), 0.01);
+    }
+
+    @Test
+    public void newTransitionsGetMaxPriority() {
+        PrioritizedExperienceReplay replay = new PrioritizedExperienceReplay(3, 0.5, 0.4, 100, 0.01);
+        replay.add(0, 0, 0.0, -1);
+        replay.updatePriority(0, 15.99);
+        Assert.assertEquals(4.0, replay.getPriority(0), 1E-12);
+
+        replay.add(1, 0, 0.0, -1);
+        Assert.assertEquals(4.0, replay.getPriority(1), 1E-12);
+
+        int[] slots = new int[3];
+        Assert.assertFalse(replay.sampleBatch(3, slots));
+    }
+}
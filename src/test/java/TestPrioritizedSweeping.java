@@ -0,0 +1,184 @@
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.PrioritizedSweeping;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.utils.IndexedPriorityQueue;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestPrioritizedSweeping {
+
+    private static final int MAX_PARALLELISM = 4;
+    private static final int LAMBDA_LEVELS = 6;
+    private static final double GAMMA = 0.9;
+
+    private StateCodec codec;
+
+    /* small MDP over the codec states, with a random transition matrix and random costs */
+    private class ArrayModel implements PrioritizedSweeping.Model {
+        final double[][] p = new double[LAMBDA_LEVELS][LAMBDA_LEVELS];
+        final double[] cost = new double[codec.getStatesCount()];
+        final double[] q = new double[codec.getStatesCount() * codec.getActionsCount()];
+
+        ArrayModel(long seed) {
+            Random r = new Random(seed);
+            for (int i = 0; i < LAMBDA_LEVELS; i++) {
+                double sum = 0.0;
+                for (int j = 0; j < LAMBDA_LEVELS; j++) {
+                    p[i][j] = Math.abs(i - j) <= 1 ? r.nextDouble() : 0.0;
+                    sum += p[i][j];
+                }
+                for (int j = 0; j < LAMBDA_LEVELS; j++)
+                    p[i][j] /= sum;
+            }
+            for (int s = 0; s < cost.length; s++)
+                cost[s] = r.nextDouble();
+        }
+
+        @Override
+        public double getQ(int s, int a) {
+            return q[s * codec.getActionsCount() + a];
+        }
+
+        @Override
+        public void backup(int s, int a) {
+            q[s * codec.getActionsCount() + a] = evaluate(s, a);
+        }
+
+        double evaluate(int s, int a) {
+            final int pds = codec.pds(s, a);
+            double v = immediateCost(s, a);
+            for (int l = 0; l < LAMBDA_LEVELS; l++)
+                v += p[codec.lambdaOf(s)][l] * nextStateCost(codec.withLambda(pds, l));
+            return v;
+        }
+
+        @Override
+        public double immediateCost(int s, int a) {
+            return (a == 0 ? 0.0 : 0.1) + 0.01 * codec.deploymentOf(codec.pds(s, a));
+        }
+
+        @Override
+        public double nextStateCost(int next) {
+            return cost[next] + GAMMA * value(next);
+        }
+
+        @Override
+        public double value(int s) {
+            double v = Double.POSITIVE_INFINITY;
+            for (int a = 0; a < codec.getActionsCount(); a++)
+                if (codec.isValid(s, a))
+                    v = Math.min(v, getQ(s, a));
+            return v;
+        }
+
+        @Override
+        public double transitionProbability(int fromLambda, int toLambda) {
+            return p[fromLambda][toLambda];
+        }
+
+        double[] valueIteration() {
+            double[] vi = new double[q.length];
+            ArrayModel m = new ArrayModel(0);
+            System.arraycopy(p, 0, m.p, 0, p.length);
+            System.arraycopy(cost, 0, m.cost, 0, cost.length);
+            double delta;
+            do {
+                delta = 0.0;
+                for (int s = 0; s < codec.getStatesCount(); s++) {
+                    for (int a = 0; a < codec.getActionsCount(); a++) {
+                        if (!codec.isValid(s, a))
+                            continue;
+                        double old = m.getQ(s, a);
+                        m.backup(s, a);
+                        delta = Math.max(delta, Math.abs(m.getQ(s, a) - old));
+                    }
+                }
+            } while (delta > 1E-12);
+            System.arraycopy(m.q, 0, vi, 0, vi.length);
+            return vi;
+        }
+    }
+
+    @Before
+    public void setup() {
+        ComputingInfrastructure.initDefaultInfrastructure(2);
+        codec = new StateCodec(StateType.K_LAMBDA, MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+    }
+
+    @Test
+    public void queueOrdersByPriority() {
+        IndexedPriorityQueue queue = new IndexedPriorityQueue(10);
+        queue.increase(3, 1.0);
+        queue.increase(7, 0.5);
+        queue.increase(1, 2.0);
+        queue.increase(7, 2.0);
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals(2.5, queue.getPriority(7), 0.0);
+        Assert.assertEquals(7, queue.poll());
+        Assert.assertEquals(1, queue.poll());
+        Assert.assertFalse(queue.contains(1));
+        Assert.assertEquals(3, queue.poll());
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void predecessorsMatchPds() {
+        int pairs = 0;
+        for (int d = 0; d < codec.getDeploymentsCount(); d++) {
+            for (int pair : codec.getPdsPredecessors(d)) {
+                int s = (pair / codec.getActionsCount()) * LAMBDA_LEVELS;
+                Assert.assertEquals(d * LAMBDA_LEVELS, codec.pds(s, pair % codec.getActionsCount()));
+                pairs++;
+            }
+        }
+        int valid = 0;
+        for (int d = 0; d < codec.getDeploymentsCount(); d++)
+            for (int a = 0; a < codec.getActionsCount(); a++)
+                if (codec.isValid(d * LAMBDA_LEVELS, a))
+                    valid++;
+        Assert.assertEquals(valid, pairs);
+    }
+
+    @Test
+    public void convergesToValueIteration() {
+        final double threshold = 1E-9;
+        ArrayModel model = new ArrayModel(42);
+        PrioritizedSweeping sweeping = new PrioritizedSweeping(codec, GAMMA, Integer.MAX_VALUE, threshold);
+
+        // costs changed from 0 to their actual values
+        for (int s = 0; s < codec.getStatesCount(); s++)
+            sweeping.propagate(s, model.cost[s], model);
+        // immediate costs are not propagated through states: queue every pair once
+        for (int s = 0; s < codec.getStatesCount(); s++)
+            for (int a = 0; a < codec.getActionsCount(); a++)
+                if (codec.isValid(s, a))
+                    sweeping.push(s, a, model.immediateCost(s, a));
+        sweeping.sweep(model);
+
+        double[] expected = model.valueIteration();
+        for (int i = 0; i < expected.length; i++)
+            Assert.assertEquals(expected[i], model.q[i], threshold / (1.0 - GAMMA) * 10);
+    }
+
+    @Test
+    public void sweepRespectsBudget() {
+        ArrayModel model = new ArrayModel(7);
+        PrioritizedSweeping sweeping = new PrioritizedSweeping(codec, GAMMA, 25, 0.0);
+        for (int s = 0; s < codec.getStatesCount(); s++)
+            sweeping.propagate(s, model.cost[s], model);
+
+        Assert.assertEquals(25, sweeping.sweep(model));
+        Assert.assertTrue(sweeping.getQueuedPairs() > 0);
+
+        // an observed transition affects the pairs with the same starting level
+        sweeping.clear();
+        sweeping.transitionObserved(2, 3, 10, model);
+        Assert.assertTrue(sweeping.getQueuedPairs() > 0);
+        Assert.assertTrue(sweeping.sweep(model) <= 25);
+    }
+}
@@ -0,0 +1,97 @@
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.ConfigurationOverrides;
+import it.uniroma2.dspsim.dsp.Operator;
+import it.uniroma2.dspsim.dsp.edf.om.ValueIterationOM;
+import it.uniroma2.dspsim.dsp.edf.om.rl.action_selection.concrete.GreedyActionSelectionPolicy;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
+import it.uniroma2.dspsim.dsp.queueing.MG1OperatorQueueModel;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.utils.matrix.Fixed16Array;
+import it.uniroma2.dspsim.utils.matrix.FloatArray;
+import it.uniroma2.dspsim.utils.matrix.StoragePrecision;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestReducedPrecision {
+
+    private static final int MAX_PARALLELISM = 3;
+
+    @Rule
+    public final ConfigurationOverrides conf = new ConfigurationOverrides();
+
+    @Before
+    public void setup() {
+        ComputingInfrastructure.initDefaultInfrastructure(2);
+
+        conf.set(ConfigurationKeys.TRAINING_INPUT_FILE_PATH_KEY, "traces/profile_last_month.dat");
+        conf.set(ConfigurationKeys.OUTPUT_BASE_PATH_KEY, System.getProperty("java.io.tmpdir"));
+        conf.set(ConfigurationKeys.VI_THETA_KEY, "1E-6");
+        conf.set(ConfigurationKeys.VI_MAX_TIME_SECONDS_KEY, "60");
+        conf.set(ConfigurationKeys.RL_DEFAULT_QTABLE_IMPL, "array");
+    }
+
+    @Test
+    public void quantizationError() {
+        final double bound = 100.0;
+        Fixed16Array fixed = new Fixed16Array(1000, bound);
+        FloatArray floats = new FloatArray(1000);
+        Random r = new Random(1);
+        double[] values = new double[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = r.nextDouble() * bound;
+            fixed.set(i, values[i]);
+            floats.set(i, values[i]);
+        }
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(values[i], fixed.get(i), fixed.getScale() / 2);
+            Assert.assertEquals(values[i], floats.get(i), Math.ulp((float) values[i]));
+        }
+
+        // values beyond the bound requantize the table
+        fixed.set(0, 3 * bound);
+        Assert.assertEquals(3 * bound, fixed.get(0), fixed.getScale() / 2);
+        for (int i = 1; i < values.length; i++)
+            Assert.assertEquals(values[i], fixed.get(i), fixed.getScale());
+    }
+
+    private ValueIterationOM plan(StoragePrecision precision) {
+        conf.set(ConfigurationKeys.RL_QTABLE_PRECISION, precision.name());
+        Operator operator = new Operator("vi", new MG1OperatorQueueModel(1 / 160.0, 0.0), MAX_PARALLELISM);
+        operator.setSloRespTime(0.065);
+        return new ValueIterationOM(operator);
+    }
+
+    /* fraction of states where the greedy action differs from that of the reference */
+    private double greedyDisagreement(ValueIterationOM reference, ValueIterationOM om) {
+        GreedyActionSelectionPolicy referencePolicy = new GreedyActionSelectionPolicy(reference);
+        GreedyActionSelectionPolicy policy = new GreedyActionSelectionPolicy(om);
+        int states = 0, differ = 0;
+        StateIterator it = new StateIterator(StateType.K_LAMBDA, MAX_PARALLELISM,
+                ComputingInfrastructure.getInfrastructure(), reference.getInputRateLevels());
+        while (it.hasNext()) {
+            State s = it.next();
+            states++;
+            if (!referencePolicy.selectAction(s).equals(policy.selectAction(s)))
+                differ++;
+        }
+        return differ / (double) states;
+    }
+
+    @Test
+    public void greedyDisagreementReport() {
+        ValueIterationOM reference = plan(StoragePrecision.DOUBLE);
+        final double floatDisagreement = greedyDisagreement(reference, plan(StoragePrecision.FLOAT));
+        final double fixedDisagreement = greedyDisagreement(reference, plan(StoragePrecision.FIXED16));
+        System.out.printf("Greedy actions differing from the double precision policy: float %.2f%%, fixed16 %.2f%%\n",
+                100 * floatDisagreement, 100 * fixedDisagreement);
+
+        Assert.assertTrue(floatDisagreement <= 0.01);
+        Assert.assertTrue(fixedDisagreement <= 0.05);
+    }
+}
@@ -0,0 +1,114 @@
+import it.uniroma2.dspsim.dsp.edf.om.rl.Action;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.NeuralStateRepresentation;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.State;
+import it.uniroma2.dspsim.dsp.edf.om.rl.states.StateType;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.ActionIterator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateCodec;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateFeatureCache;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateIterator;
+import it.uniroma2.dspsim.dsp.edf.om.rl.utils.StateUtils;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import org.junit.Assert;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+public class TestStateCodec {
+
+    private static final int LAMBDA_LEVELS = 7;
+
+    @Test
+    public void codecMatchesStateIterator() {
+        int[] resTypes = {1, 2, 3, 5};
+        int[] parallelism = {1, 3, 6};
+
+        for (int n : resTypes) {
+            for (int p : parallelism) {
+                ComputingInfrastructure.initDefaultInfrastructure(n);
+                checkCodec(new StateCodec(StateType.K_LAMBDA, p,
+                        ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS), p);
+                checkCodec(StateCodec.onDemand(StateType.K_LAMBDA, p,
+                        ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS), p);
+            }
+        }
+    }
+
+    private void checkCodec(StateCodec codec, int maxParallelism) {
+        int count = 0;
+        StateIterator it = new StateIterator(StateType.K_LAMBDA, maxParallelism,
+                ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+        while (it.hasNext()) {
+            State s = it.next();
+            final int index = codec.encode(s);
+            Assert.assertEquals(s.getIndex(), index);
+            Assert.assertEquals(s, codec.getState(index));
+            Assert.assertEquals(s.getLambda(), codec.lambdaOf(index));
+            Assert.assertArrayEquals(s.getActualDeployment(), codec.getDeployment(codec.deploymentOf(index)));
+
+            ActionIterator ait = new ActionIterator();
+            while (ait.hasNext()) {
+                Action a = ait.next();
+                Assert.assertSame(a, codec.getAction(a.getIndex()));
+                Assert.assertEquals(s.validateAction(a), codec.isValid(index, a.getIndex()));
+                if (s.validateAction(a)) {
+                    State pds = StateUtils.computePostDecisionState(s, a, StateType.K_LAMBDA,
+                            LAMBDA_LEVELS, maxParallelism);
+                    Assert.assertEquals(pds, codec.getState(codec.pds(index, a.getIndex())));
+                } else {
+                    Assert.assertEquals(-1, codec.pds(index, a.getIndex()));
+                }
+            }
+            count++;
+        }
+
+        Assert.assertEquals(count, codec.getStatesCount());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void onDemandCodecHasNoPredecessors() {
+        ComputingInfrastructure.initDefaultInfrastructure(2);
+        StateCodec.onDemand(StateType.K_LAMBDA, 3, ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS)
+                .getPdsPredecessors(0);
+    }
+
+    @Test
+    public void largeSpaceFeaturesAreEncodedOnDemand() {
+        // C(20,10) - 1 deployments, beyond the cached states
+        ComputingInfrastructure.initDefaultInfrastructure(10);
+        StateCodec codec = StateCodec.onDemand(StateType.K_LAMBDA, 10,
+                ComputingInfrastructure.getInfrastructure(), 2);
+        Assert.assertTrue(codec.getStatesCount() > StateFeatureCache.MAX_CACHED_STATES);
+
+        NeuralStateRepresentation repr = new NeuralStateRepresentation(10, 2);
+        StateFeatureCache features = new StateFeatureCache(codec, repr);
+        for (int index = 0; index < codec.getStatesCount(); index += 4999) {
+            INDArray expected = codec.getState(index).arrayRepresentation(repr);
+            double[] f = features.getFeatures(index);
+            Assert.assertEquals(expected.length(), f.length);
+            for (int i = 0; i < f.length; i++)
+                Assert.assertEquals(expected.getDouble(i), f[i], 0.0);
+            Assert.assertSame(features.getFeatures(index), features.getFeatures(index));
+        }
+    }
+
+    @Test
+    public void actionIteratorOrder() {
+        ComputingInfrastructure.initDefaultInfrastructure(3);
+        ActionIterator ait = new ActionIterator();
+        int expectedIndex = 0;
+        while (ait.hasNext()) {
+            Action a = ait.next();
+            Assert.assertEquals(expectedIndex, a.getIndex());
+            if (expectedIndex == 0) {
+                Assert.assertEquals(0, a.getDelta());
+            } else if (expectedIndex <= 3) {
+                Assert.assertEquals(-1, a.getDelta());
+                Assert.assertEquals(expectedIndex - 1, a.getResTypeIndex());
+            } else {
+                Assert.assertEquals(1, a.getDelta());
+                Assert.assertEquals(expectedIndex - 4, a.getResTypeIndex());
+            }
+            expectedIndex++;
+        }
+        Assert.assertEquals(7, expectedIndex);
+    }
+}
@@ -0,0 +1,75 @@
+import it.uniroma2.dspsim.Configuration;
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.RunContext;
+import it.uniroma2.dspsim.SweepRunner;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.stats.Statistics;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+
+public class TestSweepRunner {
+
+    @Test
+    public void contextsAreScoped() throws Exception {
+        Configuration global = Configuration.getInstance();
+        global.setString("test.sweep.key", "global");
+        ComputingInfrastructure globalInfra = ComputingInfrastructure.initDefaultInfrastructure(2);
+
+        Configuration scoped = global.copy();
+        scoped.setString("test.sweep.key", "scoped");
+        RunContext context = new RunContext(scoped);
+        context.call(() -> {
+            Assert.assertSame(scoped, Configuration.getInstance());
+            Assert.assertSame(context.getStatistics(), Statistics.getInstance());
+            ComputingInfrastructure.initDefaultInfrastructure(4);
+            Assert.assertEquals(4, ComputingInfrastructure.getInfrastructure().getNodeTypes().length);
+
+            // inherited by threads created within the run
+            Thread t = new Thread(() -> Assert.assertSame(scoped, Configuration.getInstance()));
+            t.start();
+            t.join();
+            return null;
+        });
+
+        Assert.assertEquals("global", Configuration.getInstance().getString("test.sweep.key", ""));
+        Assert.assertSame(globalInfra, ComputingInfrastructure.getInfrastructure());
+        Assert.assertNotSame(context.getStatistics(), Statistics.getInstance());
+    }
+
+    @Test
+    public void concurrentRunsMatch() throws Exception {
+        File outputDir = Files.createTempDirectory("sweep").toFile();
+
+        Configuration base = Configuration.getInstance().copy();
+        base.parseDefaultConfigurationFile();
+        base.setString(ConfigurationKeys.INPUT_FILE_PATH_KEY, "traces/profile_last_month.dat");
+        base.setString(ConfigurationKeys.OUTPUT_BASE_PATH_KEY, outputDir.getAbsolutePath());
+        base.setString(ConfigurationKeys.SIMULATION_STOP_TIME, "2000");
+        base.setString(ConfigurationKeys.NODE_TYPES_NUMBER_KEY, "2");
+        base.setString(ConfigurationKeys.OM_TYPE_KEY, "threshold");
+
+        // the first two runs are identical, the third one uses a different threshold
+        Map<String, List<String>> grid = new LinkedHashMap<>();
+        grid.put(ConfigurationKeys.OM_THRESHOLD_KEY, Arrays.asList("0.7", "0.2"));
+        grid.put("test.sweep.replica", Arrays.asList("a", "b"));
+
+        SweepRunner runner = new SweepRunner(base, grid);
+        Assert.assertEquals(4, runner.expandGrid().size());
+        Assert.assertEquals(0, runner.run(4));
+
+        List<String> run0 = Files.readAllLines(new File(outputDir, "run000/final_stats").toPath());
+        List<String> run1 = Files.readAllLines(new File(outputDir, "run001/final_stats").toPath());
+        List<String> run2 = Files.readAllLines(new File(outputDir, "run002/final_stats").toPath());
+        Assert.assertFalse(run0.isEmpty());
+        Assert.assertEquals(run0, run1);
+        Assert.assertNotEquals(run0, run2);
+
+        Properties conf2 = new Properties();
+        conf2.load(Files.newInputStream(new File(outputDir, "run002/configs").toPath()));
+        Assert.assertEquals("0.2", conf2.getProperty(ConfigurationKeys.OM_THRESHOLD_KEY));
+    }
+}
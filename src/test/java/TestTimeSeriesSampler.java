@@ -0,0 +1,102 @@
+import it.uniroma2.dspsim.stats.SamplingFormat;
+import it.uniroma2.dspsim.stats.TimeSeriesSampler;
+import it.uniroma2.dspsim.utils.matrix.BinaryTableFile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TestTimeSeriesSampler {
+
+    private static final int SAMPLES = 10001;
+
+    private ExecutorService writer;
+    private File values;
+    private File windows;
+
+    @Before
+    public void setup() throws IOException {
+        writer = Executors.newSingleThreadExecutor();
+        values = File.createTempFile("values", null);
+        windows = File.createTempFile("windows", null);
+    }
+
+    @After
+    public void tearDown() {
+        writer.shutdown();
+        values.delete();
+        windows.delete();
+    }
+
+    private static double value(int step) {
+        return (step * 37) % 101;
+    }
+
+    private TimeSeriesSampler sampleAll(SamplingFormat format, int downsampling, int window) {
+        TimeSeriesSampler sampler = new TimeSeriesSampler(values, windows, format, downsampling, window, writer);
+        for (int i = 0; i < SAMPLES; i++)
+            sampler.sample(value(i));
+        sampler.close();
+        return sampler;
+    }
+
+    @Test
+    public void binarySeriesAreDownsampled() throws IOException {
+        sampleAll(SamplingFormat.BINARY, 3, 0);
+
+        BinaryTableFile table = BinaryTableFile.open(values, BinaryTableFile.KIND_TIME_SERIES, true);
+        final int expected = (SAMPLES + 2) / 3;
+        Assert.assertArrayEquals(new int[]{expected, 1}, table.getShape());
+        for (int i = 0; i < expected; i++)
+            Assert.assertEquals(value(3 * i), table.getData().get(i), 0.0);
+    }
+
+    @Test
+    public void windowsAreAggregated() throws IOException {
+        final int window = 100;
+        TimeSeriesSampler sampler = sampleAll(SamplingFormat.BINARY, 1, window);
+
+        BinaryTableFile table = BinaryTableFile.open(windows, BinaryTableFile.KIND_TIME_SERIES, true);
+        final int count = (SAMPLES + window - 1) / window;
+        Assert.assertArrayEquals(new int[]{count, 3}, table.getShape());
+
+        double maxMean = Double.NEGATIVE_INFINITY;
+        for (int w = 0; w < count; w++) {
+            double sum = 0.0, max = Double.NEGATIVE_INFINITY;
+            int n = 0;
+            for (int i = w * window; i < Math.min(SAMPLES, (w + 1) * window); i++, n++) {
+                sum += value(i);
+                max = Math.max(max, value(i));
+            }
+            Assert.assertEquals(sum / n, table.getData().get(3L * w), 1E-9);
+            Assert.assertEquals(max, table.getData().get(3L * w + 1), 0.0);
+            Assert.assertEquals(sum, table.getData().get(3L * w + 2), 1E-9);
+            maxMean = Math.max(maxMean, sum / n);
+        }
+
+        List<String> summary = sampler.dumpSummary("Cost");
+        Assert.assertTrue(summary.contains("Cost_Max = 100.0"));
+        Assert.assertTrue(summary.contains("Cost_MaxWindowMean = " + maxMean));
+    }
+
+    @Test
+    public void textSeries() throws IOException {
+        sampleAll(SamplingFormat.TEXT, 1, 1000);
+
+        List<String> lines = Files.readAllLines(values.toPath());
+        Assert.assertEquals(SAMPLES, lines.size());
+        for (int i = 0; i < SAMPLES; i++)
+            Assert.assertEquals(value(i), Double.parseDouble(lines.get(i)), 0.0);
+
+        List<String> windowLines = Files.readAllLines(windows.toPath());
+        Assert.assertEquals(11, windowLines.size());
+        Assert.assertEquals(3, windowLines.get(0).split(";").length);
+    }
+}
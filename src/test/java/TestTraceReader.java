@@ -0,0 +1,105 @@
+import it.uniroma2.dspsim.InputRateFileReader;
+import it.uniroma2.dspsim.utils.trace.InputRateTrace;
+import it.uniroma2.dspsim.utils.trace.TraceCache;
+import it.uniroma2.dspsim.utils.trace.TraceReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+public class TestTraceReader {
+
+    private static final String TRACE = "traces/profile_last_month.dat";
+
+    private static List<Double> readWithParseDouble(String path) throws IOException {
+        List<Double> values = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty())
+                    values.add(Double.parseDouble(line));
+            }
+        }
+        return values;
+    }
+
+    @Test
+    public void textParserMatchesParseDouble() throws IOException {
+        List<Double> expected = readWithParseDouble(TRACE);
+        InputRateTrace trace = TraceReader.read(new File(TRACE));
+        Assert.assertEquals(expected.size(), trace.size());
+        for (int i = 0; i < trace.size(); i++)
+            Assert.assertEquals(expected.get(i), trace.get(i), 0.0);
+    }
+
+    @Test
+    public void textParserEdgeCases() throws IOException {
+        String[] tokens = {"0", "-0.0", "12", "3.25", "+7.5", "0.001", "1e3", "2.5E-4", "-1.5e+2",
+                "123456789012345678", "0.1234567890123456789", "1e-30", "4.9e-324", "NaN", "Infinity", "10."};
+        StringBuilder text = new StringBuilder();
+        for (String t : tokens)
+            text.append(t).append("\r\n");
+
+        InputRateTrace trace = TraceReader.parseText(
+                new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.US_ASCII)));
+        Assert.assertEquals(tokens.length, trace.size());
+        for (int i = 0; i < tokens.length; i++)
+            Assert.assertEquals(tokens[i], Double.parseDouble(tokens[i]), trace.get(i), 0.0);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void malformedValuesAreRejected() throws IOException {
+        TraceReader.parseText(new ByteArrayInputStream("1.0\n2.0x\n".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void gzipAndBinaryTraces() throws IOException {
+        InputRateTrace text = TraceReader.read(new File(TRACE));
+
+        File gz = File.createTempFile("trace", ".gz");
+        File bin64 = File.createTempFile("trace", ".bin");
+        File bin32 = File.createTempFile("trace", ".bin");
+        gz.deleteOnExit();
+        bin64.deleteOnExit();
+        bin32.deleteOnExit();
+
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(gz));
+             InputStream in = new FileInputStream(TRACE)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0)
+                out.write(buffer, 0, read);
+        }
+        TraceReader.writeBinary(bin64, text, false);
+        TraceReader.writeBinary(bin32, text, true);
+
+        InputRateTrace fromGz = TraceReader.read(gz);
+        InputRateTrace from64 = TraceReader.read(bin64);
+        InputRateTrace from32 = TraceReader.read(bin32);
+        Assert.assertEquals(text.size(), fromGz.size());
+        Assert.assertEquals(text.size(), from64.size());
+        Assert.assertEquals(text.size(), from32.size());
+        for (int i = 0; i < text.size(); i++) {
+            Assert.assertEquals(text.get(i), fromGz.get(i), 0.0);
+            Assert.assertEquals(text.get(i), from64.get(i), 0.0);
+            Assert.assertEquals((float) text.get(i), from32.get(i), 0.0);
+        }
+    }
+
+    @Test
+    public void readerSharesCachedTrace() throws IOException {
+        Assert.assertSame(TraceCache.get(TRACE), TraceCache.get("./" + TRACE));
+
+        InputRateFileReader reader = new InputRateFileReader(TRACE);
+        int count = 0;
+        while (reader.hasNext()) {
+            reader.next();
+            count++;
+        }
+        Assert.assertEquals(readWithParseDouble(TRACE).size(), count);
+    }
+}
@@ -0,0 +1,64 @@
+import it.uniroma2.dspsim.dsp.edf.om.DynamicProgrammingOM;
+import it.uniroma2.dspsim.utils.matrix.DoubleMatrix;
+import it.uniroma2.dspsim.utils.matrix.TransitionKernel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class TestTransitionKernel {
+
+    @Test
+    public void kernelMatchesMatrix() {
+        final int levels = 5;
+        DoubleMatrix<Integer, Integer> m = new DoubleMatrix<>(0.0);
+        m.setValue(0, 1, 0.5);
+        m.setValue(0, 0, 0.5);
+        m.setValue(2, 4, 1.0);
+        m.setValue(3, 2, 0.25);
+        m.setValue(3, 3, 0.0);
+        m.setValue(3, 1, 0.75);
+
+        TransitionKernel kernel = TransitionKernel.fromMatrix(m, levels);
+        Assert.assertEquals(levels, kernel.getLevels());
+
+        for (int x = 0; x < levels; x++) {
+            double rowSum = 0.0;
+            int prevColumn = -1;
+            for (int k = kernel.rowStart(x); k < kernel.rowEnd(x); k++) {
+                Assert.assertTrue(kernel.column(k) > prevColumn);
+                Assert.assertNotEquals(0.0, kernel.probability(k), 0.0);
+                prevColumn = kernel.column(k);
+                rowSum += kernel.probability(k);
+            }
+            for (int y = 0; y < levels; y++) {
+                Assert.assertEquals(m.getValue(x, y), kernel.getValue(x, y), 0.0);
+            }
+            if (kernel.rowEnd(x) > kernel.rowStart(x))
+                Assert.assertEquals(1.0, rowSum, 1E-12);
+        }
+
+        // empty rows
+        Assert.assertEquals(kernel.rowStart(1), kernel.rowEnd(1));
+        Assert.assertEquals(kernel.rowStart(4), kernel.rowEnd(4));
+
+        TransitionKernel copy = TransitionKernel.fromArray(kernel.toArray());
+        for (int x = 0; x < levels; x++)
+            for (int y = 0; y < levels; y++)
+                Assert.assertEquals(kernel.getValue(x, y), copy.getValue(x, y), 0.0);
+    }
+
+    @Test
+    public void kernelFromTrace() throws IOException {
+        final int levels = 20;
+        TransitionKernel kernel = DynamicProgrammingOM.buildPMatrix("traces/profile_last_month.dat", 600, levels);
+        for (int x = 0; x < levels; x++) {
+            if (kernel.rowEnd(x) == kernel.rowStart(x))
+                continue;
+            double rowSum = 0.0;
+            for (int k = kernel.rowStart(x); k < kernel.rowEnd(x); k++)
+                rowSum += kernel.probability(k);
+            Assert.assertEquals(1.0, rowSum, 1E-9);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package centralized;
+
+import it.uniroma2.dspsim.dsp.edf.am.centralized.*;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+public class TestCompiledJointPolicy {
+
+	private static final int LAMBDA_LEVELS = 4;
+	private int maxParallelism[] = {3, 2};
+	private JointQTable qTable;
+
+	@Before
+	public void setup()
+	{
+		ComputingInfrastructure.initDefaultInfrastructure(2);
+		qTable = JointQTable.createQTable(maxParallelism.length, maxParallelism, LAMBDA_LEVELS);
+
+		Random r = new Random(3);
+		JointStateIterator it = new JointStateIterator(maxParallelism.length, maxParallelism,
+				ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+		while (it.hasNext()) {
+			JointState s = it.next();
+			JointActionIterator ait = new JointActionIterator(maxParallelism.length);
+			while (ait.hasNext()) {
+				JointAction a = ait.next();
+				if (s.validateAction(a))
+					qTable.setQ(s, a, r.nextDouble());
+			}
+		}
+	}
+
+	private JointAction greedyAction(JointState s)
+	{
+		JointAction bestA = null;
+		double bestQ = 0.0;
+		JointActionIterator ait = new JointActionIterator(maxParallelism.length);
+		while (ait.hasNext()) {
+			JointAction a = ait.next();
+			if (!s.validateAction(a))
+				continue;
+			double q = qTable.getQ(s, a);
+			if (bestA == null || q < bestQ) {
+				bestA = a;
+				bestQ = q;
+			}
+		}
+		return bestA;
+	}
+
+	private void assertSameAsGreedy(CompiledJointPolicy policy)
+	{
+		JointStateIterator it = new JointStateIterator(maxParallelism.length, maxParallelism,
+				ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+		while (it.hasNext()) {
+			JointState s = it.next();
+			Assert.assertEquals(greedyAction(s), policy.getAction(s));
+		}
+	}
+
+	@Test
+	public void testCompiledMatchesGreedy()
+	{
+		CompiledJointPolicy policy = CompiledJointPolicy.compile(maxParallelism.length, maxParallelism,
+				LAMBDA_LEVELS, this::greedyAction);
+		Assert.assertNotNull(policy);
+		assertSameAsGreedy(policy);
+	}
+
+	@Test
+	public void testDumpAndLoad() throws IOException
+	{
+		CompiledJointPolicy policy = CompiledJointPolicy.compile(maxParallelism.length, maxParallelism,
+				LAMBDA_LEVELS, this::greedyAction);
+		int shape[] = {2, LAMBDA_LEVELS, 3, 2};
+
+		File f = File.createTempFile("joint-policy", null);
+		try {
+			policy.dump(f, shape);
+			CompiledJointPolicy loaded = CompiledJointPolicy.load(f, shape, maxParallelism.length, maxParallelism,
+					LAMBDA_LEVELS, true);
+			assertSameAsGreedy(loaded);
+		} finally {
+			f.delete();
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package it.uniroma2.dspsim;
+
+import org.junit.rules.ExternalResource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Overrides keys of the configuration, which is shared by the tests run in the same JVM.
+ * After each test, the overridden keys get back their previous value or are removed if they had none.
+ */
+public class ConfigurationOverrides extends ExternalResource {
+
+    /* previous value of each overridden key; null if the key had no value */
+    private final Map<String, String> previousValues = new LinkedHashMap<>();
+
+    public void set(String key, String value) {
+        Configuration conf = Configuration.getInstance();
+        if (!previousValues.containsKey(key))
+            previousValues.put(key, conf.containsKey(key) ? conf.getString(key, "") : null);
+        conf.setString(key, value);
+    }
+
+    @Override
+    protected void after() {
+        Configuration conf = Configuration.getInstance();
+        for (Map.Entry<String, String> e : previousValues.entrySet()) {
+            if (e.getValue() != null)
+                conf.setString(e.getKey(), e.getValue());
+            else
+                conf.removeKey(e.getKey());
+        }
+        previousValues.clear();
+    }
+}
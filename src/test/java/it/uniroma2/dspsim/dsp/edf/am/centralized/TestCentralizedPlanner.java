@@ -0,0 +1,153 @@
+package it.uniroma2.dspsim.dsp.edf.am.centralized;
+
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.ConfigurationOverrides;
+import it.uniroma2.dspsim.dsp.Application;
+import it.uniroma2.dspsim.dsp.ApplicationBuilder;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import it.uniroma2.dspsim.utils.matrix.StoragePrecision;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Compares the planner on dense indexes with the Q updates of CentralizedAM.
+ * The test lives in the package of the AM to invoke the updates directly.
+ */
+public class TestCentralizedPlanner {
+
+	private static final int MAX_PARALLELISM = 2;
+	private static final int LAMBDA_LEVELS = 6;
+	private static final double THETA = 1E-9;
+
+	private Application app;
+	private int maxParallelism[];
+	private int shape[];
+	private File qTableFiles[] = new File[2];
+
+	@Rule
+	public final ConfigurationOverrides conf = new ConfigurationOverrides();
+
+	@Before
+	public void setup() throws IOException
+	{
+		conf.set(ConfigurationKeys.TRAINING_INPUT_FILE_PATH_KEY, "traces/profile_last_month.dat");
+		conf.set(ConfigurationKeys.OUTPUT_BASE_PATH_KEY, System.getProperty("java.io.tmpdir"));
+		conf.set(ConfigurationKeys.AM_TYPE_KEY, "centralized");
+		conf.set(ConfigurationKeys.OPERATOR_MAX_PARALLELISM_KEY, Integer.toString(MAX_PARALLELISM));
+		conf.set(ConfigurationKeys.RL_OM_INPUT_RATE_LEVELS_KEY, Integer.toString(LAMBDA_LEVELS));
+		conf.set(ConfigurationKeys.DP_GAMMA_KEY, "0.8");
+		ComputingInfrastructure.initDefaultInfrastructure(1);
+
+		app = ApplicationBuilder.simpleTandemApplication();
+		final int nOperators = app.getOperators().size();
+		maxParallelism = new int[nOperators];
+		shape = new int[2 + nOperators];
+		shape[0] = 1;
+		shape[1] = LAMBDA_LEVELS;
+		for (int i = 0; i < nOperators; i++) {
+			maxParallelism[i] = app.getOperators().get(i).getMaxParallelism();
+			shape[2 + i] = maxParallelism[i];
+		}
+
+		// loaded tables are mapped, hence a file for each AM
+		for (int i = 0; i < qTableFiles.length; i++) {
+			qTableFiles[i] = File.createTempFile("centralizedQtable", ".bin");
+			JointQTable.createQTable(new ReachableJointStateSpace(app, 600, LAMBDA_LEVELS), JointQTableStorage.HEAP,
+					StoragePrecision.DOUBLE, 0.0).dump(qTableFiles[i], shape);
+		}
+	}
+
+	@After
+	public void tearDown()
+	{
+		for (File f : qTableFiles)
+			f.delete();
+	}
+
+	private CentralizedAM newAM(File qTableFile)
+	{
+		conf.set(ConfigurationKeys.AM_CENTRALIZED_PRECOMPUTED_QTABLE_FILE, qTableFile.getAbsolutePath());
+		return new CentralizedAM(app, 0.2);
+	}
+
+	private static JointAction lastValidAction(JointState s)
+	{
+		JointAction last = null;
+		JointActionIterator ait = new JointActionIterator(s.states.length);
+		while (ait.hasNext()) {
+			JointAction a = ait.next();
+			if (s.validateAction(a))
+				last = a;
+		}
+		return last;
+	}
+
+	@Test
+	public void testDumpedPolicyIsLoaded() throws IOException
+	{
+		// not greedy w.r.t. the precomputed Q table, hence never compiled by the AM
+		ReachableJointStateSpace space = new ReachableJointStateSpace(app, 600, LAMBDA_LEVELS);
+		File policyFile = File.createTempFile("centralizedPolicy", ".bin");
+		try {
+			CompiledJointPolicy.compile(space, TestCentralizedPlanner::lastValidAction).dump(policyFile, shape);
+			conf.set(ConfigurationKeys.AM_CENTRALIZED_PRECOMPUTED_POLICY_FILE, policyFile.getAbsolutePath());
+			CentralizedAM am = newAM(qTableFiles[0]);
+
+			for (int r = 0; r < space.size(); r++) {
+				JointState s = space.getState(r);
+				Assert.assertEquals(lastValidAction(s), am.policyAction(s));
+			}
+		} finally {
+			policyFile.delete();
+		}
+	}
+
+	private double updateQSweep(CentralizedAM am)
+	{
+		double delta = 0.0;
+		JointStateIterator sit = new JointStateIterator(maxParallelism.length, maxParallelism,
+				ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+		while (sit.hasNext()) {
+			JointState s = sit.next();
+			JointActionIterator ait = new JointActionIterator(maxParallelism.length);
+			while (ait.hasNext()) {
+				JointAction a = ait.next();
+				if (s.validateAction(a))
+					delta = Math.max(delta, am.updateQ(s, a));
+			}
+		}
+		return delta;
+	}
+
+	@Test
+	public void testSameFixpoint()
+	{
+		CentralizedAM planned = newAM(qTableFiles[0]);
+		CentralizedPlanner planner = planned.newPlanner();
+		int sweeps = 0;
+		while (planner.sweep() > THETA)
+			Assert.assertTrue(++sweeps < 1000);
+
+		CentralizedAM updated = newAM(qTableFiles[1]);
+		sweeps = 0;
+		while (updateQSweep(updated) > THETA)
+			Assert.assertTrue(++sweeps < 1000);
+
+		// each fixpoint is also a fixpoint of the other update
+		Assert.assertEquals(0.0, updateQSweep(planned), 1E-6);
+		Assert.assertEquals(0.0, updated.newPlanner().sweep(), 1E-6);
+
+		JointStateIterator sit = new JointStateIterator(maxParallelism.length, maxParallelism,
+				ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+		while (sit.hasNext()) {
+			JointState s = sit.next();
+			Assert.assertEquals(updated.greedyAction(s), planned.greedyAction(s));
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package it.uniroma2.dspsim.dsp.edf.am.centralized;
+
+import it.uniroma2.dspsim.ConfigurationKeys;
+import it.uniroma2.dspsim.ConfigurationOverrides;
+import it.uniroma2.dspsim.dsp.Application;
+import it.uniroma2.dspsim.dsp.ApplicationBuilder;
+import it.uniroma2.dspsim.infrastructure.ComputingInfrastructure;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestReachableJointStateSpace {
+
+	private static final int MAX_PARALLELISM = 2;
+	private static final int LAMBDA_LEVELS = 6;
+
+	private Application app;
+	private int maxParallelism[];
+
+	@Rule
+	public final ConfigurationOverrides conf = new ConfigurationOverrides();
+
+	@Before
+	public void setup()
+	{
+		conf.set(ConfigurationKeys.TRAINING_INPUT_FILE_PATH_KEY, "traces/profile_last_month.dat");
+		conf.set(ConfigurationKeys.OUTPUT_BASE_PATH_KEY, System.getProperty("java.io.tmpdir"));
+		conf.set(ConfigurationKeys.AM_TYPE_KEY, "centralized");
+		conf.set(ConfigurationKeys.AM_CENTRALIZED_PRECOMPUTED_QTABLE_FILE, "");
+		conf.set(ConfigurationKeys.OPERATOR_MAX_PARALLELISM_KEY, Integer.toString(MAX_PARALLELISM));
+		conf.set(ConfigurationKeys.RL_OM_INPUT_RATE_LEVELS_KEY, Integer.toString(LAMBDA_LEVELS));
+		conf.set(ConfigurationKeys.DP_GAMMA_KEY, "0.8");
+		ComputingInfrastructure.initDefaultInfrastructure(1);
+
+		app = ApplicationBuilder.simpleTandemApplication();
+		maxParallelism = new int[app.getOperators().size()];
+		for (int i = 0; i < maxParallelism.length; i++)
+			maxParallelism[i] = app.getOperators().get(i).getMaxParallelism();
+	}
+
+	@Test
+	public void testDenseIndex()
+	{
+		ReachableJointStateSpace space = new ReachableJointStateSpace(app, 600, LAMBDA_LEVELS);
+		Assert.assertEquals(space.getDeploymentsCount() * LAMBDA_LEVELS, space.size());
+
+		for (int r = 0; r < space.size(); r++) {
+			JointState s = space.getState(r);
+			Assert.assertEquals(r, space.index(s));
+			Assert.assertTrue(space.isReachable(s));
+		}
+
+		int reachable = 0;
+		JointStateIterator it = new JointStateIterator(maxParallelism.length, maxParallelism,
+				ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+		while (it.hasNext()) {
+			JointState s = it.next();
+			if (space.isReachable(s))
+				reachable++;
+
+			// the reachable state with the same index has the same deployments and source input rate level
+			JointState canonical = space.getState(space.index(s));
+			Assert.assertEquals(s.states[0].getLambda(), canonical.states[0].getLambda());
+			for (int i = 0; i < maxParallelism.length; i++)
+				Assert.assertArrayEquals(s.states[i].getActualDeployment(), canonical.states[i].getActualDeployment());
+		}
+		Assert.assertEquals(space.size(), reachable);
+	}
+
+	private CentralizedAM newAM(String stateSpace)
+	{
+		conf.set(ConfigurationKeys.AM_CENTRALIZED_STATE_SPACE, stateSpace);
+		return new CentralizedAM(app, 0.2);
+	}
+
+	@Test
+	public void testSamePolicyAsFullStateSpace()
+	{
+		CentralizedAM reachable = newAM("reachable");
+		CentralizedAM full = newAM("full");
+
+		JointStateIterator it = new JointStateIterator(maxParallelism.length, maxParallelism,
+				ComputingInfrastructure.getInfrastructure(), LAMBDA_LEVELS);
+		while (it.hasNext()) {
+			JointState s = it.next();
+			Assert.assertEquals(full.greedyAction(s), reachable.greedyAction(s));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidStateSpace()
+	{
+		newAM("partial");
+	}
+}